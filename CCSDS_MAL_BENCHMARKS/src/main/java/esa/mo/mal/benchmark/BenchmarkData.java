@@ -0,0 +1,165 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO Java Benchmarks
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.benchmark;
+
+import esa.mo.mal.transport.gen.GENMessage;
+import esa.mo.mal.transport.gen.GENMessageHeader;
+import java.util.HashMap;
+import java.util.Map;
+import org.ccsds.moims.mo.mal.MALContextFactory;
+import org.ccsds.moims.mo.mal.MALException;
+import org.ccsds.moims.mo.mal.MALHelper;
+import org.ccsds.moims.mo.mal.MALInteractionException;
+import org.ccsds.moims.mo.mal.structures.Blob;
+import org.ccsds.moims.mo.mal.structures.EntityKey;
+import org.ccsds.moims.mo.mal.structures.Identifier;
+import org.ccsds.moims.mo.mal.structures.IdentifierList;
+import org.ccsds.moims.mo.mal.structures.InteractionType;
+import org.ccsds.moims.mo.mal.structures.QoSLevel;
+import org.ccsds.moims.mo.mal.structures.SessionType;
+import org.ccsds.moims.mo.mal.structures.Time;
+import org.ccsds.moims.mo.mal.structures.UInteger;
+import org.ccsds.moims.mo.mal.structures.UOctet;
+import org.ccsds.moims.mo.mal.structures.UShort;
+import org.ccsds.moims.mo.mal.structures.URI;
+import org.ccsds.moims.mo.mal.structures.UpdateHeader;
+import org.ccsds.moims.mo.mal.structures.UpdateHeaderList;
+import org.ccsds.moims.mo.mal.structures.UpdateType;
+
+/**
+ * Creates the representative MAL structures and messages used by the benchmarks.
+ *
+ * Messages are created in the error message format, whose body parts carry their own type short forms, so that they
+ * can be encoded and decoded without registering a service area and operation with the MAL.
+ */
+final class BenchmarkData
+{
+  /**
+   * Prefix of the system properties that map an encoding protocol to its stream factory class.
+   */
+  static final String ENCODING_PROPERTY_PREFIX = "org.ccsds.moims.mo.mal.encoding.protocol.";
+
+  private static boolean initialised = false;
+
+  private BenchmarkData()
+  {
+  }
+
+  /**
+   * Registers the MAL element factories, needed to decode body parts from their short forms.
+   *
+   * @throws MALException on error.
+   */
+  static synchronized void init() throws MALException
+  {
+    if (!initialised)
+    {
+      MALHelper.init(MALContextFactory.getElementFactoryRegistry());
+      initialised = true;
+    }
+  }
+
+  /**
+   * Returns the properties that select the stream factory class for an encoding protocol.
+   *
+   * @param protocol the protocol name.
+   * @param streamFactoryClass the stream factory class.
+   * @return the properties.
+   */
+  static Map<String, String> encodingProperties(final String protocol, final Class streamFactoryClass)
+  {
+    final Map<String, String> properties = new HashMap<String, String>();
+    properties.put(ENCODING_PROPERTY_PREFIX + protocol, streamFactoryClass.getName());
+    System.setProperty(ENCODING_PROPERTY_PREFIX + protocol, streamFactoryClass.getName());
+    return properties;
+  }
+
+  /**
+   * Creates a list of update headers, a typical publish/subscribe payload that covers strings, longs, times,
+   * enumerations and nested composites.
+   *
+   * @param size the number of updates in the list.
+   * @return the list.
+   */
+  static UpdateHeaderList createUpdateHeaders(final int size)
+  {
+    final UpdateHeaderList list = new UpdateHeaderList();
+    final URI source = new URI("maltcp://127.0.0.1:61616/benchmark");
+
+    for (int i = 0; i < size; i++)
+    {
+      list.add(new UpdateHeader(new Time(1400000000000L + i),
+              source,
+              UpdateType.UPDATE,
+              new EntityKey(new Identifier("Parameter" + i), Long.valueOf(i), Long.valueOf(1), Long.valueOf(2))));
+    }
+
+    return list;
+  }
+
+  /**
+   * Creates a message header.
+   *
+   * @param from the source URI.
+   * @param to the destination URI.
+   * @param transactionId the transaction identifier.
+   * @return the header.
+   */
+  static GENMessageHeader createHeader(final URI from, final URI to, final long transactionId)
+  {
+    final IdentifierList domain = new IdentifierList();
+    domain.add(new Identifier("esa"));
+    domain.add(new Identifier("mission"));
+
+    return new GENMessageHeader(from,
+            new Blob(new byte[0]),
+            to,
+            new Time(System.currentTimeMillis()),
+            QoSLevel.BESTEFFORT,
+            new UInteger(1),
+            domain,
+            new Identifier("network"),
+            SessionType.LIVE,
+            new Identifier("LIVE"),
+            InteractionType.SEND,
+            new UOctet((short) 1),
+            Long.valueOf(transactionId),
+            new UShort(1),
+            new UShort(1),
+            new UShort(1),
+            new UOctet((short) 1),
+            Boolean.TRUE);
+  }
+
+  /**
+   * Creates a message with a status code and a list of update headers as its body.
+   *
+   * @param header the message header.
+   * @param updates the updates.
+   * @return the message.
+   * @throws MALInteractionException on error.
+   */
+  static GENMessage createMessage(final GENMessageHeader header, final UpdateHeaderList updates)
+          throws MALInteractionException
+  {
+    return new GENMessage(false, header, new HashMap(), null, new UInteger(0), updates);
+  }
+}
@@ -0,0 +1,150 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO Java Benchmarks
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.benchmark;
+
+import esa.mo.mal.encoder.binary.BinaryStreamFactory;
+import esa.mo.mal.encoder.binary.fixed.FixedBinaryStreamFactory;
+import esa.mo.mal.encoder.binary.split.SplitBinaryStreamFactory;
+import esa.mo.mal.encoder.line.LineStreamFactory;
+import esa.mo.mal.encoder.spp.SPPBinaryStreamFactory;
+import esa.mo.mal.encoder.string.StringStreamFactory;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.ccsds.moims.mo.mal.MALException;
+import org.ccsds.moims.mo.mal.encoding.MALElementOutputStream;
+import org.ccsds.moims.mo.mal.encoding.MALElementStreamFactory;
+import org.ccsds.moims.mo.mal.structures.UpdateHeaderList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the encoding and decoding of a representative MAL structure through each of the element stream factories,
+ * as a regression baseline for the encoders.
+ *
+ * Run with "-prof gc" to report the allocation rate alongside the throughput and latency.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(
+        {
+          Mode.Throughput, Mode.SampleTime
+        })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodingBenchmark
+{
+  private static final Map<String, Class> FACTORIES = new HashMap<String, Class>();
+
+  static
+  {
+    FACTORIES.put("binary", BinaryStreamFactory.class);
+    FACTORIES.put("split", SplitBinaryStreamFactory.class);
+    FACTORIES.put("fixed", FixedBinaryStreamFactory.class);
+    FACTORIES.put("spp", SPPBinaryStreamFactory.class);
+    FACTORIES.put("string", StringStreamFactory.class);
+    FACTORIES.put("line", LineStreamFactory.class);
+  }
+
+  /**
+   * The encoding under test.
+   */
+  @Param(
+          {
+            "binary", "split", "fixed", "spp", "string", "line"
+          })
+  public String encoding;
+
+  /**
+   * The number of updates in the encoded list.
+   */
+  @Param(
+          {
+            "1", "100"
+          })
+  public int updates;
+
+  private final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+  private MALElementStreamFactory factory;
+  private UpdateHeaderList value;
+  private byte[] encoded;
+
+  /**
+   * Creates the stream factory under test and the encoded form of the structure.
+   *
+   * @throws MALException on error.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws MALException
+  {
+    BenchmarkData.init();
+
+    final String protocol = "benchmark" + encoding;
+    factory = MALElementStreamFactory.newFactory(protocol,
+            BenchmarkData.encodingProperties(protocol, FACTORIES.get(encoding)));
+    value = BenchmarkData.createUpdateHeaders(updates);
+
+    encode();
+    encoded = baos.toByteArray();
+  }
+
+  /**
+   * Encodes the structure.
+   *
+   * @return the number of bytes encoded.
+   * @throws MALException on error.
+   */
+  @Benchmark
+  public int encode() throws MALException
+  {
+    baos.reset();
+
+    final MALElementOutputStream os = factory.createOutputStream(baos);
+    os.writeElement(value, null);
+    os.flush();
+
+    return baos.size();
+  }
+
+  /**
+   * Decodes the structure.
+   *
+   * @return the decoded structure.
+   * @throws MALException on error.
+   */
+  @Benchmark
+  public Object decode() throws MALException
+  {
+    return factory.createInputStream(encoded, 0).readElement(new UpdateHeaderList(), null);
+  }
+}
@@ -0,0 +1,189 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO Java Benchmarks
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.benchmark;
+
+import esa.mo.mal.encoder.binary.fixed.FixedBinaryEncoder;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import org.ccsds.moims.mo.mal.MALException;
+import org.ccsds.moims.mo.mal.structures.UInteger;
+import org.ccsds.moims.mo.mal.structures.UShort;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the fixed length binary encoder with the previous stream holder implementation, which allocated a new byte
+ * buffer and array for every field encoded.
+ *
+ * Each invocation encodes a block of integer fields of each supported width, using pre-boxed values so that only the
+ * encoder itself allocates. Run with "-prof gc" to report the
+ * allocation rate alongside the encode throughput.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(FixedBinaryEncoderBenchmark.FIELDS)
+public class FixedBinaryEncoderBenchmark
+{
+  /**
+   * The number of fields encoded per invocation.
+   */
+  public static final int FIELDS = 1000;
+
+  /**
+   * The stream holder implementation under test.
+   */
+  @Param(
+          {
+            "legacy", "scratch"
+          })
+  public String holder;
+
+  private final ByteArrayOutputStream baos = new ByteArrayOutputStream(FIELDS * 8);
+  private final Long longValue = Long.valueOf(0x0123456789ABCDEFL);
+  private final Integer integerValue = Integer.valueOf(0x01234567);
+  private final Short shortValue = Short.valueOf((short) 0x0123);
+  private final UShort ushortValue = new UShort(0xBEEF);
+  private final UInteger uintegerValue = new UInteger(0xCAFEBABEL);
+  private FixedBinaryEncoder encoder;
+
+  /**
+   * Creates the encoder under test.
+   */
+  @Setup
+  public void setup()
+  {
+    if ("legacy".equals(holder))
+    {
+      encoder = new LegacyEncoder(baos);
+    }
+    else
+    {
+      encoder = new FixedBinaryEncoder(baos);
+    }
+  }
+
+  /**
+   * Encodes a block of fields of each width.
+   *
+   * @return the number of bytes encoded.
+   * @throws MALException on encoding error.
+   */
+  @Benchmark
+  public int encode() throws MALException
+  {
+    baos.reset();
+
+    for (int i = 0; i < FIELDS; i += 5)
+    {
+      encoder.encodeLong(longValue);
+      encoder.encodeInteger(integerValue);
+      encoder.encodeShort(shortValue);
+      encoder.encodeUShort(ushortValue);
+      encoder.encodeUInteger(uintegerValue);
+    }
+
+    return baos.size();
+  }
+
+  /**
+   * Fixed length encoder using a copy of the previous stream holder implementation.
+   */
+  private static final class LegacyEncoder extends FixedBinaryEncoder
+  {
+    /**
+     * Constructor.
+     *
+     * @param os Output stream to write to.
+     */
+    LegacyEncoder(final OutputStream os)
+    {
+      super(new LegacyStreamHolder(os));
+    }
+
+    /**
+     * The previous stream holder, allocating a byte buffer and array per field.
+     */
+    private static final class LegacyStreamHolder extends FixedStreamHolder
+    {
+      /**
+       * Constructor.
+       *
+       * @param outputStream The output stream to encode into.
+       */
+      LegacyStreamHolder(final OutputStream outputStream)
+      {
+        super(outputStream);
+      }
+
+      @Override
+      public void addUnsignedLong(long value) throws IOException
+      {
+        directAdd(java.nio.ByteBuffer.allocate(8).putLong(value).array());
+      }
+
+      @Override
+      public void addUnsignedLong32(long value) throws IOException
+      {
+        directAdd(java.nio.ByteBuffer.allocate(8).putLong(value).array(), 4, 4);
+      }
+
+      @Override
+      public void addUnsignedInt(int value) throws IOException
+      {
+        directAdd(java.nio.ByteBuffer.allocate(4).putInt(value).array());
+      }
+
+      @Override
+      public void addUnsignedInt16(int value) throws IOException
+      {
+        directAdd(java.nio.ByteBuffer.allocate(4).putInt(value).array(), 2, 2);
+      }
+
+      @Override
+      public void addUnsignedShort(int value) throws IOException
+      {
+        directAdd(java.nio.ByteBuffer.allocate(2).putShort((short) value).array());
+      }
+
+      @Override
+      public void addUnsignedShort8(short value) throws IOException
+      {
+        directAdd(java.nio.ByteBuffer.allocate(2).putShort(value).array()[1]);
+      }
+    }
+  }
+}
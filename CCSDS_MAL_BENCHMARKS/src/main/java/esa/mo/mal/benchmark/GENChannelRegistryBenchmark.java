@@ -0,0 +1,251 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO Java Benchmarks
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.benchmark;
+
+import esa.mo.mal.encoder.binary.BinaryStreamFactory;
+import esa.mo.mal.transport.gen.GENMessage;
+import esa.mo.mal.transport.gen.sending.GENConcurrentMessageSender;
+import esa.mo.mal.transport.gen.sending.GENMessageSender;
+import esa.mo.mal.transport.gen.sending.GENOutgoingMessageHolder;
+import esa.mo.mal.transport.tcpip.TCPIPTransport;
+import esa.mo.mal.transport.tcpip.TCPIPTransportFactoryImpl;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.ccsds.moims.mo.mal.MALException;
+import org.ccsds.moims.mo.mal.MALInteractionException;
+import org.ccsds.moims.mo.mal.MALTransmitErrorException;
+import org.ccsds.moims.mo.mal.structures.URI;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the contention on the outgoing channel registry of the GEN transport when many threads send to 100
+ * destinations. No networking is used, the created message senders discard their messages.
+ *
+ * The lookup benchmark only uses existing channels. The reconnect group has one thread repeatedly closing and
+ * re-creating channels, with a simulated connection delay, while the other threads look up channels; the lookup
+ * throughput of this group shows how much a slow connection to one destination holds up sending to the others.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GENChannelRegistryBenchmark
+{
+  private static final String PROTOCOL = "malbench";
+  private static final int DESTINATIONS = 100;
+
+  /**
+   * The simulated time taken to open a connection, in milliseconds.
+   */
+  @Param(
+          {
+            "0", "10"
+          })
+  public int connectDelay;
+
+  private ChannelTransport transport;
+  private GENMessage[] messages;
+
+  /**
+   * Creates the transport and a message for each destination, and opens the channels to all of them.
+   *
+   * @throws MALException on error.
+   * @throws MALInteractionException on error.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws MALException, MALInteractionException
+  {
+    BenchmarkData.init();
+
+    transport = new ChannelTransport(BenchmarkData.encodingProperties(PROTOCOL, BinaryStreamFactory.class));
+
+    final URI from = new URI(PROTOCOL + "://127.0.0.1:61000-benchmark");
+    messages = new GENMessage[DESTINATIONS];
+    for (int i = 0; i < DESTINATIONS; i++)
+    {
+      final URI to = new URI(PROTOCOL + "://127.0.0.1:" + (62000 + i) + "-benchmark");
+      messages[i] = BenchmarkData.createMessage(BenchmarkData.createHeader(from, to, i),
+              BenchmarkData.createUpdateHeaders(1));
+      transport.channelFor(messages[i]);
+    }
+  }
+
+  /**
+   * Closes the transport.
+   *
+   * @throws MALException on error.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws MALException
+  {
+    transport.close();
+  }
+
+  /**
+   * Looks up the channel of the next destination, all channels exist.
+   *
+   * @param cursor the destination cursor of the calling thread.
+   * @return the channel.
+   * @throws MALTransmitErrorException on error.
+   */
+  @Benchmark
+  @Threads(8)
+  public GENConcurrentMessageSender lookup(final Cursor cursor) throws MALTransmitErrorException
+  {
+    return transport.channelFor(messages[cursor.next()]);
+  }
+
+  /**
+   * Looks up the channel of the next destination while another thread re-creates channels.
+   *
+   * @param cursor the destination cursor of the calling thread.
+   * @return the channel.
+   * @throws MALTransmitErrorException on error.
+   */
+  @Benchmark
+  @Group("reconnect")
+  @GroupThreads(7)
+  public GENConcurrentMessageSender reconnectLookup(final Cursor cursor) throws MALTransmitErrorException
+  {
+    return transport.channelFor(messages[cursor.next()]);
+  }
+
+  /**
+   * Closes the channel of the next destination and opens it again.
+   *
+   * @param cursor the destination cursor of the calling thread.
+   * @return the new channel.
+   * @throws MALTransmitErrorException on error.
+   */
+  @Benchmark
+  @Group("reconnect")
+  @GroupThreads(1)
+  public GENConcurrentMessageSender reconnectCreate(final Cursor cursor) throws MALTransmitErrorException
+  {
+    final GENMessage msg = messages[cursor.next()];
+    transport.closeConnection(transport.rootURIOf(msg), null);
+    return transport.channelFor(msg);
+  }
+
+  /**
+   * The position of a thread in the list of destinations, each thread starts at a different place.
+   */
+  @State(Scope.Thread)
+  public static class Cursor
+  {
+    private static int seed = 0;
+    private int position;
+
+    /**
+     * Picks the starting destination.
+     */
+    @Setup(Level.Trial)
+    public void setup()
+    {
+      synchronized (Cursor.class)
+      {
+        position = (seed * 37) % DESTINATIONS;
+        seed++;
+      }
+    }
+
+    /**
+     * Returns the next destination.
+     *
+     * @return the destination index.
+     */
+    public int next()
+    {
+      position = (position + 1) % DESTINATIONS;
+      return position;
+    }
+  }
+
+  /**
+   * TCP/IP transport whose message senders simulate the connection time and discard their messages.
+   */
+  private final class ChannelTransport extends TCPIPTransport
+  {
+    private ChannelTransport(final Map<String, String> properties) throws MALException
+    {
+      super(PROTOCOL, '-', false, new TCPIPTransportFactoryImpl(PROTOCOL), properties);
+    }
+
+    private GENConcurrentMessageSender channelFor(final GENMessage msg) throws MALTransmitErrorException
+    {
+      return manageCommunicationChannel(msg, false, null);
+    }
+
+    private String rootURIOf(final GENMessage msg)
+    {
+      return getRootURI(msg.getHeader().getURITo().getValue());
+    }
+
+    @Override
+    protected GENMessageSender createMessageSender(final GENMessage msg, final String remoteRootURI)
+    {
+      if (0 < connectDelay)
+      {
+        try
+        {
+          Thread.sleep(connectDelay);
+        }
+        catch (InterruptedException ex)
+        {
+          Thread.currentThread().interrupt();
+        }
+      }
+
+      return new GENMessageSender()
+      {
+        @Override
+        public void sendEncodedMessage(final GENOutgoingMessageHolder encodedMessage) throws IOException
+        {
+          // discarded
+        }
+
+        @Override
+        public void close()
+        {
+          // nothing to close
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,166 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO Java Benchmarks
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.benchmark;
+
+import esa.mo.mal.encoder.binary.BinaryStreamFactory;
+import esa.mo.mal.transport.gen.GENMessage;
+import esa.mo.mal.transport.gen.util.GENEncodeBuffer;
+import esa.mo.mal.transport.tcpip.TCPIPTransport;
+import esa.mo.mal.transport.tcpip.TCPIPTransportFactoryImpl;
+import java.util.concurrent.TimeUnit;
+import org.ccsds.moims.mo.mal.MALException;
+import org.ccsds.moims.mo.mal.MALInteractionException;
+import org.ccsds.moims.mo.mal.encoding.MALElementStreamFactory;
+import org.ccsds.moims.mo.mal.structures.URI;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the GEN message path without any networking: the encoding of a complete message with
+ * GENMessage.encodeMessage, its decoding with GENTransport.createMessage, and the round trip of both.
+ *
+ * Run with "-prof gc" to report the allocation rate alongside the throughput and latency.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(
+        {
+          Mode.Throughput, Mode.SampleTime
+        })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GENMessageBenchmark
+{
+  private static final String PROTOCOL = "malbench";
+
+  /**
+   * The number of updates in the message body.
+   */
+  @Param(
+          {
+            "1", "100"
+          })
+  public int updates;
+
+  private TCPIPTransport transport;
+  private MALElementStreamFactory factory;
+  private GENMessage message;
+  private byte[] encoded;
+
+  /**
+   * Creates the transport, which is not initialised as only its message creation is used, and the message.
+   *
+   * @throws MALException on error.
+   * @throws MALInteractionException on error.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws MALException, MALInteractionException
+  {
+    BenchmarkData.init();
+
+    transport = new TCPIPTransport(PROTOCOL, '-', false, new TCPIPTransportFactoryImpl(PROTOCOL),
+            BenchmarkData.encodingProperties(PROTOCOL, BinaryStreamFactory.class));
+    factory = transport.getStreamFactory();
+
+    final URI uri = new URI(PROTOCOL + "://127.0.0.1:61616-benchmark");
+    message = BenchmarkData.createMessage(BenchmarkData.createHeader(uri, uri, 1),
+            BenchmarkData.createUpdateHeaders(updates));
+    encoded = encode(message);
+  }
+
+  /**
+   * Closes the transport.
+   *
+   * @throws MALException on error.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws MALException
+  {
+    transport.close();
+  }
+
+  /**
+   * Encodes the message.
+   *
+   * @return the number of bytes encoded.
+   * @throws MALException on error.
+   */
+  @Benchmark
+  public int encodeMessage() throws MALException
+  {
+    return encode(message).length;
+  }
+
+  /**
+   * Decodes the message, including its body.
+   *
+   * @return the decoded body part.
+   * @throws MALException on error.
+   */
+  @Benchmark
+  public Object createMessage() throws MALException
+  {
+    return decode(encoded);
+  }
+
+  /**
+   * Encodes and then decodes the message, including its body.
+   *
+   * @return the decoded body part.
+   * @throws MALException on error.
+   */
+  @Benchmark
+  public Object roundTrip() throws MALException
+  {
+    return decode(encode(message));
+  }
+
+  private byte[] encode(final GENMessage msg) throws MALException
+  {
+    final GENEncodeBuffer buffer = GENEncodeBuffer.acquire();
+    try
+    {
+      msg.encodeMessage(factory, factory.createOutputStream(buffer), buffer);
+      return buffer.toByteArray();
+    }
+    finally
+    {
+      buffer.release();
+    }
+  }
+
+  private Object decode(final byte[] packet) throws MALException
+  {
+    return transport.createMessage(packet).getBody().getBodyElement(1, null);
+  }
+}
@@ -0,0 +1,291 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO Java Benchmarks
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.benchmark;
+
+import esa.mo.mal.transport.gen.util.GENTransactionDispatcher;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the lock free transaction dispatcher of the GEN transport with the previous implementation, which took a
+ * global lock and scanned all open transactions on every message.
+ *
+ * Each invocation dispatches one message to each of the open transactions and waits for all of them to be processed
+ * by the input processor pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(GENTransactionDispatcherBenchmark.TRANSACTIONS)
+public class GENTransactionDispatcherBenchmark
+{
+  /**
+   * The number of concurrently open transactions.
+   */
+  public static final int TRANSACTIONS = 10000;
+
+  /**
+   * The dispatcher implementation under test.
+   */
+  @Param(
+          {
+            "legacy", "lockfree"
+          })
+  public String dispatcher;
+
+  /**
+   * Amount of CPU work done per processed message.
+   */
+  @Param(
+          {
+            "0", "100"
+          })
+  public int work;
+
+  private ExecutorService executor;
+  private Dispatcher<Runnable> dispatch;
+  private Long[] transactionIds;
+
+  /**
+   * Creates the input processor pool and the dispatcher under test.
+   */
+  @Setup(Level.Trial)
+  public void setup()
+  {
+    // same as the GEN transport default number of input processors
+    executor = Executors.newFixedThreadPool(100);
+
+    final GENTransactionDispatcher.MessageProcessor<Runnable> processor
+            = new GENTransactionDispatcher.MessageProcessor<Runnable>()
+    {
+      @Override
+      public void processMessage(Runnable message)
+      {
+        message.run();
+      }
+    };
+
+    if ("legacy".equals(dispatcher))
+    {
+      dispatch = new LegacyDispatcher<Runnable>(executor, processor);
+    }
+    else
+    {
+      final GENTransactionDispatcher<Runnable> lockFree = new GENTransactionDispatcher<Runnable>(executor, processor);
+      dispatch = new Dispatcher<Runnable>()
+      {
+        @Override
+        public void dispatch(Long transactionId, Runnable message)
+        {
+          lockFree.dispatch(transactionId, message);
+        }
+      };
+    }
+
+    transactionIds = new Long[TRANSACTIONS];
+    for (int i = 0; i < TRANSACTIONS; i++)
+    {
+      transactionIds[i] = Long.valueOf(i);
+    }
+  }
+
+  /**
+   * Stops the input processor pool.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown()
+  {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Dispatches one message to each open transaction and waits for them to be processed.
+   *
+   * @throws InterruptedException if interrupted while waiting.
+   */
+  @Benchmark
+  public void dispatch() throws InterruptedException
+  {
+    final CountDownLatch latch = new CountDownLatch(TRANSACTIONS);
+    final Runnable message = new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        Blackhole.consumeCPU(work);
+        latch.countDown();
+      }
+    };
+
+    for (int i = 0; i < TRANSACTIONS; i++)
+    {
+      dispatch.dispatch(transactionIds[i], message);
+    }
+
+    latch.await();
+  }
+
+  /**
+   * Common interface of the compared implementations.
+   *
+   * @param <T> The message type.
+   */
+  private interface Dispatcher<T>
+  {
+    void dispatch(Long transactionId, T message);
+  }
+
+  /**
+   * Copy of the dispatching previously done in GENTransport.receiveIncomingMessage.
+   *
+   * @param <T> The message type.
+   */
+  private static final class LegacyDispatcher<T> implements Dispatcher<T>
+  {
+    private final ExecutorService executor;
+    private final GENTransactionDispatcher.MessageProcessor<T> processor;
+    private final Map<Long, Processor> transactionQueues = new HashMap<Long, Processor>();
+
+    public LegacyDispatcher(ExecutorService executor, GENTransactionDispatcher.MessageProcessor<T> processor)
+    {
+      this.executor = executor;
+      this.processor = processor;
+    }
+
+    @Override
+    public void dispatch(Long transactionId, T message)
+    {
+      synchronized (transactionQueues)
+      {
+        Processor proc = transactionQueues.get(transactionId);
+
+        if (null == proc)
+        {
+          proc = new Processor(message);
+          transactionQueues.put(transactionId, proc);
+          executor.submit(proc);
+        }
+        else
+        {
+          if (proc.addMessage(message))
+          {
+            executor.submit(proc);
+          }
+        }
+
+        Set<Long> transactionsToRemove = new HashSet<Long>();
+        for (Map.Entry<Long, Processor> entrySet : transactionQueues.entrySet())
+        {
+          if (entrySet.getValue().isFinished())
+          {
+            transactionsToRemove.add(entrySet.getKey());
+          }
+        }
+
+        for (Long transId : transactionsToRemove)
+        {
+          transactionQueues.remove(transId);
+        }
+      }
+    }
+
+    private final class Processor implements Runnable
+    {
+      private final Queue<T> msgs = new ArrayDeque<T>();
+      private boolean finished = false;
+
+      public Processor(final T msg)
+      {
+        msgs.add(msg);
+      }
+
+      public synchronized boolean addMessage(final T msg)
+      {
+        msgs.add(msg);
+
+        if (finished)
+        {
+          finished = false;
+          return true;
+        }
+
+        return false;
+      }
+
+      public boolean isFinished()
+      {
+        return finished;
+      }
+
+      @Override
+      public void run()
+      {
+        T msg;
+
+        synchronized (this)
+        {
+          msg = msgs.poll();
+        }
+
+        while (null != msg)
+        {
+          processor.processMessage(msg);
+
+          synchronized (this)
+          {
+            msg = msgs.poll();
+
+            if (null == msg)
+            {
+              finished = true;
+            }
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,208 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO Java Benchmarks
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.benchmark;
+
+import esa.mo.mal.transport.jms.JMSAbstractAdministrator;
+import esa.mo.mal.transport.jms.JMSEndpoint;
+import esa.mo.mal.transport.jms.JMSSession;
+import esa.mo.mal.transport.jms.admin.ActiveMQAdministrator;
+import java.util.concurrent.TimeUnit;
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
+import javax.jms.DeliveryMode;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.ObjectMessage;
+import javax.jms.Session;
+import javax.jms.Topic;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the publish throughput of the JMS transport against an embedded, non persistent, ActiveMQ broker.
+ *
+ * The perMessage benchmark follows the original publish path: the topic is looked up and a producer is created for
+ * each publish, and the update is sent as a serialised object. The cached benchmark uses a JMSSession, which keeps
+ * the topic and its producer, and sends the update as a bytes message. Both set the routing properties that the
+ * publish handler sets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JMSPublishBenchmark
+{
+  private static final String BROKER_NAME = "malbench";
+  private static final String TOPIC_NAME = "benchmark:0:LIVE";
+
+  /**
+   * The size of the encoded update.
+   */
+  @Param(
+          {
+            "64", "1024"
+          })
+  public int updateSize;
+
+  private BrokerService broker;
+  private Connection connection;
+  private JMSAbstractAdministrator administrator;
+  private byte[] update;
+
+  /**
+   * Starts the broker and connects to it.
+   *
+   * @throws Exception on error.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws Exception
+  {
+    broker = new BrokerService();
+    broker.setBrokerName(BROKER_NAME);
+    broker.setPersistent(false);
+    broker.setUseJmx(false);
+    broker.start();
+
+    connection = new ActiveMQConnectionFactory("vm://" + BROKER_NAME + "?create=false").createConnection();
+    connection.start();
+
+    administrator = new ActiveMQAdministrator();
+    update = new byte[updateSize];
+  }
+
+  /**
+   * Closes the connection and stops the broker.
+   *
+   * @throws Exception on error.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception
+  {
+    connection.close();
+    broker.stop();
+  }
+
+  /**
+   * Publishes an update looking up the topic and creating a producer each time, as an object message.
+   *
+   * @param sessions the sessions of the calling thread.
+   * @throws Exception on error.
+   */
+  @Benchmark
+  public void perMessage(final Sessions sessions) throws Exception
+  {
+    final Session session = sessions.session;
+    final Topic topic = administrator.getTopic(session, TOPIC_NAME);
+
+    final MessageProducer producer = session.createProducer(topic);
+    producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+
+    final ObjectMessage msg = session.createObjectMessage();
+    setProperties(msg);
+    msg.setObject(update);
+    producer.send(msg);
+
+    producer.close();
+  }
+
+  /**
+   * Publishes an update through the cached topic and producer of a session, as a bytes message.
+   *
+   * @param sessions the sessions of the calling thread.
+   * @throws Exception on error.
+   */
+  @Benchmark
+  public void cached(final Sessions sessions) throws Exception
+  {
+    final JMSSession session = sessions.cachedSession;
+    final Topic topic = session.getTopic(TOPIC_NAME);
+
+    final BytesMessage msg = session.createBytesMessage(update, 0, update.length);
+    setProperties(msg);
+    session.getProducer(topic).send(msg);
+  }
+
+  private static void setProperties(Message msg) throws JMSException
+  {
+    msg.setStringProperty(JMSEndpoint.DOM_PROPERTY, "esa.mission");
+    msg.setStringProperty(JMSEndpoint.NET_PROPERTY, "GROUND");
+    msg.setIntProperty(JMSEndpoint.ARR_PROPERTY, 1);
+    msg.setIntProperty(JMSEndpoint.SVC_PROPERTY, 2);
+    msg.setIntProperty(JMSEndpoint.OPN_PROPERTY, 3);
+    msg.setStringProperty(JMSEndpoint.EID_PROPERTY, "parameter");
+    msg.setObjectProperty(JMSEndpoint.DID_PROPERTY, 1L);
+    msg.setObjectProperty(JMSEndpoint.OID_PROPERTY, 2L);
+    msg.setObjectProperty(JMSEndpoint.SID_PROPERTY, 3L);
+    msg.setBooleanProperty(JMSEndpoint.MOD_PROPERTY, false);
+  }
+
+  /**
+   * The sessions of a benchmark thread, JMS sessions must not be shared between threads.
+   */
+  @State(Scope.Thread)
+  public static class Sessions
+  {
+    Session session;
+    JMSSession cachedSession;
+
+    /**
+     * Creates the sessions.
+     *
+     * @param benchmark the benchmark state.
+     * @throws Exception on error.
+     */
+    @Setup(Level.Trial)
+    public void setup(final JMSPublishBenchmark benchmark) throws Exception
+    {
+      session = benchmark.connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+      cachedSession = new JMSSession(benchmark.administrator,
+              benchmark.connection.createSession(false, Session.AUTO_ACKNOWLEDGE));
+    }
+
+    /**
+     * Closes the sessions.
+     *
+     * @throws JMSException on error.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws JMSException
+    {
+      session.close();
+      cachedSession.close();
+    }
+  }
+}
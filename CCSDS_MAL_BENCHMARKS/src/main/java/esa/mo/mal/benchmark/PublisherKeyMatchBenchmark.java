@@ -0,0 +1,164 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO Java Benchmarks
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.benchmark;
+
+import esa.mo.mal.transport.jms.PublisherKey;
+import esa.mo.mal.transport.jms.PublisherKeyIndex;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.ccsds.moims.mo.mal.structures.EntityKey;
+import org.ccsds.moims.mo.mal.structures.Identifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the check of the keys of a publish against the keys registered by the provider, as done by the JMS
+ * publish handler, comparing a scan of the registered keys with the PublisherKeyIndex.
+ *
+ * The provider registers one key per parameter plus a few keys with wildcards, and each publish carries 100 updates of
+ * which most match an exact key, some only match a wildcard key and a few match nothing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PublisherKeyMatchBenchmark
+{
+  private static final int UPDATES = 100;
+  private static final Long ALL = 0L;
+
+  /**
+   * The number of keys registered by the provider.
+   */
+  @Param(
+          {
+            "100", "10000", "50000"
+          })
+  public int registeredKeys;
+
+  private final Set<PublisherKey> keySet = new TreeSet<PublisherKey>();
+  private final PublisherKeyIndex keyIndex = new PublisherKeyIndex();
+  private final List<EntityKey> updateKeys = new ArrayList<EntityKey>();
+
+  /**
+   * Registers the keys and creates the update keys.
+   */
+  @Setup(Level.Trial)
+  public void setup()
+  {
+    for (int i = 0; i < registeredKeys; i++)
+    {
+      register(new EntityKey(new Identifier("param" + i), (long) i, 1L, null));
+    }
+
+    // wildcard keys
+    register(new EntityKey(new Identifier("alarm"), ALL, ALL, ALL));
+    register(new EntityKey(new Identifier("*"), ALL, 2L, ALL));
+
+    for (int i = 0; i < UPDATES; i++)
+    {
+      final long param = (i * 7919L) % registeredKeys;
+
+      switch (i % 10)
+      {
+        case 0:
+          updateKeys.add(new EntityKey(new Identifier("alarm"), param, 1L, 5L));
+          break;
+        case 1:
+          updateKeys.add(new EntityKey(new Identifier("other"), param, 2L, 5L));
+          break;
+        case 2:
+          updateKeys.add(new EntityKey(new Identifier("unknown"), param, 3L, 5L));
+          break;
+        default:
+          updateKeys.add(new EntityKey(new Identifier("param" + param), param, 1L, null));
+      }
+    }
+  }
+
+  /**
+   * Checks the update keys by scanning the registered keys, as the publish handler used to.
+   *
+   * @return the number of update keys that are allowed.
+   */
+  @Benchmark
+  public int scan()
+  {
+    int allowed = 0;
+
+    for (EntityKey updateKey : updateKeys)
+    {
+      for (PublisherKey key : keySet)
+      {
+        if (key.matches(updateKey))
+        {
+          ++allowed;
+          break;
+        }
+      }
+    }
+
+    return allowed;
+  }
+
+  /**
+   * Checks the update keys with the index.
+   *
+   * @return the number of update keys that are allowed.
+   */
+  @Benchmark
+  public int index()
+  {
+    int allowed = 0;
+
+    for (EntityKey updateKey : updateKeys)
+    {
+      if (null != keyIndex.match(new PublisherKey(updateKey)))
+      {
+        ++allowed;
+      }
+    }
+
+    return allowed;
+  }
+
+  private void register(final EntityKey key)
+  {
+    final PublisherKey publisherKey = new PublisherKey(key);
+    keySet.add(publisherKey);
+    keyIndex.add(publisherKey);
+  }
+}
@@ -0,0 +1,185 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO Java Benchmarks
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.benchmark;
+
+import esa.mo.mal.encoder.binary.fixed.FixedBinaryDecoder;
+import esa.mo.mal.encoder.binary.fixed.FixedBinaryEncoder;
+import esa.mo.mal.transport.spp.SPPCachedURIRepresentation;
+import esa.mo.mal.transport.spp.SPPMessageHeader;
+import esa.mo.mal.transport.spp.SPPSourceSequenceCounterPerAPID;
+import esa.mo.mal.transport.spp.SPPURIRepresentation;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+import org.ccsds.moims.mo.mal.MALException;
+import org.ccsds.moims.mo.mal.MALSubmitOperation;
+import org.ccsds.moims.mo.mal.structures.Blob;
+import org.ccsds.moims.mo.mal.structures.Identifier;
+import org.ccsds.moims.mo.mal.structures.IdentifierList;
+import org.ccsds.moims.mo.mal.structures.InteractionType;
+import org.ccsds.moims.mo.mal.structures.QoSLevel;
+import org.ccsds.moims.mo.mal.structures.SessionType;
+import org.ccsds.moims.mo.mal.structures.Time;
+import org.ccsds.moims.mo.mal.structures.UInteger;
+import org.ccsds.moims.mo.mal.structures.UOctet;
+import org.ccsds.moims.mo.mal.structures.URI;
+import org.ccsds.moims.mo.mal.structures.UShort;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the encoding and decoding of an SPP message header, comparing a URI representation that parses and creates
+ * URIs on every call, as the SPP transport itself does, with the cached representation that the transport hands to its
+ * headers.
+ *
+ * Run with "-prof gc" and compare the gc.alloc.rate.norm figures, which give the bytes allocated per header.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SPPHeaderBenchmark
+{
+  private static final String PROTOCOL = "malspp";
+
+  /**
+   * The URI representation under test.
+   */
+  @Param(
+          {
+            "parsing", "cached"
+          })
+  public String representation;
+
+  private final ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
+  private final FixedBinaryEncoder encoder = new FixedBinaryEncoder(baos);
+  private SPPMessageHeader header;
+  private SPPMessageHeader decodeHeader;
+  private byte[] encoded;
+
+  /**
+   * Creates the header under test and its encoding.
+   *
+   * @throws MALException on error.
+   */
+  @Setup
+  public void setup() throws MALException
+  {
+    BenchmarkData.init();
+
+    SPPURIRepresentation uriRep = new ParsingURIRepresentation();
+
+    if ("cached".equals(representation))
+    {
+      uriRep = new SPPCachedURIRepresentation(uriRep);
+    }
+
+    header = new SPPMessageHeader(uriRep, new SPPSourceSequenceCounterPerAPID(),
+            new URI(PROTOCOL + "://100-1"), new Blob(new byte[0]), new URI(PROTOCOL + "://200-2"),
+            new Time(System.currentTimeMillis()), QoSLevel.BESTEFFORT, new UInteger(0), new IdentifierList(),
+            new Identifier("network"), SessionType.LIVE, new Identifier("LIVE"), InteractionType.SUBMIT,
+            MALSubmitOperation.SUBMIT_STAGE, 1L, new UShort(1), new UShort(2), new UShort(3), new UOctet((short) 1),
+            Boolean.FALSE);
+    decodeHeader = new SPPMessageHeader(uriRep, null);
+
+    encodeHeader();
+    encoded = baos.toByteArray();
+  }
+
+  /**
+   * Encodes the header.
+   *
+   * @return the number of bytes encoded.
+   * @throws MALException on error.
+   */
+  @Benchmark
+  public int encodeHeader() throws MALException
+  {
+    baos.reset();
+    header.encode(encoder);
+
+    return baos.size();
+  }
+
+  /**
+   * Decodes the header, including the URIs of its APIDs and subIds.
+   *
+   * @return the decoded header.
+   * @throws MALException on error.
+   */
+  @Benchmark
+  public Object decodeHeader() throws MALException
+  {
+    return decodeHeader.decode(new FixedBinaryDecoder(encoded));
+  }
+
+  /**
+   * URI representation of the form used by the SPP transport, parsing the URI on every call.
+   */
+  private static final class ParsingURIRepresentation implements SPPURIRepresentation
+  {
+    private static final String URI_PREFIX = PROTOCOL + "://";
+
+    @Override
+    public short getApid(final URI uri)
+    {
+      final String value = uri.getValue();
+      final int end = value.indexOf('-', URI_PREFIX.length());
+
+      return Short.parseShort(value.substring(URI_PREFIX.length(), (0 > end) ? value.length() : end));
+    }
+
+    @Override
+    public boolean hasSubId(final URI uri)
+    {
+      return 0 <= uri.getValue().indexOf('-', URI_PREFIX.length());
+    }
+
+    @Override
+    public short getSubId(final URI uri)
+    {
+      final String value = uri.getValue();
+
+      return Short.parseShort(value.substring(value.indexOf('-', URI_PREFIX.length()) + 1));
+    }
+
+    @Override
+    public URI getURI(final short apid, final Short subId)
+    {
+      if (null == subId)
+      {
+        return new URI(URI_PREFIX + apid);
+      }
+
+      return new URI(URI_PREFIX + apid + '-' + subId);
+    }
+  }
+}
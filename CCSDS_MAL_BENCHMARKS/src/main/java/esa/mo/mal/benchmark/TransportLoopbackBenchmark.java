@@ -0,0 +1,212 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO Java Benchmarks
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.benchmark;
+
+import esa.mo.mal.encoder.binary.BinaryStreamFactory;
+import esa.mo.mal.transport.gen.GENMessage;
+import esa.mo.mal.transport.gen.GENTransport;
+import esa.mo.mal.transport.rmi.RMITransport;
+import esa.mo.mal.transport.rmi.RMITransportFactoryImpl;
+import esa.mo.mal.transport.tcpip.TCPIPTransport;
+import esa.mo.mal.transport.tcpip.TCPIPTransportFactoryImpl;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.ccsds.moims.mo.mal.MALException;
+import org.ccsds.moims.mo.mal.MALInteractionException;
+import org.ccsds.moims.mo.mal.MALStandardError;
+import org.ccsds.moims.mo.mal.transport.MALEndpoint;
+import org.ccsds.moims.mo.mal.transport.MALMessage;
+import org.ccsds.moims.mo.mal.transport.MALMessageHeader;
+import org.ccsds.moims.mo.mal.transport.MALMessageListener;
+import org.ccsds.moims.mo.mal.transport.MALTransmitErrorException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures sending a message between two transport instances over the local host and receiving it, including the
+ * decoding of its body, for the TCP/IP transport in stream and NIO mode and for the RMI transport.
+ *
+ * Each invocation sends one message and waits for it to be delivered, so the sample time mode reports the one way
+ * latency percentiles. Run with "-prof gc" to report the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(
+        {
+          Mode.Throughput, Mode.SampleTime
+        })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransportLoopbackBenchmark
+{
+  private static final String TCPIP_PROTOCOL = "maltcp";
+  private static final String RMI_PROTOCOL = "rmi";
+  private static final String TCPIP_SERVER_PORT = "61690";
+
+  /**
+   * The transport under test.
+   */
+  @Param(
+          {
+            "tcpip", "tcpipnio", "rmi"
+          })
+  public String transport;
+
+  /**
+   * The number of updates in the message body.
+   */
+  @Param(
+          {
+            "1", "100"
+          })
+  public int updates;
+
+  private final BlockingQueue<MALMessage> received = new LinkedBlockingQueue<MALMessage>();
+  private GENTransport serverTransport;
+  private GENTransport clientTransport;
+  private MALEndpoint clientEndpoint;
+  private GENMessage message;
+
+  /**
+   * Creates and connects the server and client transports.
+   *
+   * @throws MALException on error.
+   * @throws MALInteractionException on error.
+   * @throws MALTransmitErrorException on error.
+   * @throws InterruptedException if interrupted.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws MALException, MALInteractionException, MALTransmitErrorException, InterruptedException
+  {
+    BenchmarkData.init();
+
+    if ("rmi".equals(transport))
+    {
+      final Map<String, String> properties = BenchmarkData.encodingProperties(RMI_PROTOCOL, BinaryStreamFactory.class);
+
+      serverTransport = new RMITransport(RMI_PROTOCOL, new RMITransportFactoryImpl(RMI_PROTOCOL), properties);
+      clientTransport = new RMITransport(RMI_PROTOCOL, new RMITransportFactoryImpl(RMI_PROTOCOL), properties);
+    }
+    else
+    {
+      final Map<String, String> clientProperties
+              = BenchmarkData.encodingProperties(TCPIP_PROTOCOL, BinaryStreamFactory.class);
+      clientProperties.put(TCPIPTransport.NIO_PROPERTY, String.valueOf("tcpipnio".equals(transport)));
+
+      final Map<String, String> serverProperties
+              = BenchmarkData.encodingProperties(TCPIP_PROTOCOL, BinaryStreamFactory.class);
+      serverProperties.putAll(clientProperties);
+      serverProperties.put("org.ccsds.moims.mo.mal.transport.tcpip.host", "127.0.0.1");
+      serverProperties.put("org.ccsds.moims.mo.mal.transport.tcpip.port", TCPIP_SERVER_PORT);
+
+      serverTransport = new TCPIPTransport(TCPIP_PROTOCOL, '-', false,
+              new TCPIPTransportFactoryImpl(TCPIP_PROTOCOL), serverProperties);
+      clientTransport = new TCPIPTransport(TCPIP_PROTOCOL, '-', false,
+              new TCPIPTransportFactoryImpl(TCPIP_PROTOCOL), clientProperties);
+    }
+
+    serverTransport.init();
+    clientTransport.init();
+
+    final MALEndpoint serverEndpoint = serverTransport.createEndpoint("server", null);
+    serverEndpoint.setMessageListener(new MALMessageListener()
+    {
+      @Override
+      public void onInternalError(MALEndpoint callingEndpoint, Throwable err)
+      {
+        // not expected
+      }
+
+      @Override
+      public void onTransmitError(MALEndpoint callingEndpoint, MALMessageHeader srcMessageHeader,
+              MALStandardError err, Map qosMap)
+      {
+        // not expected
+      }
+
+      @Override
+      public void onMessage(MALEndpoint callingEndpoint, MALMessage msg)
+      {
+        received.add(msg);
+      }
+
+      @Override
+      public void onMessages(MALEndpoint callingEndpoint, MALMessage[] msgList)
+      {
+        for (MALMessage msg : msgList)
+        {
+          received.add(msg);
+        }
+      }
+    });
+    serverEndpoint.startMessageDelivery();
+
+    clientEndpoint = clientTransport.createEndpoint("client", null);
+    message = BenchmarkData.createMessage(
+            BenchmarkData.createHeader(clientEndpoint.getURI(), serverEndpoint.getURI(), 1),
+            BenchmarkData.createUpdateHeaders(updates));
+
+    // establish the connection before measuring
+    sendAndReceive();
+  }
+
+  /**
+   * Closes the transports.
+   *
+   * @throws MALException on error.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws MALException
+  {
+    clientTransport.close();
+    serverTransport.close();
+  }
+
+  /**
+   * Sends the message and waits for it to be received and its body decoded.
+   *
+   * @return the decoded body part.
+   * @throws MALException on error.
+   * @throws MALTransmitErrorException on error.
+   * @throws InterruptedException if interrupted.
+   */
+  @Benchmark
+  public Object sendAndReceive() throws MALException, MALTransmitErrorException, InterruptedException
+  {
+    clientEndpoint.sendMessage(message);
+
+    return received.take().getBody().getBodyElement(1, null);
+  }
+}
@@ -0,0 +1,7 @@
+/**
+JMH benchmarks for the CCSDS MAL Java transports and encoders.
+
+The module is built by the Benchmarks profile of the reactor and packaged as target/benchmarks.jar, run it with
+"java -jar target/benchmarks.jar -prof gc" to also report the allocation rate of each benchmark.
+ */
+package esa.mo.mal.benchmark;
@@ -22,6 +22,7 @@ package esa.mo.mal.encoder.binary;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.List;
@@ -70,6 +71,17 @@ public class BinaryDecoder implements MALDecoder
     sourceBuffer = new BufferHolder(null, src, offset, src.length);
   }
 
+  /**
+   * Constructor. Heap buffers are decoded in place from their backing array, the contents of direct buffers are read
+   * in blocks.
+   *
+   * @param src Byte buffer to read from, from its position to its limit.
+   */
+  public BinaryDecoder(final ByteBuffer src)
+  {
+    sourceBuffer = new BufferHolder(src);
+  }
+
   /**
    * Constructor.
    *
@@ -222,6 +234,34 @@ public class BinaryDecoder implements MALDecoder
     return null;
   }
 
+  /**
+   * Decodes a Blob as a read only view of the decoded data rather than a copy of it.
+   *
+   * @return the Blob contents.
+   * @throws MALException If there is a problem with the decoding.
+   */
+  public ByteBuffer decodeBlobBuffer() throws MALException
+  {
+    return sourceBuffer.getSlice(sourceBuffer.getSignedInt());
+  }
+
+  /**
+   * Decodes a nullable Blob as a read only view of the decoded data rather than a copy of it.
+   *
+   * @return the Blob contents or null.
+   * @throws MALException If there is a problem with the decoding.
+   */
+  public ByteBuffer decodeNullableBlobBuffer() throws MALException
+  {
+    final int len = sourceBuffer.getSignedInt();
+    if (len >= 0)
+    {
+      return sourceBuffer.getSlice(len);
+    }
+
+    return null;
+  }
+
   @Override
   public Duration decodeDuration() throws MALException
   {
@@ -478,9 +518,28 @@ public class BinaryDecoder implements MALDecoder
    */
   protected byte[] getRemainingEncodedData() throws MALException
   {
+    // if the remaining data is the whole of a supplied array then there is no need to copy it
+    if ((null == sourceBuffer.inputStream)
+            && (0 == sourceBuffer.offset)
+            && (sourceBuffer.buf.length == sourceBuffer.contentLength))
+    {
+      return sourceBuffer.buf;
+    }
+
     return Arrays.copyOfRange(sourceBuffer.buf, sourceBuffer.offset, sourceBuffer.contentLength);
   }
 
+  /**
+   * Returns a read only view of the remaining data of the input stream that has not been used for decoding.
+   *
+   * @return the unused body data.
+   * @throws MALException if there is an error.
+   */
+  protected ByteBuffer getRemainingEncodedDataBuffer() throws MALException
+  {
+    return sourceBuffer.getSlice(sourceBuffer.contentLength - sourceBuffer.offset);
+  }
+
   /**
    * Internal class that is used to hold the byte buffer. Derived classes should extend this (and replace it in the
    * constructors) if they encode the fields differently from this encoding.
@@ -492,6 +551,7 @@ public class BinaryDecoder implements MALDecoder
     protected int offset;
     protected int contentLength;
     protected boolean forceRealloc = false;
+    private boolean bufferShared = false;
 
     /**
      * Constructor.
@@ -509,6 +569,20 @@ public class BinaryDecoder implements MALDecoder
       this.contentLength = length;
     }
 
+    /**
+     * Constructor. Heap buffers are read in place from their backing array, the contents of direct buffers are loaded
+     * in blocks as for an input stream.
+     *
+     * @param src Source buffer to use, from its position to its limit.
+     */
+    public BufferHolder(final ByteBuffer src)
+    {
+      this(src.hasArray() ? null : new ByteBufferInputStream(src),
+              src.hasArray() ? src.array() : null,
+              src.hasArray() ? src.arrayOffset() + src.position() : 0,
+              src.hasArray() ? src.arrayOffset() + src.limit() : 0);
+    }
+
     /**
      * Ensures that we have loaded enough buffer from the input stream (if we are stream based) for the next read.
      *
@@ -538,20 +612,20 @@ public class BinaryDecoder implements MALDecoder
             byte[] destBuf = this.buf;
 
             // its not big enough, we need to check if we need a bigger buffer or in case we know the existing 
-            // buffer is still required.
-            if (forceRealloc || (existingBufferLength < requiredLength))
+            // buffer is still required, either by a derived class or by a slice that has been returned.
+            if (forceRealloc || bufferShared || (existingBufferLength < requiredLength))
             {
               // we do, so allocate one
               bufferRealloced(existingBufferLength);
+              bufferShared = false;
               existingBufferLength = (requiredLength > BLOCK_SIZE) ? requiredLength : BLOCK_SIZE;
               destBuf = new byte[existingBufferLength];
             }
 
             // this either shifts the existing contents to the start of the old buffer, or copies it into the new buffer
-            // NOTE: this is faster than System.arraycopy, as that performs argument type checks
-            for (int i = 0; i < existingContentRemaining; ++i)
+            if (0 < existingContentRemaining)
             {
-              destBuf[i] = this.buf[this.offset + i];
+              System.arraycopy(this.buf, this.offset, destBuf, 0, existingContentRemaining);
             }
 
             // the start of the data in the buffer has moved to zero now
@@ -662,6 +736,29 @@ public class BinaryDecoder implements MALDecoder
       throw new IllegalArgumentException("Size must not be negative");
     }
 
+    /**
+     * Gets a read only view of part of the incoming stream without copying it. The view remains valid after further
+     * decoding as the part of the internal buffer it covers is not reused.
+     *
+     * @param size The size of the view to extract, must not be negative.
+     * @return the extracted view.
+     * @throws MALException If there is a problem with the decoding.
+     */
+    public ByteBuffer getSlice(final int size) throws MALException
+    {
+      if (size >= 0)
+      {
+        checkBuffer(size);
+
+        final ByteBuffer v = ByteBuffer.wrap(buf, offset, size).slice().asReadOnlyBuffer();
+        offset += size;
+        bufferShared = (null != inputStream);
+        return v;
+      }
+
+      throw new IllegalArgumentException("Size must not be negative");
+    }
+
     /**
      * Gets a single signed long from the incoming stream.
      *
@@ -792,4 +889,47 @@ public class BinaryDecoder implements MALDecoder
       return !(0 == get8());
     }
   }
+
+  /**
+   * Input stream over a byte buffer, used to load the contents of direct buffers in to the buffer holder in blocks.
+   */
+  protected static class ByteBufferInputStream extends java.io.InputStream
+  {
+    private final ByteBuffer src;
+
+    /**
+     * Constructor.
+     *
+     * @param src Source buffer to read from, from its position to its limit.
+     */
+    public ByteBufferInputStream(final ByteBuffer src)
+    {
+      this.src = src.duplicate();
+    }
+
+    @Override
+    public int read()
+    {
+      return src.hasRemaining() ? (src.get() & 0xFF) : -1;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len)
+    {
+      if (!src.hasRemaining())
+      {
+        return -1;
+      }
+
+      final int length = Math.min(len, src.remaining());
+      src.get(b, off, length);
+      return length;
+    }
+
+    @Override
+    public int available()
+    {
+      return src.remaining();
+    }
+  }
 }
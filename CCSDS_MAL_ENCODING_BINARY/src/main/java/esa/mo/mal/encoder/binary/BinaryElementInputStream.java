@@ -54,6 +54,16 @@ public class BinaryElementInputStream implements GENElementInputStream
     dec = new BinaryDecoder(buf, offset);
   }
 
+  /**
+   * Constructor.
+   *
+   * @param buf Byte buffer to read from, from its position to its limit.
+   */
+  public BinaryElementInputStream(final java.nio.ByteBuffer buf)
+  {
+    dec = new BinaryDecoder(buf);
+  }
+
   /**
    * Sub class constructor.
    *
@@ -84,6 +94,17 @@ public class BinaryElementInputStream implements GENElementInputStream
     return dec.getRemainingEncodedData();
   }
 
+  /**
+   * Returns a read only view of the remaining encoded data for this stream, without copying it.
+   *
+   * @return the remaining encoded data for this stream.
+   * @throws MALException On error.
+   */
+  public java.nio.ByteBuffer getRemainingEncodedDataBuffer() throws MALException
+  {
+    return dec.getRemainingEncodedDataBuffer();
+  }
+
   @Override
   public void close() throws MALException
   {
@@ -54,6 +54,19 @@ public class BinaryStreamFactory extends MALElementStreamFactory
     return new BinaryElementInputStream(is);
   }
 
+  /**
+   * Creates an input stream that decodes directly from the supplied buffer, from its position to its limit, without
+   * first copying it in to a byte array.
+   *
+   * @param buffer the buffer to decode from, may be a heap or direct buffer.
+   * @return the new input stream.
+   * @throws MALException on error.
+   */
+  public MALElementInputStream createInputStream(final java.nio.ByteBuffer buffer) throws MALException
+  {
+    return new BinaryElementInputStream(buffer);
+  }
+
   @Override
   public MALElementOutputStream createOutputStream(final OutputStream os) throws MALException
   {
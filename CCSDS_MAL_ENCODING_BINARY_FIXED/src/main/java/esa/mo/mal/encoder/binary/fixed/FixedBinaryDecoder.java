@@ -58,6 +58,16 @@ public class FixedBinaryDecoder extends esa.mo.mal.encoder.binary.BinaryDecoder
     super(new FixedBufferHolder(null, src, offset, src.length));
   }
 
+  /**
+   * Constructor.
+   *
+   * @param src Byte buffer to read from, from its position to its limit.
+   */
+  public FixedBinaryDecoder(final java.nio.ByteBuffer src)
+  {
+    super(new FixedBufferHolder(src));
+  }
+
   /**
    * Constructor.
    *
@@ -92,6 +102,16 @@ public class FixedBinaryDecoder extends esa.mo.mal.encoder.binary.BinaryDecoder
       super(is, buf, offset, length);
     }
 
+    /**
+     * Constructor.
+     *
+     * @param src Source buffer to use, from its position to its limit.
+     */
+    public FixedBufferHolder(final java.nio.ByteBuffer src)
+    {
+      super(src);
+    }
+
     @Override
     public long getUnsignedLong() throws MALException
     {
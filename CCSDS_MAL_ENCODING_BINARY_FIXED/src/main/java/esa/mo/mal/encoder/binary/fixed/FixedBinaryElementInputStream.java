@@ -46,6 +46,16 @@ public class FixedBinaryElementInputStream extends esa.mo.mal.encoder.binary.Bin
     super(new FixedBinaryDecoder(buf, offset));
   }
 
+  /**
+   * Constructor.
+   *
+   * @param buf Byte buffer to read from, from its position to its limit.
+   */
+  public FixedBinaryElementInputStream(final java.nio.ByteBuffer buf)
+  {
+    super(new FixedBinaryDecoder(buf));
+  }
+
   /**
    * Sub class constructor.
    *
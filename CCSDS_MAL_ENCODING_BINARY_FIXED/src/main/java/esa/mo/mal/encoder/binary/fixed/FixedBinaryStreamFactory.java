@@ -38,6 +38,13 @@ public class FixedBinaryStreamFactory extends esa.mo.mal.encoder.binary.BinarySt
     return new FixedBinaryElementInputStream(is);
   }
 
+  @Override
+  public org.ccsds.moims.mo.mal.encoding.MALElementInputStream createInputStream(final java.nio.ByteBuffer buffer)
+          throws org.ccsds.moims.mo.mal.MALException
+  {
+    return new FixedBinaryElementInputStream(buffer);
+  }
+
   @Override
   public org.ccsds.moims.mo.mal.encoding.MALElementOutputStream createOutputStream(final java.io.OutputStream os)
           throws org.ccsds.moims.mo.mal.MALException
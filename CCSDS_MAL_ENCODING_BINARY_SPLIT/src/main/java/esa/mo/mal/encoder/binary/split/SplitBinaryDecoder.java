@@ -58,6 +58,16 @@ public class SplitBinaryDecoder extends esa.mo.mal.encoder.binary.BinaryDecoder
     super(new SplitBufferHolder(null, src, offset, src.length));
   }
 
+  /**
+   * Constructor.
+   *
+   * @param src Byte buffer to read from, from its position to its limit.
+   */
+  public SplitBinaryDecoder(final java.nio.ByteBuffer src)
+  {
+    super(new SplitBufferHolder(src));
+  }
+
   /**
    * Constructor.
    *
@@ -114,6 +124,18 @@ public class SplitBinaryDecoder extends esa.mo.mal.encoder.binary.BinaryDecoder
       forceRealloc = true;
     }
 
+    /**
+     * Constructor.
+     *
+     * @param src Source buffer to use, from its position to its limit.
+     */
+    public SplitBufferHolder(final java.nio.ByteBuffer src)
+    {
+      super(src);
+
+      forceRealloc = true;
+    }
+
     @Override
     public void checkBuffer(final int requiredLength) throws MALException
     {
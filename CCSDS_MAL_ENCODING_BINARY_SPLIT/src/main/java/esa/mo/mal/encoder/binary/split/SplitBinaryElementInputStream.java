@@ -45,4 +45,14 @@ public class SplitBinaryElementInputStream extends esa.mo.mal.encoder.binary.Bin
   {
     super(new SplitBinaryDecoder(buf, offset));
   }
+
+  /**
+   * Constructor.
+   *
+   * @param buf Byte buffer to read from, from its position to its limit.
+   */
+  public SplitBinaryElementInputStream(final java.nio.ByteBuffer buf)
+  {
+    super(new SplitBinaryDecoder(buf));
+  }
 }
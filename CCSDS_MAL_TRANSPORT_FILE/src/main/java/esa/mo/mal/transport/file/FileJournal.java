@@ -0,0 +1,210 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO File Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.file;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Layout of the append-only journals used by the File transport in journal mode.
+ *
+ * A journal holds the messages sent from one transport to another. It is split in to fixed size segment files, named
+ * after the journal and a segment number, that are memory mapped by the writer and the reader. Each message is
+ * written as its length, the CRC32 checksum of its encoded bytes and then the encoded bytes. The length is written
+ * last so that a zero length means that there is nothing more to read yet. As the order in which the writes to a
+ * mapped file become visible to another process is not guaranteed, the reader only accepts a message once its bytes
+ * match the checksum, and otherwise tries again later.
+ *
+ * A length of END_OF_SEGMENT means that the writer has moved on to the next segment, and a length of END_OF_JOURNAL
+ * that the writer has closed the journal, after which the reader forgets it.
+ */
+final class FileJournal
+{
+  /**
+   * The file name suffix of the journal segments.
+   */
+  static final String SEGMENT_SUFFIX = ".journal";
+  /**
+   * The file name suffix of the files holding the read offset of a journal.
+   */
+  static final String OFFSET_SUFFIX = ".offset";
+  /**
+   * The file name suffix of segments being created.
+   */
+  static final String TMP_SUFFIX = ".tmp";
+  /**
+   * The size of the length written before each message.
+   */
+  static final int LENGTH_SIZE = 4;
+  /**
+   * The size of the checksum written after the length of each message.
+   */
+  static final int CHECKSUM_SIZE = 4;
+  /**
+   * The size of the header written before each message, its length and checksum.
+   */
+  static final int HEADER_SIZE = LENGTH_SIZE + CHECKSUM_SIZE;
+  /**
+   * The length that marks the end of the messages in a segment.
+   */
+  static final int END_OF_SEGMENT = -1;
+  /**
+   * The length that marks the end of the journal, the writer has closed it.
+   */
+  static final int END_OF_JOURNAL = -2;
+  /**
+   * The size of the read offset file, the segment number followed by the position in the segment.
+   */
+  static final int OFFSET_SIZE = 12;
+  private static final int SEGMENT_NUMBER_DIGITS = 10;
+
+  private FileJournal()
+  {
+    // utility class
+  }
+
+  /**
+   * Returns the file name of a segment of a journal.
+   *
+   * @param journalName the journal name
+   * @param segmentNumber the segment number
+   * @return the file name
+   */
+  static String segmentName(String journalName, long segmentNumber)
+  {
+    return journalName + "-" + String.format("%0" + SEGMENT_NUMBER_DIGITS + "d", segmentNumber) + SEGMENT_SUFFIX;
+  }
+
+  /**
+   * Returns the journal name of a segment file name, or null if it is not a segment file name.
+   *
+   * @param fileName the file name
+   * @return the journal name or null
+   */
+  static String journalName(String fileName)
+  {
+    final int end = fileName.length() - SEGMENT_SUFFIX.length() - SEGMENT_NUMBER_DIGITS - 1;
+
+    if ((0 < end) && fileName.endsWith(SEGMENT_SUFFIX) && ('-' == fileName.charAt(end)))
+    {
+      return fileName.substring(0, end);
+    }
+
+    return null;
+  }
+
+  /**
+   * Returns the segment number of a segment file name.
+   *
+   * @param fileName the file name, must be a segment file name
+   * @return the segment number
+   */
+  static long segmentNumber(String fileName)
+  {
+    final int end = fileName.length() - SEGMENT_SUFFIX.length();
+
+    return Long.parseLong(fileName.substring(end - SEGMENT_NUMBER_DIGITS, end));
+  }
+
+  /**
+   * Creates and maps a new segment. The segment is created under a temporary name and then renamed so that readers
+   * never see a segment before it has its full size.
+   *
+   * @param directory the directory of the journal
+   * @param journalName the journal name
+   * @param segmentNumber the segment number
+   * @param size the segment size
+   * @return the mapped segment
+   * @throws IOException if the segment cannot be created
+   */
+  static MappedByteBuffer createSegment(Path directory, String journalName, long segmentNumber, int size)
+          throws IOException
+  {
+    final String name = segmentName(journalName, segmentNumber);
+    final Path tmpPath = directory.resolve(name + TMP_SUFFIX);
+    final MappedByteBuffer segment;
+
+    try (FileChannel fc = FileChannel.open(tmpPath,
+            StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE))
+    {
+      // the mapping stays valid once the channel is closed, and the file is zero filled
+      segment = fc.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    Files.move(tmpPath, directory.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+
+    return segment;
+  }
+
+  /**
+   * Maps an existing segment for reading.
+   *
+   * @param path the segment file
+   * @return the mapped segment
+   * @throws IOException if the segment cannot be mapped
+   */
+  static MappedByteBuffer openSegment(Path path) throws IOException
+  {
+    try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ))
+    {
+      return fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+    }
+  }
+
+  /**
+   * Returns the checksum of a message.
+   *
+   * @param buffer the buffer holding the message
+   * @param offset the offset of the message in the buffer
+   * @param length the length of the message
+   * @return the checksum
+   */
+  static int checksum(byte[] buffer, int offset, int length)
+  {
+    final CRC32 crc = new CRC32();
+    crc.update(buffer, offset, length);
+
+    return (int) crc.getValue();
+  }
+
+  /**
+   * Maps the read offset file of a journal, creating it if needed.
+   *
+   * @param directory the directory of the journal
+   * @param journalName the journal name
+   * @return the mapped read offset
+   * @throws IOException if the file cannot be mapped
+   */
+  static MappedByteBuffer openOffset(Path directory, String journalName) throws IOException
+  {
+    try (FileChannel fc = FileChannel.open(directory.resolve(journalName + OFFSET_SUFFIX),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE))
+    {
+      return fc.map(FileChannel.MapMode.READ_WRITE, 0, OFFSET_SIZE);
+    }
+  }
+}
@@ -0,0 +1,321 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO File Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.file;
+
+import esa.mo.mal.transport.gen.util.GENMessagePoller;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * File journal receiver. Reads incoming messages from the memory mapped journals written to this transport by other
+ * transports, see FileJournal for the layout. Used by the GEN message poller class.
+ *
+ * The read offset of each journal is kept in a small memory mapped file next to it. The journals are read in turn so
+ * that one busy sender does not hold up the others, the directory is only scanned periodically for new journals and
+ * there is no per message file system activity.
+ *
+ * Journal names include the process of the writer, so each restart of a sender starts a new journal. Once the writer
+ * has closed a journal it is forgotten: if journal segments are deleted once read its last segment and read offset
+ * file are deleted too, otherwise its name is remembered so that the next scans do not pick it up again.
+ */
+public class FileJournalReader implements GENMessagePoller.GENByteMessageReceiver
+{
+  /**
+   * Time, in milliseconds, between scans of the directory for new journals.
+   */
+  private static final long SCAN_INTERVAL = 1000;
+  /**
+   * Number of times the reader yields, when there is nothing to read, before it starts sleeping.
+   */
+  private static final int IDLE_SPIN_COUNT = 100;
+  private final Path incomingDirectory;
+  private final String transportString;
+  private final boolean deleteFiles;
+  private final Map<String, Cursor> cursors = new HashMap<String, Cursor>();
+  private final List<Cursor> cursorList = new ArrayList<Cursor>();
+  private final Set<String> finishedJournals = new HashSet<String>();
+  private boolean cursorFinished = false;
+  private int nextCursor = 0;
+  private int idleCount = 0;
+  private long nextScan = 0;
+
+  /**
+   * Constructor.
+   *
+   * @param incomingDirectory The directory that incoming journals will appear in.
+   * @param transportString The journal name prefix to match for incoming messages
+   * @param deleteFiles True if journal segments should be deleted once read.
+   */
+  public FileJournalReader(Path incomingDirectory, String transportString, boolean deleteFiles)
+  {
+    this.incomingDirectory = incomingDirectory;
+    this.transportString = transportString;
+    this.deleteFiles = deleteFiles;
+  }
+
+  @Override
+  public byte[] readEncodedMessage() throws IOException, InterruptedException
+  {
+    final long now = System.currentTimeMillis();
+    if (now >= nextScan)
+    {
+      scan();
+      nextScan = now + SCAN_INTERVAL;
+    }
+
+    for (int i = 0; i < cursorList.size(); i++)
+    {
+      final Cursor cursor = cursorList.get(nextCursor);
+      nextCursor = (nextCursor + 1) % cursorList.size();
+
+      final byte[] msg = cursor.read();
+      if (null != msg)
+      {
+        idleCount = 0;
+        return msg;
+      }
+    }
+
+    if (cursorFinished)
+    {
+      removeFinishedCursors();
+    }
+
+    // nothing to read at this time
+    if (IDLE_SPIN_COUNT > idleCount)
+    {
+      ++idleCount;
+      Thread.yield();
+    }
+    else
+    {
+      Thread.sleep(1);
+    }
+
+    return null;
+  }
+
+  @Override
+  public void close()
+  {
+    // nothing to do here
+  }
+
+  /**
+   * Looks for journals that are not being read yet, reading from the oldest segment present.
+   *
+   * @throws IOException if the directory cannot be read
+   */
+  private void scan() throws IOException
+  {
+    final Map<String, Long> found = new HashMap<String, Long>();
+
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(incomingDirectory))
+    {
+      for (Path path : stream)
+      {
+        final String fileName = path.getFileName().toString();
+        final String journalName = FileJournal.journalName(fileName);
+
+        if ((null != journalName) && journalName.startsWith(transportString) && !cursors.containsKey(journalName)
+                && !finishedJournals.contains(journalName))
+        {
+          final long segmentNumber = FileJournal.segmentNumber(fileName);
+          final Long first = found.get(journalName);
+
+          if ((null == first) || (segmentNumber < first))
+          {
+            found.put(journalName, segmentNumber);
+          }
+        }
+      }
+    }
+
+    for (Map.Entry<String, Long> entry : found.entrySet())
+    {
+      FileTransport.RLOGGER.log(Level.INFO, "Found journal : {0}", entry.getKey());
+
+      final Cursor cursor = new Cursor(entry.getKey(), entry.getValue());
+      cursors.put(entry.getKey(), cursor);
+      cursorList.add(cursor);
+    }
+  }
+
+  /**
+   * Forgets the journals that have been closed by their writer.
+   *
+   * @throws IOException if the files of a journal cannot be deleted
+   */
+  private void removeFinishedCursors() throws IOException
+  {
+    cursorFinished = false;
+
+    final Iterator<Cursor> it = cursorList.iterator();
+    while (it.hasNext())
+    {
+      final Cursor cursor = it.next();
+
+      if (cursor.finished)
+      {
+        FileTransport.RLOGGER.log(Level.INFO, "Finished journal : {0}", cursor.journalName);
+
+        it.remove();
+        cursors.remove(cursor.journalName);
+
+        if (deleteFiles)
+        {
+          Files.deleteIfExists(cursor.segmentPath);
+          Files.deleteIfExists(incomingDirectory.resolve(cursor.journalName + FileJournal.OFFSET_SUFFIX));
+        }
+        else
+        {
+          // the segments are still there, stop the next scan from reading them again
+          finishedJournals.add(cursor.journalName);
+        }
+      }
+    }
+
+    nextCursor = cursorList.isEmpty() ? 0 : (nextCursor % cursorList.size());
+  }
+
+  /**
+   * The read position in one journal.
+   */
+  private final class Cursor
+  {
+    private final String journalName;
+    private final MappedByteBuffer offset;
+    private long segmentNumber;
+    private int startPosition = 0;
+    private Path segmentPath = null;
+    private MappedByteBuffer segment = null;
+    private boolean finished = false;
+
+    Cursor(String journalName, long firstSegmentNumber) throws IOException
+    {
+      this.journalName = journalName;
+      this.offset = FileJournal.openOffset(incomingDirectory, journalName);
+      this.segmentNumber = firstSegmentNumber;
+
+      // carry on from a previous reader of this journal
+      final long lastSegmentNumber = offset.getLong(0);
+      if (lastSegmentNumber >= firstSegmentNumber)
+      {
+        segmentNumber = lastSegmentNumber;
+        startPosition = offset.getInt(8);
+      }
+    }
+
+    byte[] read() throws IOException
+    {
+      while (!finished && ((null != segment) || openSegment()))
+      {
+        final int position = segment.position();
+
+        if (FileJournal.LENGTH_SIZE > segment.remaining())
+        {
+          // the writer always leaves room for a marker, so the segment is damaged or not fully mapped yet
+          return null;
+        }
+
+        final int length = segment.getInt(position);
+
+        if (0 == length)
+        {
+          // nothing written yet
+          return null;
+        }
+
+        if (FileJournal.END_OF_JOURNAL == length)
+        {
+          // the writer has closed the journal, nothing more will be written to it
+          finished = true;
+          cursorFinished = true;
+          return null;
+        }
+
+        if (FileJournal.END_OF_SEGMENT != length)
+        {
+          if ((0 > length) || (length > segment.remaining() - FileJournal.HEADER_SIZE))
+          {
+            // a torn or not yet written record, its length cannot be trusted, try again later
+            return null;
+          }
+
+          final byte[] msg = new byte[length];
+          segment.position(position + FileJournal.HEADER_SIZE);
+          segment.get(msg);
+
+          if (segment.getInt(position + FileJournal.LENGTH_SIZE) != FileJournal.checksum(msg, 0, length))
+          {
+            // the length is visible but not yet all of the message, try again later
+            segment.position(position);
+            return null;
+          }
+
+          offset.putLong(0, segmentNumber);
+          offset.putInt(8, segment.position());
+
+          return msg;
+        }
+
+        // the writer has moved on to the next segment
+        segment = null;
+        if (deleteFiles)
+        {
+          Files.deleteIfExists(segmentPath);
+        }
+
+        ++segmentNumber;
+        startPosition = 0;
+      }
+
+      return null;
+    }
+
+    private boolean openSegment() throws IOException
+    {
+      final Path path = incomingDirectory.resolve(FileJournal.segmentName(journalName, segmentNumber));
+
+      if (!Files.exists(path))
+      {
+        return false;
+      }
+
+      segmentPath = path;
+      segment = FileJournal.openSegment(path);
+      segment.position(startPosition);
+
+      return true;
+    }
+  }
+}
@@ -0,0 +1,166 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO File Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.file;
+
+import esa.mo.mal.transport.gen.sending.GENBatchMessageSender;
+import esa.mo.mal.transport.gen.sending.GENOutgoingMessageHolder;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * File journal transmitter. Appends outgoing messages to a memory mapped journal per destination transport, see
+ * FileJournal for the layout.
+ *
+ * One instance is shared by the communication channels to all destinations, so closing a channel does not close the
+ * journals, they are closed with the transport.
+ */
+public class FileJournalWriter implements GENBatchMessageSender
+{
+  private final Path outgoingDirectory;
+  private final String filenameString;
+  private final int segmentSize;
+  private final Map<String, Journal> journals = new HashMap<String, Journal>();
+
+  /**
+   * Constructor.
+   *
+   * @param outgoingDirectory The directory that the journals will be written into.
+   * @param filenameString The name of this transport, used in the journal names.
+   * @param segmentSize The size in bytes of the journal segments.
+   */
+  public FileJournalWriter(Path outgoingDirectory, String filenameString, int segmentSize)
+  {
+    this.outgoingDirectory = outgoingDirectory;
+    this.filenameString = filenameString;
+    this.segmentSize = segmentSize;
+  }
+
+  @Override
+  public void sendEncodedMessage(GENOutgoingMessageHolder packetData) throws IOException
+  {
+    getJournal(packetData.getDestinationRootURI()).append(packetData);
+  }
+
+  @Override
+  public void sendEncodedMessages(List<GENOutgoingMessageHolder> packetData) throws IOException
+  {
+    for (GENOutgoingMessageHolder packet : packetData)
+    {
+      getJournal(packet.getDestinationRootURI()).append(packet);
+    }
+  }
+
+  @Override
+  public void close()
+  {
+    // the journals are shared by all channels, see closeJournals
+  }
+
+  /**
+   * Closes the journals, called when the transport is closed.
+   */
+  public synchronized void closeJournals()
+  {
+    for (Journal journal : journals.values())
+    {
+      journal.close();
+    }
+
+    journals.clear();
+  }
+
+  private synchronized Journal getJournal(String destinationRootURI)
+  {
+    Journal journal = journals.get(destinationRootURI);
+
+    if (null == journal)
+    {
+      // journal names start with the name of the destination so that it recognises them
+      final String destination = destinationRootURI.substring(destinationRootURI.indexOf("://") + 3);
+      journal = new Journal(FileTransport.FILE_PREFIX + destination + "-" + filenameString);
+      journals.put(destinationRootURI, journal);
+    }
+
+    return journal;
+  }
+
+  /**
+   * The journal to one destination.
+   */
+  private final class Journal
+  {
+    private final String journalName;
+    private long segmentNumber = -1;
+    private MappedByteBuffer segment = null;
+
+    Journal(String journalName)
+    {
+      this.journalName = journalName;
+    }
+
+    synchronized void append(GENOutgoingMessageHolder packetData) throws IOException
+    {
+      final int length = packetData.getEncodedMessageLength();
+
+      // always leave room for the end of segment or end of journal marker
+      if ((null == segment) || (segment.remaining() < length + FileJournal.HEADER_SIZE + FileJournal.LENGTH_SIZE))
+      {
+        nextSegment(length);
+      }
+
+      final byte[] buffer = packetData.getEncodedMessageBuffer();
+      final int position = segment.position();
+      segment.position(position + FileJournal.HEADER_SIZE);
+      segment.put(buffer, 0, length);
+      segment.putInt(position + FileJournal.LENGTH_SIZE, FileJournal.checksum(buffer, 0, length));
+
+      // the length is written last, this publishes the message to the reader once its checksum matches
+      segment.putInt(position, length);
+    }
+
+    synchronized void close()
+    {
+      if (null != segment)
+      {
+        // tells the reader that this journal is finished and can be forgotten
+        segment.putInt(segment.position(), FileJournal.END_OF_JOURNAL);
+        segment.force();
+        segment = null;
+      }
+    }
+
+    private void nextSegment(int length) throws IOException
+    {
+      if (null != segment)
+      {
+        segment.putInt(segment.position(), FileJournal.END_OF_SEGMENT);
+      }
+
+      ++segmentNumber;
+      segment = FileJournal.createSegment(outgoingDirectory, journalName, segmentNumber,
+              Math.max(segmentSize, length + FileJournal.HEADER_SIZE + FileJournal.LENGTH_SIZE));
+    }
+  }
+}
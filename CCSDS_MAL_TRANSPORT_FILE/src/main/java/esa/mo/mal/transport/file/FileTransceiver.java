@@ -87,7 +87,7 @@ public class FileTransceiver implements esa.mo.mal.transport.gen.util.GENMessage
 
     try (java.io.FileOutputStream fos = new FileOutputStream(tmpFile))
     {
-      fos.write(packetData.getEncodedMessage());
+      fos.write(packetData.getEncodedMessageBuffer(), 0, packetData.getEncodedMessageLength());
       fos.flush();
     }
 
@@ -22,6 +22,7 @@ package esa.mo.mal.transport.file;
 
 import esa.mo.mal.transport.gen.GENEndpoint;
 import esa.mo.mal.transport.gen.GENMessage;
+import esa.mo.mal.transport.gen.GENMessageHeader;
 import esa.mo.mal.transport.gen.GENTransport;
 import esa.mo.mal.transport.gen.sending.GENMessageSender;
 import esa.mo.mal.transport.gen.util.GENMessagePoller;
@@ -60,6 +61,9 @@ public class FileTransport extends GENTransport
   private static final String QOS_O_MESSAGE_PROPERTY = "ccsds.mal.transport.file.outgoing.directory.property";
   private static final String QOS_O_MESSAGE_DIRECTORY = "ccsds.mal.transport.file.outgoing.directory.name";
   private static final String QOS_DELETE_FILE = "ccsds.mal.transport.file.qos.delete";
+  private static final String QOS_JOURNAL = "ccsds.mal.transport.file.journal";
+  private static final String QOS_JOURNAL_SEGMENT_SIZE = "ccsds.mal.transport.file.journal.segment.size";
+  private static final int DEFAULT_JOURNAL_SEGMENT_SIZE = 16 * 1024 * 1024;
   private final boolean deleteFiles;
   private final Thread asyncPollThread;
   private final String transportString;
@@ -67,7 +71,8 @@ public class FileTransport extends GENTransport
   private final WatchService watcher;
   private final Path incomingDirectory;
   private final Path outgoingDirectory;
-  private final FileTransceiver tc;
+  private final GENMessageSender tc;
+  private final FileJournalWriter journalWriter;
 
   /**
    * Constructor.
@@ -86,6 +91,8 @@ public class FileTransport extends GENTransport
     String incomingDirectoryName = System.getProperty("user.dir");
     String outgoingDirectoryName = incomingDirectoryName;
     boolean lDeleteFiles = true;
+    boolean lJournal = false;
+    int lJournalSegmentSize = DEFAULT_JOURNAL_SEGMENT_SIZE;
 
     if (null != properties)
     {
@@ -95,6 +102,17 @@ public class FileTransport extends GENTransport
         lDeleteFiles = false;
       }
 
+      // messages are exchanged through memory mapped journals rather than one file each
+      if (properties.containsKey(QOS_JOURNAL))
+      {
+        lJournal = Boolean.parseBoolean(String.valueOf(properties.get(QOS_JOURNAL)));
+      }
+
+      if (properties.containsKey(QOS_JOURNAL_SEGMENT_SIZE))
+      {
+        lJournalSegmentSize = Integer.parseInt(String.valueOf(properties.get(QOS_JOURNAL_SEGMENT_SIZE)));
+      }
+
       String lIncomingDirectoryName;
 
       if (properties.containsKey(QOS_I_MESSAGE_PROPERTY) && null != properties.get(QOS_I_MESSAGE_PROPERTY))
@@ -133,22 +151,38 @@ public class FileTransport extends GENTransport
     outgoingDirectory = Paths.get(outgoingDirectoryName);
     deleteFiles = lDeleteFiles;
 
-    try
-    {
-      watcher = FileSystems.getDefault().newWatchService();
-      System.out.println("Watching : " + incomingDirectoryName);
+    filenameString = ManagementFactory.getRuntimeMXBean().getName();
+    transportString = FILE_PREFIX + filenameString + "-";
 
-      filenameString = ManagementFactory.getRuntimeMXBean().getName();
-      transportString = FILE_PREFIX + filenameString + "-";
-      incomingDirectory.register(watcher, java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY);
-      tc = new FileTransceiver(incomingDirectory, outgoingDirectory, watcher, transportString, filenameString, deleteFiles);
+    if (lJournal)
+    {
+      RLOGGER.log(Level.INFO, "File transport using journals with segments of {0} bytes", lJournalSegmentSize);
+      watcher = null;
+      journalWriter = new FileJournalWriter(outgoingDirectory, filenameString, lJournalSegmentSize);
+      tc = journalWriter;
 
-      asyncPollThread = new GENMessagePoller(this, tc, tc);
+      asyncPollThread = new GENMessagePoller(this, tc, new FileJournalReader(incomingDirectory, transportString, deleteFiles));
     }
-    catch (IOException ex)
+    else
     {
-      ex.printStackTrace();
-      throw new MALException("Error initialising TCP Server", ex);
+      journalWriter = null;
+
+      try
+      {
+        watcher = FileSystems.getDefault().newWatchService();
+        System.out.println("Watching : " + incomingDirectoryName);
+
+        incomingDirectory.register(watcher, java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY);
+        FileTransceiver ftc = new FileTransceiver(incomingDirectory, outgoingDirectory, watcher, transportString, filenameString, deleteFiles);
+        tc = ftc;
+
+        asyncPollThread = new GENMessagePoller(this, ftc, ftc);
+      }
+      catch (IOException ex)
+      {
+        ex.printStackTrace();
+        throw new MALException("Error initialising TCP Server", ex);
+      }
     }
 
     // set up polling thread for new files appearing in the file directory
@@ -222,6 +256,11 @@ public class FileTransport extends GENTransport
   public void close() throws MALException
   {
     asyncPollThread.interrupt();
+
+    if (null != journalWriter)
+    {
+      journalWriter.closeJournals();
+    }
   }
 
   @Override
@@ -239,6 +278,7 @@ public class FileTransport extends GENTransport
   @Override
   public GENMessage createMessage(byte[] packet) throws MALException
   {
-    return null;
+    // used by the journal mode
+    return new GENMessage(false, true, new GENMessageHeader(), qosProperties, packet, getStreamFactory());
   }
 }
@@ -54,6 +54,7 @@ public class FileTransportFactoryImpl extends MALTransportFactory
       {
         transport = new FileTransport(getProtocol(), this, properties);
         transport.init();
+        transport.connectToPeers();
       }
 
       return transport;
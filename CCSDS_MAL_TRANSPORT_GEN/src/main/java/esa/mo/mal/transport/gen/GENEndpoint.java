@@ -20,6 +20,7 @@
  */
 package esa.mo.mal.transport.gen;
 
+import esa.mo.mal.transport.gen.sending.GENOutgoingMessageHolder;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -292,12 +293,14 @@ public class GENEndpoint implements MALEndpoint
     try
     {
       final Object multiSendHandle = internalCreateMultiSendHandle(msgList);
+      final GENOutgoingMessageHolder[] sentMsgs = new GENOutgoingMessageHolder[msgList.length];
 
+      // queue all the messages first so that they are in flight together
       for (int idx = 0; idx < msgList.length; idx++)
       {
         try
         {
-          internalSendMessage(multiSendHandle, idx == (msgList.length - 1), (GENMessage) msgList[idx]);
+          sentMsgs[idx] = internalSendMessageAsync(multiSendHandle, idx == (msgList.length - 1), (GENMessage) msgList[idx]);
         }
         catch (MALTransmitErrorException ex)
         {
@@ -305,6 +308,16 @@ public class GENEndpoint implements MALEndpoint
         }
       }
 
+      // then wait for the result of each one
+      for (int idx = 0; idx < msgList.length; idx++)
+      {
+        if ((null != sentMsgs[idx]) && !sentMsgs[idx].getResult())
+        {
+          v.add(new MALTransmitErrorException(msgList[idx].getHeader(),
+                  new MALStandardError(MALHelper.DELIVERY_FAILED_ERROR_NUMBER, null), null));
+        }
+      }
+
       internalCloseMultiSendHandle(multiSendHandle, msgList);
     }
     catch (Exception ex)
@@ -402,6 +415,22 @@ public class GENEndpoint implements MALEndpoint
     transport.sendMessage(multiSendHandle, lastForHandle, msg);
   }
 
+  /**
+   * Used to send a message from this end point without waiting for it to be sent.
+   *
+   * @param multiSendHandle Multi send context handle object that is passed to the transport.
+   * @param lastForHandle Is this the last message in a multi message send?
+   * @param msg the message to send.
+   * @return the holder of the queued message, or null if the message has already been sent.
+   * @throws MALTransmitErrorException If the message cannot be queued for sending.
+   */
+  protected GENOutgoingMessageHolder internalSendMessageAsync(final Object multiSendHandle,
+          final boolean lastForHandle,
+          final GENMessage msg) throws MALTransmitErrorException
+  {
+    return transport.sendMessageAsync(multiSendHandle, lastForHandle, msg, null);
+  }
+
   /**
    * Create a send context handle for a multi message send.
    *
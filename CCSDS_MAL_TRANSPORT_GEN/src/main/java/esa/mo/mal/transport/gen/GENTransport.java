@@ -20,17 +20,30 @@
  */
 package esa.mo.mal.transport.gen;
 
+import esa.mo.mal.transport.gen.metrics.GENTransportMetrics;
 import esa.mo.mal.transport.gen.sending.GENConcurrentMessageSender;
 import esa.mo.mal.transport.gen.sending.GENMessageSender;
 import esa.mo.mal.transport.gen.sending.GENOutgoingMessageHolder;
+import esa.mo.mal.transport.gen.sending.GENOutgoingMessageListener;
+import esa.mo.mal.transport.gen.sending.GENSendBudget;
+import esa.mo.mal.transport.gen.util.GENEncodeBuffer;
 import esa.mo.mal.transport.gen.util.GENHelper;
-import java.io.ByteArrayOutputStream;
+import esa.mo.mal.transport.gen.util.GENTransactionDispatcher;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.nio.charset.Charset;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.ccsds.moims.mo.mal.*;
@@ -56,10 +69,87 @@ public abstract class GENTransport implements MALTransport
    * System property to control the number of input processors.
    */
   public static final String INPUT_PROCESSORS_PROPERTY = "org.ccsds.moims.mo.mal.transport.gen.inputprocessors";
+  /**
+   * System property to control the number of input reception (decoding) threads. Defaults to one. Packets of a single
+   * connection are always decoded in order by the same thread, but with more than one thread the relative order of
+   * packets arriving on different connections is no longer preserved.
+   */
+  public static final String INPUT_RECEPTION_PROCESSORS_PROPERTY = "org.ccsds.moims.mo.mal.transport.gen.inputreceptionprocessors";
   /**
    * System property to control the number of connections per client.
    */
   public static final String NUM_CLIENT_CONNS_PROPERTY = "org.ccsds.moims.mo.mal.transport.gen.numconnections";
+  /**
+   * System property to control the minimum number of connections per client, by default the number of connections.
+   */
+  public static final String MIN_CLIENT_CONNS_PROPERTY = "org.ccsds.moims.mo.mal.transport.gen.minconnections";
+  /**
+   * System property to control the number of queued messages per connection above which another connection is opened.
+   */
+  public static final String CONNECTION_GROW_QUEUE_DEPTH_PROPERTY = "org.ccsds.moims.mo.mal.transport.gen.connectiongrowqueuedepth";
+  /**
+   * System property to control the send latency, in milliseconds, above which another connection is opened.
+   */
+  public static final String CONNECTION_GROW_LATENCY_PROPERTY = "org.ccsds.moims.mo.mal.transport.gen.connectiongrowlatency";
+  /**
+   * System property to control the time, in milliseconds, after which an idle connection above the minimum is closed.
+   */
+  public static final String CONNECTION_IDLE_TIMEOUT_PROPERTY = "org.ccsds.moims.mo.mal.transport.gen.connectionidletimeout";
+  /**
+   * System property to control the maximum number of messages sent in one batch by a sender thread.
+   */
+  public static final String SEND_BATCH_SIZE_PROPERTY = "org.ccsds.moims.mo.mal.transport.gen.sendbatchsize";
+  /**
+   * System property to control the maximum time, in milliseconds, a sender thread waits for a batch to fill.
+   */
+  public static final String SEND_BATCH_LINGER_PROPERTY = "org.ccsds.moims.mo.mal.transport.gen.sendbatchlinger";
+  /**
+   * System property to control whether the transport metrics are registered as JMX MBeans, true by default.
+   */
+  public static final String JMX_PROPERTY = "org.ccsds.moims.mo.mal.transport.gen.jmx";
+  /**
+   * System property to control the maximum number of messages queued for sending to a single URI, 0 for no limit.
+   */
+  public static final String MAX_QUEUE_MESSAGES_PROPERTY = "org.ccsds.moims.mo.mal.transport.gen.maxqueuemessages";
+  /**
+   * System property to control the maximum number of bytes queued for sending to a single URI, 0 for no limit.
+   */
+  public static final String MAX_QUEUE_BYTES_PROPERTY = "org.ccsds.moims.mo.mal.transport.gen.maxqueuebytes";
+  /**
+   * System property to control the maximum number of messages queued for sending over all URIs, 0 for no limit.
+   */
+  public static final String MAX_TOTAL_QUEUE_MESSAGES_PROPERTY = "org.ccsds.moims.mo.mal.transport.gen.maxtotalqueuemessages";
+  /**
+   * System property to control the maximum number of bytes queued for sending over all URIs, 0 for no limit.
+   */
+  public static final String MAX_TOTAL_QUEUE_BYTES_PROPERTY = "org.ccsds.moims.mo.mal.transport.gen.maxtotalqueuebytes";
+  /**
+   * System property to control what happens when a send queue is full, one of block (the default), fail or
+   * dropbesteffort.
+   */
+  public static final String OVERLOAD_POLICY_PROPERTY = "org.ccsds.moims.mo.mal.transport.gen.overloadpolicy";
+  /**
+   * System property to control the ordering of outgoing messages by priority. It gives the time, in milliseconds, that
+   * one level of priority is worth, 0 (the default) sends messages in the order they are queued.
+   */
+  public static final String SEND_PRIORITY_AGING_PROPERTY = "org.ccsds.moims.mo.mal.transport.gen.sendpriorityaging";
+  /**
+   * System property to control whether the connections to a URI are split by the QoS level of the messages.
+   */
+  public static final String QOS_CONNECTIONS_PROPERTY = "org.ccsds.moims.mo.mal.transport.gen.qosconnections";
+  /**
+   * System property to list, separated by commas, the root URIs of the known peers that are connected to on
+   * initialisation and reconnected to after a communication error.
+   */
+  public static final String PEERS_PROPERTY = "org.ccsds.moims.mo.mal.transport.gen.peers";
+  /**
+   * System property to control the time, in milliseconds, before the first attempt to reconnect to a known peer.
+   */
+  public static final String RECONNECT_BACKOFF_PROPERTY = "org.ccsds.moims.mo.mal.transport.gen.reconnectbackoff";
+  /**
+   * System property to control the maximum time, in milliseconds, between attempts to reconnect to a known peer.
+   */
+  public static final String RECONNECT_MAX_BACKOFF_PROPERTY = "org.ccsds.moims.mo.mal.transport.gen.reconnectmaxbackoff";
   /**
    * Charset used for converting the encoded message into a string for debugging.
    */
@@ -121,6 +211,90 @@ public abstract class GENTransport implements MALTransport
    * port and host per different client/server.
    */
   private final int numConnections;
+  /**
+   * The minimum number of connections per client or server, more are opened up to numConnections when busy.
+   */
+  private final int minConnections;
+  /**
+   * The number of queued messages per connection above which another connection is opened.
+   */
+  private final int connectionGrowQueueDepth;
+  /**
+   * The send latency, in milliseconds, above which another connection is opened, 0 if not used.
+   */
+  private final long connectionGrowLatency;
+  /**
+   * The time, in milliseconds, after which an idle connection above the minimum is closed, 0 if never.
+   */
+  private final long connectionIdleTimeout;
+  /**
+   * Opens the additional connections requested by busy channels, without holding up the sending threads.
+   */
+  private final ExecutorService connectionExecutor = Executors.newCachedThreadPool();
+  /**
+   * The maximum number of messages sent in one batch, 1 disables batching.
+   */
+  private final int sendBatchSize;
+  /**
+   * The maximum time, in milliseconds, to wait for a send batch to fill.
+   */
+  private final long sendBatchLingerTime;
+  /**
+   * True if the metrics are registered as JMX MBeans on initialisation.
+   */
+  private final boolean registerMetrics;
+  /**
+   * The maximum number of messages queued for sending to a single URI, 0 for no limit.
+   */
+  private final int maxQueueMessages;
+  /**
+   * The maximum number of bytes queued for sending to a single URI, 0 for no limit.
+   */
+  private final long maxQueueBytes;
+  /**
+   * The budget of messages and bytes queued for sending over all URIs.
+   */
+  private final GENSendBudget globalSendBudget;
+  /**
+   * What to do when a send queue is full, one of the GENConcurrentMessageSender overload policies.
+   */
+  private final int overloadPolicy;
+  /**
+   * The time, in milliseconds, one level of message priority is worth when ordering outgoing messages, 0 for FIFO.
+   */
+  private final long sendPriorityAgingTime;
+  /**
+   * True if the connections to a URI are split by the QoS level of the messages.
+   */
+  private final boolean qosConnections;
+  /**
+   * The metrics of this transport and of the remote root URIs it communicates with.
+   */
+  private final GENTransportMetrics metrics = new GENTransportMetrics(this);
+  /**
+   * The root URIs of the known peers.
+   */
+  private final List<String> peerURIs;
+  /**
+   * The time, in milliseconds, before the first attempt to reconnect to a known peer, doubled after each failure.
+   */
+  private final long reconnectBackoff;
+  /**
+   * The maximum time, in milliseconds, between attempts to reconnect to a known peer.
+   */
+  private final long reconnectMaxBackoff;
+  /**
+   * Schedules the attempts to reconnect to the known peers, null if there are none.
+   */
+  private final ScheduledExecutorService reconnectTimer;
+  /**
+   * The known peers currently being connected to, so that only one series of attempts is made per peer.
+   */
+  private final ConcurrentMap<String, Boolean> connectingPeers = new ConcurrentHashMap<String, Boolean>();
+  /**
+   * True once the transport has been closed.
+   */
+  private volatile boolean closed = false;
   /**
    * Number of processors that are capable of processing parallel input requests. This is the internal number of threads
    * that process incoming messages arriving from MAL clients. It is the maximum parallel requests this MAL instance can
@@ -128,23 +302,29 @@ public abstract class GENTransport implements MALTransport
    */
   private final int inputProcessorThreads;
   /**
-   * The thread that receives incoming message from the underlying transport. All incoming raw data packets are
-   * processed by this thread.
+   * The threads that receive incoming messages from the underlying transport. All incoming raw data packets are
+   * decoded by these threads, the packets of a given reception handler are always processed by the same thread so that
+   * they are decoded in arrival order.
    */
-  private final ExecutorService asyncInputReceptionProcessor;
+  private final ExecutorService[] asyncInputReceptionProcessors;
   /**
    * The thread pool of input message processors. All incoming messages are processed by this thread pool after they
-   * have been decoded by the asyncInputReceptionProcessor thread.
+   * have been decoded by the asyncInputReceptionProcessors threads.
    */
   private final ExecutorService asyncInputDataProcessors;
   /**
-   * The map of message queues, segregated by transaction id.
+   * Dispatches decoded messages to the input processors, segregated by transaction id.
    */
-  private final Map<Long, GENIncomingMessageProcessor> transactionQueues = new HashMap<Long, GENIncomingMessageProcessor>();
+  private final GENTransactionDispatcher<MessageDetails> transactionDispatcher;
   /**
    * Map of outgoing channels. This associates a URI to a transport resource that is able to send messages to this URI.
    */
-  private final Map<String, GENConcurrentMessageSender> outgoingDataChannels = Collections.synchronizedMap(new HashMap<String, GENConcurrentMessageSender>());
+  private final ConcurrentMap<String, GENConcurrentMessageSender> outgoingDataChannels = new ConcurrentHashMap<String, GENConcurrentMessageSender>();
+  /**
+   * Map of outgoing channels currently being created. This ensures that only one thread creates the channel for a URI
+   * while the others wait on the result, without blocking the creation of channels to other URIs.
+   */
+  private final ConcurrentMap<String, FutureTask<GENConcurrentMessageSender>> pendingDataChannels = new ConcurrentHashMap<String, FutureTask<GENConcurrentMessageSender>>();
   /**
    * The stream factory used for encoding and decoding messages.
    */
@@ -190,7 +370,25 @@ public abstract class GENTransport implements MALTransport
     boolean lLogFullDebug = false;
     boolean lWrapBodyParts = wrapBodyParts;
     int lInputProcessorThreads = 100;
+    int lInputReceptionThreads = 1;
     int lNumConnections = 1;
+    int lMinConnections = -1;
+    int lConnectionGrowQueueDepth = 16;
+    long lConnectionGrowLatency = 0;
+    long lConnectionIdleTimeout = 0;
+    int lSendBatchSize = 1;
+    long lSendBatchLingerTime = 0;
+    boolean lRegisterMetrics = true;
+    int lMaxQueueMessages = 0;
+    long lMaxQueueBytes = 0;
+    int lMaxTotalQueueMessages = 0;
+    long lMaxTotalQueueBytes = 0;
+    int lOverloadPolicy = GENConcurrentMessageSender.OVERLOAD_BLOCK;
+    long lSendPriorityAgingTime = 0;
+    boolean lQoSConnections = false;
+    List<String> lPeerURIs = Collections.emptyList();
+    long lReconnectBackoff = 1000;
+    long lReconnectMaxBackoff = 60000;
 
     // decode configuration
     if (properties != null)
@@ -205,20 +403,141 @@ public abstract class GENTransport implements MALTransport
         lInputProcessorThreads = Integer.parseInt((String) properties.get(INPUT_PROCESSORS_PROPERTY));
       }
 
+      // number of internal threads that decode incoming raw packets
+      if (properties.containsKey(INPUT_RECEPTION_PROCESSORS_PROPERTY))
+      {
+        lInputReceptionThreads = Integer.parseInt((String) properties.get(INPUT_RECEPTION_PROCESSORS_PROPERTY));
+      }
+
       // number of connections per client/server
       if (properties.containsKey(NUM_CLIENT_CONNS_PROPERTY))
       {
         lNumConnections = Integer.parseInt((String) properties.get(NUM_CLIENT_CONNS_PROPERTY));
       }
+
+      // adaptive number of connections
+      if (properties.containsKey(MIN_CLIENT_CONNS_PROPERTY))
+      {
+        lMinConnections = Integer.parseInt((String) properties.get(MIN_CLIENT_CONNS_PROPERTY));
+      }
+
+      if (properties.containsKey(CONNECTION_GROW_QUEUE_DEPTH_PROPERTY))
+      {
+        lConnectionGrowQueueDepth = Integer.parseInt((String) properties.get(CONNECTION_GROW_QUEUE_DEPTH_PROPERTY));
+      }
+
+      if (properties.containsKey(CONNECTION_GROW_LATENCY_PROPERTY))
+      {
+        lConnectionGrowLatency = Long.parseLong((String) properties.get(CONNECTION_GROW_LATENCY_PROPERTY));
+      }
+
+      if (properties.containsKey(CONNECTION_IDLE_TIMEOUT_PROPERTY))
+      {
+        lConnectionIdleTimeout = Long.parseLong((String) properties.get(CONNECTION_IDLE_TIMEOUT_PROPERTY));
+      }
+
+      // batching of outgoing messages
+      if (properties.containsKey(SEND_BATCH_SIZE_PROPERTY))
+      {
+        lSendBatchSize = Integer.parseInt((String) properties.get(SEND_BATCH_SIZE_PROPERTY));
+      }
+
+      if (properties.containsKey(SEND_BATCH_LINGER_PROPERTY))
+      {
+        lSendBatchLingerTime = Long.parseLong((String) properties.get(SEND_BATCH_LINGER_PROPERTY));
+      }
+
+      // JMX registration of the metrics
+      if (properties.containsKey(JMX_PROPERTY))
+      {
+        lRegisterMetrics = Boolean.parseBoolean((String) properties.get(JMX_PROPERTY));
+      }
+
+      // limits of the outgoing queues
+      if (properties.containsKey(MAX_QUEUE_MESSAGES_PROPERTY))
+      {
+        lMaxQueueMessages = Integer.parseInt((String) properties.get(MAX_QUEUE_MESSAGES_PROPERTY));
+      }
+
+      if (properties.containsKey(MAX_QUEUE_BYTES_PROPERTY))
+      {
+        lMaxQueueBytes = Long.parseLong((String) properties.get(MAX_QUEUE_BYTES_PROPERTY));
+      }
+
+      if (properties.containsKey(MAX_TOTAL_QUEUE_MESSAGES_PROPERTY))
+      {
+        lMaxTotalQueueMessages = Integer.parseInt((String) properties.get(MAX_TOTAL_QUEUE_MESSAGES_PROPERTY));
+      }
+
+      if (properties.containsKey(MAX_TOTAL_QUEUE_BYTES_PROPERTY))
+      {
+        lMaxTotalQueueBytes = Long.parseLong((String) properties.get(MAX_TOTAL_QUEUE_BYTES_PROPERTY));
+      }
+
+      if (properties.containsKey(OVERLOAD_POLICY_PROPERTY))
+      {
+        lOverloadPolicy = parseOverloadPolicy((String) properties.get(OVERLOAD_POLICY_PROPERTY));
+      }
+
+      // scheduling of outgoing messages
+      if (properties.containsKey(SEND_PRIORITY_AGING_PROPERTY))
+      {
+        lSendPriorityAgingTime = Long.parseLong((String) properties.get(SEND_PRIORITY_AGING_PROPERTY));
+      }
+
+      lQoSConnections = Boolean.parseBoolean((String) properties.get(QOS_CONNECTIONS_PROPERTY));
+
+      // known peers
+      if (properties.containsKey(PEERS_PROPERTY))
+      {
+        lPeerURIs = parsePeers((String) properties.get(PEERS_PROPERTY));
+      }
+
+      if (properties.containsKey(RECONNECT_BACKOFF_PROPERTY))
+      {
+        lReconnectBackoff = Long.parseLong((String) properties.get(RECONNECT_BACKOFF_PROPERTY));
+      }
+
+      if (properties.containsKey(RECONNECT_MAX_BACKOFF_PROPERTY))
+      {
+        lReconnectMaxBackoff = Long.parseLong((String) properties.get(RECONNECT_MAX_BACKOFF_PROPERTY));
+      }
     }
 
     this.logFullDebug = lLogFullDebug;
     this.wrapBodyParts = lWrapBodyParts;
     this.inputProcessorThreads = lInputProcessorThreads;
     this.numConnections = lNumConnections;
+    this.minConnections = ((0 < lMinConnections) && (lMinConnections < lNumConnections)) ? lMinConnections : lNumConnections;
+    this.connectionGrowQueueDepth = lConnectionGrowQueueDepth;
+    this.connectionGrowLatency = lConnectionGrowLatency;
+    this.connectionIdleTimeout = lConnectionIdleTimeout;
+    this.sendBatchSize = lSendBatchSize;
+    this.sendBatchLingerTime = lSendBatchLingerTime;
+    this.registerMetrics = lRegisterMetrics;
+    this.maxQueueMessages = lMaxQueueMessages;
+    this.maxQueueBytes = lMaxQueueBytes;
+    this.globalSendBudget = new GENSendBudget(lMaxTotalQueueMessages, lMaxTotalQueueBytes);
+    this.overloadPolicy = lOverloadPolicy;
+    this.sendPriorityAgingTime = lSendPriorityAgingTime;
+    this.qosConnections = lQoSConnections;
+    this.peerURIs = lPeerURIs;
+    this.reconnectBackoff = Math.max(1, lReconnectBackoff);
+    this.reconnectMaxBackoff = Math.max(this.reconnectBackoff, lReconnectMaxBackoff);
+    this.reconnectTimer = lPeerURIs.isEmpty() ? null : Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+    {
+      @Override
+      public Thread newThread(Runnable r)
+      {
+        final Thread thread = new Thread(r, "GEN reconnect timer");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
 
-    this.asyncInputReceptionProcessor = Executors.newSingleThreadExecutor();
+    this.asyncInputReceptionProcessors = createReceptionProcessors(lInputReceptionThreads);
     this.asyncInputDataProcessors = Executors.newFixedThreadPool(inputProcessorThreads);
+    this.transactionDispatcher = createTransactionDispatcher();
 
     LOGGER.log(Level.INFO, "GEN Wrapping body parts set to  : {0}", this.wrapBodyParts);
   }
@@ -263,7 +582,25 @@ public abstract class GENTransport implements MALTransport
     boolean lLogFullDebug = false;
     boolean lWrapBodyParts = wrapBodyParts;
     int lInputProcessorThreads = 100;
+    int lInputReceptionThreads = 1;
     int lNumConnections = 1;
+    int lMinConnections = -1;
+    int lConnectionGrowQueueDepth = 16;
+    long lConnectionGrowLatency = 0;
+    long lConnectionIdleTimeout = 0;
+    int lSendBatchSize = 1;
+    long lSendBatchLingerTime = 0;
+    boolean lRegisterMetrics = true;
+    int lMaxQueueMessages = 0;
+    long lMaxQueueBytes = 0;
+    int lMaxTotalQueueMessages = 0;
+    long lMaxTotalQueueBytes = 0;
+    int lOverloadPolicy = GENConcurrentMessageSender.OVERLOAD_BLOCK;
+    long lSendPriorityAgingTime = 0;
+    boolean lQoSConnections = false;
+    List<String> lPeerURIs = Collections.emptyList();
+    long lReconnectBackoff = 1000;
+    long lReconnectMaxBackoff = 60000;
 
     // decode configuration
     if (properties != null)
@@ -278,20 +615,141 @@ public abstract class GENTransport implements MALTransport
         lInputProcessorThreads = Integer.parseInt((String) properties.get(INPUT_PROCESSORS_PROPERTY));
       }
 
+      // number of internal threads that decode incoming raw packets
+      if (properties.containsKey(INPUT_RECEPTION_PROCESSORS_PROPERTY))
+      {
+        lInputReceptionThreads = Integer.parseInt((String) properties.get(INPUT_RECEPTION_PROCESSORS_PROPERTY));
+      }
+
       // number of connections per client/server
       if (properties.containsKey(NUM_CLIENT_CONNS_PROPERTY))
       {
         lNumConnections = Integer.parseInt((String) properties.get(NUM_CLIENT_CONNS_PROPERTY));
       }
+
+      // adaptive number of connections
+      if (properties.containsKey(MIN_CLIENT_CONNS_PROPERTY))
+      {
+        lMinConnections = Integer.parseInt((String) properties.get(MIN_CLIENT_CONNS_PROPERTY));
+      }
+
+      if (properties.containsKey(CONNECTION_GROW_QUEUE_DEPTH_PROPERTY))
+      {
+        lConnectionGrowQueueDepth = Integer.parseInt((String) properties.get(CONNECTION_GROW_QUEUE_DEPTH_PROPERTY));
+      }
+
+      if (properties.containsKey(CONNECTION_GROW_LATENCY_PROPERTY))
+      {
+        lConnectionGrowLatency = Long.parseLong((String) properties.get(CONNECTION_GROW_LATENCY_PROPERTY));
+      }
+
+      if (properties.containsKey(CONNECTION_IDLE_TIMEOUT_PROPERTY))
+      {
+        lConnectionIdleTimeout = Long.parseLong((String) properties.get(CONNECTION_IDLE_TIMEOUT_PROPERTY));
+      }
+
+      // batching of outgoing messages
+      if (properties.containsKey(SEND_BATCH_SIZE_PROPERTY))
+      {
+        lSendBatchSize = Integer.parseInt((String) properties.get(SEND_BATCH_SIZE_PROPERTY));
+      }
+
+      if (properties.containsKey(SEND_BATCH_LINGER_PROPERTY))
+      {
+        lSendBatchLingerTime = Long.parseLong((String) properties.get(SEND_BATCH_LINGER_PROPERTY));
+      }
+
+      // JMX registration of the metrics
+      if (properties.containsKey(JMX_PROPERTY))
+      {
+        lRegisterMetrics = Boolean.parseBoolean((String) properties.get(JMX_PROPERTY));
+      }
+
+      // limits of the outgoing queues
+      if (properties.containsKey(MAX_QUEUE_MESSAGES_PROPERTY))
+      {
+        lMaxQueueMessages = Integer.parseInt((String) properties.get(MAX_QUEUE_MESSAGES_PROPERTY));
+      }
+
+      if (properties.containsKey(MAX_QUEUE_BYTES_PROPERTY))
+      {
+        lMaxQueueBytes = Long.parseLong((String) properties.get(MAX_QUEUE_BYTES_PROPERTY));
+      }
+
+      if (properties.containsKey(MAX_TOTAL_QUEUE_MESSAGES_PROPERTY))
+      {
+        lMaxTotalQueueMessages = Integer.parseInt((String) properties.get(MAX_TOTAL_QUEUE_MESSAGES_PROPERTY));
+      }
+
+      if (properties.containsKey(MAX_TOTAL_QUEUE_BYTES_PROPERTY))
+      {
+        lMaxTotalQueueBytes = Long.parseLong((String) properties.get(MAX_TOTAL_QUEUE_BYTES_PROPERTY));
+      }
+
+      if (properties.containsKey(OVERLOAD_POLICY_PROPERTY))
+      {
+        lOverloadPolicy = parseOverloadPolicy((String) properties.get(OVERLOAD_POLICY_PROPERTY));
+      }
+
+      // scheduling of outgoing messages
+      if (properties.containsKey(SEND_PRIORITY_AGING_PROPERTY))
+      {
+        lSendPriorityAgingTime = Long.parseLong((String) properties.get(SEND_PRIORITY_AGING_PROPERTY));
+      }
+
+      lQoSConnections = Boolean.parseBoolean((String) properties.get(QOS_CONNECTIONS_PROPERTY));
+
+      // known peers
+      if (properties.containsKey(PEERS_PROPERTY))
+      {
+        lPeerURIs = parsePeers((String) properties.get(PEERS_PROPERTY));
+      }
+
+      if (properties.containsKey(RECONNECT_BACKOFF_PROPERTY))
+      {
+        lReconnectBackoff = Long.parseLong((String) properties.get(RECONNECT_BACKOFF_PROPERTY));
+      }
+
+      if (properties.containsKey(RECONNECT_MAX_BACKOFF_PROPERTY))
+      {
+        lReconnectMaxBackoff = Long.parseLong((String) properties.get(RECONNECT_MAX_BACKOFF_PROPERTY));
+      }
     }
 
     this.logFullDebug = lLogFullDebug;
     this.wrapBodyParts = lWrapBodyParts;
     this.inputProcessorThreads = lInputProcessorThreads;
     this.numConnections = lNumConnections;
+    this.minConnections = ((0 < lMinConnections) && (lMinConnections < lNumConnections)) ? lMinConnections : lNumConnections;
+    this.connectionGrowQueueDepth = lConnectionGrowQueueDepth;
+    this.connectionGrowLatency = lConnectionGrowLatency;
+    this.connectionIdleTimeout = lConnectionIdleTimeout;
+    this.sendBatchSize = lSendBatchSize;
+    this.sendBatchLingerTime = lSendBatchLingerTime;
+    this.registerMetrics = lRegisterMetrics;
+    this.maxQueueMessages = lMaxQueueMessages;
+    this.maxQueueBytes = lMaxQueueBytes;
+    this.globalSendBudget = new GENSendBudget(lMaxTotalQueueMessages, lMaxTotalQueueBytes);
+    this.overloadPolicy = lOverloadPolicy;
+    this.sendPriorityAgingTime = lSendPriorityAgingTime;
+    this.qosConnections = lQoSConnections;
+    this.peerURIs = lPeerURIs;
+    this.reconnectBackoff = Math.max(1, lReconnectBackoff);
+    this.reconnectMaxBackoff = Math.max(this.reconnectBackoff, lReconnectMaxBackoff);
+    this.reconnectTimer = lPeerURIs.isEmpty() ? null : Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+    {
+      @Override
+      public Thread newThread(Runnable r)
+      {
+        final Thread thread = new Thread(r, "GEN reconnect timer");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
 
-    asyncInputReceptionProcessor = Executors.newSingleThreadExecutor();
+    asyncInputReceptionProcessors = createReceptionProcessors(lInputReceptionThreads);
     asyncInputDataProcessors = Executors.newFixedThreadPool(inputProcessorThreads);
+    transactionDispatcher = createTransactionDispatcher();
 
     LOGGER.log(Level.INFO, "GEN Wrapping body parts set to  : {0}", this.wrapBodyParts);
   }
@@ -310,6 +768,26 @@ public abstract class GENTransport implements MALTransport
     }
 
     uriBase = protocolString + protocolDelim + createTransportAddress() + serviceDelim;
+
+    if (registerMetrics)
+    {
+      metrics.register(uriBase);
+    }
+  }
+
+  /**
+   * Opens, in parallel and in the background, the communication channels to the known peers. Called once the transport
+   * has been initialised so that it is ready to create message senders.
+   */
+  public void connectToPeers()
+  {
+    for (String peer : peerURIs)
+    {
+      if (null == connectingPeers.putIfAbsent(peer, Boolean.TRUE))
+      {
+        connectToPeer(peer, 0);
+      }
+    }
   }
 
   @Override
@@ -354,6 +832,157 @@ public abstract class GENTransport implements MALTransport
     return streamFactory;
   }
 
+  /**
+   * Returns the maximum number of messages that a sender thread sends in one batch.
+   *
+   * @return the maximum batch size, 1 if batching is disabled.
+   */
+  public int getSendBatchSize()
+  {
+    return sendBatchSize;
+  }
+
+  /**
+   * Returns the maximum time that a sender thread waits for a batch of messages to fill.
+   *
+   * @return the linger time in milliseconds.
+   */
+  public long getSendBatchLingerTime()
+  {
+    return sendBatchLingerTime;
+  }
+
+  /**
+   * Returns the number of connections opened to each URI.
+   *
+   * @return the number of connections.
+   */
+  public int getNumConnections()
+  {
+    return numConnections;
+  }
+
+  /**
+   * Returns the number of connections opened to each URI when it is first used, more are opened up to
+   * getNumConnections when busy.
+   *
+   * @return the minimum number of connections.
+   */
+  public int getMinConnections()
+  {
+    return minConnections;
+  }
+
+  /**
+   * Returns the number of queued messages per connection above which another connection is opened.
+   *
+   * @return the queue depth.
+   */
+  public int getConnectionGrowQueueDepth()
+  {
+    return connectionGrowQueueDepth;
+  }
+
+  /**
+   * Returns the send latency above which another connection is opened.
+   *
+   * @return the latency in milliseconds, 0 if not used.
+   */
+  public long getConnectionGrowLatency()
+  {
+    return connectionGrowLatency;
+  }
+
+  /**
+   * Returns the time after which an idle connection above the minimum is closed.
+   *
+   * @return the timeout in milliseconds, 0 if idle connections are never closed.
+   */
+  public long getConnectionIdleTimeout()
+  {
+    return connectionIdleTimeout;
+  }
+
+  /**
+   * Returns the time that one level of priority is worth when ordering outgoing messages.
+   *
+   * @return the aging time in milliseconds, 0 if messages are sent in the order they are queued.
+   */
+  public long getSendPriorityAgingTime()
+  {
+    return sendPriorityAgingTime;
+  }
+
+  /**
+   * Returns true if the connections to a URI are split by the QoS level of the messages.
+   *
+   * @return true if QoS connections are used.
+   */
+  public boolean isQoSConnections()
+  {
+    return qosConnections;
+  }
+
+  /**
+   * Returns the maximum number of messages queued for sending to a single URI.
+   *
+   * @return the maximum number of messages, 0 for no limit.
+   */
+  public int getMaxQueueMessages()
+  {
+    return maxQueueMessages;
+  }
+
+  /**
+   * Returns the maximum number of bytes queued for sending to a single URI.
+   *
+   * @return the maximum number of bytes, 0 for no limit.
+   */
+  public long getMaxQueueBytes()
+  {
+    return maxQueueBytes;
+  }
+
+  /**
+   * Returns the budget of messages and bytes queued for sending over all URIs.
+   *
+   * @return the global send budget.
+   */
+  public GENSendBudget getGlobalSendBudget()
+  {
+    return globalSendBudget;
+  }
+
+  /**
+   * Returns what to do when a send queue is full.
+   *
+   * @return one of the GENConcurrentMessageSender overload policies.
+   */
+  public int getOverloadPolicy()
+  {
+    return overloadPolicy;
+  }
+
+  /**
+   * Returns the metrics of this transport.
+   *
+   * @return the metrics
+   */
+  public GENTransportMetrics getMetrics()
+  {
+    return metrics;
+  }
+
+  /**
+   * Returns the number of transactions that currently have incoming messages queued or being processed.
+   *
+   * @return the number of active transactions.
+   */
+  public int getActiveTransactionCount()
+  {
+    return transactionDispatcher.getActiveTransactionCount();
+  }
+
   /**
    * Overridable internal method for the creation of receiving messages.
    *
@@ -387,7 +1016,7 @@ public abstract class GENTransport implements MALTransport
    */
   public void receive(final java.io.InputStream ios, GENReceptionHandler receptionHandler)
   {
-    asyncInputReceptionProcessor.submit(new GENIncomingMessageReceiver(ios, receptionHandler));
+    getReceptionProcessor(receptionHandler).submit(new GENIncomingMessageReceiver(ios, receptionHandler));
   }
 
   /**
@@ -399,11 +1028,24 @@ public abstract class GENTransport implements MALTransport
    */
   public void receive(final byte[] rawMessage, GENReceptionHandler receptionHandler)
   {
-    asyncInputReceptionProcessor.submit(new GENIncomingMessageReceiver(rawMessage, receptionHandler));
+    getReceptionProcessor(receptionHandler).submit(new GENIncomingMessageReceiver(rawMessage, receptionHandler));
+  }
+
+  /**
+   * Decodes a received packet on the calling thread rather than handing it to a reception thread first, the decoded
+   * message is then dispatched for processing as normal. For transports that already read each connection on its own
+   * thread and so gain nothing from the extra hand off.
+   *
+   * @param rawMessage The raw message being received.
+   * @param receptionHandler NULL if the transport does not support bi-directional communications
+   */
+  public void receiveDirect(final byte[] rawMessage, GENReceptionHandler receptionHandler)
+  {
+    new GENIncomingMessageReceiver(rawMessage, receptionHandler).run();
   }
 
   /**
-   * The main exit point for messages from this transport.
+   * The main exit point for messages from this transport. Blocks until there has been an attempt to send the message.
    *
    * @param multiSendHandle A context handle for multi send
    * @param lastForHandle True if that is the last message in a multi send for the handle
@@ -414,58 +1056,115 @@ public abstract class GENTransport implements MALTransport
           final boolean lastForHandle,
           final GENMessage msg) throws MALTransmitErrorException
   {
+    final GENOutgoingMessageHolder outgoingPacket = sendMessageAsync(multiSendHandle, lastForHandle, msg, null);
+
+    try
+    {
+      if (!outgoingPacket.getResult())
+      {
+        // data was not sent succesfully, throw an exception for the
+        // higher MAL layers
+        throw new MALTransmitErrorException(msg.getHeader(), new MALStandardError(MALHelper.DELIVERY_FAILED_ERROR_NUMBER, null), null);
+      }
+
+      if (LOGGER.isLoggable(Level.FINER))
+      {
+        LOGGER.log(Level.FINER, "GEN finished Sending data to {0}", outgoingPacket.getDestinationRootURI());
+      }
+    }
+    catch (InterruptedException e)
+    {
+      LOGGER.log(Level.SEVERE, "Interrupted while waiting for data reply", e);
+      throw new MALTransmitErrorException(msg.getHeader(), new MALStandardError(MALHelper.INTERNAL_ERROR_NUMBER, null), null);
+    }
+  }
+
+  /**
+   * Non-blocking exit point for messages from this transport. The message is encoded and queued for sending, the
+   * result is then provided through the returned holder and the optional listener. This allows callers to have many
+   * messages in flight at the same time.
+   *
+   * @param multiSendHandle A context handle for multi send
+   * @param lastForHandle True if that is the last message in a multi send for the handle
+   * @param msg The message to send.
+   * @param listener The listener to inform once the message has been sent, may be null.
+   * @return the holder of the queued message.
+   * @throws MALTransmitErrorException If the message cannot be encoded or queued for sending.
+   */
+  public GENOutgoingMessageHolder sendMessageAsync(final Object multiSendHandle,
+          final boolean lastForHandle,
+          final GENMessage msg,
+          final GENOutgoingMessageListener listener) throws MALTransmitErrorException
+  {
+    // get the root URI, (e.g. tcpip://10.0.0.1:61616 )
+    String destinationURI = msg.getHeader().getURITo().getValue();
+    String remoteRootURI = getRootURI(destinationURI);
+
     // first check if its actually a message to ourselves
-    String endpointUriPart = getRoutingPart(msg.getHeader().getURITo().getValue(), serviceDelim, routingDelim, supportsRouting);
+    String endpointUriPart = getRoutingPart(destinationURI, serviceDelim, routingDelim, supportsRouting);
 
     if (endpointMap.containsKey(endpointUriPart))
     {
-      LOGGER.log(Level.INFO, "GEN routing msg internally to {0}", new Object[]
+      if (LOGGER.isLoggable(Level.FINE))
       {
-        endpointUriPart
-      });
+        LOGGER.log(Level.FINE, "GEN routing msg internally to {0}", endpointUriPart);
+      }
 
       // if local then just send internally
       processIncomingMessage(msg, "");
+
+      GENOutgoingMessageHolder outgoingPacket = new GENOutgoingMessageHolder(remoteRootURI, destinationURI, multiSendHandle, lastForHandle, (byte[]) null, listener);
+      outgoingPacket.setResult(Boolean.TRUE);
+
+      return outgoingPacket;
     }
     else
     {
       try
       {
-        // get the root URI, (e.g. tcpip://10.0.0.1:61616 )
-        String destinationURI = msg.getHeader().getURITo().getValue();
-        String remoteRootURI = getRootURI(destinationURI);
-
-        LOGGER.log(Level.INFO, "GEN sending msg. Target root URI: {0} full URI:{1}", new Object[]
+        if (LOGGER.isLoggable(Level.FINE))
         {
-          remoteRootURI, destinationURI
-        });
+          LOGGER.log(Level.FINE, "GEN sending msg. Target root URI: {0} full URI:{1}", new Object[]
+          {
+            remoteRootURI, destinationURI
+          });
+        }
 
         // get outgoing channel
         GENConcurrentMessageSender dataSender = manageCommunicationChannel(msg, false, null);
 
-        GENOutgoingMessageHolder outgoingPacket = internalEncodeMessage(remoteRootURI, destinationURI, multiSendHandle, lastForHandle, dataSender.getTargetURI(), msg);
+        GENOutgoingMessageHolder outgoingPacket = internalEncodeMessage(remoteRootURI, destinationURI, multiSendHandle, lastForHandle, dataSender.getTargetURI(), msg, listener);
 
-        dataSender.sendMessage(outgoingPacket);
+        final boolean queued;
+        try
+        {
+          queued = dataSender.sendMessage(outgoingPacket);
+        }
+        catch (InterruptedException ex)
+        {
+          Thread.currentThread().interrupt();
+          throw new MALTransmitErrorException(msg.getHeader(), new MALStandardError(MALHelper.INTERNAL_ERROR_NUMBER, new Union("Interrupted while waiting for space in the send queue")), null);
+        }
+
+        if (!queued)
+        {
+          // the send queue is full and the overload policy rejected the message
+          throw new MALTransmitErrorException(msg.getHeader(), new MALStandardError(MALHelper.DELIVERY_FAILED_ERROR_NUMBER, new Union("Send queue full")), null);
+        }
 
-        if (!outgoingPacket.getResult())
+        // open another connection if the channel is busy
+        if (dataSender.requestConnection())
         {
-          // data was not sent succesfully, throw an exception for the
-          // higher MAL layers
-          throw new MALTransmitErrorException(msg.getHeader(), new MALStandardError(MALHelper.DELIVERY_FAILED_ERROR_NUMBER, null), null);
+          growCommunicationChannel(dataSender, msg, remoteRootURI);
         }
 
-        LOGGER.log(Level.INFO, "GEN finished Sending data to {0}", remoteRootURI);
+        return outgoingPacket;
       }
       catch (MALTransmitErrorException e)
       {
         // this stops any true MAL exceptoins getting caught by the generic catch all below
         throw e;
       }
-      catch (InterruptedException e)
-      {
-        LOGGER.log(Level.SEVERE, "Interrupted while waiting for data reply", e);
-        throw new MALTransmitErrorException(msg.getHeader(), new MALStandardError(MALHelper.INTERNAL_ERROR_NUMBER, null), null);
-      }
       catch (Exception t)
       {
         LOGGER.log(Level.SEVERE, "GEN could not send message!", t);
@@ -475,11 +1174,13 @@ public abstract class GENTransport implements MALTransport
   }
 
   /**
-   * Used to request the transport close a connection with a client. In this case the transport will terminate all
-   * communication channels with the destination in order for them to be re-established.
+   * Used to request the transport close a connection with a client. If a reception handler is given only its
+   * connection is removed from the communication channel to the destination, the other connections carry on sending
+   * the queued messages. The whole channel is terminated, failing any messages still queued, when no reception handler
+   * is given or it held the last connection of the channel.
    *
-   * @param uriTo the connection handler that received this message
-   * @param receptionHandler
+   * @param uriTo the remote root URI, may be null if a reception handler is given
+   * @param receptionHandler the reception handler of the connection to close, may be null
    */
   public void closeConnection(final String uriTo, final GENReceptionHandler receptionHandler)
   {
@@ -495,8 +1196,19 @@ public abstract class GENTransport implements MALTransport
       GENConcurrentMessageSender commsChannel = outgoingDataChannels.get(localUriTo);
       if (commsChannel != null)
       {
-        commsChannel.terminate();
-        outgoingDataChannels.remove(localUriTo);
+        if ((null != receptionHandler) && !commsChannel.removeProcessor(receptionHandler.getMessageSender()))
+        {
+          // the connection is not, or no longer, one of the processors of the channel, for example an idle connection
+          // that has been closed, so the channel is left as it is
+          LOGGER.log(Level.FINE, "Closing connection not used for sending to URI : {0} ", localUriTo);
+        }
+        else if (((null == receptionHandler) || (0 == commsChannel.getNumberOfProcessors()))
+                && outgoingDataChannels.remove(localUriTo, commsChannel))
+        {
+          // only close the whole channel when asked to or when this was its last connection
+          metrics.removeChannelMetrics(localUriTo, commsChannel);
+          commsChannel.terminate();
+        }
       }
       else
       {
@@ -511,17 +1223,27 @@ public abstract class GENTransport implements MALTransport
   }
 
   /**
-   * Used to inform the transport about communication problems with clients. In this case the transport will terminate
-   * all communication channels with the destination in order for them to be re-established.
+   * Used to inform the transport about communication problems with clients. The connection is closed as for
+   * closeConnection, so the whole communication channel with the destination is only terminated when no reception
+   * handler is given or it held the last connection. Known peers are then reconnected to.
    *
-   * @param uriTo the connection handler that received this message
-   * @param receptionHandler
+   * @param uriTo the remote root URI, may be null if a reception handler is given
+   * @param receptionHandler the reception handler of the failed connection, may be null
    */
   public void communicationError(String uriTo, GENReceptionHandler receptionHandler)
   {
     LOGGER.log(Level.WARNING, "GEN Communication Error with {0} ", uriTo);
 
     closeConnection(uriTo, receptionHandler);
+
+    final String remoteRootURI = ((null == uriTo) && (null != receptionHandler)) ? receptionHandler.getRemoteURI() : uriTo;
+
+    // reconnect to known peers straight away rather than waiting for the next message to them
+    if ((null != remoteRootURI) && peerURIs.contains(remoteRootURI) && !closed
+            && (null == connectingPeers.putIfAbsent(remoteRootURI, Boolean.TRUE)))
+    {
+      scheduleConnectToPeer(remoteRootURI, reconnectBackoff);
+    }
   }
 
   @Override
@@ -540,6 +1262,13 @@ public abstract class GENTransport implements MALTransport
   @Override
   public void close() throws MALException
   {
+    closed = true;
+
+    if (null != reconnectTimer)
+    {
+      reconnectTimer.shutdownNow();
+    }
+
     for (Map.Entry<String, GENEndpoint> entry : endpointMap.entrySet())
     {
       entry.getValue().close();
@@ -547,8 +1276,12 @@ public abstract class GENTransport implements MALTransport
 
     endpointMap.clear();
 
-    asyncInputReceptionProcessor.shutdown();
+    for (ExecutorService receptionProcessor : asyncInputReceptionProcessors)
+    {
+      receptionProcessor.shutdown();
+    }
     asyncInputDataProcessors.shutdown();
+    connectionExecutor.shutdown();
 
     for (Map.Entry<String, GENConcurrentMessageSender> entry : outgoingDataChannels.entrySet())
     {
@@ -558,6 +1291,8 @@ public abstract class GENTransport implements MALTransport
     }
 
     outgoingDataChannels.clear();
+
+    metrics.unregister();
   }
 
   /**
@@ -567,42 +1302,7 @@ public abstract class GENTransport implements MALTransport
    */
   protected void receiveIncomingMessage(final MessageDetails malMsg)
   {
-    synchronized (transactionQueues)
-    {
-      GENIncomingMessageProcessor proc = transactionQueues.get(malMsg.transactionId);
-
-      if (null == proc)
-      {
-        proc = new GENIncomingMessageProcessor(malMsg);
-        transactionQueues.put(malMsg.transactionId, proc);
-        asyncInputDataProcessors.submit(proc);
-      }
-      else
-      {
-        if (proc.addMessage(malMsg))
-        {
-          // need to resubmit this to the processing threads
-          asyncInputDataProcessors.submit(proc);
-        }
-      }
-
-      Set<Long> transactionsToRemove = new HashSet<Long>();
-      for (Map.Entry<Long, GENIncomingMessageProcessor> entrySet : transactionQueues.entrySet())
-      {
-        Long key = entrySet.getKey();
-        GENIncomingMessageProcessor lproc = entrySet.getValue();
-
-        if (lproc.isFinished())
-        {
-          transactionsToRemove.add(key);
-        }
-      }
-
-      for (Long transId : transactionsToRemove)
-      {
-        transactionQueues.remove(transId);
-      }
-    }
+    transactionDispatcher.dispatch(malMsg.transactionId, malMsg);
   }
 
   /**
@@ -616,10 +1316,13 @@ public abstract class GENTransport implements MALTransport
   {
     try
     {
-      LOGGER.log(Level.INFO, "GEN Processing message : {0} : {1}", new Object[]
+      if (LOGGER.isLoggable(Level.FINE))
       {
-        msg.getHeader().getTransactionId(), smsg
-      });
+        LOGGER.log(Level.FINE, "GEN Processing message : {0} : {1}", new Object[]
+        {
+          msg.getHeader().getTransactionId(), smsg
+        });
+      }
 
       String endpointUriPart = getRoutingPart(msg.getHeader().getURITo().getValue(), serviceDelim, routingDelim, supportsRouting);
 
@@ -627,7 +1330,10 @@ public abstract class GENTransport implements MALTransport
 
       if (null != oSkel)
       {
-        LOGGER.log(Level.INFO, "GEN Passing to message handler " + oSkel.getLocalName() + " : {0}", smsg);
+        if (LOGGER.isLoggable(Level.FINER))
+        {
+          LOGGER.log(Level.FINER, "GEN Passing to message handler " + oSkel.getLocalName() + " : {0}", smsg);
+        }
         oSkel.receiveMessage(msg);
       }
       else
@@ -827,13 +1533,17 @@ public abstract class GENTransport implements MALTransport
    * communication channel on incoming messages in case of bi-directional transports for re-use. If there is no
    * communication channel for sending a message the transport creates and registers it.
    *
+   * No lock is taken when the channel already exists. If it does not then the first thread to ask for it creates it,
+   * and any other threads sending to the same URI wait for that thread to finish, threads sending to other URIs are not
+   * affected.
+   *
    * @param msg The message received or to be sent
    * @param isIncomingMsgDirection the message direction
    * @param receptionHandler the message reception handler, null if the message is an outgoing message
    * @return returns an existing or newly created message sender
    * @throws MALTransmitErrorException in case of communication problems
    */
-  protected synchronized GENConcurrentMessageSender manageCommunicationChannel(GENMessage msg, boolean isIncomingMsgDirection, GENReceptionHandler receptionHandler) throws MALTransmitErrorException
+  protected GENConcurrentMessageSender manageCommunicationChannel(final GENMessage msg, boolean isIncomingMsgDirection, GENReceptionHandler receptionHandler) throws MALTransmitErrorException
   {
     GENConcurrentMessageSender sender = null;
 
@@ -858,60 +1568,289 @@ public abstract class GENTransport implements MALTransport
     {
       // outgoing message
       // get target URI
-      String remoteRootURI = getRootURI(msg.getHeader().getURITo().getValue());
+      sender = getCommunicationChannel(msg, getRootURI(msg.getHeader().getURITo().getValue()));
+    }
+
+    return sender;
+  }
+
+  /**
+   * Returns the communication channel to a URI, creating it if needed.
+   *
+   * @param msg The message to be sent, null if the channel is opened in advance
+   * @param remoteRootURI the remote root URI
+   * @return returns an existing or newly created message sender
+   * @throws MALTransmitErrorException in case of communication problems
+   */
+  private GENConcurrentMessageSender getCommunicationChannel(final GENMessage msg, final String remoteRootURI)
+          throws MALTransmitErrorException
+  {
+    // get sender if it exists
+    final GENConcurrentMessageSender sender = outgoingDataChannels.get(remoteRootURI);
+
+    if (null != sender)
+    {
+      return sender;
+    }
+
+    // we do not have any channel for this URI, only one thread creates it
+    final FutureTask<GENConcurrentMessageSender> task
+            = new FutureTask<GENConcurrentMessageSender>(new Callable<GENConcurrentMessageSender>()
+            {
+              @Override
+              public GENConcurrentMessageSender call() throws Exception
+              {
+                return createCommunicationChannel(msg, remoteRootURI);
+              }
+            });
+
+    FutureTask<GENConcurrentMessageSender> pending = pendingDataChannels.putIfAbsent(remoteRootURI, task);
 
-      // get sender if it exists
-      sender = outgoingDataChannels.get(remoteRootURI);
+    if (null == pending)
+    {
+      pending = task;
 
-      if (null == sender)
+      try
+      {
+        task.run();
+      }
+      finally
       {
-        // we do not have any channel for this URI
-        // try to create a set of connections to this URI 
-        LOGGER.log(Level.INFO, "GEN received request to create connections to URI:{0}", remoteRootURI);
+        // the channel is registered by now, so later senders will find it directly
+        pendingDataChannels.remove(remoteRootURI, task);
+      }
+    }
 
-        try
-        {
-          // create new sender for this URI
-          sender = registerMessageSender(createMessageSender(msg, remoteRootURI), remoteRootURI);
+    return waitForCommunicationChannel(msg, remoteRootURI, pending);
+  }
 
-          LOGGER.log(Level.INFO, "GEN opening {0}", numConnections);
+  /**
+   * Attempts to open the communication channel to a known peer in the background, trying again after an increasing
+   * delay if it fails.
+   *
+   * @param peer the root URI of the peer
+   * @param lastDelay the delay, in milliseconds, before this attempt
+   */
+  private void connectToPeer(final String peer, final long lastDelay)
+  {
+    try
+    {
+      connectionExecutor.execute(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          if (closed)
+          {
+            return;
+          }
 
-          for (int i = 1; i < numConnections; i++)
+          try
           {
-            // insert new processor (message sender) to root data sender for the URI
-            sender.addProcessor(createMessageSender(msg, remoteRootURI), remoteRootURI);
+            LOGGER.log(Level.FINE, "GEN connecting to peer URI:{0}", peer);
+            getCommunicationChannel(null, peer);
+            connectingPeers.remove(peer);
+            LOGGER.log(Level.INFO, "GEN connected to peer URI:{0}", peer);
+          }
+          catch (MALTransmitErrorException ex)
+          {
+            final long delay = (0 == lastDelay) ? reconnectBackoff : Math.min(lastDelay * 2, reconnectMaxBackoff);
+
+            LOGGER.log(Level.FINE, "GEN could not connect to peer {0}, retrying in {1} ms", new Object[]
+            {
+              peer, delay
+            });
+            scheduleConnectToPeer(peer, delay);
           }
         }
-        catch (MALException e)
+      });
+    }
+    catch (RejectedExecutionException ex)
+    {
+      // the transport is closing
+      connectingPeers.remove(peer);
+    }
+  }
+
+  /**
+   * Schedules an attempt to open the communication channel to a known peer.
+   *
+   * @param peer the root URI of the peer
+   * @param delay the delay, in milliseconds, before the attempt
+   */
+  private void scheduleConnectToPeer(final String peer, final long delay)
+  {
+    try
+    {
+      reconnectTimer.schedule(new Runnable()
+      {
+        @Override
+        public void run()
         {
-          LOGGER.log(Level.WARNING, "GEN could not connect to :" + remoteRootURI, e);
-          throw new MALTransmitErrorException(msg.getHeader(),
-                  new MALStandardError(MALHelper.DESTINATION_UNKNOWN_ERROR_NUMBER, null), null);
+          connectToPeer(peer, delay);
         }
-      }
+      }, delay, TimeUnit.MILLISECONDS);
+    }
+    catch (RejectedExecutionException ex)
+    {
+      // the transport is closing
+      connectingPeers.remove(peer);
+    }
+  }
+
+  /**
+   * Creates and registers the set of connections to a URI.
+   *
+   * @param msg The message to be sent, null if the channel is opened in advance
+   * @param remoteRootURI the remote root URI
+   * @return returns the newly created message sender
+   * @throws MALException in case of communication problems
+   * @throws MALTransmitErrorException in case of communication problems
+   */
+  private GENConcurrentMessageSender createCommunicationChannel(final GENMessage msg, final String remoteRootURI)
+          throws MALException, MALTransmitErrorException
+  {
+    // try to create a set of connections to this URI 
+    LOGGER.log(Level.INFO, "GEN received request to create connections to URI:{0}", remoteRootURI);
+
+    // create new sender for this URI
+    final GENConcurrentMessageSender sender
+            = registerMessageSender(createMessageSender(msg, remoteRootURI), remoteRootURI);
+
+    LOGGER.log(Level.INFO, "GEN opening {0}", minConnections);
+
+    for (int i = 1; i < minConnections; i++)
+    {
+      // insert new processor (message sender) to root data sender for the URI
+      sender.addProcessor(createMessageSender(msg, remoteRootURI), remoteRootURI);
     }
 
     return sender;
   }
 
+  /**
+   * Opens another connection for a busy channel in the background.
+   *
+   * @param sender The channel
+   * @param msg The message that found the channel busy
+   * @param remoteRootURI the remote root URI
+   */
+  private void growCommunicationChannel(final GENConcurrentMessageSender sender,
+          final GENMessage msg,
+          final String remoteRootURI)
+  {
+    try
+    {
+      connectionExecutor.execute(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          try
+          {
+            LOGGER.log(Level.FINE, "GEN opening additional connection to URI:{0}", remoteRootURI);
+            sender.addProcessor(createMessageSender(msg, remoteRootURI), remoteRootURI);
+          }
+          catch (MALException ex)
+          {
+            LOGGER.log(Level.WARNING, "GEN could not open additional connection to :" + remoteRootURI, ex);
+          }
+          catch (MALTransmitErrorException ex)
+          {
+            LOGGER.log(Level.WARNING, "GEN could not open additional connection to :" + remoteRootURI, ex);
+          }
+          finally
+          {
+            sender.connectionRequestCompleted();
+          }
+        }
+      });
+    }
+    catch (RejectedExecutionException ex)
+    {
+      // the transport is closing
+      sender.connectionRequestCompleted();
+    }
+  }
+
+  /**
+   * Waits for the creation of the connections to a URI to complete.
+   *
+   * @param msg The message to be sent, null if the channel is opened in advance
+   * @param remoteRootURI the remote root URI
+   * @param pending the channel creation task
+   * @return returns the created message sender
+   * @throws MALTransmitErrorException if the channel could not be created
+   */
+  private GENConcurrentMessageSender waitForCommunicationChannel(final GENMessage msg,
+          final String remoteRootURI,
+          final FutureTask<GENConcurrentMessageSender> pending) throws MALTransmitErrorException
+  {
+    try
+    {
+      return pending.get();
+    }
+    catch (ExecutionException ex)
+    {
+      if (ex.getCause() instanceof MALTransmitErrorException)
+      {
+        throw (MALTransmitErrorException) ex.getCause();
+      }
+
+      LOGGER.log(Level.WARNING, "GEN could not connect to :" + remoteRootURI, ex.getCause());
+    }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+      LOGGER.log(Level.WARNING, "GEN interrupted waiting for connection to :" + remoteRootURI, ex);
+    }
+
+    throw new MALTransmitErrorException(headerOf(msg),
+            new MALStandardError(MALHelper.DESTINATION_UNKNOWN_ERROR_NUMBER, null), null);
+  }
+
   /**
    * Registers a message sender for a given root URI. If this is the first data sender for the URI, it also creates a
    * GENConcurrentMessageSender to manage all the senders. If there are already enough connections (numConnections) to
    * the given URI the method does not register the sender. This ensures that we will have at maximum numConnections to
    * the target root URI.
    *
+   * Safe to call concurrently, only the check and add of the processor is serialised and only per URI.
+   *
    * @param dataTransmitter The data sender that is able to send messages to the URI
    * @param remoteRootURI the remote root URI
    * @return returns the GENConcurrentMessageSender for this URI.
    */
-  protected synchronized GENConcurrentMessageSender registerMessageSender(GENMessageSender dataTransmitter, String remoteRootURI)
+  protected GENConcurrentMessageSender registerMessageSender(GENMessageSender dataTransmitter, String remoteRootURI)
   {
     //check if we already have a communication channel for this URI
     GENConcurrentMessageSender dataSender = outgoingDataChannels.get(remoteRootURI);
-    if (dataSender != null)
+    if (dataSender == null)
+    {
+      //we do not have a communication channel, create a data sender manager and add the first data sender
+      // create new sender manager for this URI
+      LOGGER.log(Level.INFO, "GEN creating data sender manager for URI:{0}", remoteRootURI);
+      final GENConcurrentMessageSender newSender = new GENConcurrentMessageSender(this, remoteRootURI);
+
+      dataSender = outgoingDataChannels.putIfAbsent(remoteRootURI, newSender);
+
+      if (dataSender == null)
+      {
+        LOGGER.log(Level.INFO, "GEN registering data sender for URI:{0}", remoteRootURI);
+
+        // insert new processor (message sender) to root data sender for the URI, messages sent by other threads since
+        // the sender was published are queued and wait for it
+        newSender.addProcessor(dataTransmitter, remoteRootURI);
+        metrics.getChannelMetrics(remoteRootURI).setSender(newSender);
+
+        return newSender;
+      }
+    }
+
+    //we already have a communication channel for this URI
+    //check if we have enough connections for the URI, if not then add the data sender 
+    synchronized (dataSender)
     {
-      //we already have a communication channel for this URI
-      //check if we have enough connections for the URI, if not then add the data sender 
       if (dataSender.getNumberOfProcessors() < numConnections)
       {
         LOGGER.log(Level.INFO, "GEN registering data sender for URI:{0}", remoteRootURI);
@@ -919,19 +1858,6 @@ public abstract class GENTransport implements MALTransport
         dataSender.addProcessor(dataTransmitter, remoteRootURI);
       }
     }
-    else
-    {
-      //we do not have a communication channel, create a data sender manager and add the first data sender
-      // create new sender manager for this URI
-      LOGGER.log(Level.INFO, "GEN creating data sender manager for URI:{0}", remoteRootURI);
-      dataSender = new GENConcurrentMessageSender(this, remoteRootURI);
-
-      LOGGER.log(Level.INFO, "GEN registering data sender for URI:{0}", remoteRootURI);
-      outgoingDataChannels.put(remoteRootURI, dataSender);
-
-      // insert new processor (message sender) to root data sender for the URI
-      dataSender.addProcessor(dataTransmitter, remoteRootURI);
-    }
 
     return dataSender;
   }
@@ -945,6 +1871,7 @@ public abstract class GENTransport implements MALTransport
    * @param lastForHandle true if last message in a multi send.
    * @param targetURI The target URI.
    * @param msg The message to send.
+   * @param listener The listener to inform once the message has been sent, may be null.
    * @return The message holder for the outgoing message.
    * @throws Exception if an error.
    */
@@ -953,26 +1880,34 @@ public abstract class GENTransport implements MALTransport
           final Object multiSendHandle,
           final boolean lastForHandle,
           final String targetURI,
-          final GENMessage msg) throws Exception
+          final GENMessage msg,
+          final GENOutgoingMessageListener listener) throws Exception
   {
-    // encode the message
+    // encode the message in to a pooled buffer, it is released once the message has been sent
+    final GENEncodeBuffer buffer = GENEncodeBuffer.acquire();
     try
     {
-      final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-      final MALElementOutputStream enc = getStreamFactory().createOutputStream(baos);
-      msg.encodeMessage(getStreamFactory(), enc, baos);
-      byte[] data = baos.toByteArray();
+      final long start = System.nanoTime();
+      final MALElementOutputStream enc = getStreamFactory().createOutputStream(buffer);
+      msg.encodeMessage(getStreamFactory(), enc, buffer);
+      metrics.messageEncoded(System.nanoTime() - start);
+
+      final GENOutgoingMessageHolder outgoingPacket = new GENOutgoingMessageHolder(destinationRootURI, destinationURI, multiSendHandle, lastForHandle, msg.getHeader(), buffer, listener);
 
       // message is encoded!
-      LOGGER.log(Level.INFO, "GEN Sending data to {0} : {1}", new Object[]
+      if (LOGGER.isLoggable(Level.FINE))
       {
-        targetURI, packetToString(data)
-      });
+        LOGGER.log(Level.FINE, "GEN Sending data to {0} : {1}", new Object[]
+        {
+          targetURI, logFullDebug ? packetToString(outgoingPacket.getEncodedMessage()) : ""
+        });
+      }
 
-      return new GENOutgoingMessageHolder(destinationRootURI, destinationURI, multiSendHandle, lastForHandle, data);
+      return outgoingPacket;
     }
     catch (MALException ex)
     {
+      buffer.release();
       LOGGER.log(Level.SEVERE, "GEN could not encode message!", ex);
       throw new MALTransmitErrorException(msg.getHeader(), new MALStandardError(MALHelper.BAD_ENCODING_ERROR_NUMBER, null), null);
     }
@@ -990,7 +1925,7 @@ public abstract class GENTransport implements MALTransport
    * Method to be implemented by the transport in order to return a message sender capable if sending messages to a
    * target root URI.
    *
-   * @param msg the message to be send
+   * @param msg the message to be send, null if the connection is opened in advance of any message
    * @param remoteRootURI the remote root URI.
    * @return returns a message sender capable of sending messages to the target URI
    * @throws MALException in case of error trying to create the communication channel
@@ -998,6 +1933,17 @@ public abstract class GENTransport implements MALTransport
    */
   protected abstract GENMessageSender createMessageSender(GENMessage msg, String remoteRootURI) throws MALException, MALTransmitErrorException;
 
+  /**
+   * Returns the header of a message for reporting errors, the message may be null.
+   *
+   * @param msg the message, may be null.
+   * @return the message header or null.
+   */
+  protected static MALMessageHeader headerOf(GENMessage msg)
+  {
+    return (null == msg) ? null : msg.getHeader();
+  }
+
   /**
    * Simple structure class for holding related aspects of a decoded MAL message.
    */
@@ -1080,6 +2026,7 @@ public abstract class GENTransport implements MALTransport
       {
         String smsg;
         GENMessage malMsg;
+        final long start = System.nanoTime();
 
         if (null == rawMessage)
         {
@@ -1093,11 +2040,27 @@ public abstract class GENTransport implements MALTransport
           smsg = packetToString(rawMessage);
           malMsg = createMessage(rawMessage);
         }
-        LOGGER.log(Level.INFO, "GEN Receving message : {0}", smsg);
+        metrics.messageDecoded(System.nanoTime() - start);
+
+        if (LOGGER.isLoggable(Level.FINE))
+        {
+          LOGGER.log(Level.FINE, "GEN Receving message : {0}", smsg);
+        }
 
         //register communication channel if needed
         manageCommunicationChannel(malMsg, true, receptionHandler);
 
+        // attribute the message to the remote root URI if the reception handler knows it
+        final int size = (null == rawMessage) ? 0 : rawMessage.length;
+        if ((null != receptionHandler) && (null != receptionHandler.getRemoteURI()))
+        {
+          metrics.getChannelMetrics(receptionHandler.getRemoteURI()).messageReceived(size);
+        }
+        else
+        {
+          metrics.messageReceived(size);
+        }
+
         receiveIncomingMessage(new MessageDetails(malMsg.getHeader().getTransactionId(), malMsg, smsg));
       }
       catch (MALException e)
@@ -1114,82 +2077,107 @@ public abstract class GENTransport implements MALTransport
   }
 
   /**
-   * This Runnable task is responsible for processing the already decoded message. It holds a queue of messages split on
-   * transaction id so that messages with the same transaction id get processed in reception order.
+   * Splits a comma separated list of peer root URIs.
    *
+   * @param peers The list.
+   * @return the root URIs.
    */
-  private final class GENIncomingMessageProcessor implements Runnable
+  private static List<String> parsePeers(String peers)
   {
-    private final Queue<MessageDetails> malMsgs = new ArrayDeque<MessageDetails>();
-    private boolean finished = false;
+    final List<String> uris = new ArrayList<String>();
 
-    /**
-     * Constructor
-     *
-     * @param malMsg The MAL message.
-     */
-    public GENIncomingMessageProcessor(final MessageDetails malMsg)
+    for (String peer : peers.split(","))
     {
-      malMsgs.add(malMsg);
+      final String uri = peer.trim();
+
+      if (0 < uri.length())
+      {
+        uris.add(uri);
+      }
     }
 
-    /**
-     * Adds a message to the internal queue. If the thread associated with this executor has finished it resets the flag
-     * and returns true to indicate that it should be resubmitted for more processing to the Executor pool.
-     *
-     * @param malMsg The decoded message.
-     * @return True if this needs to be resubmitted to the processing executor pool.
-     */
-    public synchronized boolean addMessage(final MessageDetails malMsg)
-    {
-      malMsgs.add(malMsg);
+    return Collections.unmodifiableList(uris);
+  }
 
-      if (finished)
-      {
-        finished = false;
+  /**
+   * Converts the name of an overload policy to its value.
+   *
+   * @param policy The policy name.
+   * @return the GENConcurrentMessageSender overload policy, block if the name is not known.
+   */
+  private static int parseOverloadPolicy(String policy)
+  {
+    if ("fail".equalsIgnoreCase(policy))
+    {
+      return GENConcurrentMessageSender.OVERLOAD_FAIL;
+    }
 
-        // need to resubmit this to the processing threads
-        return true;
-      }
+    if ("dropbesteffort".equalsIgnoreCase(policy))
+    {
+      return GENConcurrentMessageSender.OVERLOAD_DROP_BEST_EFFORT;
+    }
 
-      return false;
+    if (!"block".equalsIgnoreCase(policy))
+    {
+      LOGGER.log(Level.WARNING, "GEN unknown overload policy {0}, blocking instead", policy);
     }
 
-    /**
-     * Returns true if this thread has finished processing its queue.
-     *
-     * @return True if finished processing queue.
-     */
-    public boolean isFinished()
+    return GENConcurrentMessageSender.OVERLOAD_BLOCK;
+  }
+
+  /**
+   * Creates the threads that decode incoming raw packets.
+   *
+   * @param numThreads The number of threads.
+   * @return the reception threads.
+   */
+  private static ExecutorService[] createReceptionProcessors(int numThreads)
+  {
+    final ExecutorService[] processors = new ExecutorService[Math.max(1, numThreads)];
+
+    for (int i = 0; i < processors.length; i++)
     {
-      return finished;
+      processors[i] = Executors.newSingleThreadExecutor();
     }
 
-    @Override
-    public void run()
+    return processors;
+  }
+
+  /**
+   * Returns the reception thread for a reception handler. Packets from the same reception handler always go to the same
+   * thread to preserve their arrival order. Packets without a reception handler all go to the first thread.
+   *
+   * @param receptionHandler The reception handler, may be null.
+   * @return the reception thread.
+   */
+  private ExecutorService getReceptionProcessor(GENReceptionHandler receptionHandler)
+  {
+    if ((null == receptionHandler) || (1 == asyncInputReceptionProcessors.length))
     {
-      MessageDetails msg;
+      return asyncInputReceptionProcessors[0];
+    }
 
-      synchronized (this)
-      {
-        msg = malMsgs.poll();
-      }
+    final int hash = System.identityHashCode(receptionHandler) & Integer.MAX_VALUE;
+    return asyncInputReceptionProcessors[hash % asyncInputReceptionProcessors.length];
+  }
 
-      while (null != msg)
+  /**
+   * Creates the dispatcher that passes decoded messages to the input processors so that messages with the same
+   * transaction id get processed in reception order.
+   *
+   * @return the new dispatcher.
+   */
+  private GENTransactionDispatcher<MessageDetails> createTransactionDispatcher()
+  {
+    return new GENTransactionDispatcher<MessageDetails>(asyncInputDataProcessors,
+            new GENTransactionDispatcher.MessageProcessor<MessageDetails>()
+    {
+      @Override
+      public void processMessage(MessageDetails msg)
       {
         // send message for further processing and routing
         processIncomingMessage(msg.malMsg, msg.smsg);
-
-        synchronized (this)
-        {
-          msg = malMsgs.poll();
-
-          if (null == msg)
-          {
-            finished = true;
-          }
-        }
       }
-    }
+    });
   }
 }
@@ -22,14 +22,14 @@ package esa.mo.mal.transport.gen.body;
 
 import esa.mo.mal.encoder.gen.GENElementInputStream;
 import esa.mo.mal.transport.gen.GENTransport;
+import esa.mo.mal.transport.gen.util.GENEncodeBuffer;
+import esa.mo.mal.transport.gen.util.GENJAXBContextCache;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.logging.Level;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
@@ -215,7 +215,10 @@ public class GENMessageBody implements MALMessageBody, java.io.Serializable
     {
       final int count = getElementCount();
 
-      GENTransport.LOGGER.log(Level.INFO, "GEN Message encoding body ... pc ({0})", count);
+      if (GENTransport.LOGGER.isLoggable(Level.FINER))
+      {
+        GENTransport.LOGGER.log(Level.FINER, "GEN Message encoding body ... pc ({0})", count);
+      }
 
       // if we only have a single body part then encode that directly
       if (count == 1)
@@ -227,34 +230,44 @@ public class GENMessageBody implements MALMessageBody, java.io.Serializable
       else if (count > 1)
       {
         MALElementOutputStream benc = enc;
-        ByteArrayOutputStream bbaos = null;
+        GENEncodeBuffer bbaos = null;
 
         if (wrappedBodyParts)
         {
           // we have more than one body part, therefore encode each part into a separate byte buffer, and then encode
           // that byte buffer as a whole. This allows use to be able to return the complete body of the message as a
           // single unit if required.
-          bbaos = new ByteArrayOutputStream();
+          bbaos = GENEncodeBuffer.acquire();
           benc = streamFactory.createOutputStream(bbaos);
         }
 
-        for (int i = 0; i < count; i++)
+        try
         {
-          Object sf = null;
-          if ((null != ctx) && !ctx.getHeader().getIsErrorMessage())
+          for (int i = 0; i < count; i++)
           {
-            ctx.setBodyElementIndex(i);
-            sf = ctx.getOperation().getOperationStage(stage).getElementShortForms()[i];
+            Object sf = null;
+            if ((null != ctx) && !ctx.getHeader().getIsErrorMessage())
+            {
+              ctx.setBodyElementIndex(i);
+              sf = ctx.getOperation().getOperationStage(stage).getElementShortForms()[i];
+            }
+            encodeBodyPart(streamFactory, benc, wrappedBodyParts, sf, getBodyElement(i, null), ctx);
           }
-          encodeBodyPart(streamFactory, benc, wrappedBodyParts, sf, getBodyElement(i, null), ctx);
-        }
 
-        if (wrappedBodyParts)
-        {
-          benc.flush();
-          benc.close();
+          if (wrappedBodyParts)
+          {
+            benc.flush();
+            benc.close();
 
-          enc.writeElement(new Blob(bbaos.toByteArray()), null);
+            enc.writeElement(new Blob(bbaos.toByteArray()), null);
+          }
+        }
+        finally
+        {
+          if (null != bbaos)
+          {
+            bbaos.release();
+          }
         }
       }
     }
@@ -277,42 +290,52 @@ public class GENMessageBody implements MALMessageBody, java.io.Serializable
     else if ((null == o) || (o instanceof Element))
     {
       MALElementOutputStream lenc = enc;
-      ByteArrayOutputStream lbaos = null;
+      GENEncodeBuffer lbaos = null;
 
       if (wrapBodyParts)
       {
         // we encode it into a byte buffer so that it can be extracted as a MALEncodedElement if required
-        lbaos = new ByteArrayOutputStream();
+        lbaos = GENEncodeBuffer.acquire();
         lenc = streamFactory.createOutputStream(lbaos);
       }
 
-      // encode the short form if it is not fixed in the operation
-      final Element e = (Element) o;
-      if (null == sf)
+      try
       {
-        if (null != e)
+        // encode the short form if it is not fixed in the operation
+        final Element e = (Element) o;
+        if (null == sf)
         {
-          lenc.writeElement(new Union(e.getShortForm()), ctx);
+          if (null != e)
+          {
+            lenc.writeElement(new Union(e.getShortForm()), ctx);
+          }
+          else
+          {
+            lenc.writeElement(null, ctx);
+          }
         }
-        else
+
+        if ((null != sf) || (null != e))
         {
-          lenc.writeElement(null, ctx);
+          // now encode the element
+          lenc.writeElement(e, ctx);
         }
-      }
 
-      if ((null != sf) || (null != e))
-      {
-        // now encode the element
-        lenc.writeElement(e, ctx);
-      }
+        if (wrapBodyParts)
+        {
+          lenc.flush();
+          lenc.close();
 
-      if (wrapBodyParts)
+          // write the encoded blob to the stream
+          enc.writeElement(new Blob(lbaos.toByteArray()), null);
+        }
+      }
+      finally
       {
-        lenc.flush();
-        lenc.close();
-
-        // write the encoded blob to the stream
-        enc.writeElement(new Blob(lbaos.toByteArray()), null);
+        if (null != lbaos)
+        {
+          lbaos.release();
+        }
       }
     }
     // else if it is a JAXB XML object
@@ -325,37 +348,50 @@ public class GENMessageBody implements MALMessageBody, java.io.Serializable
         final String schemaURN = ssf.substring(0, ssf.lastIndexOf(':'));
         final String schemaEle = ssf.substring(ssf.lastIndexOf(':') + 1);
 
-        // create the marshaller
-        final JAXBContext jc = JAXBContext.newInstance(o.getClass().getPackage().getName());
-        final Marshaller marshaller = jc.createMarshaller();
+        // get the cached marshaller for this thread
+        final Marshaller marshaller
+                = GENJAXBContextCache.getInstance().getMarshaller(o.getClass().getPackage().getName());
 
         // encode the XML into a string
         final StringWriter ow = new StringWriter();
         marshaller.marshal(new JAXBElement(new QName(schemaURN, schemaEle), o.getClass(), null, o), ow);
-        GENTransport.LOGGER.log(Level.INFO, "GEN Message encoding XML body part : {0}", ow.toString());
+        if (GENTransport.LOGGER.isLoggable(Level.FINE))
+        {
+          GENTransport.LOGGER.log(Level.FINE, "GEN Message encoding XML body part : {0}", ow.toString());
+        }
 
         MALElementOutputStream lenc = enc;
-        ByteArrayOutputStream lbaos = null;
+        GENEncodeBuffer lbaos = null;
 
         if (wrapBodyParts)
         {
           // we encode it into a byte buffer so that it can be extracted as a MALEncodedElement if required
-          lbaos = new ByteArrayOutputStream();
+          lbaos = GENEncodeBuffer.acquire();
           lenc = streamFactory.createOutputStream(lbaos);
         }
 
-        // encode the short form
-        lenc.writeElement(new Union(ssf), null);
-        // now encode the element
-        lenc.writeElement(new Union(ow.toString()), null);
-
-        if (wrapBodyParts)
+        try
         {
-          lenc.flush();
-          lenc.close();
+          // encode the short form
+          lenc.writeElement(new Union(ssf), null);
+          // now encode the element
+          lenc.writeElement(new Union(ow.toString()), null);
 
-          // write the encoded blob to the stream
-          enc.writeElement(new Blob(lbaos.toByteArray()), null);
+          if (wrapBodyParts)
+          {
+            lenc.flush();
+            lenc.close();
+
+            // write the encoded blob to the stream
+            enc.writeElement(new Blob(lbaos.toByteArray()), null);
+          }
+        }
+        finally
+        {
+          if (null != lbaos)
+          {
+            lbaos.release();
+          }
         }
       }
       catch (JAXBException ex)
@@ -402,7 +438,12 @@ public class GENMessageBody implements MALMessageBody, java.io.Serializable
         {
           bodyPartCount = ctx.getOperation().getOperationStage(ctx.getHeader().getInteractionStage()).getElementShortForms().length;
         }
-        GENTransport.LOGGER.log(Level.FINE, "GEN Message decoding body ... pc ({0})", bodyPartCount);
+        final boolean logFine = GENTransport.LOGGER.isLoggable(Level.FINE);
+
+        if (logFine)
+        {
+          GENTransport.LOGGER.log(Level.FINE, "GEN Message decoding body ... pc ({0})", bodyPartCount);
+        }
         messageParts = new Object[bodyPartCount];
 
         if (bodyPartCount == 1)
@@ -415,7 +456,10 @@ public class GENMessageBody implements MALMessageBody, java.io.Serializable
           MALElementInputStream benc = encBodyElements;
           if (wrappedBodyParts)
           {
-            GENTransport.LOGGER.fine("GEN Message decoding body wrapper");
+            if (logFine)
+            {
+              GENTransport.LOGGER.fine("GEN Message decoding body wrapper");
+            }
             final Blob body = (Blob) encBodyElements.readElement(new Blob(), null);
             final ByteArrayInputStream bais = new ByteArrayInputStream(body.getValue());
             benc = encFactory.createInputStream(bais);
@@ -423,7 +467,10 @@ public class GENMessageBody implements MALMessageBody, java.io.Serializable
 
           for (int i = 0; i < bodyPartCount; i++)
           {
-            GENTransport.LOGGER.log(Level.FINE, "GEN Message decoding body part : {0}", i);
+            if (logFine)
+            {
+              GENTransport.LOGGER.log(Level.FINE, "GEN Message decoding body part : {0}", i);
+            }
             Object sf = null;
             if (!ctx.getHeader().getIsErrorMessage())
             {
@@ -434,7 +481,10 @@ public class GENMessageBody implements MALMessageBody, java.io.Serializable
           }
         }
 
-        GENTransport.LOGGER.info("GEN Message decoded body");
+        if (GENTransport.LOGGER.isLoggable(Level.FINER))
+        {
+          GENTransport.LOGGER.finer("GEN Message decoded body");
+        }
       }
       catch (MALException ex)
       {
@@ -488,7 +538,10 @@ public class GENMessageBody implements MALMessageBody, java.io.Serializable
 
       if (null != shortForm)
       {
-        GENTransport.LOGGER.log(Level.FINER, "GEN Message decoding body part : Type = {0}", shortForm);
+        if (GENTransport.LOGGER.isLoggable(Level.FINER))
+        {
+          GENTransport.LOGGER.log(Level.FINER, "GEN Message decoding body part : Type = {0}", shortForm);
+        }
         final MALElementFactory ef
                 = MALContextFactory.getElementFactoryRegistry().lookupElementFactory(shortForm);
 
@@ -508,15 +561,17 @@ public class GENMessageBody implements MALMessageBody, java.io.Serializable
       if (null != u)
       {
         final String shortForm = u.getStringValue();
-        GENTransport.LOGGER.log(Level.FINER, "GEN Message decoding XML body part : Type = {0}", shortForm);
+        if (GENTransport.LOGGER.isLoggable(Level.FINER))
+        {
+          GENTransport.LOGGER.log(Level.FINER, "GEN Message decoding XML body part : Type = {0}", shortForm);
+        }
 
         try
         {
           final String schemaURN = shortForm.substring(0, shortForm.lastIndexOf(':'));
           final String packageName = (String) ctx.getEndpointQosProperties().get(schemaURN);
 
-          final JAXBContext jc = JAXBContext.newInstance(packageName);
-          final Unmarshaller unmarshaller = jc.createUnmarshaller();
+          final Unmarshaller unmarshaller = GENJAXBContextCache.getInstance().getUnmarshaller(packageName);
 
           final String srcString = ((Union) lenc.readElement(new Union(""), null)).getStringValue();
           final StringReader ir = new StringReader(srcString);
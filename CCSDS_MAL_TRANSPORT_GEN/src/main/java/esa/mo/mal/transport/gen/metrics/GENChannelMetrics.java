@@ -0,0 +1,275 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO Generic Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.gen.metrics;
+
+import esa.mo.mal.transport.gen.sending.GENConcurrentMessageSender;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the metrics of the messages exchanged with a remote root URI. The counters are kept while there is a channel
+ * to the URI and are removed, with their MBean, once it is closed. They are also added to the totals of the transport,
+ * which are kept for the life of the transport.
+ */
+public class GENChannelMetrics implements GENChannelMetricsMBean
+{
+  private final GENTransportMetrics parent;
+  private final String uri;
+  private final AtomicReference<GENConcurrentMessageSender> sender
+          = new AtomicReference<GENConcurrentMessageSender>();
+  private final AtomicLong messagesOut = new AtomicLong(0);
+  private final AtomicLong bytesOut = new AtomicLong(0);
+  private final AtomicLong sendFailures = new AtomicLong(0);
+  private final AtomicLong messagesIn = new AtomicLong(0);
+  private final AtomicLong bytesIn = new AtomicLong(0);
+  private final AtomicLong rejectedMessages = new AtomicLong(0);
+  private final AtomicLong droppedMessages = new AtomicLong(0);
+  private final GENLatencyHistogram sendLatency = new GENLatencyHistogram();
+
+  /**
+   * Constructor.
+   *
+   * @param parent The metrics of the transport.
+   * @param uri The remote root URI.
+   */
+  public GENChannelMetrics(final GENTransportMetrics parent, final String uri)
+  {
+    this.parent = parent;
+    this.uri = uri;
+  }
+
+  /**
+   * Sets the message sender currently used for this URI, which provides the queue depth and connection count.
+   *
+   * @param sender The message sender.
+   */
+  public void setSender(final GENConcurrentMessageSender sender)
+  {
+    this.sender.set(sender);
+  }
+
+  /**
+   * Clears the message sender used for this URI, if it is still the supplied one.
+   *
+   * @param sender The message sender that has been closed.
+   */
+  public void clearSender(final GENConcurrentMessageSender sender)
+  {
+    this.sender.compareAndSet(sender, null);
+  }
+
+  /**
+   * Returns true if there is currently a message sender for this URI.
+   *
+   * @return true if connected.
+   */
+  public boolean isConnected()
+  {
+    return null != sender.get();
+  }
+
+  /**
+   * Records the outcome of sending a message.
+   *
+   * @param bytes The encoded size of the message.
+   * @param latencyNanos The time between the message being queued and the outcome, in nanoseconds.
+   * @param success True if the message was sent.
+   */
+  public void messageSent(final int bytes, final long latencyNanos, final boolean success)
+  {
+    if (success)
+    {
+      messagesOut.incrementAndGet();
+      bytesOut.addAndGet(bytes);
+      sendLatency.record(latencyNanos);
+    }
+    else
+    {
+      sendFailures.incrementAndGet();
+    }
+
+    parent.messageSent(bytes, latencyNanos, success);
+  }
+
+  /**
+   * Records the reception of a message.
+   *
+   * @param bytes The encoded size of the message, zero if not known.
+   */
+  public void messageReceived(final int bytes)
+  {
+    messagesIn.incrementAndGet();
+    bytesIn.addAndGet(bytes);
+
+    parent.messageReceived(bytes);
+  }
+
+  /**
+   * Records a message rejected because the send queue was full.
+   */
+  public void messageRejected()
+  {
+    rejectedMessages.incrementAndGet();
+
+    parent.messageRejected();
+  }
+
+  /**
+   * Records a queued message dropped to make room for others.
+   */
+  public void messageDropped()
+  {
+    droppedMessages.incrementAndGet();
+
+    parent.messageDropped();
+  }
+
+  @Override
+  public String getURI()
+  {
+    return uri;
+  }
+
+  @Override
+  public long getMessagesOut()
+  {
+    return messagesOut.get();
+  }
+
+  @Override
+  public long getBytesOut()
+  {
+    return bytesOut.get();
+  }
+
+  @Override
+  public long getSendFailures()
+  {
+    return sendFailures.get();
+  }
+
+  @Override
+  public long getMessagesIn()
+  {
+    return messagesIn.get();
+  }
+
+  @Override
+  public long getBytesIn()
+  {
+    return bytesIn.get();
+  }
+
+  @Override
+  public int getQueueDepth()
+  {
+    final GENConcurrentMessageSender s = sender.get();
+
+    return (null == s) ? 0 : s.getQueueDepth();
+  }
+
+  @Override
+  public long getQueueBytes()
+  {
+    final GENConcurrentMessageSender s = sender.get();
+
+    return (null == s) ? 0 : s.getQueueBytes();
+  }
+
+  @Override
+  public int getQueueHighWaterMark()
+  {
+    final GENConcurrentMessageSender s = sender.get();
+
+    return (null == s) ? 0 : s.getQueueHighWaterMark();
+  }
+
+  @Override
+  public long getQueueBytesHighWaterMark()
+  {
+    final GENConcurrentMessageSender s = sender.get();
+
+    return (null == s) ? 0 : s.getQueueBytesHighWaterMark();
+  }
+
+  @Override
+  public long getRejectedMessages()
+  {
+    return rejectedMessages.get();
+  }
+
+  @Override
+  public long getDroppedMessages()
+  {
+    return droppedMessages.get();
+  }
+
+  @Override
+  public int getConnectionCount()
+  {
+    final GENConcurrentMessageSender s = sender.get();
+
+    return (null == s) ? 0 : s.getNumberOfProcessors();
+  }
+
+  @Override
+  public long getSendLatencyMeanMicros()
+  {
+    return sendLatency.getMeanMicros();
+  }
+
+  @Override
+  public long getSendLatencyP50Micros()
+  {
+    return sendLatency.getPercentileMicros(0.5);
+  }
+
+  @Override
+  public long getSendLatencyP99Micros()
+  {
+    return sendLatency.getPercentileMicros(0.99);
+  }
+
+  @Override
+  public long getSendLatencyMaxMicros()
+  {
+    return sendLatency.getMaxMicros();
+  }
+
+  @Override
+  public long[] getSendLatencyHistogram()
+  {
+    return sendLatency.getBuckets();
+  }
+
+  @Override
+  public void reset()
+  {
+    messagesOut.set(0);
+    bytesOut.set(0);
+    sendFailures.set(0);
+    messagesIn.set(0);
+    bytesIn.set(0);
+    rejectedMessages.set(0);
+    droppedMessages.set(0);
+    sendLatency.reset();
+  }
+}
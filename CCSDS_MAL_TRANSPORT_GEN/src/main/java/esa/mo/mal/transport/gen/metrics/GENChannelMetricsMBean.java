@@ -0,0 +1,158 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO Generic Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.gen.metrics;
+
+/**
+ * Management interface of the metrics of a channel to a remote root URI.
+ */
+public interface GENChannelMetricsMBean
+{
+  /**
+   * Returns the remote root URI.
+   *
+   * @return the URI.
+   */
+  String getURI();
+
+  /**
+   * Returns the number of messages successfully sent.
+   *
+   * @return the number of messages.
+   */
+  long getMessagesOut();
+
+  /**
+   * Returns the number of bytes successfully sent.
+   *
+   * @return the number of bytes.
+   */
+  long getBytesOut();
+
+  /**
+   * Returns the number of messages that could not be sent.
+   *
+   * @return the number of messages.
+   */
+  long getSendFailures();
+
+  /**
+   * Returns the number of messages received.
+   *
+   * @return the number of messages.
+   */
+  long getMessagesIn();
+
+  /**
+   * Returns the number of bytes received.
+   *
+   * @return the number of bytes.
+   */
+  long getBytesIn();
+
+  /**
+   * Returns the number of messages waiting to be sent.
+   *
+   * @return the queue depth.
+   */
+  int getQueueDepth();
+
+  /**
+   * Returns the number of bytes waiting to be sent.
+   *
+   * @return the queued bytes.
+   */
+  long getQueueBytes();
+
+  /**
+   * Returns the largest number of messages that have been waiting to be sent at any one time since the channel was opened.
+   *
+   * @return the high-water mark.
+   */
+  int getQueueHighWaterMark();
+
+  /**
+   * Returns the largest number of bytes that have been waiting to be sent at any one time since the channel was opened.
+   *
+   * @return the high-water mark.
+   */
+  long getQueueBytesHighWaterMark();
+
+  /**
+   * Returns the number of messages rejected because the send queue was full.
+   *
+   * @return the number of messages.
+   */
+  long getRejectedMessages();
+
+  /**
+   * Returns the number of queued BESTEFFORT messages dropped to make room for others.
+   *
+   * @return the number of messages.
+   */
+  long getDroppedMessages();
+
+  /**
+   * Returns the number of connections used to send.
+   *
+   * @return the number of connections.
+   */
+  int getConnectionCount();
+
+  /**
+   * Returns the mean time between a message being queued and it being sent.
+   *
+   * @return the mean latency in microseconds.
+   */
+  long getSendLatencyMeanMicros();
+
+  /**
+   * Returns the upper bound of the median send latency.
+   *
+   * @return the latency in microseconds.
+   */
+  long getSendLatencyP50Micros();
+
+  /**
+   * Returns the upper bound of the 99th percentile send latency.
+   *
+   * @return the latency in microseconds.
+   */
+  long getSendLatencyP99Micros();
+
+  /**
+   * Returns the largest send latency.
+   *
+   * @return the latency in microseconds.
+   */
+  long getSendLatencyMaxMicros();
+
+  /**
+   * Returns the send latency histogram, see GENLatencyHistogram for the bucket bounds.
+   *
+   * @return the bucket counts.
+   */
+  long[] getSendLatencyHistogram();
+
+  /**
+   * Clears all counters.
+   */
+  void reset();
+}
@@ -0,0 +1,154 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO Generic Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.gen.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of latencies. Bucket 0 holds latencies below one microsecond, bucket n holds latencies from
+ * 2^(n-1) up to 2^n microseconds, and the last bucket holds everything larger.
+ */
+public class GENLatencyHistogram
+{
+  /**
+   * The number of buckets, the last one holds latencies of over 2^30 microseconds (about 18 minutes).
+   */
+  public static final int BUCKET_COUNT = 32;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong count = new AtomicLong(0);
+  private final AtomicLong total = new AtomicLong(0);
+  private final AtomicLong max = new AtomicLong(0);
+
+  /**
+   * Records a latency.
+   *
+   * @param nanos The latency in nanoseconds.
+   */
+  public void record(final long nanos)
+  {
+    final long micros = Math.max(0, nanos / 1000);
+    final int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+
+    buckets.incrementAndGet(bucket);
+    count.incrementAndGet();
+    total.addAndGet(micros);
+
+    long current = max.get();
+    while ((micros > current) && !max.compareAndSet(current, micros))
+    {
+      current = max.get();
+    }
+  }
+
+  /**
+   * Returns the number of recorded latencies.
+   *
+   * @return the count.
+   */
+  public long getCount()
+  {
+    return count.get();
+  }
+
+  /**
+   * Returns the mean of the recorded latencies.
+   *
+   * @return the mean in microseconds, zero if nothing has been recorded.
+   */
+  public long getMeanMicros()
+  {
+    final long c = count.get();
+
+    return (0 == c) ? 0 : total.get() / c;
+  }
+
+  /**
+   * Returns the largest recorded latency.
+   *
+   * @return the maximum in microseconds.
+   */
+  public long getMaxMicros()
+  {
+    return max.get();
+  }
+
+  /**
+   * Returns an upper bound of the latency below which the given fraction of the recorded latencies fall.
+   *
+   * @param fraction The fraction, for example 0.99.
+   * @return the upper bound of the bucket holding the percentile, in microseconds.
+   */
+  public long getPercentileMicros(final double fraction)
+  {
+    final long[] counts = getBuckets();
+    long c = 0;
+    for (int i = 0; i < counts.length; i++)
+    {
+      c += counts[i];
+    }
+
+    final long target = (long) Math.ceil(c * fraction);
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++)
+    {
+      seen += counts[i];
+      if ((0 < seen) && (seen >= target))
+      {
+        return Math.min(1L << i, getMaxMicros());
+      }
+    }
+
+    return 0;
+  }
+
+  /**
+   * Returns a snapshot of the bucket counts.
+   *
+   * @return the counts of each bucket.
+   */
+  public long[] getBuckets()
+  {
+    final long[] counts = new long[BUCKET_COUNT];
+    for (int i = 0; i < BUCKET_COUNT; i++)
+    {
+      counts[i] = buckets.get(i);
+    }
+
+    return counts;
+  }
+
+  /**
+   * Clears the histogram.
+   */
+  public void reset()
+  {
+    for (int i = 0; i < BUCKET_COUNT; i++)
+    {
+      buckets.set(i, 0);
+    }
+
+    count.set(0);
+    total.set(0);
+    max.set(0);
+  }
+}
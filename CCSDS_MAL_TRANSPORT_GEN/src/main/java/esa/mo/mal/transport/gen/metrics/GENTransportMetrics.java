@@ -0,0 +1,484 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO Generic Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.gen.metrics;
+
+import esa.mo.mal.transport.gen.GENTransport;
+import esa.mo.mal.transport.gen.sending.GENConcurrentMessageSender;
+import esa.mo.mal.transport.gen.util.GENJAXBContextCache;
+import static esa.mo.mal.transport.gen.GENTransport.LOGGER;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Holds the metrics of a GEN transport and of each of the remote root URIs it exchanges messages with. All counters
+ * are updated without locking so they can be kept on the message path.
+ *
+ * Once registered the metrics are available as MBeans in the platform MBean server, under the domain
+ * esa.mo.mal.transport.gen with the transport URI as name and, for the channels, the remote root URI as channel.
+ */
+public class GENTransportMetrics implements GENTransportMetricsMBean
+{
+  /**
+   * The JMX domain of the MBeans.
+   */
+  public static final String DOMAIN = "esa.mo.mal.transport.gen";
+
+  private final GENTransport transport;
+  private final ConcurrentMap<String, GENChannelMetrics> channels = new ConcurrentHashMap<String, GENChannelMetrics>();
+  private final AtomicLong messagesOut = new AtomicLong(0);
+  private final AtomicLong bytesOut = new AtomicLong(0);
+  private final AtomicLong sendFailures = new AtomicLong(0);
+  private final AtomicLong messagesIn = new AtomicLong(0);
+  private final AtomicLong bytesIn = new AtomicLong(0);
+  private final AtomicLong rejectedMessages = new AtomicLong(0);
+  private final AtomicLong droppedMessages = new AtomicLong(0);
+  private final AtomicLong encodeCount = new AtomicLong(0);
+  private final AtomicLong encodeTime = new AtomicLong(0);
+  private final AtomicLong decodeCount = new AtomicLong(0);
+  private final AtomicLong decodeTime = new AtomicLong(0);
+  private final GENLatencyHistogram sendLatency = new GENLatencyHistogram();
+  private MBeanServer server = null;
+  private String name = null;
+
+  /**
+   * Constructor.
+   *
+   * @param transport The transport.
+   */
+  public GENTransportMetrics(final GENTransport transport)
+  {
+    this.transport = transport;
+  }
+
+  /**
+   * Returns the metrics of a remote root URI, creating them if needed.
+   *
+   * @param uri The remote root URI.
+   * @return the channel metrics.
+   */
+  public GENChannelMetrics getChannelMetrics(final String uri)
+  {
+    GENChannelMetrics metrics = channels.get(uri);
+
+    if (null == metrics)
+    {
+      final GENChannelMetrics newMetrics = new GENChannelMetrics(this, uri);
+      metrics = channels.putIfAbsent(uri, newMetrics);
+
+      if (null == metrics)
+      {
+        metrics = newMetrics;
+        registerChannel(newMetrics);
+      }
+    }
+
+    return metrics;
+  }
+
+  /**
+   * Removes the metrics of a remote root URI, and unregisters their MBean, once the channel using the supplied sender
+   * has been closed. They are kept if another sender has been set on them in the mean time.
+   *
+   * @param uri The remote root URI.
+   * @param sender The message sender that has been closed.
+   */
+  public void removeChannelMetrics(final String uri, final GENConcurrentMessageSender sender)
+  {
+    final GENChannelMetrics metrics = channels.get(uri);
+
+    if (null != metrics)
+    {
+      metrics.clearSender(sender);
+
+      if (!metrics.isConnected() && channels.remove(uri, metrics))
+      {
+        unregisterChannel(metrics);
+      }
+    }
+  }
+
+  /**
+   * Records the time taken to encode an outgoing message.
+   *
+   * @param nanos The time in nanoseconds.
+   */
+  public void messageEncoded(final long nanos)
+  {
+    encodeCount.incrementAndGet();
+    encodeTime.addAndGet(nanos);
+  }
+
+  /**
+   * Records the time taken to decode an incoming message.
+   *
+   * @param nanos The time in nanoseconds.
+   */
+  public void messageDecoded(final long nanos)
+  {
+    decodeCount.incrementAndGet();
+    decodeTime.addAndGet(nanos);
+  }
+
+  /**
+   * Records the outcome of sending a message, normally called by the channel metrics.
+   *
+   * @param bytes The encoded size of the message.
+   * @param latencyNanos The time between the message being queued and the outcome, in nanoseconds.
+   * @param success True if the message was sent.
+   */
+  public void messageSent(final int bytes, final long latencyNanos, final boolean success)
+  {
+    if (success)
+    {
+      messagesOut.incrementAndGet();
+      bytesOut.addAndGet(bytes);
+      sendLatency.record(latencyNanos);
+    }
+    else
+    {
+      sendFailures.incrementAndGet();
+    }
+  }
+
+  /**
+   * Records the reception of a message not attributed to a remote root URI, or from the channel metrics.
+   *
+   * @param bytes The encoded size of the message, zero if not known.
+   */
+  public void messageReceived(final int bytes)
+  {
+    messagesIn.incrementAndGet();
+    bytesIn.addAndGet(bytes);
+  }
+
+  /**
+   * Records a message rejected because a send queue was full, normally called by the channel metrics.
+   */
+  public void messageRejected()
+  {
+    rejectedMessages.incrementAndGet();
+  }
+
+  /**
+   * Records a queued message dropped to make room for others, normally called by the channel metrics.
+   */
+  public void messageDropped()
+  {
+    droppedMessages.incrementAndGet();
+  }
+
+  /**
+   * Registers the MBeans of the transport and its channels with the platform MBean server. Failures are logged and do
+   * not stop the transport.
+   *
+   * @param transportName The name of the transport, normally its URI.
+   */
+  public synchronized void register(final String transportName)
+  {
+    if (null != server)
+    {
+      return;
+    }
+
+    try
+    {
+      server = ManagementFactory.getPlatformMBeanServer();
+      name = ObjectName.quote(transportName);
+      server.registerMBean(this, new ObjectName(DOMAIN + ":type=GENTransport,name=" + name));
+    }
+    catch (JMException ex)
+    {
+      LOGGER.log(Level.WARNING, "GEN could not register transport metrics : {0}", ex);
+      server = null;
+      return;
+    }
+
+    for (GENChannelMetrics metrics : channels.values())
+    {
+      registerChannel(metrics);
+    }
+  }
+
+  /**
+   * Removes the MBeans of the transport and its channels from the platform MBean server.
+   */
+  public synchronized void unregister()
+  {
+    if (null == server)
+    {
+      return;
+    }
+
+    try
+    {
+      for (GENChannelMetrics metrics : channels.values())
+      {
+        final ObjectName objectName = channelName(metrics);
+        if (server.isRegistered(objectName))
+        {
+          server.unregisterMBean(objectName);
+        }
+      }
+
+      server.unregisterMBean(new ObjectName(DOMAIN + ":type=GENTransport,name=" + name));
+    }
+    catch (JMException ex)
+    {
+      LOGGER.log(Level.WARNING, "GEN could not unregister transport metrics : {0}", ex);
+    }
+
+    server = null;
+  }
+
+  @Override
+  public long getMessagesOut()
+  {
+    return messagesOut.get();
+  }
+
+  @Override
+  public long getBytesOut()
+  {
+    return bytesOut.get();
+  }
+
+  @Override
+  public long getSendFailures()
+  {
+    return sendFailures.get();
+  }
+
+  @Override
+  public long getMessagesIn()
+  {
+    return messagesIn.get();
+  }
+
+  @Override
+  public long getBytesIn()
+  {
+    return bytesIn.get();
+  }
+
+  @Override
+  public long getEncodeTimeMeanMicros()
+  {
+    final long c = encodeCount.get();
+
+    return (0 == c) ? 0 : encodeTime.get() / c / 1000;
+  }
+
+  @Override
+  public long getDecodeTimeMeanMicros()
+  {
+    final long c = decodeCount.get();
+
+    return (0 == c) ? 0 : decodeTime.get() / c / 1000;
+  }
+
+  @Override
+  public int getQueueDepth()
+  {
+    int depth = 0;
+    for (GENChannelMetrics metrics : channels.values())
+    {
+      depth += metrics.getQueueDepth();
+    }
+
+    return depth;
+  }
+
+  @Override
+  public long getQueueBytes()
+  {
+    return transport.getGlobalSendBudget().getBytes();
+  }
+
+  @Override
+  public int getQueueHighWaterMark()
+  {
+    return transport.getGlobalSendBudget().getMessagesHighWaterMark();
+  }
+
+  @Override
+  public long getQueueBytesHighWaterMark()
+  {
+    return transport.getGlobalSendBudget().getBytesHighWaterMark();
+  }
+
+  @Override
+  public long getRejectedMessages()
+  {
+    return rejectedMessages.get();
+  }
+
+  @Override
+  public long getDroppedMessages()
+  {
+    return droppedMessages.get();
+  }
+
+  @Override
+  public int getChannelCount()
+  {
+    int count = 0;
+    for (GENChannelMetrics metrics : channels.values())
+    {
+      if (metrics.isConnected())
+      {
+        ++count;
+      }
+    }
+
+    return count;
+  }
+
+  @Override
+  public int getActiveTransactionCount()
+  {
+    return transport.getActiveTransactionCount();
+  }
+
+  @Override
+  public long getJAXBContextCacheHits()
+  {
+    return GENJAXBContextCache.getInstance().getHitCount();
+  }
+
+  @Override
+  public long getJAXBContextCacheMisses()
+  {
+    return GENJAXBContextCache.getInstance().getMissCount();
+  }
+
+  @Override
+  public long getJAXBContextCacheEvictions()
+  {
+    return GENJAXBContextCache.getInstance().getEvictionCount();
+  }
+
+  @Override
+  public int getJAXBContextCacheSize()
+  {
+    return GENJAXBContextCache.getInstance().getSize();
+  }
+
+  @Override
+  public long getSendLatencyMeanMicros()
+  {
+    return sendLatency.getMeanMicros();
+  }
+
+  @Override
+  public long getSendLatencyP50Micros()
+  {
+    return sendLatency.getPercentileMicros(0.5);
+  }
+
+  @Override
+  public long getSendLatencyP99Micros()
+  {
+    return sendLatency.getPercentileMicros(0.99);
+  }
+
+  @Override
+  public long getSendLatencyMaxMicros()
+  {
+    return sendLatency.getMaxMicros();
+  }
+
+  @Override
+  public long[] getSendLatencyHistogram()
+  {
+    return sendLatency.getBuckets();
+  }
+
+  @Override
+  public void reset()
+  {
+    messagesOut.set(0);
+    bytesOut.set(0);
+    sendFailures.set(0);
+    messagesIn.set(0);
+    bytesIn.set(0);
+    rejectedMessages.set(0);
+    droppedMessages.set(0);
+    encodeCount.set(0);
+    encodeTime.set(0);
+    decodeCount.set(0);
+    decodeTime.set(0);
+    sendLatency.reset();
+
+    for (GENChannelMetrics metrics : channels.values())
+    {
+      metrics.reset();
+    }
+  }
+
+  private synchronized void registerChannel(final GENChannelMetrics metrics)
+  {
+    if (null != server)
+    {
+      try
+      {
+        final ObjectName objectName = channelName(metrics);
+        if (!server.isRegistered(objectName))
+        {
+          server.registerMBean(metrics, objectName);
+        }
+      }
+      catch (JMException ex)
+      {
+        LOGGER.log(Level.WARNING, "GEN could not register channel metrics : {0}", ex);
+      }
+    }
+  }
+
+  private synchronized void unregisterChannel(final GENChannelMetrics metrics)
+  {
+    if (null != server)
+    {
+      try
+      {
+        final ObjectName objectName = channelName(metrics);
+        if (server.isRegistered(objectName))
+        {
+          server.unregisterMBean(objectName);
+        }
+      }
+      catch (JMException ex)
+      {
+        LOGGER.log(Level.WARNING, "GEN could not unregister channel metrics : {0}", ex);
+      }
+    }
+  }
+
+  private ObjectName channelName(final GENChannelMetrics metrics) throws JMException
+  {
+    return new ObjectName(DOMAIN + ":type=GENTransport,name=" + name + ",channel=" + ObjectName.quote(metrics.getURI()));
+  }
+}
@@ -0,0 +1,200 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO Generic Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.gen.metrics;
+
+/**
+ * Management interface of the metrics of a GEN transport.
+ */
+public interface GENTransportMetricsMBean
+{
+  /**
+   * Returns the number of messages successfully sent.
+   *
+   * @return the number of messages.
+   */
+  long getMessagesOut();
+
+  /**
+   * Returns the number of bytes successfully sent.
+   *
+   * @return the number of bytes.
+   */
+  long getBytesOut();
+
+  /**
+   * Returns the number of messages that could not be sent.
+   *
+   * @return the number of messages.
+   */
+  long getSendFailures();
+
+  /**
+   * Returns the number of messages received.
+   *
+   * @return the number of messages.
+   */
+  long getMessagesIn();
+
+  /**
+   * Returns the number of bytes received.
+   *
+   * @return the number of bytes.
+   */
+  long getBytesIn();
+
+  /**
+   * Returns the mean time taken to encode an outgoing message.
+   *
+   * @return the mean in microseconds.
+   */
+  long getEncodeTimeMeanMicros();
+
+  /**
+   * Returns the mean time taken to decode an incoming message.
+   *
+   * @return the mean in microseconds.
+   */
+  long getDecodeTimeMeanMicros();
+
+  /**
+   * Returns the number of messages waiting to be sent over all channels.
+   *
+   * @return the queue depth.
+   */
+  int getQueueDepth();
+
+  /**
+   * Returns the number of bytes waiting to be sent over all channels.
+   *
+   * @return the queued bytes.
+   */
+  long getQueueBytes();
+
+  /**
+   * Returns the largest number of messages that have been waiting to be sent over all channels at any one time.
+   *
+   * @return the high-water mark.
+   */
+  int getQueueHighWaterMark();
+
+  /**
+   * Returns the largest number of bytes that have been waiting to be sent over all channels at any one time.
+   *
+   * @return the high-water mark.
+   */
+  long getQueueBytesHighWaterMark();
+
+  /**
+   * Returns the number of messages rejected because the send queue was full.
+   *
+   * @return the number of messages.
+   */
+  long getRejectedMessages();
+
+  /**
+   * Returns the number of queued BESTEFFORT messages dropped to make room for others.
+   *
+   * @return the number of messages.
+   */
+  long getDroppedMessages();
+
+  /**
+   * Returns the number of channels to remote root URIs.
+   *
+   * @return the number of channels.
+   */
+  int getChannelCount();
+
+  /**
+   * Returns the number of transactions that have incoming messages queued or being processed.
+   *
+   * @return the number of active transactions.
+   */
+  int getActiveTransactionCount();
+
+  /**
+   * Returns the number of lookups of the shared JAXB context cache that found a cached context.
+   *
+   * @return the hit count.
+   */
+  long getJAXBContextCacheHits();
+
+  /**
+   * Returns the number of lookups of the shared JAXB context cache that had to create a context.
+   *
+   * @return the miss count.
+   */
+  long getJAXBContextCacheMisses();
+
+  /**
+   * Returns the number of contexts evicted from the shared JAXB context cache.
+   *
+   * @return the eviction count.
+   */
+  long getJAXBContextCacheEvictions();
+
+  /**
+   * Returns the number of contexts held in the shared JAXB context cache.
+   *
+   * @return the number of contexts.
+   */
+  int getJAXBContextCacheSize();
+
+  /**
+   * Returns the mean time between a message being queued and it being sent.
+   *
+   * @return the mean latency in microseconds.
+   */
+  long getSendLatencyMeanMicros();
+
+  /**
+   * Returns the upper bound of the median send latency.
+   *
+   * @return the latency in microseconds.
+   */
+  long getSendLatencyP50Micros();
+
+  /**
+   * Returns the upper bound of the 99th percentile send latency.
+   *
+   * @return the latency in microseconds.
+   */
+  long getSendLatencyP99Micros();
+
+  /**
+   * Returns the largest send latency.
+   *
+   * @return the latency in microseconds.
+   */
+  long getSendLatencyMaxMicros();
+
+  /**
+   * Returns the send latency histogram, see GENLatencyHistogram for the bucket bounds.
+   *
+   * @return the bucket counts.
+   */
+  long[] getSendLatencyHistogram();
+
+  /**
+   * Clears all counters, including those of the channels.
+   */
+  void reset();
+}
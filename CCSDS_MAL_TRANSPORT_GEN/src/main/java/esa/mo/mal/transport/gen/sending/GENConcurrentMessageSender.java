@@ -21,12 +21,14 @@
 package esa.mo.mal.transport.gen.sending;
 
 import esa.mo.mal.transport.gen.GENTransport;
+import esa.mo.mal.transport.gen.metrics.GENChannelMetrics;
 import static esa.mo.mal.transport.gen.GENTransport.LOGGER;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.logging.Level;
 
 import java.io.IOException;
@@ -44,13 +46,93 @@ import static java.lang.Thread.interrupted;
  * It accepts requests to send the message, which is done via the worker threads. A reply is provided indicating if the
  * message was sent successfully or not.
  *
+ * If the transport enables send batching, and the message sender supports it, a worker thread drains up to the
+ * configured batch size of queued messages, optionally waiting up to the configured linger time for more to arrive,
+ * and sends them in a single operation.
+ *
+ * The messages and bytes queued are held within a per URI budget and the transport wide budget. When either is
+ * exhausted the overload policy of the transport decides whether the caller blocks, the message is rejected, or the
+ * oldest queued BESTEFFORT messages are dropped to make room.
+ *
+ * The queue orders messages by their priority if the transport enables it, see GENSendQueue. If the transport enables
+ * QoS connections the connections are split into lanes, each with its own queue, and messages are queued on the lane
+ * of their QoS level so that, for example, BESTEFFORT bulk traffic does not hold up ASSURED traffic on the same
+ * connection. When a lane loses its last connection the messages queued on it are moved to a lane that still has one.
+ *
+ * The number of processors adapts to the load between the minimum and maximum number of connections of the transport.
+ * The transport asks for a new connection, see requestConnection, when the queue depth per processor or the send
+ * latency pass their thresholds, and a processor that has been idle for the idle timeout closes its connection as long
+ * as the minimum is kept.
+ *
  */
 public class GENConcurrentMessageSender
 {
   /**
-   * input message queue
+   * Overload policy that blocks the caller until there is space in the queue.
+   */
+  public static final int OVERLOAD_BLOCK = 0;
+  /**
+   * Overload policy that rejects the message.
+   */
+  public static final int OVERLOAD_FAIL = 1;
+  /**
+   * Overload policy that drops the oldest queued BESTEFFORT messages, rejecting the message if there are none.
+   */
+  public static final int OVERLOAD_DROP_BEST_EFFORT = 2;
+  /**
+   * The number of MAL QoS levels, and so the maximum number of lanes.
+   */
+  private static final int QOS_LEVEL_COUNT = 4;
+
+  /**
+   * input message queues, one per lane
+   */
+  private final GENSendQueue[] outgoingQueues;
+
+  /**
+   * the number of processing threads of each lane
+   */
+  private final AtomicIntegerArray laneProcessors;
+
+  /**
+   * The minimum number of processors kept when idle
+   */
+  private final int minConnections;
+
+  /**
+   * The maximum number of processors
    */
-  private final BlockingQueue<GENOutgoingMessageHolder> outgoingQueue;
+  private final int maxConnections;
+
+  /**
+   * The queue depth per processor above which a new connection is requested
+   */
+  private final int growQueueDepth;
+
+  /**
+   * The send latency, in nanoseconds, above which a new connection is requested, 0 if not used
+   */
+  private final long growLatency;
+
+  /**
+   * The time, in nanoseconds, after which an idle processor closes its connection, 0 if never
+   */
+  private final long idleTimeout;
+
+  /**
+   * True while a new connection is being opened
+   */
+  private final AtomicBoolean growing = new AtomicBoolean(false);
+
+  /**
+   * The send latency of the last message sent, in nanoseconds
+   */
+  private volatile long lastLatency = 0;
+
+  /**
+   * True once terminated, no more processors are accepted
+   */
+  private boolean terminated = false;
 
   /**
    * the list of processing threads that send the messages
@@ -67,6 +149,36 @@ public class GENConcurrentMessageSender
    */
   private final String targetURI;
 
+  /**
+   * The maximum number of messages sent in one batch
+   */
+  private final int maxBatchSize;
+
+  /**
+   * The maximum time, in nanoseconds, to wait for a batch to fill
+   */
+  private final long batchLingerTime;
+
+  /**
+   * The metrics of the target URI
+   */
+  private final GENChannelMetrics metrics;
+
+  /**
+   * The budget of messages and bytes queued for this URI
+   */
+  private final GENSendBudget budget;
+
+  /**
+   * The budget of messages and bytes queued over all URIs of the transport
+   */
+  private final GENSendBudget globalBudget;
+
+  /**
+   * What to do when a budget is exhausted
+   */
+  private final int overloadPolicy;
+
   /**
    * Creates a new instance. Typically each instance is associated with a given URI.
    *
@@ -75,40 +187,95 @@ public class GENConcurrentMessageSender
    */
   public GENConcurrentMessageSender(GENTransport transport, String targetURI)
   {
-    outgoingQueue = new LinkedBlockingQueue<GENOutgoingMessageHolder>();
+    final int lanes = transport.isQoSConnections() ? Math.max(1, Math.min(QOS_LEVEL_COUNT, transport.getNumConnections())) : 1;
+    outgoingQueues = new GENSendQueue[lanes];
+    for (int i = 0; i < lanes; i++)
+    {
+      outgoingQueues[i] = new GENSendQueue(TimeUnit.MILLISECONDS.toNanos(transport.getSendPriorityAgingTime()));
+    }
+    laneProcessors = new AtomicIntegerArray(lanes);
+    this.minConnections = transport.getMinConnections();
+    this.maxConnections = transport.getNumConnections();
+    this.growQueueDepth = transport.getConnectionGrowQueueDepth();
+    this.growLatency = TimeUnit.MILLISECONDS.toNanos(transport.getConnectionGrowLatency());
+    this.idleTimeout = TimeUnit.MILLISECONDS.toNanos(transport.getConnectionIdleTimeout());
     processingThreads = Collections.synchronizedList(new ArrayList<GENSenderThread>());
     this.transport = transport;
     this.targetURI = targetURI;
+    this.maxBatchSize = transport.getSendBatchSize();
+    this.batchLingerTime = TimeUnit.MILLISECONDS.toNanos(transport.getSendBatchLingerTime());
+    this.metrics = transport.getMetrics().getChannelMetrics(targetURI);
+    this.budget = new GENSendBudget(transport.getMaxQueueMessages(), transport.getMaxQueueBytes());
+    this.globalBudget = transport.getGlobalSendBudget();
+    this.overloadPolicy = transport.getOverloadPolicy();
   }
 
   /**
    * This method will try to send the message via one of the available connections and provide a reply through the
-   * GENOutgoingMessageHolder object if the message was successful or not. Users of this method should call getResult to
-   * block waiting for an indication if the message was sent successfully or not.
+   * GENOutgoingMessageHolder object if the message was successful or not. Users of this method should either call
+   * getResult to block waiting for an indication if the message was sent successfully or not, or supply a listener when
+   * creating the GENOutgoingMessageHolder object.
+   *
+   * Messages sent before the first processor has been added are queued for it. If the queue is full the overload
+   * policy is applied, which may block the caller. If the message is rejected it is discarded without its result being
+   * set and false is returned, so that the caller reports the overload. A caller that was waiting for space when this
+   * sender was terminated has the result of its message set to FALSE. A caller interrupted while waiting for space has
+   * its message discarded in the same way, and the interrupt is passed on.
    *
    * @param message the message to be sent.
+   * @return false if the message was rejected because the queue is full.
+   * @throws InterruptedException if interrupted while waiting for space in the queue.
    */
-  public void sendMessage(GENOutgoingMessageHolder message)
+  public boolean sendMessage(GENOutgoingMessageHolder message) throws InterruptedException
   {
-    if (processingThreads.isEmpty())
+    if (isTerminated())
     {
-      //this should never happen. Only possibly in boundary cases where this object is asked
-      //to terminate and there is another thread trying to send message in parallel.
-      LOGGER.log(Level.SEVERE, "No active processors in this processing queue!");
-      message.setResult(Boolean.FALSE);
+      // only possible when this object is asked to terminate while another thread is sending in parallel
+      LOGGER.log(Level.WARNING, "Sender for URI:{0} has been terminated, message not sent", targetURI);
+      setResult(message, Boolean.FALSE, false);
 
-      return;
+      return true;
     }
 
-    boolean inserted = outgoingQueue.add(message);
-    if (!inserted)
+    final boolean admitted;
+    try
     {
-      // log error. According to the specification (see *add* call
-      // documentation) this will always return true, or throw an
-      // exception
-      LOGGER.log(Level.SEVERE, "Could not insert message to processing queue");
-      message.setResult(Boolean.FALSE);
+      admitted = admit(message);
+    }
+    catch (InterruptedException ex)
+    {
+      LOGGER.log(Level.WARNING, "Interrupted while waiting for space in send queue for URI:{0} message not sent", targetURI);
+      metrics.messageSent(message.getEncodedMessageLength(), System.nanoTime() - message.getCreationTime(), false);
+      message.discard();
+
+      throw ex;
     }
+
+    if (!admitted)
+    {
+      LOGGER.log(Level.WARNING, "Send queue full for URI:{0} message rejected", targetURI);
+      metrics.messageRejected();
+      metrics.messageSent(message.getEncodedMessageLength(), System.nanoTime() - message.getCreationTime(), false);
+      message.discard();
+
+      return false;
+    }
+
+    synchronized (this)
+    {
+      if (!terminated)
+      {
+        outgoingQueues[laneOf(message)].add(message);
+
+        return true;
+      }
+    }
+
+    // terminated while waiting for space in the queue, nobody would take the message from it
+    LOGGER.log(Level.WARNING, "Sender for URI:{0} has been terminated, message not sent", targetURI);
+    setResult(message, Boolean.FALSE, true);
+
+    return true;
   }
 
   /**
@@ -120,8 +287,26 @@ public class GENConcurrentMessageSender
    */
   public synchronized int addProcessor(GENMessageSender messageSender, String uriTo)
   {
+    if (terminated)
+    {
+      // the connection was opened after this sender was terminated, it is not needed
+      messageSender.close();
+      return 0;
+    }
+
+    // the processors are shared out over the lanes, the new one goes to the lane with the fewest
+    int lane = 0;
+    for (int i = 1; i < outgoingQueues.length; i++)
+    {
+      if (laneProcessors.get(i) < laneProcessors.get(lane))
+      {
+        lane = i;
+      }
+    }
+    laneProcessors.incrementAndGet(lane);
+
     // create new thread
-    GENSenderThread procThread = new GENSenderThread(messageSender, uriTo);
+    GENSenderThread procThread = new GENSenderThread(messageSender, uriTo, lane);
 
     // keep reference to thread
     processingThreads.add(procThread);
@@ -129,6 +314,9 @@ public class GENConcurrentMessageSender
     // start thread
     procThread.start();
 
+    // messages left on lanes without a processor can now be sent
+    moveStrandedMessages();
+
     LOGGER.log(Level.INFO, "Adding processor for URI:{0} total processors:{1}", new Object[]
     {
       uriTo, processingThreads.size()
@@ -138,6 +326,66 @@ public class GENConcurrentMessageSender
     return processingThreads.size();
   }
 
+  /**
+   * Removes the processor that uses the given message sender, its thread terminates and closes the message sender.
+   *
+   * @param messageSender the message sender
+   * @return true if a processor used the message sender
+   */
+  public synchronized boolean removeProcessor(GENMessageSender messageSender)
+  {
+    for (GENSenderThread t : processingThreads)
+    {
+      if (t.messageSender == messageSender)
+      {
+        processingThreads.remove(t);
+        laneProcessors.decrementAndGet(t.lane);
+        t.shutdown();
+
+        // if that was the last processor of its lane the messages queued on it must go to another lane
+        moveStrandedMessages();
+
+        LOGGER.log(Level.INFO, "Removed processor for URI:{0} total processors:{1}", new Object[]
+        {
+          t.getUriTo(), processingThreads.size()
+        });
+
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Checks whether another connection should be opened because of the queue depth or send latency. If true is returned
+   * the caller must open the connection, or fail to, and then call connectionRequestCompleted.
+   *
+   * @return true if the caller should open a new connection.
+   */
+  public boolean requestConnection()
+  {
+    final int processors = processingThreads.size();
+
+    if ((processors >= maxConnections) || (0 == processors))
+    {
+      return false;
+    }
+
+    final boolean busy = (getQueueDepth() > (growQueueDepth * processors))
+            || ((0 < growLatency) && (lastLatency > growLatency));
+
+    return busy && growing.compareAndSet(false, true);
+  }
+
+  /**
+   * Informs this class that the connection requested through requestConnection has been added, or has failed.
+   */
+  public void connectionRequestCompleted()
+  {
+    growing.set(false);
+  }
+
   /**
    * Returns the URI this class sends to.
    *
@@ -148,6 +396,52 @@ public class GENConcurrentMessageSender
     return targetURI;
   }
 
+  /**
+   * Returns the number of messages waiting to be sent.
+   *
+   * @return the queue depth.
+   */
+  public int getQueueDepth()
+  {
+    int depth = 0;
+    for (GENSendQueue queue : outgoingQueues)
+    {
+      depth += queue.size();
+    }
+
+    return depth;
+  }
+
+  /**
+   * Returns the number of bytes waiting to be sent.
+   *
+   * @return the queued bytes.
+   */
+  public long getQueueBytes()
+  {
+    return budget.getBytes();
+  }
+
+  /**
+   * Returns the largest number of messages that have been waiting to be sent at any one time.
+   *
+   * @return the high-water mark.
+   */
+  public int getQueueHighWaterMark()
+  {
+    return budget.getMessagesHighWaterMark();
+  }
+
+  /**
+   * Returns the largest number of bytes that have been waiting to be sent at any one time.
+   *
+   * @return the high-water mark.
+   */
+  public long getQueueBytesHighWaterMark()
+  {
+    return budget.getBytesHighWaterMark();
+  }
+
   /**
    * Returns the number of concurrent processors.
    *
@@ -163,20 +457,257 @@ public class GENConcurrentMessageSender
    * them closing their sockets and terminating their processing.
    *
    * Typically Called by the transport in order to shutdown all processing threads and close all remote connections.
+   *
+   * The messages still queued are failed once the lock of this object has been released, as setting their result calls
+   * the listeners of their originators.
    */
-  public synchronized void terminate()
+  public void terminate()
   {
-    LOGGER.log(Level.INFO, "Terminating all processing threads for sender for URI:{0}", targetURI);
+    final List<GENOutgoingMessageHolder> queued = new ArrayList<GENOutgoingMessageHolder>();
 
-    for (GENSenderThread t : processingThreads)
+    synchronized (this)
+    {
+      LOGGER.log(Level.INFO, "Terminating all processing threads for sender for URI:{0}", targetURI);
+
+      terminated = true;
+
+      for (GENSenderThread t : processingThreads)
+      {
+        // this will cause all threads to terminate
+        LOGGER.log(Level.INFO, "Terminating sender processing thread for URI:{0}", t.getUriTo());
+        t.shutdown();
+      }
+
+      // clear the references to active threads
+      processingThreads.clear();
+
+      for (int i = 0; i < outgoingQueues.length; i++)
+      {
+        laneProcessors.set(i, 0);
+        outgoingQueues[i].drainTo(queued, Integer.MAX_VALUE);
+      }
+    }
+
+    // fail any messages still queued so that their originators do not wait forever
+    for (GENOutgoingMessageHolder messageHolder : queued)
     {
-      // this will cause all threads to terminate
-      LOGGER.log(Level.INFO, "Terminating sender processing thread for URI:{0}", t.getUriTo());
-      t.interrupt();
+      setResult(messageHolder, Boolean.FALSE, true);
     }
+  }
 
-    // clear the references to active threads
-    processingThreads.clear();
+  /**
+   * Returns true once this sender has been terminated.
+   *
+   * @return true if terminated.
+   */
+  private synchronized boolean isTerminated()
+  {
+    return terminated;
+  }
+
+  /**
+   * Returns the lane a message is queued on, which is that of its QoS level if the lane has a processor and otherwise
+   * the first lane that has one. Must be called with the lock of this object held.
+   *
+   * @param message the message
+   * @return the lane
+   */
+  private int laneOf(GENOutgoingMessageHolder message)
+  {
+    if (1 == outgoingQueues.length)
+    {
+      return 0;
+    }
+
+    final int lane = message.getQoSLevelOrdinal() % outgoingQueues.length;
+
+    if (0 < laneProcessors.get(lane))
+    {
+      return lane;
+    }
+
+    final int servedLane = firstServedLane();
+
+    return (0 > servedLane) ? lane : servedLane;
+  }
+
+  /**
+   * Returns the first lane that has a processor.
+   *
+   * @return the lane, or -1 if there are no processors.
+   */
+  private int firstServedLane()
+  {
+    for (int i = 0; i < outgoingQueues.length; i++)
+    {
+      if (0 < laneProcessors.get(i))
+      {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Moves the messages queued on lanes that have no processor to the first lane that has one. If there are no
+   * processors at all the messages are left where they are, to be sent once a processor is added or failed when this
+   * sender is terminated. Must be called with the lock of this object held.
+   */
+  private void moveStrandedMessages()
+  {
+    final int servedLane = firstServedLane();
+
+    if (0 > servedLane)
+    {
+      return;
+    }
+
+    for (int i = 0; i < outgoingQueues.length; i++)
+    {
+      if (0 == laneProcessors.get(i))
+      {
+        GENOutgoingMessageHolder messageHolder;
+        while (null != (messageHolder = outgoingQueues[i].poll()))
+        {
+          outgoingQueues[servedLane].add(messageHolder);
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes an idle processor if the minimum number of connections, and at least one processor per lane, is kept.
+   *
+   * @param t the idle processor
+   * @return true if the processor was removed and should close its connection
+   */
+  private synchronized boolean retireProcessor(GENSenderThread t)
+  {
+    if ((processingThreads.size() > minConnections) && (1 < laneProcessors.get(t.lane)))
+    {
+      processingThreads.remove(t);
+      laneProcessors.decrementAndGet(t.lane);
+
+      LOGGER.log(Level.INFO, "Closing idle connection for URI:{0} total processors:{1}", new Object[]
+      {
+        t.getUriTo(), processingThreads.size()
+      });
+
+      return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * Takes space in the queue for a message according to the overload policy.
+   *
+   * @param message the message
+   * @return true if there is space for the message
+   * @throws InterruptedException if interrupted while blocked waiting for space.
+   */
+  private boolean admit(GENOutgoingMessageHolder message) throws InterruptedException
+  {
+    final int size = message.getEncodedMessageLength();
+
+    if (OVERLOAD_BLOCK == overloadPolicy)
+    {
+      budget.acquire(size);
+      try
+      {
+        globalBudget.acquire(size);
+      }
+      catch (InterruptedException ex)
+      {
+        budget.release(size);
+        throw ex;
+      }
+
+      return true;
+    }
+
+    while (!tryAdmit(size))
+    {
+      if ((OVERLOAD_DROP_BEST_EFFORT != overloadPolicy) || !dropOldestBestEffort())
+      {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Takes space in both budgets for a message if it is available.
+   *
+   * @param size the message size
+   * @return true if there is space for the message
+   */
+  private boolean tryAdmit(int size)
+  {
+    if (!budget.tryAcquire(size))
+    {
+      return false;
+    }
+
+    if (!globalBudget.tryAcquire(size))
+    {
+      budget.release(size);
+      return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Removes the oldest queued BESTEFFORT message and fails it.
+   *
+   * @return true if a message was dropped
+   */
+  private boolean dropOldestBestEffort()
+  {
+    for (GENSendQueue queue : outgoingQueues)
+    {
+      final GENOutgoingMessageHolder messageHolder = queue.removeOldestBestEffort();
+
+      if (null != messageHolder)
+      {
+        LOGGER.log(Level.FINE, "Send queue full for URI:{0} dropping BESTEFFORT message", targetURI);
+        metrics.messageDropped();
+        setResult(messageHolder, Boolean.FALSE, true);
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Records the outcome of a message in the metrics, returns its space in the queue, and then sets its result.
+   *
+   * @param messageHolder the message
+   * @param result the result
+   * @param queued true if the message was admitted to the queue
+   */
+  private void setResult(GENOutgoingMessageHolder messageHolder, Boolean result, boolean queued)
+  {
+    final int size = messageHolder.getEncodedMessageLength();
+
+    if (queued)
+    {
+      budget.release(size);
+      globalBudget.release(size);
+    }
+
+    final long latency = System.nanoTime() - messageHolder.getCreationTime();
+    if (result)
+    {
+      lastLatency = latency;
+    }
+
+    metrics.messageSent(size, latency, result);
+    messageHolder.setResult(result);
   }
 
   /**
@@ -199,16 +730,54 @@ public class GENConcurrentMessageSender
      */
     private final GENMessageSender messageSender;
 
+    /**
+     * The message sender if it is used in batch mode, otherwise null
+     */
+    private final GENBatchMessageSender batchSender;
+
+    /**
+     * The lane this thread sends from
+     */
+    private final int lane;
+
+    /**
+     * The queue of the lane this thread sends from
+     */
+    private final GENSendQueue outgoingQueue;
+
+    /**
+     * Holds the batch of messages being sent
+     */
+    private final List<GENOutgoingMessageHolder> batch = new ArrayList<GENOutgoingMessageHolder>();
+
+    /**
+     * True once this processor has been removed or terminated
+     */
+    private volatile boolean shutdown = false;
+
     /**
      * Constructor
      *
      * @param messageSender
      * @param uriTo
+     * @param lane
      */
-    public GENSenderThread(GENMessageSender messageSender, String uriTo)
+    public GENSenderThread(GENMessageSender messageSender, String uriTo, int lane)
     {
       this.uriTo = uriTo;
       this.messageSender = messageSender;
+      this.lane = lane;
+      this.outgoingQueue = outgoingQueues[lane];
+
+      if ((1 < maxBatchSize) && (messageSender instanceof GENBatchMessageSender))
+      {
+        this.batchSender = (GENBatchMessageSender) messageSender;
+      }
+      else
+      {
+        this.batchSender = null;
+      }
+
       setName(getClass().getName() + " URI:" + uriTo);
     }
 
@@ -220,32 +789,58 @@ public class GENConcurrentMessageSender
       // read forever while not interrupted
       while (bContinue && !interrupted())
       {
-        GENOutgoingMessageHolder messageHolder = null;
         try
         {
-          messageHolder = outgoingQueue.take();
+          final GENOutgoingMessageHolder next
+                  = (0 < idleTimeout) ? outgoingQueue.poll(idleTimeout, TimeUnit.NANOSECONDS) : outgoingQueue.take();
 
-          messageSender.sendEncodedMessage(messageHolder);
+          if (null == next)
+          {
+            // idle for the timeout, close the connection if it is not needed
+            bContinue = !retireProcessor(this);
+            continue;
+          }
 
-          //send back reply that the message was sent succesfully
-          messageHolder.setResult(Boolean.TRUE);
+          batch.add(next);
+
+          if (null == batchSender)
+          {
+            messageSender.sendEncodedMessage(batch.get(0));
+          }
+          else
+          {
+            fillBatch();
+            batchSender.sendEncodedMessages(batch);
+          }
+
+          //send back reply that the messages were sent succesfully
+          setResults(Boolean.TRUE);
         }
         catch (IOException e)
         {
-          LOGGER.log(Level.WARNING, "Cannot send packet to destination:{0} informing transport", uriTo);
-
-          //send back reply that the message was not sent successfully
-          if (null != messageHolder)
+          if (shutdown)
           {
-            messageHolder.setResult(Boolean.FALSE);
+            // the interrupt of a deliberate removal ended the send, the other connections to the URI are not affected
+            LOGGER.log(Level.FINE, "Processor for URI:{0} removed while sending, its messages are not sent", uriTo);
+            setResults(Boolean.FALSE);
+            bContinue = false;
+            continue;
           }
 
+          LOGGER.log(Level.WARNING, "Cannot send packet to destination:{0} informing transport", uriTo);
+
+          //send back reply that the messages were not sent successfully
+          setResults(Boolean.FALSE);
+
           //inform transport about communication error 
           transport.communicationError(uriTo, null);
           bContinue = false;
         }
         catch (InterruptedException e)
         {
+          //send back reply for any messages already taken from the queue
+          setResults(Boolean.FALSE);
+
           // finish processing
           bContinue = false;
         }
@@ -255,6 +850,16 @@ public class GENConcurrentMessageSender
       messageSender.close();
     }
 
+    /**
+     * Stops this processor once its current send, if any, ends. A send ended by the interrupt fails only the messages
+     * of this processor and is not reported to the transport as a communication error.
+     */
+    public void shutdown()
+    {
+      shutdown = true;
+      interrupt();
+    }
+
     /**
      * Returns the destination URI being sent to.
      *
@@ -264,5 +869,53 @@ public class GENConcurrentMessageSender
     {
       return uriTo;
     }
+
+    /**
+     * Adds queued messages to the batch until it is full, the queue is empty and the linger time has expired.
+     *
+     * @throws InterruptedException if interrupted while waiting for more messages
+     */
+    private void fillBatch() throws InterruptedException
+    {
+      outgoingQueue.drainTo(batch, maxBatchSize - batch.size());
+
+      if (0 < batchLingerTime)
+      {
+        final long deadline = System.nanoTime() + batchLingerTime;
+
+        while (batch.size() < maxBatchSize)
+        {
+          final long remaining = deadline - System.nanoTime();
+          if (0 >= remaining)
+          {
+            break;
+          }
+
+          final GENOutgoingMessageHolder messageHolder = outgoingQueue.poll(remaining, TimeUnit.NANOSECONDS);
+          if (null == messageHolder)
+          {
+            break;
+          }
+
+          batch.add(messageHolder);
+          outgoingQueue.drainTo(batch, maxBatchSize - batch.size());
+        }
+      }
+    }
+
+    /**
+     * Sets the result of all messages in the current batch and then clears it.
+     *
+     * @param result the result
+     */
+    private void setResults(Boolean result)
+    {
+      for (GENOutgoingMessageHolder messageHolder : batch)
+      {
+        setResult(messageHolder, result, true);
+      }
+
+      batch.clear();
+    }
   }
 }
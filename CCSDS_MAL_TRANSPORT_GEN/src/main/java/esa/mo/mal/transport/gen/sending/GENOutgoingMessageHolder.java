@@ -20,23 +20,31 @@
  */
 package esa.mo.mal.transport.gen.sending;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import esa.mo.mal.transport.gen.util.GENEncodeBuffer;
 import java.util.logging.Level;
+import org.ccsds.moims.mo.mal.structures.QoSLevel;
+import org.ccsds.moims.mo.mal.transport.MALMessageHeader;
 
 import static esa.mo.mal.transport.gen.GENTransport.LOGGER;
 
 /**
- * This class holds the message to be sent in encoded format and a reply queue that the internal sender of the message
- * can listen to in order to be informed if the message was successfully sent or not.
+ * This class holds the message to be sent in encoded format and the result of sending it. The originator of the message
+ * can either block waiting for the result or provide a listener that is informed once the message has been sent.
+ *
+ * If the message was encoded in to a pooled encode buffer the buffer is returned to the pool once the result has been
+ * set, senders should use getEncodedMessageBuffer and getEncodedMessageLength to write the message without copying it.
  *
  */
 public class GENOutgoingMessageHolder
 {
   /**
-   * The reply queue
+   * The optional listener informed of the result, may be NULL
+   */
+  private final GENOutgoingMessageListener listener;
+  /**
+   * The result, NULL until there has been an attempt to send the message
    */
-  private final BlockingQueue<Boolean> replyQueue;
+  private Boolean result = null;
 
   /**
    * The destination root URI, holds the connection level URI
@@ -55,12 +63,24 @@ public class GENOutgoingMessageHolder
    */
   private final boolean lastForHandle;
   /**
-   * The encoded message
+   * The encoded message, created on demand if the message is held in an encode buffer
+   */
+  private byte[] encodedMessage;
+  /**
+   * The pooled buffer holding the encoded message, may be NULL
+   */
+  private GENEncodeBuffer encodeBuffer = null;
+  /**
+   * The header of the message, may be NULL
+   */
+  private MALMessageHeader header = null;
+  /**
+   * The time this holder was created, from System.nanoTime
    */
-  private final byte[] encodedMessage;
+  private final long creationTime = System.nanoTime();
 
   /**
-   * Will construct a new object and create a new internal reply queue.
+   * Will construct a new object without a listener, the originator should call getResult to wait for the result.
    *
    * @param destinationRootURI The destination root URI, holds the connection level URI.
    * @param destinationURI The complete destination URI.
@@ -74,7 +94,27 @@ public class GENOutgoingMessageHolder
           final boolean lastForHandle,
           byte[] encodedMessage)
   {
-    replyQueue = new LinkedBlockingQueue<Boolean>();
+    this(destinationRootURI, destinationURI, multiSendHandle, lastForHandle, encodedMessage, null);
+  }
+
+  /**
+   * Will construct a new object that informs the supplied listener of the result.
+   *
+   * @param destinationRootURI The destination root URI, holds the connection level URI.
+   * @param destinationURI The complete destination URI.
+   * @param multiSendHandle The message handle for multi-send messages, may be NULL.
+   * @param lastForHandle True if this is the last message in the multi-send for the supplied handle.
+   * @param encodedMessage The encoded message to be sent
+   * @param listener The listener to inform of the result, may be NULL.
+   */
+  public GENOutgoingMessageHolder(final String destinationRootURI,
+          final String destinationURI,
+          final Object multiSendHandle,
+          final boolean lastForHandle,
+          byte[] encodedMessage,
+          final GENOutgoingMessageListener listener)
+  {
+    this.listener = listener;
     this.destinationRootURI = destinationRootURI;
     this.destinationURI = destinationURI;
     this.multiSendHandle = multiSendHandle;
@@ -82,32 +122,152 @@ public class GENOutgoingMessageHolder
     this.encodedMessage = encodedMessage;
   }
 
+  /**
+   * Will construct a new object for a message held in a pooled encode buffer, the buffer is released once the result
+   * has been set.
+   *
+   * @param destinationRootURI The destination root URI, holds the connection level URI.
+   * @param destinationURI The complete destination URI.
+   * @param multiSendHandle The message handle for multi-send messages, may be NULL.
+   * @param lastForHandle True if this is the last message in the multi-send for the supplied handle.
+   * @param header The header of the message, used for its QoS level and priority, may be NULL.
+   * @param encodeBuffer The buffer holding the encoded message to be sent
+   * @param listener The listener to inform of the result, may be NULL.
+   */
+  public GENOutgoingMessageHolder(final String destinationRootURI,
+          final String destinationURI,
+          final Object multiSendHandle,
+          final boolean lastForHandle,
+          final MALMessageHeader header,
+          final GENEncodeBuffer encodeBuffer,
+          final GENOutgoingMessageListener listener)
+  {
+    this(destinationRootURI, destinationURI, multiSendHandle, lastForHandle, (byte[]) null, listener);
+
+    this.header = header;
+    this.encodeBuffer = encodeBuffer;
+  }
+
   /**
    * This method blocks until there is an attempt to send the message.
    *
    * @return TRUE if the message was successfully sent and FALSE if there was a communication or internal problem.
    * @throws InterruptedException in case of shutting down or internal error
    */
-  public Boolean getResult() throws InterruptedException
+  public synchronized Boolean getResult() throws InterruptedException
+  {
+    while (null == result)
+    {
+      wait();
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns true if there has been an attempt to send the message, in which case getResult will not block.
+   *
+   * @return True if the result is available.
+   */
+  public synchronized boolean isDone()
   {
-    return replyQueue.take();
+    return null != result;
   }
 
   /**
-   * Sets the result indicating if the message was sent successfully.
+   * Sets the result indicating if the message was sent successfully, and informs the listener if there is one.
    *
    * @param result TRUE if the message was successfully sent and FALSE if there was a communication or internal problem.
    */
   public void setResult(Boolean result)
   {
-    boolean inserted = replyQueue.add(result);
-    if (!inserted)
+    synchronized (this)
     {
-      // log error. According to the specification (see *add* call
-      // documentation) this will always return true, or throw an
-      // exception
-      LOGGER.log(Level.SEVERE, "Could not insert result to processing queue", new Throwable());
+      if (null != this.result)
+      {
+        LOGGER.log(Level.SEVERE, "Result already set for outgoing message", new Throwable());
+        return;
+      }
+
+      this.result = result;
+      notifyAll();
+    }
+
+    if (null != listener)
+    {
+      listener.messageSendCompleted(this, result);
     }
+
+    releaseEncodeBuffer();
+  }
+
+  /**
+   * Discards a message that was rejected before being queued, returning its encode buffer to the pool. The result is
+   * not set and the listener is not informed, the rejection is reported to the originator by the caller.
+   */
+  public void discard()
+  {
+    releaseEncodeBuffer();
+  }
+
+  /**
+   * Returns the time this holder was created, as given by System.nanoTime, for measuring the send latency.
+   *
+   * @return the creation time.
+   */
+  public long getCreationTime()
+  {
+    return creationTime;
+  }
+
+  /**
+   * Returns the header of the message.
+   *
+   * @return the header, may be NULL.
+   */
+  public MALMessageHeader getHeader()
+  {
+    return header;
+  }
+
+  /**
+   * Returns true if the message has the BESTEFFORT QoS level, and so may be dropped when the send queue is full.
+   *
+   * @return true if the message may be dropped.
+   */
+  public boolean isBestEffort()
+  {
+    return (null != header) && QoSLevel.BESTEFFORT.equals(header.getQoSlevel());
+  }
+
+  /**
+   * Returns the priority of the message, a higher value being more urgent.
+   *
+   * @return the priority, zero if not known.
+   */
+  public long getPriority()
+  {
+    if ((null == header) || (null == header.getPriority()))
+    {
+      return 0;
+    }
+
+    return header.getPriority().getValue();
+  }
+
+  /**
+   * Returns the ordinal of the QoS level of the message.
+   *
+   * @return the QoS level ordinal, zero if not known.
+   */
+  public int getQoSLevelOrdinal()
+  {
+    if ((null == header) || (null == header.getQoSlevel()))
+    {
+      return 0;
+    }
+
+    return header.getQoSlevel().getOrdinal();
   }
 
   /**
@@ -151,12 +311,68 @@ public class GENOutgoingMessageHolder
   }
 
   /**
-   * Getter for the encoded message to be sent
+   * Getter for the encoded message to be sent. If the message is held in an encode buffer this creates a copy of it,
+   * senders that can write part of an array should use getEncodedMessageBuffer instead.
    *
    * @return the encoded message
    */
-  public byte[] getEncodedMessage()
+  public synchronized byte[] getEncodedMessage()
   {
+    if ((null == encodedMessage) && (null != encodeBuffer))
+    {
+      encodedMessage = encodeBuffer.toByteArray();
+    }
+
+    return encodedMessage;
+  }
+
+  /**
+   * Returns the array holding the encoded message, which starts at index zero and is getEncodedMessageLength bytes
+   * long. The array may be longer than the message and is only valid until the result has been set.
+   *
+   * @return the array holding the encoded message
+   */
+  public synchronized byte[] getEncodedMessageBuffer()
+  {
+    if (null != encodeBuffer)
+    {
+      return encodeBuffer.getBuffer();
+    }
+
     return encodedMessage;
   }
+
+  /**
+   * Returns the length of the encoded message.
+   *
+   * @return the length of the encoded message
+   */
+  public synchronized int getEncodedMessageLength()
+  {
+    if (null != encodeBuffer)
+    {
+      return encodeBuffer.size();
+    }
+
+    return (null == encodedMessage) ? 0 : encodedMessage.length;
+  }
+
+  /**
+   * Returns the encode buffer to the pool, keeping a copy of the encoded message if one has already been requested.
+   */
+  private void releaseEncodeBuffer()
+  {
+    final GENEncodeBuffer buffer;
+
+    synchronized (this)
+    {
+      buffer = encodeBuffer;
+      encodeBuffer = null;
+    }
+
+    if (null != buffer)
+    {
+      buffer.release();
+    }
+  }
 }
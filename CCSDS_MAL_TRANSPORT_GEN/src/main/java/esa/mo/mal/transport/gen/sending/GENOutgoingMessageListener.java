@@ -0,0 +1,37 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO Generic Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.gen.sending;
+
+/**
+ * Interface used to be informed, without blocking, of the outcome of sending a message.
+ */
+public interface GENOutgoingMessageListener
+{
+  /**
+   * Called once there has been an attempt to send the message. This is called by the thread that attempted the send,
+   * so implementations should return quickly.
+   *
+   * @param message The message that was sent.
+   * @param successful True if the message was successfully sent and false if there was a communication or internal
+   * problem.
+   */
+  void messageSendCompleted(GENOutgoingMessageHolder message, boolean successful);
+}
@@ -0,0 +1,181 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO Generic Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.gen.sending;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accounts for the messages and bytes waiting to be sent against optional limits, and records the high-water marks.
+ * The accounting is lock free, a lock is only used by callers that block waiting for space.
+ *
+ * A single message is always admitted when nothing is held, even if it is larger than the byte limit, so that
+ * oversize messages cannot block forever.
+ */
+public class GENSendBudget
+{
+  private final int maxMessages;
+  private final long maxBytes;
+  private final AtomicInteger messages = new AtomicInteger(0);
+  private final AtomicLong bytes = new AtomicLong(0);
+  private final AtomicInteger messagesHighWaterMark = new AtomicInteger(0);
+  private final AtomicLong bytesHighWaterMark = new AtomicLong(0);
+  private final AtomicInteger waiters = new AtomicInteger(0);
+  private final Object lock = new Object();
+
+  /**
+   * Constructor.
+   *
+   * @param maxMessages The maximum number of messages held, zero or less for no limit.
+   * @param maxBytes The maximum number of bytes held, zero or less for no limit.
+   */
+  public GENSendBudget(final int maxMessages, final long maxBytes)
+  {
+    this.maxMessages = maxMessages;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Takes space for a message if it is available.
+   *
+   * @param size The size of the message in bytes.
+   * @return true if the space was taken, false if the budget is exhausted.
+   */
+  public boolean tryAcquire(final int size)
+  {
+    final int m = messages.incrementAndGet();
+    final long b = bytes.addAndGet(size);
+
+    if ((1 < m) && (((0 < maxMessages) && (m > maxMessages)) || ((0 < maxBytes) && (b > maxBytes))))
+    {
+      messages.decrementAndGet();
+      bytes.addAndGet(-size);
+      return false;
+    }
+
+    updateHighWaterMarks(m, b);
+    return true;
+  }
+
+  /**
+   * Takes space for a message, blocking until it is available.
+   *
+   * @param size The size of the message in bytes.
+   * @throws InterruptedException if interrupted while waiting.
+   */
+  public void acquire(final int size) throws InterruptedException
+  {
+    if (tryAcquire(size))
+    {
+      return;
+    }
+
+    synchronized (lock)
+    {
+      waiters.incrementAndGet();
+      try
+      {
+        while (!tryAcquire(size))
+        {
+          lock.wait();
+        }
+      }
+      finally
+      {
+        waiters.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Returns the space of a message that is no longer held, waking any blocked callers.
+   *
+   * @param size The size of the message in bytes.
+   */
+  public void release(final int size)
+  {
+    messages.decrementAndGet();
+    bytes.addAndGet(-size);
+
+    if (0 < waiters.get())
+    {
+      synchronized (lock)
+      {
+        lock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of messages held.
+   *
+   * @return the number of messages.
+   */
+  public int getMessages()
+  {
+    return messages.get();
+  }
+
+  /**
+   * Returns the number of bytes held.
+   *
+   * @return the number of bytes.
+   */
+  public long getBytes()
+  {
+    return bytes.get();
+  }
+
+  /**
+   * Returns the largest number of messages held at any one time.
+   *
+   * @return the high-water mark.
+   */
+  public int getMessagesHighWaterMark()
+  {
+    return messagesHighWaterMark.get();
+  }
+
+  /**
+   * Returns the largest number of bytes held at any one time.
+   *
+   * @return the high-water mark.
+   */
+  public long getBytesHighWaterMark()
+  {
+    return bytesHighWaterMark.get();
+  }
+
+  private void updateHighWaterMarks(final int m, final long b)
+  {
+    int currentMessages = messagesHighWaterMark.get();
+    while ((m > currentMessages) && !messagesHighWaterMark.compareAndSet(currentMessages, m))
+    {
+      currentMessages = messagesHighWaterMark.get();
+    }
+
+    long currentBytes = bytesHighWaterMark.get();
+    while ((b > currentBytes) && !bytesHighWaterMark.compareAndSet(currentBytes, b))
+    {
+      currentBytes = bytesHighWaterMark.get();
+    }
+  }
+}
@@ -0,0 +1,302 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO Generic Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.gen.sending;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The queue of messages waiting to be sent by the sender threads.
+ *
+ * By default messages are sent in the order they are queued, using a LinkedBlockingQueue so that producers and
+ * consumers do not contend on a single lock. If an aging time is given they are instead ordered by the priority in
+ * their header, a higher value being sent first, with each level of priority being worth the aging time of waiting. A
+ * message therefore overtakes those queued up to (difference in priority * aging time) before it, and a low priority
+ * message is never starved as it eventually becomes older than any newly queued message. Messages of the same priority
+ * are always sent in the order they are queued.
+ */
+public class GENSendQueue
+{
+  /**
+   * The priority levels used are limited to this, to stop very large priorities overflowing the ordering.
+   */
+  private static final long MAX_PRIORITY = 1000000;
+
+  private static final Comparator<Entry> ORDER = new Comparator<Entry>()
+  {
+    @Override
+    public int compare(final Entry o1, final Entry o2)
+    {
+      if (o1.key != o2.key)
+      {
+        return (o1.key < o2.key) ? -1 : 1;
+      }
+
+      return (o1.sequence < o2.sequence) ? -1 : ((o1.sequence == o2.sequence) ? 0 : 1);
+    }
+  };
+
+  private final long agingTime;
+  /**
+   * The FIFO queue, null if messages are ordered by priority.
+   */
+  private final BlockingQueue<GENOutgoingMessageHolder> fifo;
+  /**
+   * The priority queue, guarded by this object, null if messages are sent in FIFO order.
+   */
+  private final PriorityQueue<Entry> queue;
+  private long sequence = 0;
+
+  /**
+   * Constructor.
+   *
+   * @param agingTime The time in nanoseconds that one level of priority is worth, zero or less for FIFO ordering.
+   */
+  public GENSendQueue(final long agingTime)
+  {
+    this.agingTime = agingTime;
+
+    if (0 < agingTime)
+    {
+      this.fifo = null;
+      this.queue = new PriorityQueue<Entry>(16, ORDER);
+    }
+    else
+    {
+      this.fifo = new LinkedBlockingQueue<GENOutgoingMessageHolder>();
+      this.queue = null;
+    }
+  }
+
+  /**
+   * Adds a message to the queue.
+   *
+   * @param message The message.
+   */
+  public void add(final GENOutgoingMessageHolder message)
+  {
+    if (null != fifo)
+    {
+      fifo.add(message);
+      return;
+    }
+
+    final long key = System.nanoTime() - (Math.min(MAX_PRIORITY, Math.max(0, message.getPriority())) * agingTime);
+
+    synchronized (this)
+    {
+      queue.add(new Entry(message, key, sequence++));
+      notify();
+    }
+  }
+
+  /**
+   * Removes the next message, waiting for one if the queue is empty.
+   *
+   * @return the message.
+   * @throws InterruptedException if interrupted while waiting.
+   */
+  public GENOutgoingMessageHolder take() throws InterruptedException
+  {
+    if (null != fifo)
+    {
+      return fifo.take();
+    }
+
+    synchronized (this)
+    {
+      while (queue.isEmpty())
+      {
+        wait();
+      }
+
+      return queue.poll().message;
+    }
+  }
+
+  /**
+   * Removes the next message if there is one.
+   *
+   * @return the message, or null if the queue is empty.
+   */
+  public GENOutgoingMessageHolder poll()
+  {
+    if (null != fifo)
+    {
+      return fifo.poll();
+    }
+
+    synchronized (this)
+    {
+      final Entry entry = queue.poll();
+
+      return (null == entry) ? null : entry.message;
+    }
+  }
+
+  /**
+   * Removes the next message, waiting up to the given time for one if the queue is empty.
+   *
+   * @param timeout The maximum time to wait.
+   * @param unit The unit of the timeout.
+   * @return the message, or null if the time expired.
+   * @throws InterruptedException if interrupted while waiting.
+   */
+  public GENOutgoingMessageHolder poll(final long timeout, final TimeUnit unit) throws InterruptedException
+  {
+    if (null != fifo)
+    {
+      return fifo.poll(timeout, unit);
+    }
+
+    final long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+    synchronized (this)
+    {
+      while (queue.isEmpty())
+      {
+        final long remaining = deadline - System.nanoTime();
+        if (0 >= remaining)
+        {
+          return null;
+        }
+
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+      }
+
+      return queue.poll().message;
+    }
+  }
+
+  /**
+   * Removes up to the given number of messages and adds them to the list, in sending order.
+   *
+   * @param list The list to add the messages to.
+   * @param maxMessages The maximum number of messages to remove.
+   * @return the number of messages removed.
+   */
+  public int drainTo(final List<GENOutgoingMessageHolder> list, final int maxMessages)
+  {
+    if (null != fifo)
+    {
+      return fifo.drainTo(list, maxMessages);
+    }
+
+    int count = 0;
+
+    synchronized (this)
+    {
+      while ((count < maxMessages) && !queue.isEmpty())
+      {
+        list.add(queue.poll().message);
+        ++count;
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Removes the BESTEFFORT message that was queued first.
+   *
+   * @return the message, or null if there is no BESTEFFORT message queued.
+   */
+  public GENOutgoingMessageHolder removeOldestBestEffort()
+  {
+    if (null != fifo)
+    {
+      final Iterator<GENOutgoingMessageHolder> it = fifo.iterator();
+      while (it.hasNext())
+      {
+        final GENOutgoingMessageHolder messageHolder = it.next();
+
+        // another thread may have taken it in the mean time
+        if (messageHolder.isBestEffort() && fifo.remove(messageHolder))
+        {
+          return messageHolder;
+        }
+      }
+
+      return null;
+    }
+
+    synchronized (this)
+    {
+      Entry oldest = null;
+
+      for (Entry entry : queue)
+      {
+        if (entry.message.isBestEffort() && ((null == oldest) || (entry.sequence < oldest.sequence)))
+        {
+          oldest = entry;
+        }
+      }
+
+      if (null == oldest)
+      {
+        return null;
+      }
+
+      queue.remove(oldest);
+      return oldest.message;
+    }
+  }
+
+  /**
+   * Returns the number of messages queued.
+   *
+   * @return the number of messages.
+   */
+  public int size()
+  {
+    if (null != fifo)
+    {
+      return fifo.size();
+    }
+
+    synchronized (this)
+    {
+      return queue.size();
+    }
+  }
+
+  /**
+   * Holds a queued message and its position in the sending order.
+   */
+  private static final class Entry
+  {
+    private final GENOutgoingMessageHolder message;
+    private final long key;
+    private final long sequence;
+
+    private Entry(final GENOutgoingMessageHolder message, final long key, final long sequence)
+    {
+      this.message = message;
+      this.key = key;
+      this.sequence = sequence;
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO Generic Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.gen.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Growable byte buffer used when encoding messages. Instances are taken from a shared pool with acquire and handed back
+ * with release once the encoded data is no longer needed, so that the backing array is reused rather than being
+ * allocated, grown and copied again for every message.
+ *
+ * The encoded data is held in the first size() bytes of the array returned by getBuffer, which can be written directly
+ * without first copying it to a correctly sized array.
+ */
+public class GENEncodeBuffer extends ByteArrayOutputStream
+{
+  /**
+   * Initial capacity of new buffers.
+   */
+  private static final int INITIAL_CAPACITY = 1024;
+  /**
+   * Buffers that have grown beyond this capacity are not returned to the pool.
+   */
+  private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+  /**
+   * Maximum number of buffers held in the pool.
+   */
+  private static final int MAX_POOLED_BUFFERS = 256;
+  /**
+   * The pool of free buffers.
+   */
+  private static final Queue<GENEncodeBuffer> POOL = new ConcurrentLinkedQueue<GENEncodeBuffer>();
+  /**
+   * Number of buffers in the pool.
+   */
+  private static final AtomicInteger POOL_SIZE = new AtomicInteger(0);
+
+  /**
+   * Constructor.
+   */
+  private GENEncodeBuffer()
+  {
+    super(INITIAL_CAPACITY);
+  }
+
+  /**
+   * Returns an empty buffer, from the pool if one is available.
+   *
+   * @return the buffer.
+   */
+  public static GENEncodeBuffer acquire()
+  {
+    final GENEncodeBuffer buffer = POOL.poll();
+
+    if (null == buffer)
+    {
+      return new GENEncodeBuffer();
+    }
+
+    POOL_SIZE.decrementAndGet();
+
+    return buffer;
+  }
+
+  /**
+   * Returns this buffer to the pool. The buffer, and any array previously returned by getBuffer, must not be used by
+   * the caller after this.
+   */
+  public void release()
+  {
+    reset();
+
+    if ((buf.length <= MAX_RETAINED_CAPACITY) && (POOL_SIZE.incrementAndGet() <= MAX_POOLED_BUFFERS))
+    {
+      POOL.offer(this);
+    }
+    else if (buf.length <= MAX_RETAINED_CAPACITY)
+    {
+      POOL_SIZE.decrementAndGet();
+    }
+  }
+
+  /**
+   * Returns the backing array of the buffer, the encoded data is held in the first size() bytes.
+   *
+   * @return the backing array.
+   */
+  public synchronized byte[] getBuffer()
+  {
+    return buf;
+  }
+
+  /**
+   * Discards everything written to the buffer after the first size bytes.
+   *
+   * @param size The number of bytes to keep.
+   */
+  public synchronized void truncate(final int size)
+  {
+    if ((0 > size) || (count < size))
+    {
+      throw new IllegalArgumentException("Invalid buffer size: " + size);
+    }
+
+    count = size;
+  }
+}
@@ -0,0 +1,215 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO Generic Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.gen.util;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+/**
+ * Bounded, concurrent cache of JAXB contexts keyed by package name, used for the encoding and decoding of XML body
+ * parts. Creating a JAXB context is expensive so each is created once and shared, marshallers and unmarshallers are
+ * not thread safe so each thread is given its own for each context.
+ *
+ * When the cache is full an arbitrary entry is evicted to make room for a new one. Hit, miss and eviction counts of the
+ * shared instance are published with the metrics of each GEN transport.
+ */
+public class GENJAXBContextCache
+{
+  /**
+   * The shared instance used by the message bodies.
+   */
+  private static final GENJAXBContextCache INSTANCE = new GENJAXBContextCache(64);
+
+  private final int maxContexts;
+  private final ConcurrentMap<String, Entry> contexts = new ConcurrentHashMap<String, Entry>();
+  private final AtomicLong hits = new AtomicLong(0);
+  private final AtomicLong misses = new AtomicLong(0);
+  private final AtomicLong evictions = new AtomicLong(0);
+
+  /**
+   * Constructor.
+   *
+   * @param maxContexts The maximum number of JAXB contexts held.
+   */
+  public GENJAXBContextCache(final int maxContexts)
+  {
+    this.maxContexts = maxContexts;
+  }
+
+  /**
+   * Returns the shared cache instance.
+   *
+   * @return the shared cache.
+   */
+  public static GENJAXBContextCache getInstance()
+  {
+    return INSTANCE;
+  }
+
+  /**
+   * Returns the JAXB context for a package, creating it if not already cached.
+   *
+   * @param packageName The package containing the JAXB classes.
+   * @return the JAXB context.
+   * @throws JAXBException if the context cannot be created.
+   */
+  public JAXBContext getContext(final String packageName) throws JAXBException
+  {
+    return getEntry(packageName).context;
+  }
+
+  /**
+   * Returns the marshaller of the calling thread for a package.
+   *
+   * @param packageName The package containing the JAXB classes.
+   * @return the marshaller, which must only be used by the calling thread.
+   * @throws JAXBException if the context or marshaller cannot be created.
+   */
+  public Marshaller getMarshaller(final String packageName) throws JAXBException
+  {
+    final Entry entry = getEntry(packageName);
+    Marshaller marshaller = entry.marshallers.get();
+
+    if (null == marshaller)
+    {
+      marshaller = entry.context.createMarshaller();
+      entry.marshallers.set(marshaller);
+    }
+
+    return marshaller;
+  }
+
+  /**
+   * Returns the unmarshaller of the calling thread for a package.
+   *
+   * @param packageName The package containing the JAXB classes.
+   * @return the unmarshaller, which must only be used by the calling thread.
+   * @throws JAXBException if the context or unmarshaller cannot be created.
+   */
+  public Unmarshaller getUnmarshaller(final String packageName) throws JAXBException
+  {
+    final Entry entry = getEntry(packageName);
+    Unmarshaller unmarshaller = entry.unmarshallers.get();
+
+    if (null == unmarshaller)
+    {
+      unmarshaller = entry.context.createUnmarshaller();
+      entry.unmarshallers.set(unmarshaller);
+    }
+
+    return unmarshaller;
+  }
+
+  /**
+   * Returns the number of lookups that found a cached context.
+   *
+   * @return the hit count.
+   */
+  public long getHitCount()
+  {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of lookups that had to create a context.
+   *
+   * @return the miss count.
+   */
+  public long getMissCount()
+  {
+    return misses.get();
+  }
+
+  /**
+   * Returns the number of contexts evicted to keep the cache within its bound.
+   *
+   * @return the eviction count.
+   */
+  public long getEvictionCount()
+  {
+    return evictions.get();
+  }
+
+  /**
+   * Returns the number of contexts currently cached.
+   *
+   * @return the number of contexts.
+   */
+  public int getSize()
+  {
+    return contexts.size();
+  }
+
+  private Entry getEntry(final String packageName) throws JAXBException
+  {
+    final Entry entry = contexts.get(packageName);
+
+    if (null != entry)
+    {
+      hits.incrementAndGet();
+      return entry;
+    }
+
+    misses.incrementAndGet();
+
+    // created outside of any lock, if two threads race the first one stored is kept
+    final Entry newEntry = new Entry(JAXBContext.newInstance(packageName));
+
+    while (contexts.size() >= maxContexts)
+    {
+      final Iterator<String> it = contexts.keySet().iterator();
+      if (!it.hasNext())
+      {
+        break;
+      }
+
+      if (null != contexts.remove(it.next()))
+      {
+        evictions.incrementAndGet();
+      }
+    }
+
+    final Entry existing = contexts.putIfAbsent(packageName, newEntry);
+
+    return (null == existing) ? newEntry : existing;
+  }
+
+  /**
+   * Holds a JAXB context and the per thread marshallers and unmarshallers created from it.
+   */
+  private static final class Entry
+  {
+    private final JAXBContext context;
+    private final ThreadLocal<Marshaller> marshallers = new ThreadLocal<Marshaller>();
+    private final ThreadLocal<Unmarshaller> unmarshallers = new ThreadLocal<Unmarshaller>();
+
+    private Entry(final JAXBContext context)
+    {
+      this.context = context;
+    }
+  }
+}
@@ -0,0 +1,215 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO Generic Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.gen.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import static esa.mo.mal.transport.gen.GENTransport.LOGGER;
+
+/**
+ * Dispatches messages to a pool of processing threads so that messages with the same transaction id are processed one
+ * at a time and in reception order, whilst messages of different transactions are processed in parallel.
+ *
+ * Each open transaction has a mailbox held in a concurrent map. A mailbox is submitted to the executor when it receives
+ * a message while idle, and removes itself from the map once it has been drained, so no global lock is taken and the
+ * cost of dispatching a message does not depend on the number of open transactions. A runtime exception thrown by the
+ * processor is logged and the mailbox carries on with the next message of the transaction.
+ *
+ * @param <T> The type of message dispatched.
+ */
+public class GENTransactionDispatcher<T>
+{
+  /**
+   * Interface for the processing of dispatched messages.
+   *
+   * @param <T> The type of message processed.
+   */
+  public static interface MessageProcessor<T>
+  {
+    /**
+     * Processes a single message. Called by one of the executor threads.
+     *
+     * @param message The message to process.
+     */
+    void processMessage(T message);
+  }
+
+  private final ExecutorService executor;
+  private final MessageProcessor<T> processor;
+  /**
+   * The map of message mailboxes, segregated by transaction id.
+   */
+  private final ConcurrentMap<Long, TransactionMailbox> mailboxes = new ConcurrentHashMap<Long, TransactionMailbox>();
+
+  /**
+   * Constructor.
+   *
+   * @param executor The executor used to process messages.
+   * @param processor The processor that messages are passed to.
+   */
+  public GENTransactionDispatcher(ExecutorService executor, MessageProcessor<T> processor)
+  {
+    this.executor = executor;
+    this.processor = processor;
+  }
+
+  /**
+   * Adds a message to the mailbox of its transaction, scheduling the mailbox for processing if it is idle.
+   *
+   * @param transactionId The transaction id of the message.
+   * @param message The message.
+   */
+  public void dispatch(final Long transactionId, final T message)
+  {
+    while (true)
+    {
+      TransactionMailbox mailbox = mailboxes.get(transactionId);
+
+      if (null == mailbox)
+      {
+        final TransactionMailbox newMailbox = new TransactionMailbox(transactionId);
+        mailbox = mailboxes.putIfAbsent(transactionId, newMailbox);
+
+        if (null == mailbox)
+        {
+          mailbox = newMailbox;
+        }
+      }
+
+      if (mailbox.addMessage(message))
+      {
+        return;
+      }
+
+      // the mailbox has just retired, make sure it is gone and try again with a new one
+      mailboxes.remove(transactionId, mailbox);
+    }
+  }
+
+  /**
+   * Returns the number of transactions that currently have messages queued or being processed.
+   *
+   * @return the number of active transactions.
+   */
+  public int getActiveTransactionCount()
+  {
+    return mailboxes.size();
+  }
+
+  /**
+   * Holds the queue of messages for a single transaction. At most one executor thread processes a mailbox at any time.
+   */
+  private final class TransactionMailbox implements Runnable
+  {
+    private static final int IDLE = 0;
+    private static final int SCHEDULED = 1;
+    private static final int RETIRED = 2;
+    private final Long transactionId;
+    private final Queue<T> messages = new ConcurrentLinkedQueue<T>();
+    private final AtomicInteger state = new AtomicInteger(IDLE);
+
+    /**
+     * Constructor
+     *
+     * @param transactionId The transaction id of this mailbox.
+     */
+    public TransactionMailbox(final Long transactionId)
+    {
+      this.transactionId = transactionId;
+    }
+
+    /**
+     * Adds a message to the mailbox, submitting it to the executor if it was idle.
+     *
+     * @param message The message.
+     * @return False if the mailbox has retired and the message was not added.
+     */
+    public boolean addMessage(final T message)
+    {
+      messages.add(message);
+
+      while (true)
+      {
+        switch (state.get())
+        {
+          case IDLE:
+            if (state.compareAndSet(IDLE, SCHEDULED))
+            {
+              executor.submit(this);
+              return true;
+            }
+            break;
+          case SCHEDULED:
+            // the processing thread will pick it up before going idle
+            return true;
+          default:
+            // retired, nobody will process this queue any more unless it was drained before retiring
+            return !messages.remove(message);
+        }
+      }
+    }
+
+    @Override
+    public void run()
+    {
+      while (true)
+      {
+        T msg;
+        while (null != (msg = messages.poll()))
+        {
+          try
+          {
+            processor.processMessage(msg);
+          }
+          catch (RuntimeException ex)
+          {
+            // the mailbox must keep draining or the transaction would stay scheduled for good
+            LOGGER.log(Level.WARNING, "GEN Error processing message of transaction " + transactionId, ex);
+          }
+        }
+
+        state.set(IDLE);
+
+        if (messages.isEmpty())
+        {
+          if (state.compareAndSet(IDLE, RETIRED))
+          {
+            mailboxes.remove(transactionId, this);
+          }
+
+          // either retired or another thread has rescheduled us
+          return;
+        }
+
+        if (!state.compareAndSet(IDLE, SCHEDULED))
+        {
+          // another thread has rescheduled us
+          return;
+        }
+      }
+    }
+  }
+}
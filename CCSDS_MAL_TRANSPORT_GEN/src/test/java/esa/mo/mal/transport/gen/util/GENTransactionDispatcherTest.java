@@ -0,0 +1,278 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO Generic Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.gen.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the mailbox states of the transaction dispatcher: an idle mailbox is scheduled by its first message, a
+ * scheduled mailbox takes further messages without being scheduled again, and a drained mailbox retires.
+ */
+public class GENTransactionDispatcherTest
+{
+  private CountingExecutor executor;
+
+  /**
+   * Creates the executor.
+   */
+  @Before
+  public void setUp()
+  {
+    executor = new CountingExecutor(4);
+  }
+
+  /**
+   * Stops the executor.
+   *
+   * @throws InterruptedException if interrupted.
+   */
+  @After
+  public void tearDown() throws InterruptedException
+  {
+    executor.shutdownNow();
+    executor.awaitTermination(5, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Messages of a transaction are processed in dispatch order, and the mailbox retires once drained.
+   *
+   * @throws InterruptedException if interrupted.
+   */
+  @Test
+  public void testOrderWithinTransaction() throws InterruptedException
+  {
+    final int count = 1000;
+    final CountDownLatch done = new CountDownLatch(count);
+    final List<Integer> processed = Collections.synchronizedList(new ArrayList<Integer>());
+    final GENTransactionDispatcher<Integer> dispatcher = new GENTransactionDispatcher<Integer>(executor,
+            new GENTransactionDispatcher.MessageProcessor<Integer>()
+    {
+      @Override
+      public void processMessage(Integer message)
+      {
+        processed.add(message);
+        done.countDown();
+      }
+    });
+
+    for (int i = 0; i < count; i++)
+    {
+      dispatcher.dispatch(1L, i);
+    }
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    for (int i = 0; i < count; i++)
+    {
+      assertEquals(Integer.valueOf(i), processed.get(i));
+    }
+
+    waitForRetirement(dispatcher);
+  }
+
+  /**
+   * A scheduled mailbox takes the messages dispatched while it is being processed without being submitted again.
+   *
+   * @throws InterruptedException if interrupted.
+   */
+  @Test
+  public void testScheduledMailboxIsNotResubmitted() throws InterruptedException
+  {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(3);
+    final GENTransactionDispatcher<Integer> dispatcher = new GENTransactionDispatcher<Integer>(executor,
+            new GENTransactionDispatcher.MessageProcessor<Integer>()
+    {
+      @Override
+      public void processMessage(Integer message)
+      {
+        started.countDown();
+        try
+        {
+          release.await();
+        }
+        catch (InterruptedException ex)
+        {
+          Thread.currentThread().interrupt();
+        }
+        done.countDown();
+      }
+    });
+
+    dispatcher.dispatch(7L, 0);
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    dispatcher.dispatch(7L, 1);
+    dispatcher.dispatch(7L, 2);
+    assertEquals(1, dispatcher.getActiveTransactionCount());
+    release.countDown();
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals(1, executor.submitted.get());
+    waitForRetirement(dispatcher);
+  }
+
+  /**
+   * A retired mailbox is replaced by a new one, which is scheduled again.
+   *
+   * @throws InterruptedException if interrupted.
+   */
+  @Test
+  public void testRetiredMailboxIsReplaced() throws InterruptedException
+  {
+    final AtomicInteger processed = new AtomicInteger();
+    final GENTransactionDispatcher<Integer> dispatcher = new GENTransactionDispatcher<Integer>(executor,
+            new GENTransactionDispatcher.MessageProcessor<Integer>()
+    {
+      @Override
+      public void processMessage(Integer message)
+      {
+        processed.incrementAndGet();
+      }
+    });
+
+    dispatcher.dispatch(3L, 0);
+    waitForRetirement(dispatcher);
+    dispatcher.dispatch(3L, 1);
+    waitForRetirement(dispatcher);
+
+    assertEquals(2, processed.get());
+    assertEquals(2, executor.submitted.get());
+  }
+
+  /**
+   * A runtime exception from the processor does not stop the transaction from draining.
+   *
+   * @throws InterruptedException if interrupted.
+   */
+  @Test
+  public void testProcessorExceptionKeepsDraining() throws InterruptedException
+  {
+    final CountDownLatch done = new CountDownLatch(2);
+    final GENTransactionDispatcher<Integer> dispatcher = new GENTransactionDispatcher<Integer>(executor,
+            new GENTransactionDispatcher.MessageProcessor<Integer>()
+    {
+      @Override
+      public void processMessage(Integer message)
+      {
+        if (0 == message)
+        {
+          throw new IllegalStateException("test failure");
+        }
+        done.countDown();
+      }
+    });
+
+    dispatcher.dispatch(5L, 0);
+    dispatcher.dispatch(5L, 1);
+    dispatcher.dispatch(5L, 2);
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    waitForRetirement(dispatcher);
+
+    dispatcher.dispatch(5L, 3);
+    waitForRetirement(dispatcher);
+    assertEquals(0, done.getCount());
+  }
+
+  /**
+   * Messages of different transactions are processed in parallel.
+   *
+   * @throws InterruptedException if interrupted.
+   */
+  @Test
+  public void testTransactionsInParallel() throws InterruptedException
+  {
+    final CountDownLatch both = new CountDownLatch(2);
+    final CountDownLatch done = new CountDownLatch(2);
+    final GENTransactionDispatcher<Integer> dispatcher = new GENTransactionDispatcher<Integer>(executor,
+            new GENTransactionDispatcher.MessageProcessor<Integer>()
+    {
+      @Override
+      public void processMessage(Integer message)
+      {
+        both.countDown();
+        try
+        {
+          // only returns if the other transaction is processed at the same time
+          if (both.await(5, TimeUnit.SECONDS))
+          {
+            done.countDown();
+          }
+        }
+        catch (InterruptedException ex)
+        {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+
+    dispatcher.dispatch(1L, 0);
+    dispatcher.dispatch(2L, 0);
+
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    waitForRetirement(dispatcher);
+  }
+
+  private static void waitForRetirement(final GENTransactionDispatcher<?> dispatcher) throws InterruptedException
+  {
+    final long end = System.currentTimeMillis() + 5000;
+
+    while ((0 != dispatcher.getActiveTransactionCount()) && (System.currentTimeMillis() < end))
+    {
+      Thread.sleep(1);
+    }
+
+    assertEquals(0, dispatcher.getActiveTransactionCount());
+  }
+
+  /**
+   * Thread pool that counts the tasks submitted to it.
+   */
+  private static final class CountingExecutor extends ThreadPoolExecutor
+  {
+    private final AtomicInteger submitted = new AtomicInteger();
+
+    CountingExecutor(final int threads)
+    {
+      super(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+    }
+
+    @Override
+    public void execute(final Runnable command)
+    {
+      submitted.incrementAndGet();
+      super.execute(command);
+    }
+  }
+}
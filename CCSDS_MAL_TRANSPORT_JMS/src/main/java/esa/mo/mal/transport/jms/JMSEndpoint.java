@@ -37,6 +37,7 @@ import org.ccsds.moims.mo.mal.transport.*;
 import esa.mo.mal.transport.gen.GENEndpoint;
 import esa.mo.mal.transport.gen.GENMessage;
 import esa.mo.mal.transport.gen.GENMessageHeader;
+import esa.mo.mal.transport.gen.sending.GENOutgoingMessageHolder;
 
 /**
  *
@@ -120,13 +121,13 @@ public class JMSEndpoint extends GENEndpoint implements MALEndpoint
   @Override
   protected Object internalCreateMultiSendHandle(MALMessage[] msgList) throws Exception
   {
-    return jtransport.getCurrentConnection().createSession(true, Session.AUTO_ACKNOWLEDGE);
+    return jtransport.createSession(true);
   }
 
   @Override
   protected void internalCloseMultiSendHandle(Object handle, MALMessage[] msgList) throws Exception
   {
-    Session lqs = (Session) handle;
+    JMSSession lqs = (JMSSession) handle;
 
     if (lqs.getTransacted())
     {
@@ -142,7 +143,7 @@ public class JMSEndpoint extends GENEndpoint implements MALEndpoint
   {
     try
     {
-      Session lqs = (Session) handle;
+      JMSSession lqs = (JMSSession) handle;
       boolean localSession = false;
 
       if (msg.getHeader().getInteractionType() == InteractionType.PUBSUB)
@@ -153,7 +154,7 @@ public class JMSEndpoint extends GENEndpoint implements MALEndpoint
           {
             if (null == lqs)
             {
-              lqs = jtransport.getCurrentConnection().createSession(false, Session.AUTO_ACKNOWLEDGE);
+              lqs = jtransport.createSession(false);
               localSession = true;
             }
 
@@ -164,7 +165,7 @@ public class JMSEndpoint extends GENEndpoint implements MALEndpoint
           {
             if (null == lqs)
             {
-              lqs = jtransport.getCurrentConnection().createSession(false, Session.AUTO_ACKNOWLEDGE);
+              lqs = jtransport.createSession(false);
               localSession = true;
             }
 
@@ -175,27 +176,38 @@ public class JMSEndpoint extends GENEndpoint implements MALEndpoint
           {
             if (null == lqs)
             {
-              lqs = jtransport.getCurrentConnection().createSession(true, Session.AUTO_ACKNOWLEDGE);
-              localSession = true;
-            }
+              // publish sessions, and so their destinations and producers, are reused between publishes
+              final JMSSession pqs = jtransport.getPublishSession();
+              boolean reusable = false;
 
-            internalHandlePublish(msg, lqs);
-
-            if (localSession)
-            {
-              if (lqs.getTransacted())
+              try
+              {
+                internalHandlePublish(msg, pqs);
+                pqs.commit();
+                reusable = true;
+              }
+              catch (Exception e)
+              {
+                pqs.rollback();
+                reusable = true;
+                throw e;
+              }
+              finally
               {
-                JMSTransport.RLOGGER.info("Commiting transaction");
-                lqs.commit();
+                jtransport.releasePublishSession(pqs, reusable);
               }
             }
+            else
+            {
+              internalHandlePublish(msg, lqs);
+            }
             break;
           }
           case MALPubSubOperation._DEREGISTER_STAGE:
           {
             if (null == lqs)
             {
-              lqs = jtransport.getCurrentConnection().createSession(false, Session.AUTO_ACKNOWLEDGE);
+              lqs = jtransport.createSession(false);
               localSession = true;
             }
 
@@ -206,7 +218,7 @@ public class JMSEndpoint extends GENEndpoint implements MALEndpoint
           {
             if (null == lqs)
             {
-              lqs = jtransport.getCurrentConnection().createSession(false, Session.AUTO_ACKNOWLEDGE);
+              lqs = jtransport.createSession(false);
               localSession = true;
             }
 
@@ -223,7 +235,7 @@ public class JMSEndpoint extends GENEndpoint implements MALEndpoint
       {
         if (null == lqs)
         {
-          lqs = jtransport.getCurrentConnection().createSession(false, Session.AUTO_ACKNOWLEDGE);
+          lqs = jtransport.createSession(false);
         }
 
         super.internalSendMessage(lqs, lastForHandle, msg);
@@ -246,7 +258,16 @@ public class JMSEndpoint extends GENEndpoint implements MALEndpoint
     }
   }
 
-  protected void internalHandleRegister(final GENMessage msg, Session lqs) throws MALException, MALInteractionException
+  @Override
+  protected GENOutgoingMessageHolder internalSendMessageAsync(Object handle, boolean lastForHandle, GENMessage msg) throws MALTransmitErrorException
+  {
+    // JMS messages are sent in the multi send session so are always sent synchronously
+    internalSendMessage(handle, lastForHandle, msg);
+
+    return null;
+  }
+
+  protected void internalHandleRegister(final GENMessage msg, JMSSession lqs) throws MALException, MALInteractionException
   {
     // get components parts of messsage
     Subscription subscription = (Subscription) msg.getBody().getBodyElement(0, new Subscription());
@@ -268,7 +289,7 @@ public class JMSEndpoint extends GENEndpoint implements MALEndpoint
       {
         // get the queue
         String exchangeName = providerExchangeName + ":" + msg.getHeader().getSession().toString() + ":" + msg.getHeader().getSessionName();
-        Topic dest = jtransport.getAdministrator().getTopic(lqs, exchangeName);
+        Topic dest = lqs.getTopic(exchangeName);
 
         handler = new JMSConsumeHandler(this, interruption, qs, dest, subscriptionKey, msg.getHeader().getServiceArea(), msg.getHeader().getService(), msg.getHeader().getOperation(), msg.getHeader().getAreaVersion());
         consumeHandlerMap.put(subscriptionKey, handler);
@@ -303,7 +324,7 @@ public class JMSEndpoint extends GENEndpoint implements MALEndpoint
     receiveMessage(returnMsg);
   }
 
-  protected void internalHandlePublishRegister(final GENMessage msg, Session lqs) throws MALException, MALInteractionException
+  protected void internalHandlePublishRegister(final GENMessage msg, JMSSession lqs) throws MALException, MALInteractionException
   {
     MALMessageHeader hdr = msg.getHeader();
 
@@ -323,7 +344,7 @@ public class JMSEndpoint extends GENEndpoint implements MALEndpoint
     receiveMessage(returnMsg);
   }
 
-  protected void internalHandlePublish(final GENMessage msg, Session lqs) throws MALException, MALInteractionException, MALTransmitErrorException
+  protected void internalHandlePublish(final GENMessage msg, JMSSession lqs) throws MALException, MALInteractionException, MALTransmitErrorException
   {
     JMSTransport.RLOGGER.fine("Starting PUBLISH");
     JMSPublishHandler details = publishHandlerMap.get(createProviderKey(msg.getHeader()));
@@ -341,7 +362,7 @@ public class JMSEndpoint extends GENEndpoint implements MALEndpoint
     }
   }
 
-  protected void internalHandleDeregister(final GENMessage msg, Session lqs) throws MALException, MALInteractionException
+  protected void internalHandleDeregister(final GENMessage msg, JMSSession lqs) throws MALException, MALInteractionException
   {
     // get components parts of messsage
     IdentifierList subList = (IdentifierList) msg.getBody().getBodyElement(0, new IdentifierList());
@@ -371,7 +392,7 @@ public class JMSEndpoint extends GENEndpoint implements MALEndpoint
     receiveMessage(returnMsg);
   }
 
-  protected void internalHandlePublishDeregister(final GENMessage msg, Session lqs) throws MALException, MALInteractionException
+  protected void internalHandlePublishDeregister(final GENMessage msg, JMSSession lqs) throws MALException, MALInteractionException
   {
     GENMessage returnMsg = new GENMessage(false, createReturnHeader(msg, false), null, null, (Object[]) null);
     
@@ -21,8 +21,6 @@
 package esa.mo.mal.transport.jms;
 
 import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
 import java.util.Vector;
 import java.util.logging.Level;
 import javax.jms.*;
@@ -45,7 +43,7 @@ import esa.mo.mal.transport.jms.util.StructureHelper;
 public class JMSPublishHandler
 {
   private final JMSTransport jtransport;
-  private final Set<PublisherKey> keySet = new TreeSet<PublisherKey>();
+  private final PublisherKeyIndex keyIndex = new PublisherKeyIndex();
   private final QoSLevel registerQoS;
   private IdentifierList domain = null;
 
@@ -58,14 +56,14 @@ public class JMSPublishHandler
   void setKeyList(MALMessageHeader hdr, EntityKeyList l)
   {
     domain = hdr.getDomain();
-    keySet.clear();
+    keyIndex.clear();
     for (EntityKey l1 : l)
     {
-      keySet.add(new PublisherKey(l1));
+      keyIndex.add(new PublisherKey(l1));
     }
   }
 
-  protected GENMessage publish(final GENMessage msg, Session lqs) throws MALException, MALTransmitErrorException, MALInteractionException
+  protected GENMessage publish(final GENMessage msg, JMSSession lqs) throws MALException, MALTransmitErrorException, MALInteractionException
   {
     final String strURL = msg.getHeader().getURITo().getValue();
     final int iSecond = strURL.indexOf(JMSTransport.JMS_SERVICE_DELIM);
@@ -113,38 +111,37 @@ public class JMSPublishHandler
     try
     {
       // get the queue
-      Topic destTopic = jtransport.getAdministrator().getTopic(lqs, exchangeName);
+      Topic destTopic = lqs.getTopic(exchangeName);
 
-      MessageProducer sender = lqs.createProducer(destTopic);
-      sender.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+      MessageProducer sender = lqs.getProducer(destTopic);
 
       for (PublishEntry publishEntry : publishList)
       {
         try
         {
-          ObjectMessage objMsg = lqs.createObjectMessage();
-          objMsg.setStringProperty(JMSEndpoint.DOM_PROPERTY, ldomain);
-          objMsg.setStringProperty(JMSEndpoint.NET_PROPERTY, lnetwork);
-          objMsg.setIntProperty(JMSEndpoint.ARR_PROPERTY, area);
-          objMsg.setIntProperty(JMSEndpoint.SVC_PROPERTY, service);
-          objMsg.setIntProperty(JMSEndpoint.OPN_PROPERTY, operation);
-          objMsg.setStringProperty(JMSEndpoint.EID_PROPERTY, publishEntry.eKey.getFirstSubKey().getValue());
-          objMsg.setObjectProperty(JMSEndpoint.DID_PROPERTY, publishEntry.eKey.getSecondSubKey());
-          objMsg.setObjectProperty(JMSEndpoint.OID_PROPERTY, publishEntry.eKey.getThirdSubKey());
-          objMsg.setObjectProperty(JMSEndpoint.SID_PROPERTY, publishEntry.eKey.getFourthSubKey());
-          objMsg.setBooleanProperty(JMSEndpoint.MOD_PROPERTY, publishEntry.isModification);
-          objMsg.setObject(publishEntry.update);
-          sender.send(objMsg);
-
-          JMSTransport.RLOGGER.log(Level.FINE, "JMS Sending data to {0} with {1} and ({2}, {3}, {4}, {5})", new Object[]{destTopic.getTopicName(), publishEntry.eKey, ldomain, area, service, operation});
+          BytesMessage bytesMsg = lqs.createBytesMessage(publishEntry.update, 0, publishEntry.update.length);
+          bytesMsg.setStringProperty(JMSEndpoint.DOM_PROPERTY, ldomain);
+          bytesMsg.setStringProperty(JMSEndpoint.NET_PROPERTY, lnetwork);
+          bytesMsg.setIntProperty(JMSEndpoint.ARR_PROPERTY, area);
+          bytesMsg.setIntProperty(JMSEndpoint.SVC_PROPERTY, service);
+          bytesMsg.setIntProperty(JMSEndpoint.OPN_PROPERTY, operation);
+          bytesMsg.setStringProperty(JMSEndpoint.EID_PROPERTY, publishEntry.eKey.getFirstSubKey().getValue());
+          bytesMsg.setObjectProperty(JMSEndpoint.DID_PROPERTY, publishEntry.eKey.getSecondSubKey());
+          bytesMsg.setObjectProperty(JMSEndpoint.OID_PROPERTY, publishEntry.eKey.getThirdSubKey());
+          bytesMsg.setObjectProperty(JMSEndpoint.SID_PROPERTY, publishEntry.eKey.getFourthSubKey());
+          bytesMsg.setBooleanProperty(JMSEndpoint.MOD_PROPERTY, publishEntry.isModification);
+          sender.send(bytesMsg);
+
+          if (JMSTransport.RLOGGER.isLoggable(Level.FINE))
+          {
+            JMSTransport.RLOGGER.log(Level.FINE, "JMS Sending data to {0} with {1} and ({2}, {3}, {4}, {5})", new Object[]{destTopic.getTopicName(), publishEntry.eKey, ldomain, area, service, operation});
+          }
         }
         catch (Exception e)
         {
           JMSTransport.RLOGGER.log(Level.WARNING, "JMS Error occurred when sending data {0}", e);
         }
       }
-
-      sender.close();
     }
     catch (Throwable e)
     {
@@ -168,17 +165,15 @@ public class JMSPublishHandler
       {
         UpdateHeader update = (UpdateHeader) updateList1;
         EntityKey updateKey = update.getKey();
-        boolean matched = false;
-        for (PublisherKey key : keySet)
+        PublisherKey key = (null == updateKey) ? null : keyIndex.match(new PublisherKey(updateKey));
+        if (null != key)
         {
-          if (key.matches(updateKey))
+          if (JMSTransport.RLOGGER.isLoggable(Level.FINE))
           {
             JMSTransport.RLOGGER.log(Level.FINE, "JMS : Provider allowed to publish key: {0} because of: {1}", new Object[]{updateKey, key});
-            matched = true;
-            break;
           }
         }
-        if (!matched)
+        else
         {
           lst.add(updateKey);
         }
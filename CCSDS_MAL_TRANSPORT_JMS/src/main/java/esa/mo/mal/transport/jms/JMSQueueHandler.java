@@ -90,24 +90,23 @@ public class JMSQueueHandler implements MessageListener
     
     try
     {
-      if (msg instanceof ObjectMessage)
+      if (msg instanceof BytesMessage)
       {
+        BytesMessage bytesMsg = (BytesMessage) msg;
+        byte[] dat = new byte[(int) bytesMsg.getBodyLength()];
+        bytesMsg.readBytes(dat);
+
+        queueUpdate(msg, dat);
+      }
+      else if (msg instanceof ObjectMessage)
+      {
+        // sent by transports that predate the use of bytes messages
         ObjectMessage objMsg = (ObjectMessage) msg;
         Object dat = objMsg.getObject();
         // we use the same message container as RMI protocol
         if (dat instanceof byte[])
         {
-          IdentifierList d = StructureHelper.stringToDomain(objMsg.getStringProperty(JMSEndpoint.DOM_PROPERTY));
-          Identifier n = new Identifier(objMsg.getStringProperty(JMSEndpoint.NET_PROPERTY));
-          UShort a = new UShort(objMsg.getIntProperty(JMSEndpoint.ARR_PROPERTY));
-          UShort s = new UShort(objMsg.getIntProperty(JMSEndpoint.SVC_PROPERTY));
-          UShort o = new UShort(objMsg.getIntProperty(JMSEndpoint.OPN_PROPERTY));
-          synchronized (messageQueue)
-          {
-            messageQueue.add(new JMSUpdate(d, n, a, s, o, (byte[]) dat));
-          }
-
-          messageCondition.set();
+          queueUpdate(msg, (byte[]) dat);
         }
         else
         {
@@ -126,6 +125,24 @@ public class JMSQueueHandler implements MessageListener
     }
   }
 
+  /**
+   * Queues an update for the message receiver thread along with its routing properties.
+   */
+  private void queueUpdate(Message msg, byte[] dat) throws JMSException
+  {
+    IdentifierList d = StructureHelper.stringToDomain(msg.getStringProperty(JMSEndpoint.DOM_PROPERTY));
+    Identifier n = new Identifier(msg.getStringProperty(JMSEndpoint.NET_PROPERTY));
+    UShort a = new UShort(msg.getIntProperty(JMSEndpoint.ARR_PROPERTY));
+    UShort s = new UShort(msg.getIntProperty(JMSEndpoint.SVC_PROPERTY));
+    UShort o = new UShort(msg.getIntProperty(JMSEndpoint.OPN_PROPERTY));
+    synchronized (messageQueue)
+    {
+      messageQueue.add(new JMSUpdate(d, n, a, s, o, dat));
+    }
+
+    messageCondition.set();
+  }
+
   public void stop()
   {
     mr.pleaseStop();
@@ -0,0 +1,206 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2015      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO JMS Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.jms;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.jms.BytesMessage;
+import javax.jms.DeliveryMode;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.Topic;
+
+/**
+ * A JMS session with a cache of the destinations it has looked up and of the producers it has created, so that
+ * sending several messages to the same destination in a session only looks it up and creates its producer once. The
+ * producers are closed with the session.
+ *
+ * Like the JMS session it wraps, it must only be used by one thread at a time.
+ */
+public class JMSSession
+{
+  private final JMSAbstractAdministrator administrator;
+  private final Session session;
+  private final Map<String, Topic> topics = new HashMap<String, Topic>();
+  private final Map<String, Queue> queues = new HashMap<String, Queue>();
+  private final Map<Destination, MessageProducer> producers = new HashMap<Destination, MessageProducer>();
+
+  /**
+   * Constructor.
+   *
+   * @param administrator The administrator used to look up destinations.
+   * @param session The JMS session.
+   */
+  public JMSSession(JMSAbstractAdministrator administrator, Session session)
+  {
+    this.administrator = administrator;
+    this.session = session;
+  }
+
+  /**
+   * Returns the JMS session.
+   *
+   * @return the session.
+   */
+  public Session getSession()
+  {
+    return session;
+  }
+
+  /**
+   * Returns a topic, looking it up the first time.
+   *
+   * @param name The topic name.
+   * @return the topic.
+   * @throws Exception if the topic cannot be looked up.
+   */
+  public Topic getTopic(String name) throws Exception
+  {
+    Topic topic = topics.get(name);
+
+    if (null == topic)
+    {
+      topic = administrator.getTopic(session, name);
+      if (null != topic)
+      {
+        topics.put(name, topic);
+      }
+    }
+
+    return topic;
+  }
+
+  /**
+   * Returns a queue, looking it up the first time.
+   *
+   * @param name The queue name.
+   * @return the queue.
+   * @throws Exception if the queue cannot be looked up.
+   */
+  public Queue getQueue(String name) throws Exception
+  {
+    Queue queue = queues.get(name);
+
+    if (null == queue)
+    {
+      queue = administrator.getQueue(session, name);
+      if (null != queue)
+      {
+        queues.put(name, queue);
+      }
+    }
+
+    return queue;
+  }
+
+  /**
+   * Returns a non persistent producer for a destination, creating it the first time.
+   *
+   * @param destination The destination.
+   * @return the producer.
+   * @throws JMSException if the producer cannot be created.
+   */
+  public MessageProducer getProducer(Destination destination) throws JMSException
+  {
+    MessageProducer producer = producers.get(destination);
+
+    if (null == producer)
+    {
+      producer = session.createProducer(destination);
+      producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+      producers.put(destination, producer);
+    }
+
+    return producer;
+  }
+
+  /**
+   * Creates a bytes message holding part of an array.
+   *
+   * @param data The array.
+   * @param offset The offset of the message in the array.
+   * @param length The length of the message.
+   * @return the message.
+   * @throws JMSException if the message cannot be created.
+   */
+  public BytesMessage createBytesMessage(byte[] data, int offset, int length) throws JMSException
+  {
+    final BytesMessage msg = session.createBytesMessage();
+    msg.writeBytes(data, offset, length);
+
+    return msg;
+  }
+
+  /**
+   * Returns true if the session is transacted.
+   *
+   * @return true if transacted.
+   * @throws JMSException on error.
+   */
+  public boolean getTransacted() throws JMSException
+  {
+    return session.getTransacted();
+  }
+
+  /**
+   * Commits the current transaction.
+   *
+   * @throws JMSException on error.
+   */
+  public void commit() throws JMSException
+  {
+    session.commit();
+  }
+
+  /**
+   * Rolls back the current transaction.
+   *
+   * @throws JMSException on error.
+   */
+  public void rollback() throws JMSException
+  {
+    session.rollback();
+  }
+
+  /**
+   * Closes the producers and the session.
+   *
+   * @throws JMSException on error.
+   */
+  public void close() throws JMSException
+  {
+    try
+    {
+      for (MessageProducer producer : producers.values())
+      {
+        producer.close();
+      }
+    }
+    finally
+    {
+      producers.clear();
+      session.close();
+    }
+  }
+}
@@ -23,6 +23,8 @@ package esa.mo.mal.transport.jms;
 import esa.mo.mal.transport.jms.util.MALQueuedClose;
 import java.util.Hashtable;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.jms.*;
@@ -58,10 +60,16 @@ public class JMSTransport extends GENTransport implements MALTransport
   public static final byte[] authId = "JMS".getBytes();
   public static final char JMS_SERVICE_DELIM = '_';
   public static final char JMS_BROKER_DELIM = '[';
+  /**
+   * Property that sets the number of idle transacted publish sessions kept for reuse, 4 by default.
+   */
+  public static final String PUBLISH_SESSIONS_PROPERTY = "org.ccsds.moims.mo.mal.transport.jms.publishsessions";
   private final JMSAbstractAdministrator administrator;
   private final JMSTransportQueue queue;
   private Connection queueConnection;
   private final Hashtable namingContextEnv;
+  private final BlockingQueue<JMSSession> idlePublishSessions;
+  private volatile boolean closed = false;
 
   public JMSTransport(MALTransportFactory factory, String protocol, JMSAbstractAdministrator administrator, java.util.Map properties) throws Exception
   {
@@ -70,6 +78,13 @@ public class JMSTransport extends GENTransport implements MALTransport
     this.administrator = administrator;
     queue = new JMSTransportQueue(null);
 
+    int lPublishSessions = 4;
+    if ((null != properties) && properties.containsKey(PUBLISH_SESSIONS_PROPERTY))
+    {
+      lPublishSessions = Integer.parseInt((String) properties.get(PUBLISH_SESSIONS_PROPERTY));
+    }
+    idlePublishSessions = new LinkedBlockingQueue<JMSSession>(Math.max(1, lPublishSessions));
+
     namingContextEnv = new Hashtable();
 
     namingContextEnv.put("java.naming.factory.initial",
@@ -155,6 +170,53 @@ public class JMSTransport extends GENTransport implements MALTransport
     return administrator;
   }
 
+  /**
+   * Creates a new session on the current connection.
+   *
+   * @param transacted True if the session is transacted.
+   * @return the new session.
+   * @throws Exception on error.
+   */
+  public JMSSession createSession(boolean transacted) throws Exception
+  {
+    return new JMSSession(getAdministrator(), getCurrentConnection().createSession(transacted, Session.AUTO_ACKNOWLEDGE));
+  }
+
+  /**
+   * Takes a transacted session for publishing from the idle publish sessions, or creates one if there are none. The
+   * session must be given back with releasePublishSession once its transaction has been committed or rolled back, so
+   * that its destinations and producers are reused by later publishes.
+   *
+   * @return the publish session.
+   * @throws Exception on error.
+   */
+  public JMSSession getPublishSession() throws Exception
+  {
+    final JMSSession session = idlePublishSessions.poll();
+
+    return (null != session) ? session : createSession(true);
+  }
+
+  /**
+   * Gives back a session taken with getPublishSession. It is kept for reuse if it can be reused and there are fewer
+   * idle publish sessions than the configured number, otherwise it is closed.
+   *
+   * @param session The session.
+   * @param reusable False if the session is in an unknown state, for example after a failed rollback.
+   */
+  public void releasePublishSession(JMSSession session, boolean reusable)
+  {
+    if (!reusable || closed || !idlePublishSessions.offer(session))
+    {
+      closePublishSession(session);
+    }
+    else if (closed)
+    {
+      // the transport was closed while the session was being given back
+      closeIdlePublishSessions();
+    }
+  }
+
   public Connection getCurrentConnection() throws Exception
   {
     if (queueConnection == null)
@@ -189,6 +251,9 @@ public class JMSTransport extends GENTransport implements MALTransport
     RLOGGER.info("Transport closing");
     queue.close();
 
+    closed = true;
+    closeIdlePublishSessions();
+
     try
     {
       getCurrentConnection().close();
@@ -201,6 +266,27 @@ public class JMSTransport extends GENTransport implements MALTransport
     super.close();
   }
 
+  private void closeIdlePublishSessions()
+  {
+    JMSSession session;
+    while (null != (session = idlePublishSessions.poll()))
+    {
+      closePublishSession(session);
+    }
+  }
+
+  private void closePublishSession(JMSSession session)
+  {
+    try
+    {
+      session.close();
+    }
+    catch (JMSException e)
+    {
+      RLOGGER.log(Level.WARNING, "Error closing publish session", e);
+    }
+  }
+
   private class JMSTransportQueue extends MALQueuedClose<GENMessage>
   {
     public JMSTransportQueue(MALClose parent) throws InterruptedException
@@ -232,12 +318,12 @@ public class JMSTransport extends GENTransport implements MALTransport
     {
       String sendRoutingKey = tmsg.getDestinationURI().substring(remoteRootURI.length() + 1);
       
-      RLOGGER.log(Level.INFO, "Attempting to send to {0}", new Object[]
+      RLOGGER.log(Level.FINE, "Attempting to send to {0}", new Object[]
       {
         remoteRootURI
       });
 
-      Session lqs = (Session) tmsg.getMultiSendHandle();
+      JMSSession lqs = (JMSSession) tmsg.getMultiSendHandle();
 
       try
       {
@@ -245,7 +331,7 @@ public class JMSTransport extends GENTransport implements MALTransport
         Queue destQueue = null;
         try
         {
-          destQueue = getAdministrator().getQueue(lqs, sendRoutingKey);
+          destQueue = lqs.getQueue(sendRoutingKey);
         }
         catch (NameNotFoundException e)
         {
@@ -256,22 +342,16 @@ public class JMSTransport extends GENTransport implements MALTransport
 
         if (null != destQueue)
         {
-          ObjectMessage objMsg = lqs.createObjectMessage();
-          objMsg.setIntProperty(JMSEndpoint.ARR_PROPERTY, 1);
-          objMsg.setIntProperty(JMSEndpoint.SVC_PROPERTY, 1);
-          objMsg.setIntProperty(JMSEndpoint.OPN_PROPERTY, 1);
-
-          objMsg.setObject(tmsg.getEncodedMessage());
-
-          MessageProducer sender = lqs.createProducer(destQueue);
-          sender.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
-          sender.send(objMsg);
+          BytesMessage bytesMsg = lqs.createBytesMessage(tmsg.getEncodedMessageBuffer(), 0, tmsg.getEncodedMessageLength());
+          bytesMsg.setIntProperty(JMSEndpoint.ARR_PROPERTY, 1);
+          bytesMsg.setIntProperty(JMSEndpoint.SVC_PROPERTY, 1);
+          bytesMsg.setIntProperty(JMSEndpoint.OPN_PROPERTY, 1);
 
-          sender.close();
+          lqs.getProducer(destQueue).send(bytesMsg);
 
-          RLOGGER.log(Level.INFO, "Sending data to {0} : {2}", new Object[]
+          RLOGGER.log(Level.FINE, "Sending data to {0} : {1} bytes", new Object[]
           {
-            sendRoutingKey, tmsg.getEncodedMessage()
+            sendRoutingKey, tmsg.getEncodedMessageLength()
           });
 
           if (tmsg.isLastForHandle())
@@ -284,7 +364,7 @@ public class JMSTransport extends GENTransport implements MALTransport
 
             lqs.close();
           }
-          RLOGGER.log(Level.INFO, "Sent data to {0}", new Object[]
+          RLOGGER.log(Level.FINE, "Sent data to {0}", new Object[]
           {
             sendRoutingKey
           });
@@ -77,6 +77,7 @@ public class JMSTransportFactoryImpl extends MALTransportFactory
         }
 
         transport.init();
+        transport.connectToPeers();
       }
       catch (Exception ex)
       {
@@ -0,0 +1,208 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2015      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO JMS Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.jms;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the keys a provider has registered to publish, used to check update keys against them without scanning
+ * them all.
+ *
+ * Keys without wildcards are found with a single hash lookup. All keys are also held in a trie with one level per
+ * sub-key, where a node has a child per registered value and a separate child for the wildcard, so a key without
+ * wildcards is matched in at most sixteen lookups whatever the number of registered keys. Wildcards in the key being
+ * matched, which are rare, visit every child of the level they are at.
+ *
+ * Not thread safe.
+ */
+public final class PublisherKeyIndex
+{
+  private static final int SUB_KEY_COUNT = 4;
+  private static final String ALL_ID = "*";
+  private static final Long ALL_NUMBER = 0L;
+  /**
+   * Stands for null sub-key values, which only match null or a wildcard.
+   */
+  private static final Object NULL_VALUE = new Object();
+  private final Set<PublisherKey> keys = new HashSet<PublisherKey>();
+  private final Node root = new Node();
+
+  /**
+   * Adds a registered key.
+   *
+   * @param key The key.
+   */
+  public void add(final PublisherKey key)
+  {
+    if (keys.add(key))
+    {
+      Node node = root;
+      for (int i = 0; i < SUB_KEY_COUNT; i++)
+      {
+        node = node.getOrCreateChild(i, subKey(key, i));
+      }
+
+      node.key = key;
+    }
+  }
+
+  /**
+   * Removes all the registered keys.
+   */
+  public void clear()
+  {
+    keys.clear();
+    root.clear();
+  }
+
+  /**
+   * Returns the number of registered keys.
+   *
+   * @return the number of keys.
+   */
+  public int size()
+  {
+    return keys.size();
+  }
+
+  /**
+   * Returns a registered key that matches the supplied key taking into account wildcards, as PublisherKey.matches.
+   *
+   * @param key The key to match.
+   * @return a matching registered key, or null if there is none.
+   */
+  public PublisherKey match(final PublisherKey key)
+  {
+    if (keys.contains(key))
+    {
+      // equal keys always match
+      return key;
+    }
+
+    return match(root, key, 0);
+  }
+
+  private static PublisherKey match(final Node node, final PublisherKey key, final int level)
+  {
+    if (SUB_KEY_COUNT == level)
+    {
+      return node.key;
+    }
+
+    final Object value = subKey(key, level);
+    PublisherKey found = null;
+
+    if (isWildcard(level, value))
+    {
+      for (Node child : node.children.values())
+      {
+        found = match(child, key, level + 1);
+        if (null != found)
+        {
+          return found;
+        }
+      }
+    }
+    else
+    {
+      final Node child = node.children.get(indexValue(value));
+      if (null != child)
+      {
+        found = match(child, key, level + 1);
+      }
+    }
+
+    if ((null == found) && (null != node.wildcard))
+    {
+      found = match(node.wildcard, key, level + 1);
+    }
+
+    return found;
+  }
+
+  private static Object subKey(final PublisherKey key, final int level)
+  {
+    switch (level)
+    {
+      case 0:
+        return key.key1;
+      case 1:
+        return key.key2;
+      case 2:
+        return key.key3;
+      default:
+        return key.key4;
+    }
+  }
+
+  private static boolean isWildcard(final int level, final Object value)
+  {
+    return (0 == level) ? ALL_ID.equals(value) : ALL_NUMBER.equals(value);
+  }
+
+  private static Object indexValue(final Object value)
+  {
+    return (null == value) ? NULL_VALUE : value;
+  }
+
+  /**
+   * A node of the trie, the nodes of the last level hold the registered key.
+   */
+  private static final class Node
+  {
+    private final Map<Object, Node> children = new HashMap<Object, Node>();
+    private Node wildcard = null;
+    private PublisherKey key = null;
+
+    private Node getOrCreateChild(final int level, final Object value)
+    {
+      if (isWildcard(level, value))
+      {
+        if (null == wildcard)
+        {
+          wildcard = new Node();
+        }
+
+        return wildcard;
+      }
+
+      final Object indexValue = indexValue(value);
+      Node child = children.get(indexValue);
+      if (null == child)
+      {
+        child = new Node();
+        children.put(indexValue, child);
+      }
+
+      return child;
+    }
+
+    private void clear()
+    {
+      children.clear();
+      wildcard = null;
+      key = null;
+    }
+  }
+}
@@ -0,0 +1,38 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2013      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO RMI Transport
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.rmi;
+
+import java.rmi.RemoteException;
+
+/**
+ * Extension of the RMI interface for the reception of several encoded messages in one remote call. A sender uses it
+ * only if the remote object implements it, otherwise it falls back to one call per message.
+ */
+public interface RMIBatchReceiveInterface extends RMIReceiveInterface
+{
+  /**
+   * Used to pass several encoded messages to a RMI Transport instance, they are received in array order.
+   *
+   * @param messages The encoded messages.
+   * @throws RemoteException On remote error.
+   */
+  void receive(final byte[][] messages) throws RemoteException;
+}
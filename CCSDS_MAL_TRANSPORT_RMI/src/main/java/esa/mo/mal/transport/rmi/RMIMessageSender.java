@@ -20,20 +20,25 @@
  */
 package esa.mo.mal.transport.rmi;
 
-import esa.mo.mal.transport.gen.sending.GENMessageSender;
+import esa.mo.mal.transport.gen.sending.GENBatchMessageSender;
 import esa.mo.mal.transport.gen.sending.GENOutgoingMessageHolder;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.rmi.Naming;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
+import java.util.List;
 
 /**
  * implementation of the GENMessageSender information for RMI transport.
+ *
+ * Batches of messages are passed in one remote call if the remote transport supports it, otherwise, for older
+ * transports, with one remote call per message.
  */
-public class RMIMessageSender implements GENMessageSender
+public class RMIMessageSender implements GENBatchMessageSender
 {
   private RMIReceiveInterface destinationRMI;
+  private final boolean supportsBatches;
 
   /**
    * Constructor.
@@ -46,6 +51,8 @@ public class RMIMessageSender implements GENMessageSender
   public RMIMessageSender(String remoteRootURI) throws NotBoundException, MalformedURLException, RemoteException
   {
     destinationRMI = (RMIReceiveInterface) Naming.lookup(remoteRootURI);
+    // the stub of the remote object implements the remote interfaces of that object, so this tells us its version
+    supportsBatches = destinationRMI instanceof RMIBatchReceiveInterface;
   }
 
   @Override
@@ -59,6 +66,33 @@ public class RMIMessageSender implements GENMessageSender
     }
   }
 
+  @Override
+  public void sendEncodedMessages(List<GENOutgoingMessageHolder> packetData) throws IOException
+  {
+    RMIReceiveInterface remoteIf = destinationRMI;
+
+    if (null != remoteIf)
+    {
+      if (supportsBatches)
+      {
+        final byte[][] packets = new byte[packetData.size()][];
+        for (int i = 0; i < packets.length; i++)
+        {
+          packets[i] = packetData.get(i).getEncodedMessage();
+        }
+
+        ((RMIBatchReceiveInterface) remoteIf).receive(packets);
+      }
+      else
+      {
+        for (GENOutgoingMessageHolder packet : packetData)
+        {
+          remoteIf.receive(packet.getEncodedMessage());
+        }
+      }
+    }
+  }
+
   @Override
   public void close()
   {
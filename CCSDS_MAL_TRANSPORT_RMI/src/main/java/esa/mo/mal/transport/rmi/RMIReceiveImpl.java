@@ -24,9 +24,10 @@ import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 
 /**
- * The implementation of the RMIReceiveInterface interface. Holds a reference to the transport instance that created it.
+ * The implementation of the RMIBatchReceiveInterface interface. Holds a reference to the transport instance that
+ * created it.
  */
-public class RMIReceiveImpl extends UnicastRemoteObject implements RMIReceiveInterface
+public class RMIReceiveImpl extends UnicastRemoteObject implements RMIBatchReceiveInterface
 {
   private static final long serialVersionUID = 0x1000001111100L;
   private final transient RMITransport transport;
@@ -47,4 +48,13 @@ public class RMIReceiveImpl extends UnicastRemoteObject implements RMIReceiveInt
   {
     transport.receive(packet, null);
   }
+
+  @Override
+  public void receive(final byte[][] packets) throws RemoteException
+  {
+    for (byte[] packet : packets)
+    {
+      transport.receive(packet, null);
+    }
+  }
 }
@@ -57,6 +57,11 @@ public class RMITransport extends GENTransport
    */
   public static final java.util.logging.Logger RLOGGER = Logger.getLogger("org.ccsds.moims.mo.mal.transport.rmi");
   private static final char RMI_PORT_DELIM = ':';
+  /**
+   * The number of messages passed in one remote call when send batching is not configured, each call is a round trip
+   * so batching is on by default for this transport.
+   */
+  private static final int DEFAULT_SEND_BATCH_SIZE = 64;
   private Registry registry;
   private int portNumber;
   private UnicastRemoteObject ourRMIinterface;
@@ -113,6 +118,17 @@ public class RMITransport extends GENTransport
     }
   }
 
+  @Override
+  public int getSendBatchSize()
+  {
+    if ((null == qosProperties) || !qosProperties.containsKey(SEND_BATCH_SIZE_PROPERTY))
+    {
+      return DEFAULT_SEND_BATCH_SIZE;
+    }
+
+    return super.getSendBatchSize();
+  }
+
   @Override
   protected String createTransportAddress() throws MALException
   {
@@ -219,13 +235,13 @@ public class RMITransport extends GENTransport
     catch (NotBoundException e)
     {
       RLOGGER.log(Level.WARNING, "RMI could not connect to :" + remoteRootURI, e);
-      throw new MALTransmitErrorException(msg.getHeader(), new MALStandardError(MALHelper.DESTINATION_UNKNOWN_ERROR_NUMBER, null), null);
+      throw new MALTransmitErrorException(headerOf(msg), new MALStandardError(MALHelper.DESTINATION_UNKNOWN_ERROR_NUMBER, null), null);
 
     }
     catch (IOException e)
     {
       RLOGGER.log(Level.WARNING, "RMI could not connect to :" + remoteRootURI, e);
-      throw new MALTransmitErrorException(msg.getHeader(), new MALStandardError(MALHelper.DELIVERY_FAILED_ERROR_NUMBER, null), null);
+      throw new MALTransmitErrorException(headerOf(msg), new MALStandardError(MALHelper.DELIVERY_FAILED_ERROR_NUMBER, null), null);
     }
   }
 }
@@ -54,6 +54,7 @@ public class RMITransportFactoryImpl extends MALTransportFactory
       {
         transport = new RMITransport(getProtocol(), this, properties);
         transport.init();
+        transport.connectToPeers();
       }
 
       return transport;
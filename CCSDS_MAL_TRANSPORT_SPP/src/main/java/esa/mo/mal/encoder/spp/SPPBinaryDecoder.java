@@ -66,6 +66,16 @@ public class SPPBinaryDecoder extends esa.mo.mal.encoder.binary.fixed.FixedBinar
     super(new SPPBufferHolder(null, src, offset, src.length));
   }
 
+  /**
+   * Constructor.
+   *
+   * @param src Byte buffer to read from, from its position to its limit.
+   */
+  public SPPBinaryDecoder(final java.nio.ByteBuffer src)
+  {
+    super(new SPPBufferHolder(src));
+  }
+
   /**
    * Constructor.
    *
@@ -99,6 +109,23 @@ public class SPPBinaryDecoder extends esa.mo.mal.encoder.binary.fixed.FixedBinar
     return null;
   }
 
+  @Override
+  public java.nio.ByteBuffer decodeBlobBuffer() throws MALException
+  {
+    return sourceBuffer.getSlice(sourceBuffer.getSignedShort());
+  }
+
+  @Override
+  public java.nio.ByteBuffer decodeNullableBlobBuffer() throws MALException
+  {
+    if (sourceBuffer.getBool())
+    {
+      return decodeBlobBuffer();
+    }
+
+    return null;
+  }
+
   @Override
   public ULong decodeULong() throws MALException
   {
@@ -250,6 +277,16 @@ public class SPPBinaryDecoder extends esa.mo.mal.encoder.binary.fixed.FixedBinar
       super(is, buf, offset, length);
     }
 
+    /**
+     * Constructor.
+     *
+     * @param src Source buffer to use, from its position to its limit.
+     */
+    public SPPBufferHolder(final java.nio.ByteBuffer src)
+    {
+      super(src);
+    }
+
     @Override
     public String getString() throws MALException
     {
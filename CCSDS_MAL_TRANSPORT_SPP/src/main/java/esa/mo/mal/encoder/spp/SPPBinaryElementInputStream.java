@@ -45,4 +45,14 @@ public class SPPBinaryElementInputStream extends esa.mo.mal.encoder.binary.fixed
   {
     super(new SPPBinaryDecoder(buf, offset));
   }
+
+  /**
+   * Constructor.
+   *
+   * @param buf Byte buffer to read from, from its position to its limit.
+   */
+  public SPPBinaryElementInputStream(final java.nio.ByteBuffer buf)
+  {
+    super(new SPPBinaryDecoder(buf));
+  }
 }
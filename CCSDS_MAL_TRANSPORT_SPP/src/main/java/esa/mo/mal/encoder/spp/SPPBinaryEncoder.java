@@ -45,6 +45,7 @@ public class SPPBinaryEncoder extends esa.mo.mal.encoder.binary.fixed.FixedBinar
   };
   protected static final BigInteger ZERO = new BigInteger("0");
   protected static final BigInteger MAX_ULONG = new BigInteger("18446744073709551615");
+  private final FixedStreamHolder fixedOutputStream;
 
   /**
    * Constructor.
@@ -54,6 +55,8 @@ public class SPPBinaryEncoder extends esa.mo.mal.encoder.binary.fixed.FixedBinar
   public SPPBinaryEncoder(final OutputStream os)
   {
     super(new SPPStreamHolder(os));
+
+    fixedOutputStream = (FixedStreamHolder) outputStream;
   }
 
   @Override
@@ -124,15 +127,9 @@ public class SPPBinaryEncoder extends esa.mo.mal.encoder.binary.fixed.FixedBinar
   @Override
   public void encodeDuration(Duration value) throws MALException
   {
-    long tm = value.getValue();
-
-    int ms = (int) (tm % 1000);
-    int s = (int) (tm / 1000);
-
     try
     {
-      outputStream.directAdd(java.nio.ByteBuffer.allocate(4).putInt(s).array(), 0, 4);
-      outputStream.directAdd(java.nio.ByteBuffer.allocate(4).putInt(ms).array(), 1, 3);
+      addSecondsAndMillis(value.getValue());
     }
     catch (IOException ex)
     {
@@ -143,15 +140,9 @@ public class SPPBinaryEncoder extends esa.mo.mal.encoder.binary.fixed.FixedBinar
   @Override
   public void encodeFineTime(FineTime value) throws MALException
   {
-    long tm = value.getValue();
-
-    int ms = (int) (tm % 1000);
-    int s = (int) (tm / 1000);
-
     try
     {
-      outputStream.directAdd(java.nio.ByteBuffer.allocate(4).putInt(s).array(), 0, 4);
-      outputStream.directAdd(java.nio.ByteBuffer.allocate(4).putInt(ms).array(), 1, 3);
+      addSecondsAndMillis(value.getValue());
     }
     catch (IOException ex)
     {
@@ -162,15 +153,9 @@ public class SPPBinaryEncoder extends esa.mo.mal.encoder.binary.fixed.FixedBinar
   @Override
   public void encodeTime(Time value) throws MALException
   {
-    long tm = value.getValue();
-
-    int ms = (int) (tm % 1000);
-    int s = (int) (tm / 1000);
-
     try
     {
-      outputStream.directAdd(java.nio.ByteBuffer.allocate(4).putInt(s).array(), 0, 4);
-      outputStream.directAdd(java.nio.ByteBuffer.allocate(4).putInt(ms).array(), 1, 3);
+      addSecondsAndMillis(value.getValue());
     }
     catch (IOException ex)
     {
@@ -178,6 +163,20 @@ public class SPPBinaryEncoder extends esa.mo.mal.encoder.binary.fixed.FixedBinar
     }
   }
 
+  /**
+   * Adds a time in milliseconds as a 4 byte seconds field followed by a 3 byte milliseconds field.
+   *
+   * @param tm the time in milliseconds.
+   * @throws IOException is there is a problem adding the value to the stream.
+   */
+  protected void addSecondsAndMillis(final long tm) throws IOException
+  {
+    final int ms = (int) (tm % 1000);
+    final int s = (int) (tm / 1000);
+
+    fixedOutputStream.addFixed((((long) s) << 24) | (ms & 0xFFFFFF), 7);
+  }
+
   @Override
   public void encodeNullableBlob(Blob value) throws MALException
   {
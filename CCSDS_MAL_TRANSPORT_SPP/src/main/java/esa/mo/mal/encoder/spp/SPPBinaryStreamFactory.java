@@ -38,6 +38,13 @@ public class SPPBinaryStreamFactory extends esa.mo.mal.encoder.binary.fixed.Fixe
     return new SPPBinaryElementInputStream(is);
   }
 
+  @Override
+  public org.ccsds.moims.mo.mal.encoding.MALElementInputStream createInputStream(final java.nio.ByteBuffer buffer)
+          throws org.ccsds.moims.mo.mal.MALException
+  {
+    return new SPPBinaryElementInputStream(buffer);
+  }
+
   @Override
   public org.ccsds.moims.mo.mal.encoding.MALElementOutputStream createOutputStream(final java.io.OutputStream os)
           throws org.ccsds.moims.mo.mal.MALException
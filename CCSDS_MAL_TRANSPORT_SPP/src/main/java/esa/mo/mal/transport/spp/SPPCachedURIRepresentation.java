@@ -0,0 +1,183 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2015      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO SPP Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.spp;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.ccsds.moims.mo.mal.structures.URI;
+
+/**
+ * URI representation that caches the mapping of another representation between APIDs and subIds and URIs, so that the
+ * encoding and decoding of SPP headers does not parse or create a URI per packet. The cached URIs and addresses are
+ * immutable and shared by all headers, therefore the mapping of the wrapped representation must not change over time.
+ *
+ * The URIs of all APID and subId pairs are cached as they are first requested, the addresses of URIs are cached up to
+ * a maximum count, after which unknown URIs are passed to the wrapped representation.
+ */
+public class SPPCachedURIRepresentation implements SPPURIRepresentation
+{
+  /**
+   * The default maximum number of URI addresses that are cached.
+   */
+  public static final int DEFAULT_MAX_CACHED_ADDRESSES = 4096;
+  private static final int APID_COUNT = 0x800;
+  private static final int SUBID_COUNT = 0x100;
+  private final SPPURIRepresentation delegate;
+  private final int maxCachedAddresses;
+  private final AtomicReferenceArray<AtomicReferenceArray<URI>> uris
+          = new AtomicReferenceArray<AtomicReferenceArray<URI>>(APID_COUNT);
+  private final ConcurrentMap<String, Address> addresses = new ConcurrentHashMap<String, Address>();
+
+  /**
+   * Constructor.
+   *
+   * @param delegate The representation whose mapping is cached.
+   */
+  public SPPCachedURIRepresentation(final SPPURIRepresentation delegate)
+  {
+    this(delegate, DEFAULT_MAX_CACHED_ADDRESSES);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param delegate The representation whose mapping is cached.
+   * @param maxCachedAddresses The maximum number of URI addresses to cache.
+   */
+  public SPPCachedURIRepresentation(final SPPURIRepresentation delegate, final int maxCachedAddresses)
+  {
+    this.delegate = delegate;
+    this.maxCachedAddresses = maxCachedAddresses;
+  }
+
+  @Override
+  public short getApid(final URI uri)
+  {
+    return getAddress(uri).apid;
+  }
+
+  @Override
+  public boolean hasSubId(final URI uri)
+  {
+    return getAddress(uri).hasSubId;
+  }
+
+  @Override
+  public short getSubId(final URI uri)
+  {
+    return getAddress(uri).subId;
+  }
+
+  @Override
+  public URI getURI(final short apid, final Short subId)
+  {
+    if ((0 > apid) || (APID_COUNT <= apid) || ((null != subId) && ((0 > subId) || (SUBID_COUNT <= subId))))
+    {
+      return delegate.getURI(apid, subId);
+    }
+
+    AtomicReferenceArray<URI> apidURIs = uris.get(apid);
+
+    if (null == apidURIs)
+    {
+      // index zero holds the URI without a subId
+      uris.compareAndSet(apid, null, new AtomicReferenceArray<URI>(SUBID_COUNT + 1));
+      apidURIs = uris.get(apid);
+    }
+
+    final int index = (null == subId) ? 0 : subId + 1;
+    URI uri = apidURIs.get(index);
+
+    if (null == uri)
+    {
+      uri = delegate.getURI(apid, subId);
+
+      if (apidURIs.compareAndSet(index, null, uri))
+      {
+        // the address of a URI that we hand out is known without parsing it
+        cacheAddress(uri.getValue(), new Address(apid, subId));
+      }
+      else
+      {
+        uri = apidURIs.get(index);
+      }
+    }
+
+    return uri;
+  }
+
+  /**
+   * Returns the number of URI addresses currently cached.
+   *
+   * @return the count.
+   */
+  public int getCachedAddressCount()
+  {
+    return addresses.size();
+  }
+
+  private Address getAddress(final URI uri)
+  {
+    final String value = uri.getValue();
+    Address address = addresses.get(value);
+
+    if (null == address)
+    {
+      final boolean hasSubId = delegate.hasSubId(uri);
+      address = new Address(delegate.getApid(uri), hasSubId ? delegate.getSubId(uri) : null);
+      cacheAddress(value, address);
+    }
+
+    return address;
+  }
+
+  private void cacheAddress(final String value, final Address address)
+  {
+    if (maxCachedAddresses > addresses.size())
+    {
+      addresses.putIfAbsent(value, address);
+    }
+  }
+
+  /**
+   * Immutable APID and optional subId of a URI.
+   */
+  private static final class Address
+  {
+    private final short apid;
+    private final boolean hasSubId;
+    private final short subId;
+
+    /**
+     * Constructor.
+     *
+     * @param apid The APID.
+     * @param subId The subId, null if there is none.
+     */
+    Address(final short apid, final Short subId)
+    {
+      this.apid = apid;
+      this.hasSubId = null != subId;
+      this.subId = hasSubId ? subId : 0;
+    }
+  }
+}
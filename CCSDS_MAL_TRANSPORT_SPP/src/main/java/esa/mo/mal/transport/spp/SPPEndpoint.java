@@ -0,0 +1,259 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2015      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO SPP Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.spp;
+
+import esa.mo.mal.transport.gen.GENEndpoint;
+import java.util.Map;
+import org.ccsds.moims.mo.mal.MALException;
+import org.ccsds.moims.mo.mal.MALInteractionException;
+import org.ccsds.moims.mo.mal.MALOperation;
+import org.ccsds.moims.mo.mal.structures.*;
+import org.ccsds.moims.mo.mal.transport.MALEncodedBody;
+import org.ccsds.moims.mo.mal.transport.MALMessage;
+
+/**
+ * SPP endpoint, creates SPP messages whose headers take their APIDs and subIds from the URIs of the transport.
+ */
+public class SPPEndpoint extends GENEndpoint
+{
+  private final SPPTransport transport;
+  private final boolean wrapBodyParts;
+  private final SPPSourceSequenceCounter ssCounter;
+  private final SPPURIRepresentation uriRepresentation;
+
+  /**
+   * Constructor.
+   *
+   * @param transport Parent transport.
+   * @param localName Endpoint local name.
+   * @param uri The URI string for this end point.
+   * @param wrapBodyParts True if the encoded body parts should be wrapped in BLOBs.
+   */
+  public SPPEndpoint(final SPPTransport transport, final String localName, final String uri, final boolean wrapBodyParts)
+  {
+    super(transport, localName, uri, wrapBodyParts);
+
+    this.transport = transport;
+    this.wrapBodyParts = wrapBodyParts;
+    this.ssCounter = transport.getSourceSequenceCounter();
+    this.uriRepresentation = transport.getURIRepresentation();
+  }
+
+  @Override
+  public MALMessage createMessage(final Blob authenticationId,
+          final URI uriTo,
+          final Time timestamp,
+          final QoSLevel qosLevel,
+          final UInteger priority,
+          final IdentifierList domain,
+          final Identifier networkZone,
+          final SessionType session,
+          final Identifier sessionName,
+          final InteractionType interactionType,
+          final UOctet interactionStage,
+          final Long transactionId,
+          final UShort serviceArea,
+          final UShort service,
+          final UShort operation,
+          final UOctet serviceVersion,
+          final Boolean isErrorMessage,
+          final Map qosProperties,
+          final Object... body) throws IllegalArgumentException, MALException
+  {
+    try
+    {
+      return new SPPMessage(wrapBodyParts, transport.getSegmentSize(), new SPPMessageHeader(uriRepresentation,
+              ssCounter,
+              getURI(),
+              authenticationId,
+              uriTo,
+              timestamp,
+              qosLevel,
+              priority,
+              domain,
+              networkZone,
+              session,
+              sessionName,
+              interactionType,
+              interactionStage,
+              transactionId,
+              serviceArea,
+              service,
+              operation,
+              serviceVersion,
+              isErrorMessage),
+              qosProperties, null, body);
+    }
+    catch (MALInteractionException ex)
+    {
+      throw new MALException("Error creating message", ex);
+    }
+  }
+
+  @Override
+  public MALMessage createMessage(final Blob authenticationId,
+          final URI uriTo,
+          final Time timestamp,
+          final QoSLevel qosLevel,
+          final UInteger priority,
+          final IdentifierList domain,
+          final Identifier networkZone,
+          final SessionType session,
+          final Identifier sessionName,
+          final InteractionType interactionType,
+          final UOctet interactionStage,
+          final Long transactionId,
+          final UShort serviceArea,
+          final UShort service,
+          final UShort operation,
+          final UOctet serviceVersion,
+          final Boolean isErrorMessage,
+          final Map qosProperties,
+          final MALEncodedBody body) throws IllegalArgumentException, MALException
+  {
+    try
+    {
+      return new SPPMessage(wrapBodyParts, transport.getSegmentSize(), new SPPMessageHeader(uriRepresentation,
+              ssCounter,
+              getURI(),
+              authenticationId,
+              uriTo,
+              timestamp,
+              qosLevel,
+              priority,
+              domain,
+              networkZone,
+              session,
+              sessionName,
+              interactionType,
+              interactionStage,
+              transactionId,
+              serviceArea,
+              service,
+              operation,
+              serviceVersion,
+              isErrorMessage),
+              qosProperties, null, body);
+    }
+    catch (MALInteractionException ex)
+    {
+      throw new MALException("Error creating message", ex);
+    }
+  }
+
+  @Override
+  public MALMessage createMessage(final Blob authenticationId,
+          final URI uriTo,
+          final Time timestamp,
+          final QoSLevel qosLevel,
+          final UInteger priority,
+          final IdentifierList domain,
+          final Identifier networkZone,
+          final SessionType session,
+          final Identifier sessionName,
+          final Long transactionId,
+          final Boolean isErrorMessage,
+          final MALOperation op,
+          final UOctet interactionStage,
+          final Map qosProperties,
+          final MALEncodedBody body) throws IllegalArgumentException, MALException
+  {
+    try
+    {
+      return new SPPMessage(wrapBodyParts, transport.getSegmentSize(), new SPPMessageHeader(uriRepresentation,
+              ssCounter,
+              getURI(),
+              authenticationId,
+              uriTo,
+              timestamp,
+              qosLevel,
+              priority,
+              domain,
+              networkZone,
+              session,
+              sessionName,
+              op.getInteractionType(),
+              interactionStage,
+              transactionId,
+              op.getService().getArea().getNumber(),
+              op.getService().getNumber(),
+              op.getNumber(),
+              op.getService().getArea().getVersion(),
+              isErrorMessage),
+              qosProperties,
+              op,
+              body);
+    }
+    catch (MALInteractionException ex)
+    {
+      throw new MALException("Error creating message", ex);
+    }
+  }
+
+  @Override
+  public MALMessage createMessage(final Blob authenticationId,
+          final URI uriTo,
+          final Time timestamp,
+          final QoSLevel qosLevel,
+          final UInteger priority,
+          final IdentifierList domain,
+          final Identifier networkZone,
+          final SessionType session,
+          final Identifier sessionName,
+          final Long transactionId,
+          final Boolean isErrorMessage,
+          final MALOperation op,
+          final UOctet interactionStage,
+          final Map qosProperties,
+          final Object... body) throws IllegalArgumentException, MALException
+  {
+    try
+    {
+      return new SPPMessage(wrapBodyParts, transport.getSegmentSize(), new SPPMessageHeader(uriRepresentation,
+              ssCounter,
+              getURI(),
+              authenticationId,
+              uriTo,
+              timestamp,
+              qosLevel,
+              priority,
+              domain,
+              networkZone,
+              session,
+              sessionName,
+              op.getInteractionType(),
+              interactionStage,
+              transactionId,
+              op.getService().getArea().getNumber(),
+              op.getService().getNumber(),
+              op.getNumber(),
+              op.getService().getArea().getVersion(),
+              isErrorMessage),
+              qosProperties,
+              op,
+              body);
+    }
+    catch (MALInteractionException ex)
+    {
+      throw new MALException("Error creating message", ex);
+    }
+  }
+}
@@ -22,22 +22,34 @@ package esa.mo.mal.transport.spp;
 
 import esa.mo.mal.transport.gen.GENMessage;
 import esa.mo.mal.transport.gen.GENMessageHeader;
-import java.io.ByteArrayOutputStream;
+import esa.mo.mal.transport.gen.util.GENEncodeBuffer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.Map;
 import org.ccsds.moims.mo.mal.MALException;
 import org.ccsds.moims.mo.mal.MALInteractionException;
 import org.ccsds.moims.mo.mal.MALOperation;
 import org.ccsds.moims.mo.mal.encoding.MALElementOutputStream;
 import org.ccsds.moims.mo.mal.encoding.MALElementStreamFactory;
+import org.ccsds.moims.mo.mal.encoding.MALEncodingContext;
 
 /**
  * SPP message class.
+ *
+ * A message whose encoded packet data field is longer than the segment size is encoded as a sequence of segments,
+ * first, continuations and last, each holding a part of the body behind a copy of the header that carries the CCSDS
+ * sequence flags and the segment counter. The segments are reassembled on reception by a SPPSegmentReassembler.
  */
 public class SPPMessage extends GENMessage
 {
+  /**
+   * The maximum length of the data field of a CCSDS space packet, in bytes.
+   */
+  public static final int MAX_PACKET_DATA_LENGTH = 65536;
+  private final int segmentSize;
+
   /**
    * Constructor.
    *
@@ -49,8 +61,26 @@ public class SPPMessage extends GENMessage
    * @throws org.ccsds.moims.mo.mal.MALInteractionException If the operation is unknown.
    */
   public SPPMessage(boolean wrapBodyParts, GENMessageHeader header, Map qosProperties, MALOperation operation, Object... body) throws MALInteractionException
+  {
+    this(wrapBodyParts, MAX_PACKET_DATA_LENGTH, header, qosProperties, operation, body);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param wrapBodyParts True if the encoded body parts should be wrapped in BLOBs.
+   * @param segmentSize The maximum length of the packet data field, messages that are longer are segmented.
+   * @param header The message header to use.
+   * @param qosProperties The QoS properties for this message.
+   * @param operation The details of the operation being encoding, can be null.
+   * @param body the body of the message.
+   * @throws org.ccsds.moims.mo.mal.MALInteractionException If the operation is unknown.
+   */
+  public SPPMessage(boolean wrapBodyParts, int segmentSize, GENMessageHeader header, Map qosProperties, MALOperation operation, Object... body) throws MALInteractionException
   {
     super(wrapBodyParts, header, qosProperties, operation, body);
+
+    this.segmentSize = Math.min(segmentSize, MAX_PACKET_DATA_LENGTH);
   }
 
   /**
@@ -67,6 +97,8 @@ public class SPPMessage extends GENMessage
   public SPPMessage(boolean wrapBodyParts, boolean readHeader, GENMessageHeader header, Map qosProperties, byte[] packet, MALElementStreamFactory encFactory) throws MALException
   {
     super(wrapBodyParts, readHeader, header, qosProperties, packet, encFactory);
+
+    this.segmentSize = MAX_PACKET_DATA_LENGTH;
   }
 
   /**
@@ -83,26 +115,118 @@ public class SPPMessage extends GENMessage
   public SPPMessage(boolean wrapBodyParts, boolean readHeader, GENMessageHeader header, Map qosProperties, InputStream ios, MALElementStreamFactory encFactory) throws MALException
   {
     super(wrapBodyParts, readHeader, header, qosProperties, ios, encFactory);
+
+    this.segmentSize = MAX_PACKET_DATA_LENGTH;
   }
 
   @Override
   public void encodeMessage(MALElementStreamFactory streamFactory, MALElementOutputStream enc, OutputStream lowLevelOutputStream) throws MALException
   {
+    if (lowLevelOutputStream instanceof GENEncodeBuffer)
+    {
+      // encode the SPP packets directly in to the buffer
+      encodePackets(streamFactory, (GENEncodeBuffer) lowLevelOutputStream);
+    }
+    else
+    {
+      final GENEncodeBuffer buffer = GENEncodeBuffer.acquire();
+
+      try
+      {
+        encodePackets(streamFactory, buffer);
+
+        lowLevelOutputStream.write(buffer.getBuffer(), 0, buffer.size());
+      }
+      catch (IOException ex)
+      {
+        throw new MALException("Internal error encoding message", ex);
+      }
+      finally
+      {
+        buffer.release();
+      }
+    }
+  }
+
+  private void encodePackets(MALElementStreamFactory streamFactory, GENEncodeBuffer buffer) throws MALException
+  {
+    final SPPMessageHeader sppHeader = (SPPMessageHeader) header;
+    final int start = buffer.size();
+
     try
     {
-      final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-      final MALElementOutputStream lenc = streamFactory.createOutputStream(baos);
+      final MALElementOutputStream lenc = streamFactory.createOutputStream(buffer);
+      final MALEncodingContext ctx = new MALEncodingContext(header, operation, 0, qosProperties, qosProperties);
+
+      sppHeader.setSegment(SPPMessageHeader.SEQUENCE_FLAGS_UNSEGMENTED, 0);
+      lenc.writeElement(header, ctx);
+
+      final int bodyStart = buffer.size();
+
+      body.encodeMessageBody(streamFactory, lenc, buffer, header.getInteractionStage(), ctx);
+
+      if ((buffer.size() - start - 6) <= segmentSize)
+      {
+        // set the CCSDS packet length to the correct value
+        setPacketLength(buffer, start);
+      }
+      else
+      {
+        // too long for one packet, so encode the body again as segments each with its own copy of the header
+        final byte[] encodedBody = Arrays.copyOfRange(buffer.getBuffer(), bodyStart, buffer.size());
+        final int segmentBodySize = segmentSize - (bodyStart - start - 6) - 4;
 
-      super.encodeMessage(streamFactory, lenc, baos);
+        if (0 >= segmentBodySize)
+        {
+          throw new MALException("SPP segment size " + segmentSize + " is too small for the message header");
+        }
 
-      // encode the SPP packet, then set the CCSDS packet length to the correct value.
-      byte[] buf = baos.toByteArray();
-      java.nio.ByteBuffer.wrap(buf).putShort(4, (short) (buf.length - 7));
-      lowLevelOutputStream.write(buf);
+        buffer.truncate(start);
+
+        long segmentCounter = 0;
+        int offset = 0;
+
+        while (offset < encodedBody.length)
+        {
+          final int length = Math.min(segmentBodySize, encodedBody.length - offset);
+          final int segmentStart = buffer.size();
+
+          if (0 == offset)
+          {
+            sppHeader.setSegment(SPPMessageHeader.SEQUENCE_FLAGS_FIRST, segmentCounter);
+          }
+          else if (encodedBody.length == (offset + length))
+          {
+            sppHeader.setSegment(SPPMessageHeader.SEQUENCE_FLAGS_LAST, segmentCounter);
+          }
+          else
+          {
+            sppHeader.setSegment(SPPMessageHeader.SEQUENCE_FLAGS_CONTINUATION, segmentCounter);
+          }
+
+          lenc.writeElement(header, ctx);
+          buffer.write(encodedBody, offset, length);
+          setPacketLength(buffer, segmentStart);
+
+          ++segmentCounter;
+          offset += length;
+        }
+
+        sppHeader.setSegment(SPPMessageHeader.SEQUENCE_FLAGS_UNSEGMENTED, 0);
+      }
     }
-    catch (IOException ex)
+    catch (MALException ex)
+    {
+      throw ex;
+    }
+    catch (Exception ex)
     {
       throw new MALException("Internal error encoding message", ex);
     }
   }
+
+  private static void setPacketLength(GENEncodeBuffer buffer, int packetStart)
+  {
+    java.nio.ByteBuffer.wrap(buffer.getBuffer()).putShort(packetStart + 4, (short) (buffer.size() - packetStart - 7));
+  }
 }
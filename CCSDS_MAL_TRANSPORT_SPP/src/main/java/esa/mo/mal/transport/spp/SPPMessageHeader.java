@@ -21,7 +21,6 @@
 package esa.mo.mal.transport.spp;
 
 import esa.mo.mal.transport.gen.GENMessageHeader;
-import java.util.Date;
 import org.ccsds.moims.mo.mal.MALDecoder;
 import org.ccsds.moims.mo.mal.MALEncoder;
 import org.ccsds.moims.mo.mal.MALException;
@@ -31,14 +30,62 @@ import org.ccsds.moims.mo.mal.MALPubSubOperation;
 import org.ccsds.moims.mo.mal.MALRequestOperation;
 import org.ccsds.moims.mo.mal.MALSubmitOperation;
 import org.ccsds.moims.mo.mal.structures.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * An implementation of the message header interface for SPP.
  */
 public class SPPMessageHeader extends GENMessageHeader
 {
+  /**
+   * CCSDS sequence flags of a continuation segment of a segmented message.
+   */
+  public static final int SEQUENCE_FLAGS_CONTINUATION = 0x00000000;
+  /**
+   * CCSDS sequence flags of the first segment of a segmented message.
+   */
+  public static final int SEQUENCE_FLAGS_FIRST = 0x00004000;
+  /**
+   * CCSDS sequence flags of the last segment of a segmented message.
+   */
+  public static final int SEQUENCE_FLAGS_LAST = 0x00008000;
+  /**
+   * CCSDS sequence flags of an unsegmented message.
+   */
+  public static final int SEQUENCE_FLAGS_UNSEGMENTED = 0x0000C000;
+  /**
+   * The length of the CCSDS packet primary header, in bytes.
+   */
+  public static final int PRIMARY_HEADER_LENGTH = 6;
+  private static final UShort USHORT_ZERO = new UShort(0);
+  private static final UInteger DEFAULT_PRIORITY = new UInteger(0);
+  private static final Identifier DEFAULT_SESSION_NAME = new Identifier("LIVE");
+  private static final UOctet SEND_STAGE = new UOctet((short) 0);
+  private static final UOctet[] UOCTETS = new UOctet[0x100];
+  /**
+   * Shared instances of the lower segment counters, created on first use.
+   */
+  private static final AtomicReferenceArray<UInteger> SEGMENT_COUNTERS = new AtomicReferenceArray<UInteger>(0x1000);
   private final SPPURIRepresentation uriRepresentation;
   private final SPPSourceSequenceCounter ssCounter;
+  private int sequenceFlags = SEQUENCE_FLAGS_UNSEGMENTED;
+  private long segmentCounter = 0;
+  private int sourceSequenceCount = 0;
+  // the APIDs and subIds of the URIs, -1 if no subId, resolved once per URI
+  private URI resolvedURIFrom = null;
+  private URI resolvedURITo = null;
+  private short fromApid = 0;
+  private short fromSubId = -1;
+  private short toApid = 0;
+  private short toSubId = -1;
+
+  static
+  {
+    for (int i = 0; i < UOCTETS.length; i++)
+    {
+      UOCTETS[i] = new UOctet((short) i);
+    }
+  }
 
   /**
    * Constructor.
@@ -83,6 +130,11 @@ public class SPPMessageHeader extends GENMessageHeader
 
     this.uriRepresentation = uriRep;
     this.ssCounter = ssCounter;
+
+    if ((null != uriFrom) && (null != uriTo))
+    {
+      resolveURIs();
+    }
   }
 
   @Override
@@ -91,6 +143,50 @@ public class SPPMessageHeader extends GENMessageHeader
     return new SPPMessageHeader(uriRepresentation, ssCounter);
   }
 
+  /**
+   * Returns the CCSDS sequence flags of the packet this header was last encoded to or decoded from.
+   *
+   * @return the sequence flags, one of the SEQUENCE_FLAGS constants.
+   */
+  public int getSequenceFlags()
+  {
+    return sequenceFlags;
+  }
+
+  /**
+   * Returns the source sequence count of the packet this header was last encoded to or decoded from.
+   *
+   * @return the source sequence count.
+   */
+  public int getSourceSequenceCount()
+  {
+    return sourceSequenceCount;
+  }
+
+  /**
+   * Returns the segment counter of the packet this header was last encoded to or decoded from, zero if the packet was
+   * not segmented.
+   *
+   * @return the segment counter.
+   */
+  public long getSegmentCounter()
+  {
+    return segmentCounter;
+  }
+
+  /**
+   * Sets the segment that the next call to encode produces the header of. The first segment reuses the source
+   * sequence count of the previous encoding, as that is the unsegmented encoding that was found to be too large.
+   *
+   * @param sequenceFlags The CCSDS sequence flags, one of the SEQUENCE_FLAGS constants.
+   * @param segmentCounter The segment counter, ignored for unsegmented messages.
+   */
+  public void setSegment(final int sequenceFlags, final long segmentCounter)
+  {
+    this.sequenceFlags = sequenceFlags;
+    this.segmentCounter = (SEQUENCE_FLAGS_UNSEGMENTED == sequenceFlags) ? 0 : segmentCounter;
+  }
+
   @Override
   public void encode(final MALEncoder encoder) throws MALException
   {
@@ -98,41 +194,54 @@ public class SPPMessageHeader extends GENMessageHeader
     short primaryApid;
     short secondaryApid;
 
+    resolveURIs();
+
     if (0 == pktType)
     {
       //TM
-      primaryApid = uriRepresentation.getApid(URIFrom);
-      secondaryApid = uriRepresentation.getApid(URITo);
+      primaryApid = fromApid;
+      secondaryApid = toApid;
     }
     else
     {
       // TC
-      primaryApid = uriRepresentation.getApid(URITo);
-      secondaryApid = uriRepresentation.getApid(URIFrom);
+      primaryApid = toApid;
+      secondaryApid = fromApid;
     }
 
     // CCSDS packet header
     encoder.encodeUShort(new UShort(pktType | 0x00000800 | primaryApid));
-    int ssc = 0;
-    if (null != ssCounter)
+    if (SEQUENCE_FLAGS_FIRST != sequenceFlags)
     {
-      ssc = ssCounter.getNextSourceSequenceCount();
+      sourceSequenceCount = 0;
+      if (null != ssCounter)
+      {
+        if (ssCounter instanceof SPPSourceSequenceCounterPerAPID)
+        {
+          sourceSequenceCount = ((SPPSourceSequenceCounterPerAPID) ssCounter).getNextSourceSequenceCount(primaryApid);
+        }
+        else
+        {
+          sourceSequenceCount = ssCounter.getNextSourceSequenceCount();
+        }
+        sourceSequenceCount &= 0x3FFF;
+      }
     }
-    encoder.encodeUShort(new UShort(0x0000C000 | ssc));
-    encoder.encodeUShort(new UShort(0));
+    encoder.encodeUShort(new UShort(sequenceFlags | sourceSequenceCount));
+    encoder.encodeUShort(USHORT_ZERO);
 
     // MAL SPP Header
-    encoder.encodeUOctet(new UOctet(getSDUType(interactionType, interactionStage)));
+    encoder.encodeUOctet(getUOctet(getSDUType(interactionType, interactionStage)));
     encoder.encodeUShort(serviceArea);
     encoder.encodeUShort(service);
     encoder.encodeUShort(operation);
     encoder.encodeUOctet(areaVersion);
     encoder.encodeUShort(new UShort(getErrorFlag(isErrorMessage) | secondaryApid));
-    encoder.encodeUShort(new UShort(0));
+    encoder.encodeUShort(USHORT_ZERO);
     encoder.encodeLong(transactionId);
 
-    boolean hasSrcSubId = uriRepresentation.hasSubId(URIFrom);
-    boolean hasDstSubId = uriRepresentation.hasSubId(URITo);
+    boolean hasSrcSubId = 0 <= fromSubId;
+    boolean hasDstSubId = 0 <= toSubId;
 
     int flags = 0x10;
     if (hasSrcSubId)
@@ -143,16 +252,21 @@ public class SPPMessageHeader extends GENMessageHeader
     {
       flags = flags | 0x40;
     }
-    encoder.encodeUOctet(new UOctet((short) flags));
+    encoder.encodeUOctet(getUOctet((short) flags));
 
     if (hasSrcSubId)
     {
-      encoder.encodeUOctet(new UOctet(uriRepresentation.getSubId(URIFrom)));
+      encoder.encodeUOctet(getUOctet(fromSubId));
     }
 
     if (hasDstSubId)
     {
-      encoder.encodeUOctet(new UOctet(uriRepresentation.getSubId(URITo)));
+      encoder.encodeUOctet(getUOctet(toSubId));
+    }
+
+    if (SEQUENCE_FLAGS_UNSEGMENTED != sequenceFlags)
+    {
+      encoder.encodeUInteger(getSegmentCounter(segmentCounter));
     }
 
     encoder.encodeTime(timestamp);
@@ -192,6 +306,14 @@ public class SPPMessageHeader extends GENMessageHeader
       destSubId = decoder.decodeUOctet().getValue();
     }
 
+    sequenceFlags = ccsdsHdrPt2 & SEQUENCE_FLAGS_UNSEGMENTED;
+    sourceSequenceCount = ccsdsHdrPt2 & 0x3FFF;
+    segmentCounter = 0;
+    if (SEQUENCE_FLAGS_UNSEGMENTED != sequenceFlags)
+    {
+      segmentCounter = decoder.decodeUInteger().getValue();
+    }
+
     boolean isTC = 0 != (0x00001000 & ccsdsHdrPt1);
     short sourceApid;
     short destApid;
@@ -213,21 +335,30 @@ public class SPPMessageHeader extends GENMessageHeader
     authenticationId = null;
     URITo = uriRepresentation.getURI(destApid, destSubId);
 
+    // already known, saves resolving them again if this header is encoded
+    resolvedURIFrom = URIFrom;
+    fromApid = sourceApid;
+    fromSubId = (null == sourceSubId) ? -1 : sourceSubId.shortValue();
+    resolvedURITo = URITo;
+    toApid = destApid;
+    toSubId = (null == destSubId) ? -1 : destSubId.shortValue();
+
     if (0 != (flags & 0x10))
     {
       timestamp = decoder.decodeTime();
     }
     else
     {
-      timestamp = new Time(new Date().getTime());
+      timestamp = new Time(System.currentTimeMillis());
     }
 
     QoSlevel = QoSLevel.BESTEFFORT;
-    priority = new UInteger(0);
+    priority = DEFAULT_PRIORITY;
+    // the domain list is mutable, so each decoded header gets its own
     domain = new IdentifierList();
     networkZone = null;
     session = SessionType.LIVE;
-    sessionName = new Identifier("LIVE");
+    sessionName = DEFAULT_SESSION_NAME;
     interactionType = getInteractionType(sduType);
     interactionStage = getInteractionStage(sduType);
     isErrorMessage = 0 != (moHdrPt1 & 0x0000F000);
@@ -280,6 +411,79 @@ public class SPPMessageHeader extends GENMessageHeader
     return str.toString();
   }
 
+  /**
+   * Returns the total length of a space packet from the packet length field of its primary header.
+   *
+   * @param packet The buffer holding the packet.
+   * @param offset The offset of the packet in the buffer.
+   * @return the length of the packet including its primary header, in bytes.
+   */
+  public static int getPacketLength(final byte[] packet, final int offset)
+  {
+    return PRIMARY_HEADER_LENGTH + 1 + (((packet[offset + 4] & 0xFF) << 8) | (packet[offset + 5] & 0xFF));
+  }
+
+  /**
+   * Resolves the APIDs and subIds of the URIs if they have changed since they were last resolved.
+   */
+  private void resolveURIs()
+  {
+    if ((null == resolvedURIFrom) || (URIFrom != resolvedURIFrom))
+    {
+      fromApid = uriRepresentation.getApid(URIFrom);
+      fromSubId = uriRepresentation.hasSubId(URIFrom) ? uriRepresentation.getSubId(URIFrom) : -1;
+      resolvedURIFrom = URIFrom;
+    }
+
+    if ((null == resolvedURITo) || (URITo != resolvedURITo))
+    {
+      toApid = uriRepresentation.getApid(URITo);
+      toSubId = uriRepresentation.hasSubId(URITo) ? uriRepresentation.getSubId(URITo) : -1;
+      resolvedURITo = URITo;
+    }
+  }
+
+  /**
+   * Returns a segment counter value, shared for the lower counters.
+   *
+   * @param value The segment counter.
+   * @return the UInteger.
+   */
+  private static UInteger getSegmentCounter(long value)
+  {
+    if (SEGMENT_COUNTERS.length() <= value)
+    {
+      return new UInteger(value);
+    }
+
+    final int index = (int) value;
+    UInteger uinteger = SEGMENT_COUNTERS.get(index);
+
+    if (null == uinteger)
+    {
+      SEGMENT_COUNTERS.compareAndSet(index, null, new UInteger(value));
+      uinteger = SEGMENT_COUNTERS.get(index);
+    }
+
+    return uinteger;
+  }
+
+  /**
+   * Returns the shared instance of an unsigned octet value.
+   *
+   * @param value The value, 0 to 255.
+   * @return the UOctet.
+   */
+  protected static UOctet getUOctet(short value)
+  {
+    if ((0 <= value) && (UOCTETS.length > value))
+    {
+      return UOCTETS[value];
+    }
+
+    return new UOctet(value);
+  }
+
   protected static int getErrorFlag(boolean isError)
   {
     if (isError)
@@ -447,7 +651,7 @@ public class SPPMessageHeader extends GENMessageHeader
     switch (sduType)
     {
       case 0:
-        return new UOctet((short) 0);
+        return SEND_STAGE;
       case 1:
         return MALSubmitOperation.SUBMIT_STAGE;
       case 2:
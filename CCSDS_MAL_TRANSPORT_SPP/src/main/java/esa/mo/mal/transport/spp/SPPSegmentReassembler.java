@@ -0,0 +1,402 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2015      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO SPP Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.spp;
+
+import esa.mo.mal.transport.gen.GENTransport;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * Reassembles segmented SPP messages, as produced by SPPMessage, from their received segments.
+ *
+ * The segments of a message are identified by the APIDs, subIds and transaction identifier in their headers, and can
+ * be received in any order. The memory held by incomplete messages is bounded: an incomplete message is discarded once
+ * the timeout has passed since its first segment was received, and the oldest incomplete messages are discarded when
+ * the bound would otherwise be exceeded.
+ *
+ * The fields of the header are read at fixed offsets: the sequence flags at 2, the secondary APID at 14, the
+ * transaction identifier at 18, the secondary header flags at 26 followed by the optional subIds, then a 4 byte segment
+ * counter and the optional 7 byte timestamp. These only hold for the fixed length SPP binary encoding of the header,
+ * which the segmentation of SPPMessage relies on, and not for a header encoded with another element stream.
+ */
+public class SPPSegmentReassembler
+{
+  /**
+   * The default maximum number of bytes held for incomplete messages.
+   */
+  public static final long DEFAULT_MAX_BUFFERED_BYTES = 16L * 1024L * 1024L;
+  /**
+   * The default time, in milliseconds, after which an incomplete message is discarded.
+   */
+  public static final long DEFAULT_TIMEOUT = 30000;
+  private static final int SEQUENCE_FLAGS_OFFSET = 2;
+  private static final int SECONDARY_APID_OFFSET = 14;
+  private static final int TRANSACTION_ID_OFFSET = 18;
+  private static final int FLAGS_OFFSET = 26;
+  private static final int SUB_ID_OFFSET = 27;
+  private static final int SEGMENT_COUNTER_LENGTH = 4;
+  private static final int TIMESTAMP_LENGTH = 7;
+  private final Map<Key, Reassembly> reassemblies = new LinkedHashMap<Key, Reassembly>();
+  private final long maxBufferedBytes;
+  private final long timeout;
+  private long bufferedBytes = 0;
+
+  /**
+   * Constructor.
+   *
+   * @param maxBufferedBytes The maximum number of bytes held for incomplete messages.
+   * @param timeout The time, in milliseconds, after which an incomplete message is discarded.
+   */
+  public SPPSegmentReassembler(final long maxBufferedBytes, final long timeout)
+  {
+    this.maxBufferedBytes = maxBufferedBytes;
+    this.timeout = timeout;
+  }
+
+  /**
+   * Passes a received space packet to the reassembler.
+   *
+   * @param packet The received packet.
+   * @return the packet itself if it is not segmented, the complete message if the packet was the missing segment of a
+   * message, otherwise null.
+   */
+  public byte[] reassemble(final byte[] packet)
+  {
+    final int sequenceFlags = ((packet[SEQUENCE_FLAGS_OFFSET] & 0xFF) << 8)
+            & SPPMessageHeader.SEQUENCE_FLAGS_UNSEGMENTED;
+
+    // the common case of an unsegmented packet does not need the lock
+    if (SPPMessageHeader.SEQUENCE_FLAGS_UNSEGMENTED == sequenceFlags)
+    {
+      return packet;
+    }
+
+    return reassembleSegment(packet, sequenceFlags);
+  }
+
+  /**
+   * Returns the number of messages currently being reassembled.
+   *
+   * @return the number of incomplete messages.
+   */
+  public synchronized int getIncompleteCount()
+  {
+    return reassemblies.size();
+  }
+
+  /**
+   * Returns the number of bytes currently held for incomplete messages.
+   *
+   * @return the number of bytes.
+   */
+  public synchronized long getBufferedBytes()
+  {
+    return bufferedBytes;
+  }
+
+  /**
+   * Discards all incomplete messages.
+   */
+  public synchronized void clear()
+  {
+    reassemblies.clear();
+    bufferedBytes = 0;
+  }
+
+  private synchronized byte[] reassembleSegment(final byte[] packet, final int sequenceFlags)
+  {
+    final long now = System.currentTimeMillis();
+    discardExpired(now);
+
+    final ByteBuffer buf = ByteBuffer.wrap(packet);
+    final int flags = packet[FLAGS_OFFSET] & 0xFF;
+    int counterOffset = SUB_ID_OFFSET;
+    int subIds = (flags & 0xC0) << 16;
+
+    if (0 != (flags & 0x80))
+    {
+      subIds |= (packet[counterOffset++] & 0xFF) << 8;
+    }
+    if (0 != (flags & 0x40))
+    {
+      subIds |= packet[counterOffset++] & 0xFF;
+    }
+
+    final int headerLength = counterOffset + SEGMENT_COUNTER_LENGTH + ((0 != (flags & 0x10)) ? TIMESTAMP_LENGTH : 0);
+
+    if (packet.length < headerLength)
+    {
+      GENTransport.LOGGER.log(Level.WARNING, "SPP discarding truncated segment of {0} bytes", packet.length);
+      return null;
+    }
+
+    final long segmentCounter = buf.getInt(counterOffset) & 0xFFFFFFFFL;
+    final Key key = new Key(buf.getShort(0) & 0x17FF,
+            buf.getShort(SECONDARY_APID_OFFSET) & 0x7FF,
+            subIds,
+            buf.getLong(TRANSACTION_ID_OFFSET));
+
+    Reassembly reassembly = reassemblies.get(key);
+
+    if (null == reassembly)
+    {
+      reassembly = new Reassembly(now);
+      reassemblies.put(key, reassembly);
+    }
+
+    final long added = reassembly.add(sequenceFlags, segmentCounter, packet, counterOffset, headerLength);
+
+    if (0 > added)
+    {
+      GENTransport.LOGGER.log(Level.FINE, "SPP ignoring duplicate segment {0} of {1}",
+              new Object[]
+              {
+                segmentCounter, key
+              });
+      return null;
+    }
+
+    bufferedBytes += added;
+
+    if (reassembly.isComplete())
+    {
+      reassemblies.remove(key);
+      bufferedBytes -= reassembly.bytes;
+
+      return reassembly.assemble();
+    }
+
+    if (reassembly.bytes > maxBufferedBytes)
+    {
+      GENTransport.LOGGER.log(Level.WARNING,
+              "SPP discarding segmented message {0}, larger than the reassembly buffer limit of {1} bytes",
+              new Object[]
+              {
+                key, maxBufferedBytes
+              });
+
+      reassemblies.remove(key);
+      bufferedBytes -= reassembly.bytes;
+
+      return null;
+    }
+
+    // discard the oldest incomplete messages until back within the bound
+    final Iterator<Map.Entry<Key, Reassembly>> it = reassemblies.entrySet().iterator();
+
+    while ((bufferedBytes > maxBufferedBytes) && it.hasNext())
+    {
+      final Map.Entry<Key, Reassembly> entry = it.next();
+
+      GENTransport.LOGGER.log(Level.WARNING,
+              "SPP discarding incomplete segmented message {0}, reassembly buffer limit of {1} bytes reached",
+              new Object[]
+              {
+                entry.getKey(), maxBufferedBytes
+              });
+
+      bufferedBytes -= entry.getValue().bytes;
+      it.remove();
+    }
+
+    return null;
+  }
+
+  private void discardExpired(final long now)
+  {
+    // held in order of creation, so the oldest is always first
+    final Iterator<Map.Entry<Key, Reassembly>> it = reassemblies.entrySet().iterator();
+
+    while (it.hasNext())
+    {
+      final Map.Entry<Key, Reassembly> entry = it.next();
+
+      if ((now - entry.getValue().started) < timeout)
+      {
+        break;
+      }
+
+      GENTransport.LOGGER.log(Level.WARNING,
+              "SPP discarding incomplete segmented message {0}, not completed within {1} ms",
+              new Object[]
+              {
+                entry.getKey(), timeout
+              });
+
+      bufferedBytes -= entry.getValue().bytes;
+      it.remove();
+    }
+  }
+
+  /**
+   * Identifies the segments of one message.
+   */
+  private static final class Key
+  {
+    private final int primaryApid;
+    private final int secondaryApid;
+    private final int subIds;
+    private final long transactionId;
+
+    Key(final int primaryApid, final int secondaryApid, final int subIds, final long transactionId)
+    {
+      this.primaryApid = primaryApid;
+      this.secondaryApid = secondaryApid;
+      this.subIds = subIds;
+      this.transactionId = transactionId;
+    }
+
+    @Override
+    public boolean equals(final Object obj)
+    {
+      if (!(obj instanceof Key))
+      {
+        return false;
+      }
+
+      final Key other = (Key) obj;
+
+      return (primaryApid == other.primaryApid)
+              && (secondaryApid == other.secondaryApid)
+              && (subIds == other.subIds)
+              && (transactionId == other.transactionId);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      int hash = 7;
+      hash = 31 * hash + primaryApid;
+      hash = 31 * hash + secondaryApid;
+      hash = 31 * hash + subIds;
+      hash = 31 * hash + (int) (transactionId ^ (transactionId >>> 32));
+      return hash;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "{APID=" + (primaryApid & 0x7FF) + ", secondary APID=" + secondaryApid
+              + ", transactionId=" + transactionId + '}';
+    }
+  }
+
+  /**
+   * The received segments of one message.
+   */
+  private static final class Reassembly
+  {
+    private final long started;
+    private final Map<Long, byte[]> segments = new HashMap<Long, byte[]>();
+    private byte[] header = null;
+    private long lastSegmentCounter = -1;
+    private long bytes = 0;
+
+    Reassembly(final long started)
+    {
+      this.started = started;
+    }
+
+    long add(final int sequenceFlags,
+            final long segmentCounter,
+            final byte[] packet,
+            final int counterOffset,
+            final int headerLength)
+    {
+      if (segments.containsKey(segmentCounter))
+      {
+        return -1;
+      }
+
+      final long before = bytes;
+
+      segments.put(segmentCounter, Arrays.copyOfRange(packet, headerLength, packet.length));
+      bytes += packet.length - headerLength;
+
+      if (SPPMessageHeader.SEQUENCE_FLAGS_FIRST == sequenceFlags)
+      {
+        // the header of the complete message is that of the first segment without the segment counter
+        final int afterCounter = counterOffset + SEGMENT_COUNTER_LENGTH;
+        header = new byte[headerLength - SEGMENT_COUNTER_LENGTH];
+        System.arraycopy(packet, 0, header, 0, counterOffset);
+        System.arraycopy(packet, afterCounter, header, counterOffset, headerLength - afterCounter);
+        header[SEQUENCE_FLAGS_OFFSET] |= (byte) (SPPMessageHeader.SEQUENCE_FLAGS_UNSEGMENTED >> 8);
+        bytes += header.length;
+      }
+      else if (SPPMessageHeader.SEQUENCE_FLAGS_LAST == sequenceFlags)
+      {
+        lastSegmentCounter = segmentCounter;
+      }
+
+      return bytes - before;
+    }
+
+    boolean isComplete()
+    {
+      if ((null == header) || (0 > lastSegmentCounter) || (segments.size() <= lastSegmentCounter))
+      {
+        return false;
+      }
+
+      for (long i = 0; i <= lastSegmentCounter; i++)
+      {
+        if (!segments.containsKey(i))
+        {
+          return false;
+        }
+      }
+
+      return true;
+    }
+
+    byte[] assemble()
+    {
+      int length = header.length;
+
+      for (long i = 0; i <= lastSegmentCounter; i++)
+      {
+        length += segments.get(i).length;
+      }
+
+      final byte[] message = new byte[length];
+      System.arraycopy(header, 0, message, 0, header.length);
+
+      int offset = header.length;
+
+      for (long i = 0; i <= lastSegmentCounter; i++)
+      {
+        final byte[] segment = segments.get(i);
+        System.arraycopy(segment, 0, message, offset, segment.length);
+        offset += segment.length;
+      }
+
+      // the packet length field cannot hold the length of a message longer than a packet, it is not used on decoding
+      ByteBuffer.wrap(message).putShort(4, (short) Math.min(length - 7, 0xFFFF));
+
+      return message;
+    }
+  }
+}
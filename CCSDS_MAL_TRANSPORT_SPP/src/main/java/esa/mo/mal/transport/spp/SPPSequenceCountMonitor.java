@@ -0,0 +1,390 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2015      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO SPP Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.spp;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static esa.mo.mal.transport.spp.SPPTransport.RLOGGER;
+
+/**
+ * Tracks the source sequence counts of received packets, separately for the TC and TM packets of each pair of APID and
+ * secondary APID, and counts the gaps, duplicates and reordered packets seen. Each source keeps its own count of an
+ * APID, so the packets of different sources, which have different secondary APIDs, are tracked apart. The secondary
+ * APID is read at its offset in the fixed length SPP binary encoding of the header.
+ *
+ * A packet whose count is ahead of the next expected count adds the counts skipped over to the gaps. A packet whose
+ * count is behind is a duplicate if that count has been received, it is remembered for the last 64 counts, and
+ * otherwise is reordered. A late packet is so counted in the gaps when it is skipped over and then as reordered, the
+ * gaps less the reordered packets estimate those lost. The statistics only describe the link when all the packets of
+ * an APID and secondary APID are received by this transport.
+ *
+ * Once registered the statistics are available as a MBean in the platform MBean server, under the domain
+ * esa.mo.mal.transport.spp with the transport URI as name.
+ */
+public class SPPSequenceCountMonitor implements SPPSequenceCountMonitorMBean
+{
+  /**
+   * The JMX domain of the MBean.
+   */
+  public static final String DOMAIN = "esa.mo.mal.transport.spp";
+  /**
+   * The number of possible APIDs.
+   */
+  private static final int APID_COUNT = 0x800;
+  /**
+   * The sequence count is a 14 bit value.
+   */
+  private static final int SEQUENCE_COUNT_MASK = 0x3FFF;
+  /**
+   * Counts less than half the count range ahead of the expected count are ahead, the others are behind.
+   */
+  private static final int HALF_RANGE = 0x2000;
+  /**
+   * The number of counts remembered for detecting duplicates.
+   */
+  private static final int WINDOW_SIZE = 64;
+  /**
+   * The offset of the secondary APID in the packet.
+   */
+  private static final int SECONDARY_APID_OFFSET = 14;
+  /**
+   * The states indexed by packet type and APID, each holding the states of the secondary APIDs, created on demand.
+   */
+  private final AtomicReferenceArray<AtomicReferenceArray<ApidState>> states
+          = new AtomicReferenceArray<AtomicReferenceArray<ApidState>>(2 * APID_COUNT);
+  private final AtomicLong packetsIn = new AtomicLong(0);
+  private final AtomicLong gaps = new AtomicLong(0);
+  private final AtomicLong duplicates = new AtomicLong(0);
+  private final AtomicLong reordered = new AtomicLong(0);
+  private MBeanServer server = null;
+  private ObjectName objectName = null;
+
+  /**
+   * Records the sequence count of a received packet.
+   *
+   * @param packet The received space packet.
+   */
+  public void packetReceived(final byte[] packet)
+  {
+    packetsIn.incrementAndGet();
+
+    // the TC and TM packets of an APID are counted separately
+    final int index = ((packet[0] & 0x10) << 7) | ((packet[0] & 0x07) << 8) | (packet[1] & 0xFF);
+    final int count = ((packet[2] & 0x3F) << 8) | (packet[3] & 0xFF);
+    final int secondaryApid = (packet.length > (SECONDARY_APID_OFFSET + 1))
+            ? (((packet[SECONDARY_APID_OFFSET] & 0x07) << 8) | (packet[SECONDARY_APID_OFFSET + 1] & 0xFF)) : 0;
+
+    getState(index, secondaryApid).packetReceived(count);
+  }
+
+  @Override
+  public long getPacketsIn()
+  {
+    return packetsIn.get();
+  }
+
+  @Override
+  public long getGaps()
+  {
+    return gaps.get();
+  }
+
+  @Override
+  public long getDuplicates()
+  {
+    return duplicates.get();
+  }
+
+  @Override
+  public long getReordered()
+  {
+    return reordered.get();
+  }
+
+  @Override
+  public long getGaps(final int apid)
+  {
+    long value = 0;
+
+    for (ApidState state : getStates(apid, -1))
+    {
+      value += state.getGaps();
+    }
+
+    return value;
+  }
+
+  @Override
+  public long getDuplicates(final int apid)
+  {
+    long value = 0;
+
+    for (ApidState state : getStates(apid, -1))
+    {
+      value += state.getDuplicates();
+    }
+
+    return value;
+  }
+
+  @Override
+  public long getReordered(final int apid)
+  {
+    long value = 0;
+
+    for (ApidState state : getStates(apid, -1))
+    {
+      value += state.getReordered();
+    }
+
+    return value;
+  }
+
+  @Override
+  public long getGaps(final int apid, final int secondaryApid)
+  {
+    long value = 0;
+
+    for (ApidState state : getStates(apid, secondaryApid))
+    {
+      value += state.getGaps();
+    }
+
+    return value;
+  }
+
+  @Override
+  public long getDuplicates(final int apid, final int secondaryApid)
+  {
+    long value = 0;
+
+    for (ApidState state : getStates(apid, secondaryApid))
+    {
+      value += state.getDuplicates();
+    }
+
+    return value;
+  }
+
+  @Override
+  public long getReordered(final int apid, final int secondaryApid)
+  {
+    long value = 0;
+
+    for (ApidState state : getStates(apid, secondaryApid))
+    {
+      value += state.getReordered();
+    }
+
+    return value;
+  }
+
+  /**
+   * Registers the MBean with the platform MBean server. Failures are logged and do not stop the transport.
+   *
+   * @param transportName The name of the transport, normally its URI.
+   */
+  public synchronized void register(final String transportName)
+  {
+    if (null != server)
+    {
+      return;
+    }
+
+    try
+    {
+      server = ManagementFactory.getPlatformMBeanServer();
+      objectName = new ObjectName(DOMAIN + ":type=SPPTransport,name=" + ObjectName.quote(transportName));
+      server.registerMBean(this, objectName);
+    }
+    catch (JMException ex)
+    {
+      RLOGGER.log(Level.WARNING, "SPP could not register sequence count statistics : {0}", ex);
+      server = null;
+    }
+  }
+
+  /**
+   * Removes the MBean from the platform MBean server.
+   */
+  public synchronized void unregister()
+  {
+    if (null == server)
+    {
+      return;
+    }
+
+    try
+    {
+      server.unregisterMBean(objectName);
+    }
+    catch (JMException ex)
+    {
+      RLOGGER.log(Level.WARNING, "SPP could not unregister sequence count statistics : {0}", ex);
+    }
+
+    server = null;
+  }
+
+  private ApidState getState(final int index, final int secondaryApid)
+  {
+    AtomicReferenceArray<ApidState> secondaryStates = states.get(index);
+
+    if (null == secondaryStates)
+    {
+      states.compareAndSet(index, null, new AtomicReferenceArray<ApidState>(APID_COUNT));
+      secondaryStates = states.get(index);
+    }
+
+    ApidState state = secondaryStates.get(secondaryApid);
+
+    if (null == state)
+    {
+      secondaryStates.compareAndSet(secondaryApid, null, new ApidState());
+      state = secondaryStates.get(secondaryApid);
+    }
+
+    return state;
+  }
+
+  /**
+   * Returns the states of the TC and TM packets of an APID, for one or all secondary APIDs.
+   *
+   * @param apid The APID.
+   * @param secondaryApid The secondary APID, or -1 for all.
+   * @return the states that exist.
+   */
+  private List<ApidState> getStates(final int apid, final int secondaryApid)
+  {
+    final List<ApidState> list = new ArrayList<ApidState>();
+    final int index = apid & (APID_COUNT - 1);
+
+    // the TC packets then the TM packets
+    for (int type = 0; type < 2; type++)
+    {
+      final AtomicReferenceArray<ApidState> secondaryStates = states.get((type * APID_COUNT) | index);
+
+      if (null != secondaryStates)
+      {
+        for (int j = 0; j < APID_COUNT; j++)
+        {
+          final ApidState state = secondaryStates.get(j);
+
+          if ((null != state) && ((0 > secondaryApid) || ((secondaryApid & (APID_COUNT - 1)) == j)))
+          {
+            list.add(state);
+          }
+        }
+      }
+    }
+
+    return list;
+  }
+
+  /**
+   * The expected sequence count and statistics of one APID and secondary APID.
+   */
+  private final class ApidState
+  {
+    private int lastCount = -1;
+    private long window = 0;
+    private long apidGaps = 0;
+    private long apidDuplicates = 0;
+    private long apidReordered = 0;
+
+    synchronized void packetReceived(final int count)
+    {
+      if (0 > lastCount)
+      {
+        lastCount = count;
+        window = 1;
+        return;
+      }
+
+      final int ahead = (count - lastCount) & SEQUENCE_COUNT_MASK;
+
+      if (0 == ahead)
+      {
+        duplicate();
+      }
+      else if (HALF_RANGE > ahead)
+      {
+        if (1 < ahead)
+        {
+          apidGaps += ahead - 1;
+          gaps.addAndGet(ahead - 1);
+        }
+
+        // bit n of the window is set if the count n before the last has been received
+        window = (WINDOW_SIZE <= ahead) ? 1 : ((window << ahead) | 1);
+        lastCount = count;
+      }
+      else
+      {
+        final int behind = (lastCount - count) & SEQUENCE_COUNT_MASK;
+
+        if ((WINDOW_SIZE > behind) && (0 != (window & (1L << behind))))
+        {
+          duplicate();
+        }
+        else
+        {
+          if (WINDOW_SIZE > behind)
+          {
+            window |= 1L << behind;
+          }
+
+          ++apidReordered;
+          reordered.incrementAndGet();
+        }
+      }
+    }
+
+    synchronized long getGaps()
+    {
+      return apidGaps;
+    }
+
+    synchronized long getDuplicates()
+    {
+      return apidDuplicates;
+    }
+
+    synchronized long getReordered()
+    {
+      return apidReordered;
+    }
+
+    private void duplicate()
+    {
+      ++apidDuplicates;
+      duplicates.incrementAndGet();
+    }
+  }
+}
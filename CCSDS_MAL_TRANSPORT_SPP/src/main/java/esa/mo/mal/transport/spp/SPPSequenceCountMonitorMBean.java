@@ -0,0 +1,106 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2015      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO SPP Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.spp;
+
+/**
+ * Management interface of the sequence count statistics of the packets received by a SPP transport.
+ */
+public interface SPPSequenceCountMonitorMBean
+{
+  /**
+   * Returns the number of packets received.
+   *
+   * @return the number of packets.
+   */
+  long getPacketsIn();
+
+  /**
+   * Returns the number of sequence counts skipped over by received packets, over all APIDs.
+   *
+   * @return the number of skipped sequence counts.
+   */
+  long getGaps();
+
+  /**
+   * Returns the number of packets received with a sequence count that had already been received, over all APIDs.
+   *
+   * @return the number of duplicate packets.
+   */
+  long getDuplicates();
+
+  /**
+   * Returns the number of packets received after a packet with a later sequence count, over all APIDs.
+   *
+   * @return the number of reordered packets.
+   */
+  long getReordered();
+
+  /**
+   * Returns the number of sequence counts skipped over by received packets of an APID.
+   *
+   * @param apid The APID.
+   * @return the number of skipped sequence counts.
+   */
+  long getGaps(int apid);
+
+  /**
+   * Returns the number of duplicate packets of an APID.
+   *
+   * @param apid The APID.
+   * @return the number of duplicate packets.
+   */
+  long getDuplicates(int apid);
+
+  /**
+   * Returns the number of reordered packets of an APID.
+   *
+   * @param apid The APID.
+   * @return the number of reordered packets.
+   */
+  long getReordered(int apid);
+
+  /**
+   * Returns the number of sequence counts skipped over by received packets of an APID from one secondary APID.
+   *
+   * @param apid The APID.
+   * @param secondaryApid The secondary APID.
+   * @return the number of skipped sequence counts.
+   */
+  long getGaps(int apid, int secondaryApid);
+
+  /**
+   * Returns the number of duplicate packets of an APID from one secondary APID.
+   *
+   * @param apid The APID.
+   * @param secondaryApid The secondary APID.
+   * @return the number of duplicate packets.
+   */
+  long getDuplicates(int apid, int secondaryApid);
+
+  /**
+   * Returns the number of reordered packets of an APID from one secondary APID.
+   *
+   * @param apid The APID.
+   * @param secondaryApid The secondary APID.
+   * @return the number of reordered packets.
+   */
+  long getReordered(int apid, int secondaryApid);
+}
@@ -0,0 +1,118 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2015      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO SPP Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.spp;
+
+import esa.mo.mal.transport.gen.util.GENMessagePoller;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+import static esa.mo.mal.transport.spp.SPPTransport.RLOGGER;
+
+/**
+ * Server thread for the TCP mode of the SPP transport.
+ *
+ * This thread listens for new connections to a predefined port and when new connections arrive it starts a poller
+ * thread that reads the space packets from the connection.
+ */
+public class SPPServerConnectionListener extends Thread
+{
+  private final SPPTransport transport;
+  private final ServerSocket serverSocket;
+
+  /**
+   * Holds the list of data poller threads
+   */
+  private final List<Thread> pollerThreads = new ArrayList<Thread>();
+
+  /**
+   * Constructor.
+   *
+   * @param transport The parent SPP transport.
+   * @param serverSocket The server TCP socket.
+   */
+  public SPPServerConnectionListener(SPPTransport transport, ServerSocket serverSocket)
+  {
+    this.transport = transport;
+    this.serverSocket = serverSocket;
+    setName(getClass().getName() + " - Main Server Socket Thread");
+  }
+
+  @Override
+  public void run()
+  {
+    try
+    {
+      serverSocket.setSoTimeout(1000);
+    }
+    catch (IOException e)
+    {
+      RLOGGER.log(Level.WARNING, "Error while setting connection timeout", e);
+    }
+
+    // listen for connections until interrupted
+    while (!interrupted())
+    {
+      try
+      {
+        // wait for connection
+        Socket socket = serverSocket.accept();
+
+        // read the connection in its own thread
+        SPPTCPDataTransceiver tc = transport.createDataTransceiver(socket);
+
+        GENMessagePoller poller = new GENMessagePoller(transport, tc, tc);
+        pollerThreads.add(poller);
+        poller.start();
+      }
+      catch (java.net.SocketTimeoutException ex)
+      {
+        // this is ok, we just loop back around
+      }
+      catch (IOException e)
+      {
+        RLOGGER.log(Level.WARNING, "Error while accepting connection", e);
+      }
+    }
+
+    try
+    {
+      serverSocket.close();
+    }
+    catch (IOException e)
+    {
+      // ignore
+    }
+
+    for (Thread pollerThread : pollerThreads)
+    {
+      synchronized (pollerThread)
+      {
+        pollerThread.interrupt();
+      }
+    }
+
+    pollerThreads.clear();
+  }
+}
@@ -22,7 +22,7 @@ package esa.mo.mal.transport.spp;
 
 /**
  * Small interface that is used to get the next source sequence counter for a SPP source. It usually makes sense to have
- * one of these per endpoint.
+ * one of these per endpoint, see SPPSourceSequenceCounterPerAPID for one that counts each APID separately.
  */
 public interface SPPSourceSequenceCounter
 {
@@ -0,0 +1,61 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2015      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO SPP Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.spp;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Source sequence counter that keeps a separate count for each APID, as CCSDS defines it. The counts are incremented
+ * atomically without locking so one instance can be shared by all the endpoints of a transport. SPPMessageHeader uses
+ * the count of the APID of the packet when given an instance of this class.
+ */
+public class SPPSourceSequenceCounterPerAPID implements SPPSourceSequenceCounter
+{
+  /**
+   * The number of possible APIDs.
+   */
+  private static final int APID_COUNT = 0x800;
+  /**
+   * The sequence count is a 14 bit value.
+   */
+  private static final int SEQUENCE_COUNT_MASK = 0x3FFF;
+  private final AtomicIntegerArray sequenceCounts = new AtomicIntegerArray(APID_COUNT);
+  private final AtomicInteger sequenceCount = new AtomicInteger(0);
+
+  @Override
+  public int getNextSourceSequenceCount()
+  {
+    return sequenceCount.getAndIncrement() & SEQUENCE_COUNT_MASK;
+  }
+
+  /**
+   * Returns the next value in the sequence count of an APID.
+   *
+   * @param apid The APID of the packet.
+   * @return the next SPP SSC.
+   */
+  public int getNextSourceSequenceCount(short apid)
+  {
+    // the counts wrap through zero as 2^32 is a multiple of 2^14
+    return sequenceCounts.getAndIncrement(apid & (APID_COUNT - 1)) & SEQUENCE_COUNT_MASK;
+  }
+}
@@ -0,0 +1,120 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2015      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO SPP Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.spp;
+
+import esa.mo.mal.transport.gen.sending.GENBatchMessageSender;
+import esa.mo.mal.transport.gen.sending.GENOutgoingMessageHolder;
+import esa.mo.mal.transport.gen.util.GENMessagePoller;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.List;
+
+/**
+ * Sends and receives space packets over a TCP connection. Space packets are self delimiting, through the packet length
+ * field of their primary header, so they are written to the connection as they are with no further framing.
+ *
+ * An encoded message may hold several packets, the segments of a segmented message, and these are read back one packet
+ * at a time.
+ */
+public class SPPTCPDataTransceiver implements GENMessagePoller.GENByteMessageReceiver, GENBatchMessageSender
+{
+  /**
+   * Size of the buffer used for writing to the socket.
+   */
+  private static final int SEND_BUFFER_SIZE = 16384;
+  protected final Socket socket;
+  protected final OutputStream socketWriteIf;
+  protected final DataInputStream socketReadIf;
+
+  /**
+   * Constructor.
+   *
+   * @param socket the TCP socket.
+   * @throws IOException if there is an error.
+   */
+  public SPPTCPDataTransceiver(Socket socket) throws IOException
+  {
+    this.socket = socket;
+    socketWriteIf = new BufferedOutputStream(socket.getOutputStream(), SEND_BUFFER_SIZE);
+    socketReadIf = new DataInputStream(socket.getInputStream());
+  }
+
+  @Override
+  public void sendEncodedMessage(GENOutgoingMessageHolder packetData) throws IOException
+  {
+    socketWriteIf.write(packetData.getEncodedMessageBuffer(), 0, packetData.getEncodedMessageLength());
+    socketWriteIf.flush();
+  }
+
+  @Override
+  public void sendEncodedMessages(List<GENOutgoingMessageHolder> packetData) throws IOException
+  {
+    for (GENOutgoingMessageHolder packet : packetData)
+    {
+      socketWriteIf.write(packet.getEncodedMessageBuffer(), 0, packet.getEncodedMessageLength());
+    }
+
+    socketWriteIf.flush();
+  }
+
+  @Override
+  public byte[] readEncodedMessage() throws IOException
+  {
+    try
+    {
+      // read the primary header for the packet length and then the rest of the packet
+      final byte[] header = new byte[SPPMessageHeader.PRIMARY_HEADER_LENGTH];
+      socketReadIf.readFully(header);
+
+      final byte[] packet = new byte[SPPMessageHeader.getPacketLength(header, 0)];
+      System.arraycopy(header, 0, packet, 0, header.length);
+      socketReadIf.readFully(packet, header.length, packet.length - header.length);
+
+      return packet;
+    }
+    catch (java.net.SocketException ex)
+    {
+      if (socket.isClosed())
+      {
+        // socket has been closed to throw EOF exception higher
+        throw new java.io.EOFException();
+      }
+
+      throw ex;
+    }
+  }
+
+  @Override
+  public void close()
+  {
+    try
+    {
+      socket.close();
+    }
+    catch (IOException e)
+    {
+      // ignore
+    }
+  }
+}
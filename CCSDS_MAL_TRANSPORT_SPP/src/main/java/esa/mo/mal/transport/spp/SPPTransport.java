@@ -0,0 +1,794 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2015      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO SPP Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.spp;
+
+import esa.mo.mal.transport.gen.GENEndpoint;
+import esa.mo.mal.transport.gen.GENMessage;
+import esa.mo.mal.transport.gen.GENReceptionHandler;
+import esa.mo.mal.transport.gen.GENTransport;
+import esa.mo.mal.transport.gen.sending.GENMessageSender;
+import esa.mo.mal.transport.gen.util.GENMessagePoller;
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.ccsds.moims.mo.mal.MALException;
+import org.ccsds.moims.mo.mal.MALHelper;
+import org.ccsds.moims.mo.mal.MALStandardError;
+import org.ccsds.moims.mo.mal.broker.MALBrokerBinding;
+import org.ccsds.moims.mo.mal.structures.Blob;
+import org.ccsds.moims.mo.mal.structures.InteractionType;
+import org.ccsds.moims.mo.mal.structures.QoSLevel;
+import org.ccsds.moims.mo.mal.structures.UInteger;
+import org.ccsds.moims.mo.mal.structures.URI;
+import org.ccsds.moims.mo.mal.transport.MALEndpoint;
+import org.ccsds.moims.mo.mal.transport.MALTransmitErrorException;
+import org.ccsds.moims.mo.mal.transport.MALTransportFactory;
+
+/**
+ * The SPP MAL Transport implementation. Carries the space packets of the MAL/SPP binding over TCP connections, where
+ * the packet length field of each packet delimits it, or as UDP datagrams.
+ *
+ * URIs are of the form malspp://<APID>-<subId>, the root URI of a MAL is malspp://<APID> and each endpoint is given the
+ * next free subId. The APID and subId of a URI map directly to those of the packet headers, the message headers resolve
+ * them through a cache so that URIs are only parsed and created once.
+ *
+ * Space packets do not carry network addresses so outgoing packets are routed on the APID of their destination. The
+ * routes are a comma separated list of <APID>=tcp://<host>:<port> or <APID>=udp://<host>:<port> entries, an APID of *
+ * gives the default route. Replies to a message received over a TCP connection are sent back over that connection and
+ * so need no route. The ASSURED QoS level is supported as well as BESTEFFORT only if no route is over UDP.
+ *
+ * The following properties configure the transport:
+ *
+ * org.ccsds.moims.mo.mal.transport.spp.apid ==> the APID of this MAL. org.ccsds.moims.mo.mal.transport.spp.host ==>
+ * adapter (host / IP Address) that the transport listens on, all adapters if omitted.
+ * org.ccsds.moims.mo.mal.transport.spp.tcpport ==> TCP port that the transport listens to, omit to not accept
+ * connections. org.ccsds.moims.mo.mal.transport.spp.udpport ==> UDP port that the transport receives datagrams on.
+ * org.ccsds.moims.mo.mal.transport.spp.routes ==> the routes to other APIDs.
+ * org.ccsds.moims.mo.mal.transport.spp.segmentsize ==> the maximum length of the packet data field, longer messages
+ * are segmented. org.ccsds.moims.mo.mal.transport.spp.reassemblymaxbytes ==> the maximum number of bytes held for
+ * partially received segmented messages. org.ccsds.moims.mo.mal.transport.spp.reassemblytimeout ==> the time, in
+ * milliseconds, after which a partially received segmented message is discarded.
+ *
+ * Received packets are reassembled and decoded on the thread that read them, one per TCP connection and one for the
+ * UDP socket, rather than being handed to a reception thread first.
+ *
+ * The source sequence counts of outgoing packets are kept per APID and shared by all endpoints. The sequence counts of
+ * received packets are tracked per APID, and the gaps, duplicates and reordered packets seen are available through
+ * JMX unless org.ccsds.moims.mo.mal.transport.gen.jmx is false.
+ *
+ * The transport must be used with the SPP binary encoding, esa.mo.mal.encoder.spp.SPPBinaryStreamFactory.
+ */
+public class SPPTransport extends GENTransport implements SPPURIRepresentation
+{
+  /**
+   * Logger
+   */
+  public static final java.util.logging.Logger RLOGGER = Logger.getLogger("org.ccsds.moims.mo.mal.transport.spp");
+
+  /**
+   * System property to control the APID of the transport.
+   */
+  public static final String APID_PROPERTY = "org.ccsds.moims.mo.mal.transport.spp.apid";
+
+  /**
+   * System property to control the adapter that the transport listens on.
+   */
+  public static final String HOST_PROPERTY = "org.ccsds.moims.mo.mal.transport.spp.host";
+
+  /**
+   * System property to control the TCP port that the transport listens on.
+   */
+  public static final String TCP_PORT_PROPERTY = "org.ccsds.moims.mo.mal.transport.spp.tcpport";
+
+  /**
+   * System property to control the UDP port that the transport receives datagrams on.
+   */
+  public static final String UDP_PORT_PROPERTY = "org.ccsds.moims.mo.mal.transport.spp.udpport";
+
+  /**
+   * System property to control the routes to other APIDs.
+   */
+  public static final String ROUTES_PROPERTY = "org.ccsds.moims.mo.mal.transport.spp.routes";
+
+  /**
+   * System property to control the maximum length of the packet data field.
+   */
+  public static final String SEGMENT_SIZE_PROPERTY = "org.ccsds.moims.mo.mal.transport.spp.segmentsize";
+
+  /**
+   * System property to control the maximum number of bytes held for partially received segmented messages.
+   */
+  public static final String REASSEMBLY_MAX_BYTES_PROPERTY = "org.ccsds.moims.mo.mal.transport.spp.reassemblymaxbytes";
+
+  /**
+   * System property to control the time after which a partially received segmented message is discarded.
+   */
+  public static final String REASSEMBLY_TIMEOUT_PROPERTY = "org.ccsds.moims.mo.mal.transport.spp.reassemblytimeout";
+
+  /**
+   * The maximum length of the packet data field that fits in a UDP datagram.
+   */
+  public static final int MAX_UDP_PACKET_DATA_LENGTH = 65507 - SPPMessageHeader.PRIMARY_HEADER_LENGTH;
+
+  private static final String DEFAULT_ROUTE = "*";
+  private static final String TCP_SCHEME = "tcp://";
+  private static final String UDP_SCHEME = "udp://";
+  private static final int MAX_SUB_ID = 255;
+
+  /**
+   * The APID of this MAL.
+   */
+  private final short apid;
+
+  /**
+   * The adapter that the transport listens on, null for all.
+   */
+  private final String host;
+
+  /**
+   * The TCP port that the transport listens on, 0 if it does not accept connections.
+   */
+  private final int tcpPort;
+
+  /**
+   * The UDP port that the transport receives datagrams on, 0 if it only sends datagrams.
+   */
+  private final int udpPort;
+
+  /**
+   * The routes to other APIDs.
+   */
+  private final Map<Short, String> routes;
+
+  /**
+   * The route for APIDs without a route of their own, may be null.
+   */
+  private final String defaultRoute;
+
+  /**
+   * True if the UDP socket is needed, to receive datagrams or to send them on a route.
+   */
+  private final boolean useUDP;
+
+  /**
+   * True if any route, including the default route, sends over UDP.
+   */
+  private final boolean routesOverUDP;
+
+  /**
+   * The maximum length of the packet data field.
+   */
+  private final int segmentSize;
+
+  /**
+   * Reassembles the received segmented messages.
+   */
+  private final SPPSegmentReassembler reassembler;
+
+  /**
+   * The source sequence counts of outgoing packets.
+   */
+  private final SPPSourceSequenceCounter ssCounter = new SPPSourceSequenceCounterPerAPID();
+
+  /**
+   * Caches the mapping between the APIDs and subIds of packet headers and the URIs of this transport.
+   */
+  private final SPPURIRepresentation uriRepresentation = new SPPCachedURIRepresentation(this);
+
+  /**
+   * Tracks the sequence counts of received packets.
+   */
+  private final SPPSequenceCountMonitor sequenceCountMonitor = new SPPSequenceCountMonitor();
+
+  /**
+   * True if the sequence count statistics are registered as a JMX MBean on initialisation.
+   */
+  private final boolean registerStatistics;
+
+  /**
+   * The start of all URIs of this protocol.
+   */
+  private final String uriPrefix;
+
+  /**
+   * The subIds given to named endpoints.
+   */
+  private final Map<String, String> endpointSubIds = new HashMap<String, String>();
+
+  /**
+   * Holds the server connection listener, null if not listening for TCP connections.
+   */
+  private SPPServerConnectionListener serverConnectionListener = null;
+
+  /**
+   * The UDP socket, null if UDP is not used.
+   */
+  private DatagramSocket udpSocket = null;
+
+  /**
+   * Constructor.
+   *
+   * @param protocol The protocol string.
+   * @param serviceDelim The delimiter to use for separating the URL
+   * @param supportsRouting True if routing is supported by the naming convention
+   * @param factory The factory that created us.
+   * @param properties The QoS properties.
+   * @throws MALException On error.
+   */
+  public SPPTransport(final String protocol, final char serviceDelim, final boolean supportsRouting, final MALTransportFactory factory, final java.util.Map properties) throws MALException
+  {
+    super(protocol, serviceDelim, supportsRouting, false, factory, properties);
+
+    // default values
+    short lApid = 0;
+    String lHost = null;
+    int lTcpPort = 0;
+    int lUdpPort = 0;
+    Map<String, String> lRoutes = new HashMap<String, String>();
+    int lSegmentSize = 0;
+    long lReassemblyMaxBytes = SPPSegmentReassembler.DEFAULT_MAX_BUFFERED_BYTES;
+    long lReassemblyTimeout = SPPSegmentReassembler.DEFAULT_TIMEOUT;
+    boolean lRegisterStatistics = true;
+
+    // decode configuration
+    if (properties != null)
+    {
+      if (properties.containsKey(APID_PROPERTY))
+      {
+        lApid = Short.parseShort((String) properties.get(APID_PROPERTY));
+      }
+
+      if (properties.containsKey(HOST_PROPERTY))
+      {
+        lHost = (String) properties.get(HOST_PROPERTY);
+      }
+
+      if (properties.containsKey(TCP_PORT_PROPERTY))
+      {
+        lTcpPort = Integer.parseInt((String) properties.get(TCP_PORT_PROPERTY));
+      }
+
+      if (properties.containsKey(UDP_PORT_PROPERTY))
+      {
+        lUdpPort = Integer.parseInt((String) properties.get(UDP_PORT_PROPERTY));
+      }
+
+      if (properties.containsKey(ROUTES_PROPERTY))
+      {
+        lRoutes = parseRoutes((String) properties.get(ROUTES_PROPERTY));
+      }
+
+      if (properties.containsKey(SEGMENT_SIZE_PROPERTY))
+      {
+        lSegmentSize = Integer.parseInt((String) properties.get(SEGMENT_SIZE_PROPERTY));
+      }
+
+      if (properties.containsKey(REASSEMBLY_MAX_BYTES_PROPERTY))
+      {
+        lReassemblyMaxBytes = Long.parseLong((String) properties.get(REASSEMBLY_MAX_BYTES_PROPERTY));
+      }
+
+      if (properties.containsKey(REASSEMBLY_TIMEOUT_PROPERTY))
+      {
+        lReassemblyTimeout = Long.parseLong((String) properties.get(REASSEMBLY_TIMEOUT_PROPERTY));
+      }
+
+      // JMX registration of the statistics, follows that of the GEN metrics
+      if (properties.containsKey(JMX_PROPERTY))
+      {
+        lRegisterStatistics = Boolean.parseBoolean((String) properties.get(JMX_PROPERTY));
+      }
+    }
+
+    if ((0 > lApid) || (0x7FF < lApid))
+    {
+      throw new MALException("Invalid SPP APID: " + lApid);
+    }
+
+    final Map<Short, String> lApidRoutes = new HashMap<Short, String>();
+    boolean lRoutesOverUDP = false;
+
+    for (Map.Entry<String, String> route : lRoutes.entrySet())
+    {
+      lRoutesOverUDP |= route.getValue().startsWith(UDP_SCHEME);
+
+      if (!DEFAULT_ROUTE.equals(route.getKey()))
+      {
+        lApidRoutes.put(Short.valueOf(route.getKey()), route.getValue());
+      }
+    }
+
+    final boolean usesUDP = lRoutesOverUDP || (0 != lUdpPort);
+
+    if (0 >= lSegmentSize)
+    {
+      // segments must fit in a datagram if any of them may be sent over UDP
+      lSegmentSize = usesUDP ? MAX_UDP_PACKET_DATA_LENGTH : SPPMessage.MAX_PACKET_DATA_LENGTH;
+    }
+
+    String protocolString = protocol;
+    if (protocol.contains(":"))
+    {
+      protocolString = protocol.substring(0, protocol.indexOf(':'));
+    }
+
+    this.apid = lApid;
+    this.host = lHost;
+    this.tcpPort = lTcpPort;
+    this.udpPort = lUdpPort;
+    this.routes = lApidRoutes;
+    this.defaultRoute = lRoutes.get(DEFAULT_ROUTE);
+    this.useUDP = usesUDP;
+    this.routesOverUDP = lRoutesOverUDP;
+    this.segmentSize = lSegmentSize;
+    this.reassembler = new SPPSegmentReassembler(lReassemblyMaxBytes, lReassemblyTimeout);
+    this.uriPrefix = protocolString + protocolDelim;
+    this.registerStatistics = lRegisterStatistics;
+
+    RLOGGER.log(Level.INFO, "SPP APID set to : {0}", this.apid);
+  }
+
+  @Override
+  public void init() throws MALException
+  {
+    super.init();
+
+    if (registerStatistics)
+    {
+      sequenceCountMonitor.register(uriBase);
+    }
+
+    try
+    {
+      final InetAddress hostAddr = (null == host) ? null : InetAddress.getByName(host);
+
+      synchronized (this)
+      {
+        if (0 != tcpPort)
+        {
+          RLOGGER.log(Level.INFO, "Starting SPP TCP Server on port {0}", tcpPort);
+
+          serverConnectionListener = new SPPServerConnectionListener(this, new ServerSocket(tcpPort, 0, hostAddr));
+          serverConnectionListener.start();
+        }
+
+        if (useUDP)
+        {
+          udpSocket = (0 != udpPort) ? new DatagramSocket(udpPort, hostAddr) : new DatagramSocket();
+
+          RLOGGER.log(Level.INFO, "Started SPP UDP socket on port {0}", udpSocket.getLocalPort());
+
+          new SPPUDPReceiver(this, udpSocket).start();
+        }
+      }
+    }
+    catch (IOException ex)
+    {
+      throw new MALException("Error initialising SPP transport", ex);
+    }
+  }
+
+  @Override
+  public GENMessage createMessage(final java.io.InputStream ios) throws MALException
+  {
+    return new SPPMessage(wrapBodyParts, true, new SPPMessageHeader(uriRepresentation, null), qosProperties, ios, getStreamFactory());
+  }
+
+  @Override
+  public GENMessage createMessage(final byte[] packet) throws MALException
+  {
+    return new SPPMessage(wrapBodyParts, true, new SPPMessageHeader(uriRepresentation, null), qosProperties, packet, getStreamFactory());
+  }
+
+  /**
+   * Reassembles the received packet and, once a message is complete, decodes it on the calling thread.
+   *
+   * @param rawMessage The received space packet.
+   * @param receptionHandler NULL if the packet was not received over a connection.
+   */
+  @Override
+  public void receive(final byte[] rawMessage, GENReceptionHandler receptionHandler)
+  {
+    sequenceCountMonitor.packetReceived(rawMessage);
+
+    final byte[] message = reassembler.reassemble(rawMessage);
+
+    if (null != message)
+    {
+      receiveDirect(message, receptionHandler);
+    }
+  }
+
+  @Override
+  public MALEndpoint getEndpoint(final String localName) throws IllegalArgumentException
+  {
+    return super.getEndpoint(getEndpointSubId(localName));
+  }
+
+  @Override
+  public void deleteEndpoint(final String localName) throws MALException
+  {
+    final String subId = getEndpointSubId(localName);
+
+    synchronized (this)
+    {
+      endpointSubIds.remove(localName);
+    }
+
+    super.deleteEndpoint(subId);
+  }
+
+  @Override
+  public MALBrokerBinding createBroker(final String localName, final Blob authenticationId, final QoSLevel[] expectedQos, final UInteger priorityLevelNumber, final Map defaultQoSProperties) throws MALException
+  {
+    // not support by SPP transport
+    return null;
+  }
+
+  @Override
+  public MALBrokerBinding createBroker(final MALEndpoint endpoint, final Blob authenticationId, final QoSLevel[] qosLevels, final UInteger priorities, final Map properties) throws MALException
+  {
+    // not support by SPP transport
+    return null;
+  }
+
+  @Override
+  public boolean isSupportedInteractionType(final InteractionType type)
+  {
+    // Supports all IPs except Pub Sub
+    return InteractionType.PUBSUB.getOrdinal() != type.getOrdinal();
+  }
+
+  @Override
+  public boolean isSupportedQoSLevel(final QoSLevel qos)
+  {
+    // the delivery guarantees are those of the underlying link, TCP delivers in order or reports the failure, UDP
+    // gives no guarantee, and neither stores messages for later delivery or bounds their delivery time
+    switch (qos.getOrdinal())
+    {
+      case QoSLevel._BESTEFFORT_INDEX:
+        return true;
+      case QoSLevel._ASSURED_INDEX:
+        return !routesOverUDP;
+      default:
+        return false;
+    }
+  }
+
+  @Override
+  public void close() throws MALException
+  {
+    super.close();
+
+    synchronized (this)
+    {
+      if (null != serverConnectionListener)
+      {
+        serverConnectionListener.interrupt();
+      }
+
+      if (null != udpSocket)
+      {
+        udpSocket.close();
+      }
+    }
+
+    reassembler.clear();
+    sequenceCountMonitor.unregister();
+  }
+
+  /**
+   * Returns the source sequence counter shared by the endpoints of the transport.
+   *
+   * @return the counter.
+   */
+  public SPPSourceSequenceCounter getSourceSequenceCounter()
+  {
+    return ssCounter;
+  }
+
+  /**
+   * Returns the cached URI representation used by the message headers of the transport.
+   *
+   * @return the URI representation.
+   */
+  public SPPURIRepresentation getURIRepresentation()
+  {
+    return uriRepresentation;
+  }
+
+  /**
+   * Returns the sequence count statistics of the received packets.
+   *
+   * @return the statistics.
+   */
+  public SPPSequenceCountMonitor getSequenceCountMonitor()
+  {
+    return sequenceCountMonitor;
+  }
+
+  /**
+   * Returns the maximum length of the packet data field, longer messages are segmented.
+   *
+   * @return the segment size in bytes.
+   */
+  public int getSegmentSize()
+  {
+    return segmentSize;
+  }
+
+  @Override
+  public short getApid(final URI uri)
+  {
+    final String value = uri.getValue();
+    final int start = getAddressStart(value);
+    final int end = value.indexOf(serviceDelim, start);
+
+    return Short.parseShort(value.substring(start, (0 > end) ? value.length() : end));
+  }
+
+  @Override
+  public boolean hasSubId(final URI uri)
+  {
+    final String value = uri.getValue();
+
+    return 0 <= value.indexOf(serviceDelim, getAddressStart(value));
+  }
+
+  @Override
+  public short getSubId(final URI uri)
+  {
+    final String value = uri.getValue();
+
+    return Short.parseShort(value.substring(value.indexOf(serviceDelim, getAddressStart(value)) + 1));
+  }
+
+  @Override
+  public URI getURI(final short apid, final Short subId)
+  {
+    if (null == subId)
+    {
+      return new URI(uriPrefix + apid);
+    }
+
+    return new URI(uriPrefix + apid + serviceDelim + subId);
+  }
+
+  @Override
+  protected String createTransportAddress() throws MALException
+  {
+    return String.valueOf(apid);
+  }
+
+  /**
+   * Returns the subId to use as the local name of an endpoint. Endpoints are given the next free subId, and a named
+   * endpoint keeps its subId until it is deleted.
+   *
+   * @param localName The name of the endpoint, may be null.
+   * @return The local name to use.
+   */
+  @Override
+  protected synchronized String getLocalName(String localName)
+  {
+    final boolean named = (null != localName) && (0 < localName.length());
+
+    if (named && endpointSubIds.containsKey(localName))
+    {
+      return endpointSubIds.get(localName);
+    }
+
+    for (int i = 0; i <= MAX_SUB_ID; i++)
+    {
+      final String subId = String.valueOf(i);
+
+      if (!endpointMap.containsKey(subId) && !endpointSubIds.containsValue(subId))
+      {
+        if (named)
+        {
+          endpointSubIds.put(localName, subId);
+        }
+
+        return subId;
+      }
+    }
+
+    throw new IllegalArgumentException("SPP has no free subId for endpoint " + localName);
+  }
+
+  @Override
+  protected GENEndpoint internalCreateEndpoint(final String localName, final Map qosProperties) throws MALException
+  {
+    return new SPPEndpoint(this, localName, uriBase + localName, wrapBodyParts);
+  }
+
+  @Override
+  protected GENMessageSender createMessageSender(GENMessage msg, String remoteRootURI) throws MALException, MALTransmitErrorException
+  {
+    try
+    {
+      final short remoteApid = getApid(new URI(remoteRootURI));
+      String route = routes.get(remoteApid);
+
+      if (null == route)
+      {
+        route = defaultRoute;
+      }
+
+      if (null == route)
+      {
+        RLOGGER.log(Level.WARNING, "SPP has no route to APID {0} of : {1}", new Object[]
+        {
+          remoteApid, remoteRootURI
+        });
+        throw new MALTransmitErrorException(headerOf(msg), new MALStandardError(MALHelper.DESTINATION_UNKNOWN_ERROR_NUMBER, null), null);
+      }
+
+      final boolean isTCP = route.startsWith(TCP_SCHEME);
+      final String address = route.substring(isTCP ? TCP_SCHEME.length() : UDP_SCHEME.length());
+      final int portDelim = address.lastIndexOf(':');
+      final String remoteHost = address.substring(0, portDelim);
+      final int remotePort = Integer.parseInt(address.substring(portDelim + 1));
+
+      if (!isTCP)
+      {
+        return new SPPUDPMessageSender(getUDPSocket(), new InetSocketAddress(remoteHost, remotePort));
+      }
+
+      //create a message sender and receiver for the socket
+      SPPTCPDataTransceiver trans = createDataTransceiver(new Socket(remoteHost, remotePort));
+
+      // create also a data reader thread for this socket in order to read messages from it
+      // no need to register this as it will automatically terminate when the underlying connection is terminated.
+      GENMessagePoller rcvr = new GENMessagePoller(this, trans, trans);
+      rcvr.setRemoteURI(remoteRootURI);
+      rcvr.start();
+
+      return trans;
+    }
+    catch (NumberFormatException nfe)
+    {
+      LOGGER.log(Level.WARNING, "Have no means to communicate with client URI : {0}", remoteRootURI);
+      throw new MALException("Have no means to communicate with client URI : " + remoteRootURI);
+    }
+    catch (UnknownHostException e)
+    {
+      LOGGER.log(Level.WARNING, "SPP could not connect to :" + remoteRootURI, e);
+      throw new MALTransmitErrorException(headerOf(msg), new MALStandardError(MALHelper.DESTINATION_UNKNOWN_ERROR_NUMBER, null), null);
+    }
+    catch (IOException e)
+    {
+      //there was a communication problem, we need to clean up the objects we created in the meanwhile
+      communicationError(remoteRootURI, null);
+
+      //rethrow for higher MAL leyers
+      throw new MALException("IO Exception", e);
+    }
+  }
+
+  /**
+   * Allows transport derived from this to replace the transceiver used for TCP connections.
+   *
+   * @param socket the TCP socket
+   * @return the new transceiver
+   * @throws IOException if there is an error
+   */
+  protected SPPTCPDataTransceiver createDataTransceiver(Socket socket) throws IOException
+  {
+    return new SPPTCPDataTransceiver(socket);
+  }
+
+  private synchronized DatagramSocket getUDPSocket() throws IOException
+  {
+    if (null == udpSocket)
+    {
+      throw new IOException("SPP transport has no UDP socket");
+    }
+
+    return udpSocket;
+  }
+
+  private String getEndpointSubId(final String localName)
+  {
+    synchronized (this)
+    {
+      final String subId = endpointSubIds.get(localName);
+
+      return (null == subId) ? localName : subId;
+    }
+  }
+
+  private int getAddressStart(final String uriValue)
+  {
+    final int start = uriValue.indexOf(protocolDelim);
+
+    return (0 > start) ? 0 : start + protocolDelim.length();
+  }
+
+  /**
+   * Splits the comma separated list of routes in to a map from APID, or * for the default route, to route.
+   *
+   * @param routes The list.
+   * @return the routes.
+   * @throws MALException If a route is not valid.
+   */
+  private static Map<String, String> parseRoutes(String routes) throws MALException
+  {
+    final Map<String, String> map = new HashMap<String, String>();
+
+    for (String route : routes.split(","))
+    {
+      final String entry = route.trim();
+
+      if (0 < entry.length())
+      {
+        final int delim = entry.indexOf('=');
+        final String value = (0 > delim) ? "" : entry.substring(delim + 1).trim();
+
+        if (!value.startsWith(TCP_SCHEME) && !value.startsWith(UDP_SCHEME))
+        {
+          throw new MALException("Invalid SPP route: " + entry);
+        }
+
+        final String key = entry.substring(0, delim).trim();
+
+        if (DEFAULT_ROUTE.equals(key))
+        {
+          map.put(key, value);
+        }
+        else
+        {
+          map.put(String.valueOf(parseRouteApid(key, entry)), value);
+        }
+      }
+    }
+
+    return map;
+  }
+
+  private static short parseRouteApid(String key, String entry) throws MALException
+  {
+    final int routeApid;
+
+    try
+    {
+      routeApid = Integer.parseInt(key);
+    }
+    catch (NumberFormatException ex)
+    {
+      throw new MALException("Invalid SPP route APID, must be * or a number: " + entry);
+    }
+
+    if ((0 > routeApid) || (0x7FF < routeApid))
+    {
+      throw new MALException("Invalid SPP route APID, must be 0 to 2047: " + entry);
+    }
+
+    return (short) routeApid;
+  }
+}
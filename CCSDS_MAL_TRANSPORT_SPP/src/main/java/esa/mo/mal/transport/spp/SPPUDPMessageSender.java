@@ -0,0 +1,83 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2015      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO SPP Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.spp;
+
+import esa.mo.mal.transport.gen.sending.GENBatchMessageSender;
+import esa.mo.mal.transport.gen.sending.GENOutgoingMessageHolder;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketAddress;
+import java.util.List;
+
+/**
+ * Sends space packets to one destination as UDP datagrams, one packet per datagram. The datagram socket is shared by
+ * all the UDP destinations of the transport and is not closed by this class.
+ */
+public class SPPUDPMessageSender implements GENBatchMessageSender
+{
+  private final DatagramSocket socket;
+  private final SocketAddress destination;
+
+  /**
+   * Constructor.
+   *
+   * @param socket The socket to send from.
+   * @param destination The address to send the datagrams to.
+   */
+  public SPPUDPMessageSender(DatagramSocket socket, SocketAddress destination)
+  {
+    this.socket = socket;
+    this.destination = destination;
+  }
+
+  @Override
+  public void sendEncodedMessage(GENOutgoingMessageHolder packetData) throws IOException
+  {
+    final byte[] buf = packetData.getEncodedMessageBuffer();
+    final int length = packetData.getEncodedMessageLength();
+    int offset = 0;
+
+    // a segmented message holds several packets, each one goes in its own datagram
+    while (offset < length)
+    {
+      final int packetLength = SPPMessageHeader.getPacketLength(buf, offset);
+
+      socket.send(new DatagramPacket(buf, offset, packetLength, destination));
+      offset += packetLength;
+    }
+  }
+
+  @Override
+  public void sendEncodedMessages(List<GENOutgoingMessageHolder> packetData) throws IOException
+  {
+    for (GENOutgoingMessageHolder packet : packetData)
+    {
+      sendEncodedMessage(packet);
+    }
+  }
+
+  @Override
+  public void close()
+  {
+    // the socket belongs to the transport
+  }
+}
@@ -0,0 +1,102 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2015      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO SPP Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.spp;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.util.Arrays;
+import java.util.logging.Level;
+
+import static esa.mo.mal.transport.spp.SPPTransport.RLOGGER;
+
+/**
+ * Reads the space packets received by the UDP socket of the SPP transport and passes them to the transport, which
+ * reassembles and decodes them on this thread.
+ */
+public class SPPUDPReceiver extends Thread
+{
+  /**
+   * The largest possible UDP datagram.
+   */
+  private static final int MAX_DATAGRAM_SIZE = 65535;
+  private final SPPTransport transport;
+  private final DatagramSocket socket;
+
+  /**
+   * Constructor.
+   *
+   * @param transport The parent SPP transport.
+   * @param socket The UDP socket to read from.
+   */
+  public SPPUDPReceiver(SPPTransport transport, DatagramSocket socket)
+  {
+    this.transport = transport;
+    this.socket = socket;
+    setName(getClass().getName() + " - UDP port " + socket.getLocalPort());
+    setDaemon(true);
+  }
+
+  @Override
+  public void run()
+  {
+    final DatagramPacket datagram = new DatagramPacket(new byte[MAX_DATAGRAM_SIZE], MAX_DATAGRAM_SIZE);
+
+    while (!interrupted() && !socket.isClosed())
+    {
+      try
+      {
+        datagram.setLength(MAX_DATAGRAM_SIZE);
+        socket.receive(datagram);
+
+        final byte[] buf = datagram.getData();
+        final int end = datagram.getOffset() + datagram.getLength();
+        int offset = datagram.getOffset();
+
+        // normally one packet per datagram, but a datagram holding several packets is accepted
+        while ((SPPMessageHeader.PRIMARY_HEADER_LENGTH <= (end - offset))
+                && (SPPMessageHeader.getPacketLength(buf, offset) <= (end - offset)))
+        {
+          final int packetLength = SPPMessageHeader.getPacketLength(buf, offset);
+
+          transport.receive(Arrays.copyOfRange(buf, offset, offset + packetLength), null);
+          offset += packetLength;
+        }
+
+        if (offset != end)
+        {
+          RLOGGER.log(Level.WARNING, "SPP discarding {0} bytes of a truncated packet from {1}",
+                  new Object[]
+                  {
+                    end - offset, datagram.getSocketAddress()
+                  });
+        }
+      }
+      catch (IOException ex)
+      {
+        if (!socket.isClosed())
+        {
+          RLOGGER.log(Level.WARNING, "Error while receiving UDP datagram", ex);
+        }
+      }
+    }
+  }
+}
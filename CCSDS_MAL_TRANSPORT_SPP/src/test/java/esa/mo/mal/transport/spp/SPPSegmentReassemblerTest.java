@@ -0,0 +1,207 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2015      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO SPP Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.spp;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the reassembly of segmented SPP messages from segments received out of order, duplicated, too late or too
+ * large for the reassembly buffer.
+ */
+public class SPPSegmentReassemblerTest
+{
+  private static final int APID = 0x123;
+  private static final int SECONDARY_APID = 0x45;
+  /**
+   * The length of a segment header without subIds or timestamp, up to and including the segment counter.
+   */
+  private static final int SEGMENT_HEADER_LENGTH = 31;
+  /**
+   * The length of the header of the reassembled message, the segment header without the segment counter.
+   */
+  private static final int MESSAGE_HEADER_LENGTH = SEGMENT_HEADER_LENGTH - 4;
+
+  /**
+   * An unsegmented packet is returned as it is.
+   */
+  @Test
+  public void testUnsegmentedPacket()
+  {
+    final SPPSegmentReassembler reassembler = new SPPSegmentReassembler(1024, 1000);
+    final byte[] packet = segment(SPPMessageHeader.SEQUENCE_FLAGS_UNSEGMENTED, 0, 1, payload(10, 0));
+
+    assertSame(packet, reassembler.reassemble(packet));
+    assertEquals(0, reassembler.getIncompleteCount());
+  }
+
+  /**
+   * Segments received in any order are reassembled in segment counter order.
+   */
+  @Test
+  public void testOutOfOrderSegments()
+  {
+    final SPPSegmentReassembler reassembler = new SPPSegmentReassembler(1024, 1000);
+
+    assertNull(reassembler.reassemble(segment(SPPMessageHeader.SEQUENCE_FLAGS_LAST, 2, 1, payload(5, 20))));
+    assertNull(reassembler.reassemble(segment(SPPMessageHeader.SEQUENCE_FLAGS_CONTINUATION, 1, 1, payload(10, 10))));
+    assertEquals(1, reassembler.getIncompleteCount());
+
+    final byte[] message = reassembler.reassemble(segment(SPPMessageHeader.SEQUENCE_FLAGS_FIRST, 0, 1, payload(10, 0)));
+
+    assertNotNull(message);
+    assertEquals(SPPMessageHeader.SEQUENCE_FLAGS_UNSEGMENTED,
+            ByteBuffer.wrap(message).getShort(2) & SPPMessageHeader.SEQUENCE_FLAGS_UNSEGMENTED);
+    assertArrayEquals(payload(25, 0), Arrays.copyOfRange(message, MESSAGE_HEADER_LENGTH, message.length));
+    assertEquals(0, reassembler.getIncompleteCount());
+    assertEquals(0, reassembler.getBufferedBytes());
+  }
+
+  /**
+   * A segment received twice is only used once.
+   */
+  @Test
+  public void testDuplicateSegment()
+  {
+    final SPPSegmentReassembler reassembler = new SPPSegmentReassembler(1024, 1000);
+
+    assertNull(reassembler.reassemble(segment(SPPMessageHeader.SEQUENCE_FLAGS_FIRST, 0, 1, payload(10, 0))));
+    final long bufferedBytes = reassembler.getBufferedBytes();
+
+    assertNull(reassembler.reassemble(segment(SPPMessageHeader.SEQUENCE_FLAGS_FIRST, 0, 1, payload(10, 0))));
+    assertEquals(bufferedBytes, reassembler.getBufferedBytes());
+
+    final byte[] message = reassembler.reassemble(segment(SPPMessageHeader.SEQUENCE_FLAGS_LAST, 1, 1, payload(10, 10)));
+
+    assertNotNull(message);
+    assertArrayEquals(payload(20, 0), Arrays.copyOfRange(message, MESSAGE_HEADER_LENGTH, message.length));
+  }
+
+  /**
+   * Segments of different transactions are reassembled separately.
+   */
+  @Test
+  public void testInterleavedMessages()
+  {
+    final SPPSegmentReassembler reassembler = new SPPSegmentReassembler(1024, 1000);
+
+    assertNull(reassembler.reassemble(segment(SPPMessageHeader.SEQUENCE_FLAGS_FIRST, 0, 1, payload(10, 0))));
+    assertNull(reassembler.reassemble(segment(SPPMessageHeader.SEQUENCE_FLAGS_FIRST, 0, 2, payload(10, 50))));
+    assertEquals(2, reassembler.getIncompleteCount());
+
+    final byte[] second = reassembler.reassemble(segment(SPPMessageHeader.SEQUENCE_FLAGS_LAST, 1, 2, payload(5, 60)));
+    final byte[] first = reassembler.reassemble(segment(SPPMessageHeader.SEQUENCE_FLAGS_LAST, 1, 1, payload(5, 10)));
+
+    assertArrayEquals(payload(15, 0), Arrays.copyOfRange(first, MESSAGE_HEADER_LENGTH, first.length));
+    assertArrayEquals(payload(15, 50), Arrays.copyOfRange(second, MESSAGE_HEADER_LENGTH, second.length));
+  }
+
+  /**
+   * An incomplete message is discarded once the timeout has passed, its late segments do not complete it.
+   *
+   * @throws InterruptedException if interrupted.
+   */
+  @Test
+  public void testTimedOutMessage() throws InterruptedException
+  {
+    final SPPSegmentReassembler reassembler = new SPPSegmentReassembler(1024, 50);
+
+    assertNull(reassembler.reassemble(segment(SPPMessageHeader.SEQUENCE_FLAGS_FIRST, 0, 1, payload(10, 0))));
+    Thread.sleep(100);
+
+    // the next segment received discards the expired message
+    assertNull(reassembler.reassemble(segment(SPPMessageHeader.SEQUENCE_FLAGS_FIRST, 0, 2, payload(10, 0))));
+    assertEquals(1, reassembler.getIncompleteCount());
+
+    assertNull(reassembler.reassemble(segment(SPPMessageHeader.SEQUENCE_FLAGS_LAST, 1, 1, payload(5, 10))));
+  }
+
+  /**
+   * A message larger than the reassembly buffer is discarded.
+   */
+  @Test
+  public void testMessageOverLimit()
+  {
+    final SPPSegmentReassembler reassembler = new SPPSegmentReassembler(100, 1000);
+
+    assertNull(reassembler.reassemble(segment(SPPMessageHeader.SEQUENCE_FLAGS_FIRST, 0, 1, payload(60, 0))));
+    assertNull(reassembler.reassemble(segment(SPPMessageHeader.SEQUENCE_FLAGS_CONTINUATION, 1, 1, payload(60, 60))));
+
+    assertEquals(0, reassembler.getIncompleteCount());
+    assertEquals(0, reassembler.getBufferedBytes());
+  }
+
+  /**
+   * The oldest incomplete messages are discarded when the messages together exceed the reassembly buffer.
+   */
+  @Test
+  public void testOldestDiscardedOverLimit()
+  {
+    final SPPSegmentReassembler reassembler = new SPPSegmentReassembler(100, 1000);
+
+    assertNull(reassembler.reassemble(segment(SPPMessageHeader.SEQUENCE_FLAGS_FIRST, 0, 1, payload(40, 0))));
+    assertNull(reassembler.reassemble(segment(SPPMessageHeader.SEQUENCE_FLAGS_FIRST, 0, 2, payload(40, 0))));
+    assertEquals(1, reassembler.getIncompleteCount());
+
+    assertNull(reassembler.reassemble(segment(SPPMessageHeader.SEQUENCE_FLAGS_LAST, 1, 1, payload(5, 40))));
+    assertNotNull(reassembler.reassemble(segment(SPPMessageHeader.SEQUENCE_FLAGS_LAST, 1, 2, payload(5, 40))));
+  }
+
+  private static byte[] segment(final int sequenceFlags,
+          final long segmentCounter,
+          final long transactionId,
+          final byte[] payload)
+  {
+    final ByteBuffer buf = ByteBuffer.allocate(SEGMENT_HEADER_LENGTH + payload.length);
+
+    buf.putShort(0, (short) (0x1800 | APID));
+    buf.putShort(2, (short) sequenceFlags);
+    buf.putShort(4, (short) (buf.capacity() - 7));
+    buf.putShort(14, (short) SECONDARY_APID);
+    buf.putLong(18, transactionId);
+    // no subIds and no timestamp
+    buf.put(26, (byte) 0);
+    buf.putInt(27, (int) segmentCounter);
+    buf.position(SEGMENT_HEADER_LENGTH);
+    buf.put(payload);
+
+    return buf.array();
+  }
+
+  private static byte[] payload(final int length, final int first)
+  {
+    final byte[] payload = new byte[length];
+
+    for (int i = 0; i < length; i++)
+    {
+      payload[i] = (byte) (first + i);
+    }
+
+    return payload;
+  }
+}
@@ -0,0 +1,685 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO TCP/IP Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.tcpip;
+
+import esa.mo.mal.transport.gen.GENEndpoint;
+import esa.mo.mal.transport.gen.GENTransport;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import org.ccsds.moims.mo.mal.MALException;
+import org.ccsds.moims.mo.mal.MALHelper;
+import org.ccsds.moims.mo.mal.MALInteractionException;
+import org.ccsds.moims.mo.mal.MALOperation;
+import org.ccsds.moims.mo.mal.MALPubSubOperation;
+import org.ccsds.moims.mo.mal.MALStandardError;
+import org.ccsds.moims.mo.mal.broker.MALBrokerBinding;
+import org.ccsds.moims.mo.mal.structures.Blob;
+import org.ccsds.moims.mo.mal.structures.Element;
+import org.ccsds.moims.mo.mal.structures.EntityKey;
+import org.ccsds.moims.mo.mal.structures.EntityKeyList;
+import org.ccsds.moims.mo.mal.structures.Identifier;
+import org.ccsds.moims.mo.mal.structures.IdentifierList;
+import org.ccsds.moims.mo.mal.structures.InteractionType;
+import org.ccsds.moims.mo.mal.structures.QoSLevel;
+import org.ccsds.moims.mo.mal.structures.SessionType;
+import org.ccsds.moims.mo.mal.structures.Time;
+import org.ccsds.moims.mo.mal.structures.UInteger;
+import org.ccsds.moims.mo.mal.structures.UOctet;
+import org.ccsds.moims.mo.mal.structures.URI;
+import org.ccsds.moims.mo.mal.structures.UShort;
+import org.ccsds.moims.mo.mal.structures.Union;
+import org.ccsds.moims.mo.mal.structures.UpdateHeader;
+import org.ccsds.moims.mo.mal.structures.UpdateHeaderList;
+import org.ccsds.moims.mo.mal.transport.MALDeregisterBody;
+import org.ccsds.moims.mo.mal.transport.MALEndpoint;
+import org.ccsds.moims.mo.mal.transport.MALMessage;
+import org.ccsds.moims.mo.mal.transport.MALMessageHeader;
+import org.ccsds.moims.mo.mal.transport.MALMessageListener;
+import org.ccsds.moims.mo.mal.transport.MALPublishBody;
+import org.ccsds.moims.mo.mal.transport.MALPublishRegisterBody;
+import org.ccsds.moims.mo.mal.transport.MALRegisterBody;
+import org.ccsds.moims.mo.mal.transport.MALTransmitErrorException;
+import org.ccsds.moims.mo.mal.transport.MALTransmitErrorListener;
+
+import static esa.mo.mal.transport.tcpip.TCPIPTransport.RLOGGER;
+
+/**
+ * A broker implemented by the TCPIP transport itself, so that publish/subscribe needs no external broker.
+ *
+ * The broker is the message listener of its own endpoint. It acknowledges the register, deregister, publish register
+ * and publish deregister messages it receives, keeps the subscriptions in a TCPIPSubscriptionIndex and sends each
+ * publish on to the matching subscriptions as notify messages holding only the updates they match. The bodies are the
+ * GEN register, publish and notify bodies of the messages of the endpoint. A subscriber that cannot be notified has
+ * all its subscriptions removed.
+ */
+public class TCPIPBrokerBinding implements MALBrokerBinding, MALMessageListener
+{
+  private final GENTransport transport;
+  private final GENEndpoint endpoint;
+  private final boolean ownsEndpoint;
+  private final Blob authenticationId;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final TCPIPSubscriptionIndex subscriptions = new TCPIPSubscriptionIndex();
+  private final Map<String, EntityKeyList> publishers = new HashMap<String, EntityKeyList>();
+  private MALTransmitErrorListener listener = null;
+
+  /**
+   * Constructor.
+   *
+   * @param transport The parent transport.
+   * @param endpoint The endpoint that the broker receives messages on.
+   * @param ownsEndpoint True if the endpoint was created for the broker and is deleted when it is closed.
+   * @param authenticationId The authentication identifier of the broker.
+   * @throws MALException on error.
+   */
+  public TCPIPBrokerBinding(final GENTransport transport, final GENEndpoint endpoint, final boolean ownsEndpoint, final Blob authenticationId) throws MALException
+  {
+    this.transport = transport;
+    this.endpoint = endpoint;
+    this.ownsEndpoint = ownsEndpoint;
+    this.authenticationId = authenticationId;
+
+    endpoint.setMessageListener(this);
+    endpoint.startMessageDelivery();
+  }
+
+  @Override
+  public Blob getAuthenticationId()
+  {
+    return authenticationId;
+  }
+
+  @Override
+  public URI getURI()
+  {
+    return endpoint.getURI();
+  }
+
+  @Override
+  public void setTransmitErrorListener(final MALTransmitErrorListener listener) throws MALException
+  {
+    this.listener = listener;
+  }
+
+  @Override
+  public MALTransmitErrorListener getTransmitErrorListener() throws MALException
+  {
+    return listener;
+  }
+
+  /**
+   * Returns the number of subscriptions held by the broker.
+   *
+   * @return the number of subscriptions.
+   */
+  public int getSubscriptionCount()
+  {
+    lock.readLock().lock();
+    try
+    {
+      return subscriptions.size();
+    }
+    finally
+    {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public MALMessage sendNotify(final UShort area,
+          final UShort service,
+          final UShort operation,
+          final UOctet version,
+          final URI subscriber,
+          final Long transactionId,
+          final IdentifierList domainId,
+          final Identifier networkZone,
+          final SessionType sessionType,
+          final Identifier sessionName,
+          final QoSLevel notifyQos,
+          final Map notifyQosProps,
+          final UInteger notifyPriority,
+          final Identifier subscriptionId,
+          final UpdateHeaderList updateHeaderList,
+          final List... updateList) throws IllegalArgumentException, MALInteractionException, MALException
+  {
+    final Object[] body = new Object[updateList.length + 2];
+    body[0] = subscriptionId;
+    body[1] = updateHeaderList;
+    System.arraycopy(updateList, 0, body, 2, updateList.length);
+
+    return send(subscriber, notifyQos, notifyPriority, domainId, networkZone, sessionType, sessionName,
+            MALPubSubOperation.NOTIFY_STAGE, transactionId, area, service, operation, version, false, notifyQosProps, body);
+  }
+
+  @Override
+  public MALMessage sendNotify(final MALOperation op,
+          final URI subscriber,
+          final Long transactionId,
+          final IdentifierList domainId,
+          final Identifier networkZone,
+          final SessionType sessionType,
+          final Identifier sessionName,
+          final QoSLevel notifyQos,
+          final Map notifyQosProps,
+          final UInteger notifyPriority,
+          final Identifier subscriptionId,
+          final UpdateHeaderList updateHeaderList,
+          final List... updateList) throws IllegalArgumentException, MALInteractionException, MALException
+  {
+    return sendNotify(op.getService().getArea().getNumber(), op.getService().getNumber(), op.getNumber(),
+            op.getService().getArea().getVersion(), subscriber, transactionId, domainId, networkZone, sessionType,
+            sessionName, notifyQos, notifyQosProps, notifyPriority, subscriptionId, updateHeaderList, updateList);
+  }
+
+  @Override
+  public MALMessage sendNotifyError(final UShort area,
+          final UShort service,
+          final UShort operation,
+          final UOctet version,
+          final URI subscriber,
+          final Long transactionId,
+          final IdentifierList domainId,
+          final Identifier networkZone,
+          final SessionType sessionType,
+          final Identifier sessionName,
+          final QoSLevel notifyQos,
+          final Map notifyQosProps,
+          final UInteger notifyPriority,
+          final MALStandardError error) throws IllegalArgumentException, MALInteractionException, MALException
+  {
+    return send(subscriber, notifyQos, notifyPriority, domainId, networkZone, sessionType, sessionName,
+            MALPubSubOperation.NOTIFY_STAGE, transactionId, area, service, operation, version, true, notifyQosProps,
+            error.getErrorNumber(), error.getExtraInformation());
+  }
+
+  @Override
+  public MALMessage sendNotifyError(final MALOperation op,
+          final URI subscriber,
+          final Long transactionId,
+          final IdentifierList domainId,
+          final Identifier networkZone,
+          final SessionType sessionType,
+          final Identifier sessionName,
+          final QoSLevel notifyQos,
+          final Map notifyQosProps,
+          final UInteger notifyPriority,
+          final MALStandardError error) throws IllegalArgumentException, MALInteractionException, MALException
+  {
+    return sendNotifyError(op.getService().getArea().getNumber(), op.getService().getNumber(), op.getNumber(),
+            op.getService().getArea().getVersion(), subscriber, transactionId, domainId, networkZone, sessionType,
+            sessionName, notifyQos, notifyQosProps, notifyPriority, error);
+  }
+
+  @Override
+  public MALMessage sendPublishError(final UShort area,
+          final UShort service,
+          final UShort operation,
+          final UOctet version,
+          final URI publisher,
+          final Long transactionId,
+          final IdentifierList domainId,
+          final Identifier networkZone,
+          final SessionType sessionType,
+          final Identifier sessionName,
+          final QoSLevel qos,
+          final Map qosProps,
+          final UInteger priority,
+          final MALStandardError error) throws IllegalArgumentException, MALInteractionException, MALException
+  {
+    return send(publisher, qos, priority, domainId, networkZone, sessionType, sessionName,
+            MALPubSubOperation.PUBLISH_STAGE, transactionId, area, service, operation, version, true, qosProps,
+            error.getErrorNumber(), error.getExtraInformation());
+  }
+
+  @Override
+  public MALMessage sendPublishError(final MALOperation op,
+          final URI publisher,
+          final Long transactionId,
+          final IdentifierList domainId,
+          final Identifier networkZone,
+          final SessionType sessionType,
+          final Identifier sessionName,
+          final QoSLevel qos,
+          final Map qosProps,
+          final UInteger priority,
+          final MALStandardError error) throws IllegalArgumentException, MALInteractionException, MALException
+  {
+    return sendPublishError(op.getService().getArea().getNumber(), op.getService().getNumber(), op.getNumber(),
+            op.getService().getArea().getVersion(), publisher, transactionId, domainId, networkZone, sessionType,
+            sessionName, qos, qosProps, priority, error);
+  }
+
+  @Override
+  public void close() throws MALException
+  {
+    endpoint.setMessageListener(null);
+
+    lock.writeLock().lock();
+    try
+    {
+      subscriptions.clear();
+      publishers.clear();
+    }
+    finally
+    {
+      lock.writeLock().unlock();
+    }
+
+    if (ownsEndpoint)
+    {
+      transport.deleteEndpoint(endpoint.getLocalName());
+    }
+  }
+
+  @Override
+  public void onInternalError(final MALEndpoint callingEndpoint, final Throwable err)
+  {
+    RLOGGER.log(Level.WARNING, "TCPIP broker internal error", err);
+  }
+
+  @Override
+  public void onTransmitError(final MALEndpoint callingEndpoint,
+          final MALMessageHeader srcMessageHeader,
+          final MALStandardError err,
+          final Map qosMap)
+  {
+    RLOGGER.log(Level.WARNING, "TCPIP broker transmit error {0} for {1}", new Object[]
+    {
+      err, srcMessageHeader
+    });
+  }
+
+  @Override
+  public void onMessages(final MALEndpoint callingEndpoint, final MALMessage[] msgList)
+  {
+    for (MALMessage msg : msgList)
+    {
+      onMessage(callingEndpoint, msg);
+    }
+  }
+
+  @Override
+  public void onMessage(final MALEndpoint callingEndpoint, final MALMessage msg)
+  {
+    final MALMessageHeader hdr = msg.getHeader();
+
+    if (InteractionType._PUBSUB_INDEX != hdr.getInteractionType().getOrdinal())
+    {
+      RLOGGER.log(Level.WARNING, "TCPIP broker discarding non PubSub message {0}", hdr);
+      return;
+    }
+
+    try
+    {
+      switch (hdr.getInteractionStage().getValue())
+      {
+        case MALPubSubOperation._REGISTER_STAGE:
+          handleRegister(msg);
+          break;
+        case MALPubSubOperation._DEREGISTER_STAGE:
+          handleDeregister(msg);
+          break;
+        case MALPubSubOperation._PUBLISH_REGISTER_STAGE:
+          handlePublishRegister(msg);
+          break;
+        case MALPubSubOperation._PUBLISH_DEREGISTER_STAGE:
+          handlePublishDeregister(msg);
+          break;
+        case MALPubSubOperation._PUBLISH_STAGE:
+          handlePublish(msg);
+          break;
+        default:
+          RLOGGER.log(Level.WARNING, "TCPIP broker discarding unexpected PubSub stage {0}", hdr);
+      }
+    }
+    catch (MALInteractionException ex)
+    {
+      returnError(msg, ex.getStandardError());
+    }
+    catch (MALException ex)
+    {
+      RLOGGER.log(Level.WARNING, "TCPIP broker error handling message", ex);
+      returnError(msg, new MALStandardError(MALHelper.INTERNAL_ERROR_NUMBER, new Union(ex.getMessage())));
+    }
+  }
+
+  private void handleRegister(final MALMessage msg) throws MALException
+  {
+    final MALMessageHeader hdr = msg.getHeader();
+
+    lock.writeLock().lock();
+    try
+    {
+      subscriptions.add(hdr, ((MALRegisterBody) msg.getBody()).getSubscription());
+    }
+    finally
+    {
+      lock.writeLock().unlock();
+    }
+
+    reply(msg, MALPubSubOperation.REGISTER_ACK_STAGE, false);
+  }
+
+  private void handleDeregister(final MALMessage msg) throws MALException
+  {
+    final MALMessageHeader hdr = msg.getHeader();
+    final IdentifierList subscriptionIds = ((MALDeregisterBody) msg.getBody()).getIdentifierList();
+
+    lock.writeLock().lock();
+    try
+    {
+      for (Identifier subscriptionId : subscriptionIds)
+      {
+        if (!subscriptions.remove(hdr.getURIFrom(), subscriptionId))
+        {
+          RLOGGER.log(Level.FINE, "TCPIP broker deregistering unknown subscription {0}", subscriptionId);
+        }
+      }
+    }
+    finally
+    {
+      lock.writeLock().unlock();
+    }
+
+    reply(msg, MALPubSubOperation.DEREGISTER_ACK_STAGE, false);
+  }
+
+  private void handlePublishRegister(final MALMessage msg) throws MALException
+  {
+    final EntityKeyList keys = ((MALPublishRegisterBody) msg.getBody()).getEntityKeyList();
+
+    lock.writeLock().lock();
+    try
+    {
+      publishers.put(createPublisherKey(msg.getHeader()), keys);
+    }
+    finally
+    {
+      lock.writeLock().unlock();
+    }
+
+    reply(msg, MALPubSubOperation.PUBLISH_REGISTER_ACK_STAGE, false);
+  }
+
+  private void handlePublishDeregister(final MALMessage msg) throws MALException
+  {
+    lock.writeLock().lock();
+    try
+    {
+      publishers.remove(createPublisherKey(msg.getHeader()));
+    }
+    finally
+    {
+      lock.writeLock().unlock();
+    }
+
+    reply(msg, MALPubSubOperation.PUBLISH_DEREGISTER_ACK_STAGE, false);
+  }
+
+  private void handlePublish(final MALMessage msg) throws MALException, MALInteractionException
+  {
+    final MALMessageHeader hdr = msg.getHeader();
+    final MALPublishBody body = (MALPublishBody) msg.getBody();
+    final UpdateHeaderList updateHeaders = body.getUpdateHeaderList();
+    final Map<TCPIPSubscriptionIndex.Subscriber, List<Integer>> matches;
+
+    lock.readLock().lock();
+    try
+    {
+      final EntityKeyList registeredKeys = publishers.get(createPublisherKey(hdr));
+
+      if (null == registeredKeys)
+      {
+        throw new MALInteractionException(new MALStandardError(MALHelper.INCORRECT_STATE_ERROR_NUMBER, null));
+      }
+
+      EntityKeyList unknownKeys = null;
+      for (UpdateHeader updateHeader : updateHeaders)
+      {
+        if (!isRegistered(registeredKeys, updateHeader.getKey()))
+        {
+          if (null == unknownKeys)
+          {
+            unknownKeys = new EntityKeyList();
+          }
+          unknownKeys.add(updateHeader.getKey());
+        }
+      }
+
+      if (null != unknownKeys)
+      {
+        throw new MALInteractionException(new MALStandardError(MALHelper.UNKNOWN_ERROR_NUMBER, unknownKeys));
+      }
+
+      matches = subscriptions.match(hdr, updateHeaders);
+    }
+    finally
+    {
+      lock.readLock().unlock();
+    }
+
+    if (!matches.isEmpty())
+    {
+      final List[] updateLists = body.getUpdateLists();
+
+      for (Map.Entry<TCPIPSubscriptionIndex.Subscriber, List<Integer>> match : matches.entrySet())
+      {
+        // a subscriber that cannot be notified must not stop the notification of the others
+        try
+        {
+          notifySubscriber(msg, match.getKey(), match.getValue(), updateHeaders, updateLists);
+        }
+        catch (MALException ex)
+        {
+          RLOGGER.log(Level.WARNING, "TCPIP broker could not notify " + match.getKey().getHeader().getURIFrom(), ex);
+        }
+        catch (RuntimeException ex)
+        {
+          RLOGGER.log(Level.WARNING, "TCPIP broker could not notify " + match.getKey().getHeader().getURIFrom(), ex);
+        }
+      }
+    }
+  }
+
+  private void notifySubscriber(final MALMessage publishMsg,
+          final TCPIPSubscriptionIndex.Subscriber subscriber,
+          final List<Integer> indexes,
+          final UpdateHeaderList updateHeaders,
+          final List[] updateLists) throws MALException
+  {
+    final MALMessageHeader hdr = publishMsg.getHeader();
+    final MALMessageHeader subscriberHdr = subscriber.getHeader();
+    final Object[] body = new Object[updateLists.length + 2];
+    body[0] = subscriber.getSubscriptionId();
+    body[1] = select(updateHeaders, indexes);
+    for (int i = 0; i < updateLists.length; i++)
+    {
+      body[i + 2] = select(updateLists[i], indexes);
+    }
+
+    try
+    {
+      endpoint.sendMessage(endpoint.createMessage(authenticationId,
+              subscriberHdr.getURIFrom(),
+              new Time(new Date().getTime()),
+              subscriberHdr.getQoSlevel(),
+              subscriberHdr.getPriority(),
+              hdr.getDomain(),
+              hdr.getNetworkZone(),
+              hdr.getSession(),
+              hdr.getSessionName(),
+              InteractionType.PUBSUB,
+              MALPubSubOperation.NOTIFY_STAGE,
+              subscriberHdr.getTransactionId(),
+              hdr.getServiceArea(),
+              hdr.getService(),
+              hdr.getOperation(),
+              hdr.getAreaVersion(),
+              false,
+              publishMsg.getQoSProperties(),
+              body));
+    }
+    catch (MALTransmitErrorException ex)
+    {
+      RLOGGER.log(Level.WARNING, "TCPIP broker removing the subscriptions of {0} as it could not be notified",
+              subscriberHdr.getURIFrom());
+
+      lock.writeLock().lock();
+      try
+      {
+        subscriptions.removeAll(subscriberHdr.getURIFrom());
+      }
+      finally
+      {
+        lock.writeLock().unlock();
+      }
+
+      if (null != listener)
+      {
+        listener.onTransmitError(this, ex.getHeader(), ex.getStandardError(), ex.getQoSProperties());
+      }
+    }
+  }
+
+  private void reply(final MALMessage msg, final UOctet stage, final boolean isError, final Object... body) throws MALException
+  {
+    final MALMessageHeader hdr = msg.getHeader();
+
+    try
+    {
+      send(hdr.getURIFrom(), hdr.getQoSlevel(), hdr.getPriority(), hdr.getDomain(), hdr.getNetworkZone(),
+              hdr.getSession(), hdr.getSessionName(), stage, hdr.getTransactionId(), hdr.getServiceArea(),
+              hdr.getService(), hdr.getOperation(), hdr.getAreaVersion(), isError, msg.getQoSProperties(), body);
+    }
+    catch (MALInteractionException ex)
+    {
+      RLOGGER.log(Level.WARNING, "TCPIP broker could not reply to {0}", hdr.getURIFrom());
+    }
+  }
+
+  private void returnError(final MALMessage msg, final MALStandardError error)
+  {
+    final short stage = msg.getHeader().getInteractionStage().getValue();
+
+    try
+    {
+      // errors are returned in the acknowledgement stage, or the publish stage for a publish
+      reply(msg, new UOctet((MALPubSubOperation._PUBLISH_STAGE == stage) ? stage : (short) (stage + 1)), true,
+              error.getErrorNumber(), error.getExtraInformation());
+    }
+    catch (MALException ex)
+    {
+      RLOGGER.log(Level.WARNING, "TCPIP broker could not return error", ex);
+    }
+  }
+
+  private MALMessage send(final URI uriTo,
+          final QoSLevel qosLevel,
+          final UInteger priority,
+          final IdentifierList domain,
+          final Identifier networkZone,
+          final SessionType session,
+          final Identifier sessionName,
+          final UOctet stage,
+          final Long transactionId,
+          final UShort area,
+          final UShort service,
+          final UShort operation,
+          final UOctet version,
+          final boolean isError,
+          final Map qosProperties,
+          final Object... body) throws MALInteractionException, MALException
+  {
+    final MALMessage msg = endpoint.createMessage(authenticationId, uriTo, new Time(new Date().getTime()), qosLevel,
+            priority, domain, networkZone, session, sessionName, InteractionType.PUBSUB, stage, transactionId, area,
+            service, operation, version, isError, qosProperties, body);
+
+    try
+    {
+      endpoint.sendMessage(msg);
+    }
+    catch (MALTransmitErrorException ex)
+    {
+      throw new MALInteractionException(ex.getStandardError());
+    }
+
+    return msg;
+  }
+
+  private static boolean isRegistered(final EntityKeyList registeredKeys, final EntityKey key)
+  {
+    for (EntityKey registeredKey : registeredKeys)
+    {
+      if (TCPIPSubscriptionIndex.matches(registeredKey, key))
+      {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private static List select(final List list, final List<Integer> indexes)
+  {
+    if (list.size() == indexes.size())
+    {
+      // all the updates match
+      return list;
+    }
+
+    final List rv = (List) ((Element) list).createElement();
+    for (Integer index : indexes)
+    {
+      rv.add(list.get(index));
+    }
+
+    return rv;
+  }
+
+  private static String createPublisherKey(final MALMessageHeader hdr)
+  {
+    final StringBuilder buf = new StringBuilder();
+
+    buf.append(hdr.getURIFrom());
+    buf.append(':');
+    buf.append(hdr.getSession());
+    buf.append(':');
+    buf.append(hdr.getSessionName());
+    buf.append(':');
+    buf.append(hdr.getNetworkZone());
+    buf.append(':');
+    buf.append(hdr.getDomain());
+    buf.append(':');
+    buf.append(hdr.getServiceArea());
+    buf.append(':');
+    buf.append(hdr.getService());
+    buf.append(':');
+    buf.append(hdr.getOperation());
+
+    return buf.toString();
+  }
+}
@@ -0,0 +1,323 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO TCP/IP Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.tcpip;
+
+import esa.mo.mal.transport.gen.GENReceptionHandler;
+import esa.mo.mal.transport.gen.sending.GENBatchMessageSender;
+import esa.mo.mal.transport.gen.sending.GENMessageSender;
+import esa.mo.mal.transport.gen.sending.GENOutgoingMessageHolder;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.logging.Level;
+
+import static esa.mo.mal.transport.tcpip.TCPIPTransport.RLOGGER;
+
+/**
+ * A single non-blocking TCPIP connection used by the NIO mode of the TCPIP transport. It implements the same simple
+ * |size|message| protocol as the TCPIPTransportDataTransceiver class but, rather than being polled by a dedicated
+ * thread, it is driven by the TCPIPNIOReactor that it is registered with.
+ *
+ * Incoming data is read in to a per connection buffer and split in to complete messages which are then passed to the
+ * transport. Outgoing messages are written directly by the calling sender thread, which only waits on the reactor when
+ * the socket send buffer is full. Batches of messages are sent with a single gathering write.
+ */
+public class TCPIPNIOConnection implements GENReceptionHandler, GENBatchMessageSender
+{
+  /**
+   * Size of the message length prefix.
+   */
+  private static final int LENGTH_SIZE = 4;
+  /**
+   * Size of the per connection read buffer.
+   */
+  private static final int READ_BUFFER_SIZE = 8192;
+  private final TCPIPTransport transport;
+  private final TCPIPNIOReactor reactor;
+  private final SocketChannel channel;
+  /**
+   * Holds data read from the socket that has not yet been split in to messages. Only accessed by the reactor thread.
+   */
+  private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+  /**
+   * The message currently being read, null if waiting for a message length. Only accessed by the reactor thread.
+   */
+  private byte[] currentMessage = null;
+  /**
+   * The number of bytes of the current message read so far. Only accessed by the reactor thread.
+   */
+  private int currentMessageOffset = 0;
+  /**
+   * Ensures that messages from different sender threads are not interleaved on the socket.
+   */
+  private final Object writeLock = new Object();
+  /**
+   * Used by the sender thread to wait for the reactor to indicate that the socket is writable again.
+   */
+  private final Object writeMonitor = new Object();
+  private boolean writeReady = false;
+  /**
+   * the remote URI (client) this connection is associated to. This is volatile as it is potentially set by a different
+   * thread after its creation
+   */
+  private volatile String remoteURI = null;
+
+  /**
+   * Constructor.
+   *
+   * @param transport The parent TCPIP transport.
+   * @param reactor The reactor that drives this connection.
+   * @param channel The connected socket channel, must be in non-blocking mode.
+   */
+  public TCPIPNIOConnection(TCPIPTransport transport, TCPIPNIOReactor reactor, SocketChannel channel)
+  {
+    this.transport = transport;
+    this.reactor = reactor;
+    this.channel = channel;
+  }
+
+  /**
+   * Returns the socket channel of this connection.
+   *
+   * @return the socket channel.
+   */
+  public SocketChannel getChannel()
+  {
+    return channel;
+  }
+
+  @Override
+  public void sendEncodedMessage(GENOutgoingMessageHolder packetData) throws IOException
+  {
+    final int length = packetData.getEncodedMessageLength();
+
+    // write packet length and then the packet
+    writeFully(new ByteBuffer[]
+    {
+      ByteBuffer.allocate(LENGTH_SIZE).putInt(0, length), ByteBuffer.wrap(packetData.getEncodedMessageBuffer(), 0, length)
+    }, LENGTH_SIZE + length);
+  }
+
+  @Override
+  public void sendEncodedMessages(List<GENOutgoingMessageHolder> packetData) throws IOException
+  {
+    final ByteBuffer[] frames = new ByteBuffer[packetData.size() * 2];
+    long totalLength = 0;
+
+    for (int i = 0; i < packetData.size(); i++)
+    {
+      final GENOutgoingMessageHolder packet = packetData.get(i);
+      final int length = packet.getEncodedMessageLength();
+      frames[2 * i] = ByteBuffer.allocate(LENGTH_SIZE).putInt(0, length);
+      frames[2 * i + 1] = ByteBuffer.wrap(packet.getEncodedMessageBuffer(), 0, length);
+      totalLength += LENGTH_SIZE + length;
+    }
+
+    writeFully(frames, totalLength);
+  }
+
+  @Override
+  public String getRemoteURI()
+  {
+    return remoteURI;
+  }
+
+  @Override
+  public void setRemoteURI(String remoteURI)
+  {
+    this.remoteURI = remoteURI;
+  }
+
+  @Override
+  public GENMessageSender getMessageSender()
+  {
+    return this;
+  }
+
+  @Override
+  public void close()
+  {
+    try
+    {
+      channel.close();
+    }
+    catch (IOException e)
+    {
+      // ignore
+    }
+
+    synchronized (writeMonitor)
+    {
+      // release any sender thread waiting for the socket
+      writeMonitor.notifyAll();
+    }
+  }
+
+  /**
+   * Called by the reactor thread when the socket has data available. Reads all available data and passes any complete
+   * messages to the transport.
+   */
+  protected void handleReadable()
+  {
+    try
+    {
+      int read;
+      do
+      {
+        read = channel.read(readBuffer);
+
+        readBuffer.flip();
+        extractMessages();
+        readBuffer.compact();
+      }
+      while (0 < read);
+
+      if (0 > read)
+      {
+        RLOGGER.log(Level.INFO, "Client closing connection: {0}", remoteURI);
+
+        transport.closeConnection(remoteURI, this);
+        close();
+      }
+    }
+    catch (IOException e)
+    {
+      RLOGGER.log(Level.WARNING, "Cannot read message from client", e);
+
+      transport.communicationError(remoteURI, this);
+      close();
+    }
+  }
+
+  /**
+   * Called by the reactor thread when the socket can accept more data. Releases the waiting sender thread.
+   */
+  protected void handleWritable()
+  {
+    synchronized (writeMonitor)
+    {
+      writeReady = true;
+      writeMonitor.notifyAll();
+    }
+  }
+
+  /**
+   * Splits the content of the read buffer in to messages, the buffer must be ready for reading.
+   *
+   * @throws IOException if an invalid message length is received.
+   */
+  private void extractMessages() throws IOException
+  {
+    while (readBuffer.hasRemaining())
+    {
+      if (null == currentMessage)
+      {
+        if (LENGTH_SIZE > readBuffer.remaining())
+        {
+          // wait for the rest of the length
+          return;
+        }
+
+        final int packetSize = readBuffer.getInt();
+        if (0 > packetSize)
+        {
+          throw new IOException("Invalid message length received: " + packetSize);
+        }
+
+        currentMessage = new byte[packetSize];
+        currentMessageOffset = 0;
+      }
+
+      final int length = Math.min(readBuffer.remaining(), currentMessage.length - currentMessageOffset);
+      readBuffer.get(currentMessage, currentMessageOffset, length);
+      currentMessageOffset += length;
+
+      if (currentMessageOffset == currentMessage.length)
+      {
+        final byte[] data = currentMessage;
+        currentMessage = null;
+
+        transport.receive(data, this);
+      }
+    }
+  }
+
+  /**
+   * Writes the buffers to the socket, waiting for the socket to become writable when its send buffer is full.
+   *
+   * @param buffers the buffers to write, in order.
+   * @param totalLength the total number of bytes in the buffers.
+   * @throws IOException if the buffers cannot be written.
+   */
+  private void writeFully(ByteBuffer[] buffers, long totalLength) throws IOException
+  {
+    synchronized (writeLock)
+    {
+      long remaining = totalLength;
+
+      while (0 < remaining)
+      {
+        final long written = channel.write(buffers);
+        remaining -= written;
+
+        if ((0 == written) && (0 < remaining))
+        {
+          awaitWritable();
+        }
+      }
+    }
+  }
+
+  /**
+   * Blocks the calling sender thread until the reactor indicates that the socket is writable.
+   *
+   * @throws IOException if the connection is closed or the thread is interrupted while waiting.
+   */
+  private void awaitWritable() throws IOException
+  {
+    synchronized (writeMonitor)
+    {
+      writeReady = false;
+      reactor.requestWritable(this);
+
+      try
+      {
+        while (!writeReady)
+        {
+          if (!channel.isOpen())
+          {
+            throw new java.nio.channels.ClosedChannelException();
+          }
+
+          writeMonitor.wait();
+        }
+      }
+      catch (InterruptedException ex)
+      {
+        // keep the interrupt so that the sender thread sees that it is being stopped
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for socket to become writable");
+      }
+    }
+  }
+}
@@ -0,0 +1,163 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO TCP/IP Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.tcpip;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import static esa.mo.mal.transport.tcpip.TCPIPTransport.RLOGGER;
+
+/**
+ * Manages the fixed set of I/O reactors used by the NIO mode of the TCPIP transport.
+ *
+ * Server connections are accepted by the first reactor and, like outgoing client connections, are then allocated to
+ * the reactors in a round robin fashion. Whatever the number of connections, the number of I/O threads stays fixed at
+ * the configured number of reactors.
+ */
+public class TCPIPNIOEngine
+{
+  private final TCPIPTransport transport;
+  private final TCPIPNIOReactor[] reactors;
+  private final AtomicInteger nextReactor = new AtomicInteger(0);
+  private ServerSocketChannel serverChannel = null;
+
+  /**
+   * Constructor.
+   *
+   * @param transport The parent TCPIP transport.
+   * @param numReactors The number of reactor threads to use.
+   * @throws IOException if the reactors cannot be created.
+   */
+  public TCPIPNIOEngine(TCPIPTransport transport, int numReactors) throws IOException
+  {
+    this.transport = transport;
+    this.reactors = new TCPIPNIOReactor[Math.max(1, numReactors)];
+
+    for (int i = 0; i < reactors.length; i++)
+    {
+      reactors[i] = new TCPIPNIOReactor(i);
+    }
+  }
+
+  /**
+   * Starts the reactor threads.
+   */
+  public void start()
+  {
+    for (TCPIPNIOReactor reactor : reactors)
+    {
+      reactor.start();
+    }
+
+    RLOGGER.log(Level.INFO, "TCPIP NIO engine started with {0} reactors", reactors.length);
+  }
+
+  /**
+   * Opens the server socket and starts accepting connections on it.
+   *
+   * @param serverHost The host address to listen on.
+   * @param serverPort The port to listen on.
+   * @throws IOException if the server socket cannot be opened.
+   */
+  public synchronized void listen(InetAddress serverHost, int serverPort) throws IOException
+  {
+    serverChannel = ServerSocketChannel.open();
+    serverChannel.socket().bind(new InetSocketAddress(serverHost, serverPort));
+    serverChannel.configureBlocking(false);
+
+    reactors[0].registerAcceptor(serverChannel, this);
+  }
+
+  /**
+   * Opens a new connection to a remote server.
+   *
+   * @param host The remote host.
+   * @param port The remote port.
+   * @return the new connection, already registered with a reactor.
+   * @throws IOException if the connection cannot be opened.
+   */
+  public TCPIPNIOConnection connect(String host, int port) throws IOException
+  {
+    final SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+
+    return register(channel);
+  }
+
+  /**
+   * Called by the accepting reactor when new connections are pending on the server channel.
+   *
+   * @param server The server channel.
+   */
+  public void accept(ServerSocketChannel server)
+  {
+    try
+    {
+      SocketChannel channel;
+      while (null != (channel = server.accept()))
+      {
+        register(channel);
+      }
+    }
+    catch (IOException e)
+    {
+      RLOGGER.log(Level.WARNING, "Error while accepting connection", e);
+    }
+  }
+
+  /**
+   * Stops accepting connections and terminates all reactors, closing all their connections.
+   */
+  public synchronized void close()
+  {
+    if (null != serverChannel)
+    {
+      try
+      {
+        serverChannel.close();
+      }
+      catch (IOException e)
+      {
+        // ignore
+      }
+    }
+
+    for (TCPIPNIOReactor reactor : reactors)
+    {
+      reactor.terminate();
+    }
+  }
+
+  private TCPIPNIOConnection register(SocketChannel channel) throws IOException
+  {
+    channel.configureBlocking(false);
+
+    final TCPIPNIOReactor reactor = reactors[(nextReactor.getAndIncrement() & Integer.MAX_VALUE) % reactors.length];
+    final TCPIPNIOConnection connection = new TCPIPNIOConnection(transport, reactor, channel);
+    reactor.register(connection);
+
+    return connection;
+  }
+}
@@ -0,0 +1,239 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO TCP/IP Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.tcpip;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+
+import static esa.mo.mal.transport.tcpip.TCPIPTransport.RLOGGER;
+
+/**
+ * I/O reactor thread for the NIO mode of the TCPIP transport.
+ *
+ * Each reactor owns a selector and services all connections that are registered with it, so a small fixed number of
+ * reactors can handle a large number of connections. All changes to the selector are passed to the reactor thread
+ * through a task queue as selector registration is not safe while the reactor is blocked in a select.
+ */
+public class TCPIPNIOReactor extends Thread
+{
+  private final Selector selector;
+  /**
+   * Tasks to be run by the reactor thread before its next select.
+   */
+  private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<Runnable>();
+
+  /**
+   * Constructor.
+   *
+   * @param index The index of this reactor, used for the thread name.
+   * @throws IOException if the selector cannot be opened.
+   */
+  public TCPIPNIOReactor(int index) throws IOException
+  {
+    this.selector = Selector.open();
+    setName(getClass().getName() + " - Reactor " + index);
+  }
+
+  /**
+   * Registers a connection with this reactor for reading.
+   *
+   * @param connection The connection to service.
+   */
+  public void register(final TCPIPNIOConnection connection)
+  {
+    execute(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          connection.getChannel().register(selector, SelectionKey.OP_READ, connection);
+        }
+        catch (ClosedChannelException ex)
+        {
+          RLOGGER.log(Level.FINE, "Connection closed before it could be registered with reactor");
+        }
+      }
+    });
+  }
+
+  /**
+   * Registers a server socket channel with this reactor for accepting new connections.
+   *
+   * @param serverChannel The server channel, must be in non-blocking mode.
+   * @param engine The engine that new connections are passed to.
+   */
+  public void registerAcceptor(final ServerSocketChannel serverChannel, final TCPIPNIOEngine engine)
+  {
+    execute(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          serverChannel.register(selector, SelectionKey.OP_ACCEPT, engine);
+        }
+        catch (ClosedChannelException ex)
+        {
+          RLOGGER.log(Level.WARNING, "Server channel closed before it could be registered with reactor", ex);
+        }
+      }
+    });
+  }
+
+  /**
+   * Requests that the connection is informed when its socket can accept more data.
+   *
+   * @param connection The connection waiting to write.
+   */
+  public void requestWritable(final TCPIPNIOConnection connection)
+  {
+    execute(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        final SelectionKey key = connection.getChannel().keyFor(selector);
+
+        if ((null != key) && key.isValid())
+        {
+          key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+        else
+        {
+          // let the sender find out the channel is no longer usable
+          connection.handleWritable();
+        }
+      }
+    });
+  }
+
+  /**
+   * Stops the reactor and closes all connections registered with it.
+   */
+  public void terminate()
+  {
+    interrupt();
+    selector.wakeup();
+  }
+
+  @Override
+  public void run()
+  {
+    while (!interrupted())
+    {
+      try
+      {
+        selector.select();
+
+        Runnable task;
+        while (null != (task = pendingTasks.poll()))
+        {
+          task.run();
+        }
+
+        final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext())
+        {
+          final SelectionKey key = keys.next();
+          keys.remove();
+
+          try
+          {
+            processKey(key);
+          }
+          catch (CancelledKeyException ex)
+          {
+            // connection was closed while processing, this is ok
+          }
+        }
+      }
+      catch (IOException e)
+      {
+        RLOGGER.log(Level.WARNING, "Error in reactor select", e);
+      }
+    }
+
+    for (SelectionKey key : selector.keys())
+    {
+      try
+      {
+        key.channel().close();
+      }
+      catch (IOException e)
+      {
+        // ignore
+      }
+    }
+
+    try
+    {
+      selector.close();
+    }
+    catch (IOException e)
+    {
+      // ignore
+    }
+  }
+
+  private void execute(final Runnable task)
+  {
+    pendingTasks.add(task);
+    selector.wakeup();
+  }
+
+  private void processKey(final SelectionKey key)
+  {
+    if (!key.isValid())
+    {
+      return;
+    }
+
+    if (key.isAcceptable())
+    {
+      ((TCPIPNIOEngine) key.attachment()).accept((ServerSocketChannel) key.channel());
+      return;
+    }
+
+    final TCPIPNIOConnection connection = (TCPIPNIOConnection) key.attachment();
+
+    if (key.isWritable())
+    {
+      key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+      connection.handleWritable();
+    }
+
+    if (key.isValid() && key.isReadable())
+    {
+      connection.handleReadable();
+    }
+  }
+}
@@ -0,0 +1,583 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO TCP/IP Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.tcpip;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.ccsds.moims.mo.mal.structures.EntityKey;
+import org.ccsds.moims.mo.mal.structures.EntityRequest;
+import org.ccsds.moims.mo.mal.structures.Identifier;
+import org.ccsds.moims.mo.mal.structures.IdentifierList;
+import org.ccsds.moims.mo.mal.structures.Subscription;
+import org.ccsds.moims.mo.mal.structures.URI;
+import org.ccsds.moims.mo.mal.structures.UpdateHeader;
+import org.ccsds.moims.mo.mal.structures.UpdateHeaderList;
+import org.ccsds.moims.mo.mal.structures.UpdateType;
+import org.ccsds.moims.mo.mal.transport.MALMessageHeader;
+
+/**
+ * Index of the subscriptions held by a TCPIP broker, used to find the subscriptions that match the updates of a publish
+ * without checking every subscription.
+ *
+ * Subscriptions are indexed on their session, network zone and domain, then on their area, service and operation, and
+ * then on the first sub-key of their entity keys, the remaining sub-keys being checked for each entry found. A domain
+ * ending with the * wildcard is indexed on the part before the wildcard and found by looking up each parent of the
+ * published domain, and the all areas, services and operations flags and a wildcard first sub-key are indexed as
+ * values of their own. The cost of a match therefore depends on the depth of the published domain and on the number of
+ * matching entries, not on the total number of subscriptions. Operations and domains are removed from the index with
+ * their last subscription, so that subscribers coming and going do not leave it growing.
+ *
+ * Not thread safe.
+ */
+public final class TCPIPSubscriptionIndex
+{
+  private static final String ALL_ID = "*";
+  private static final Long ALL_NUMBER = 0L;
+  /**
+   * Stands for the all areas, services or operations flags, outside of the range of the UShort values.
+   */
+  private static final long ALL_VALUES = 0x10000L;
+  private final Map<String, Subscriber> subscribers = new HashMap<String, Subscriber>();
+  private final Map<String, DomainNode> domains = new HashMap<String, DomainNode>();
+  private final Map<String, DomainNode> wildcardDomains = new HashMap<String, DomainNode>();
+
+  /**
+   * Adds a subscription, replacing any previous subscription of the same subscriber with the same identifier.
+   *
+   * @param registerHeader The header of the register message.
+   * @param subscription The subscription.
+   */
+  public void add(final MALMessageHeader registerHeader, final Subscription subscription)
+  {
+    final String subscriberKey = createSubscriberKey(registerHeader.getURIFrom(), subscription.getSubscriptionId());
+    remove(subscriberKey);
+
+    final Subscriber subscriber = new Subscriber(registerHeader, subscription.getSubscriptionId());
+
+    for (EntityRequest request : subscription.getEntities())
+    {
+      final EntityNode node = getOrCreateDomain(registerHeader, request.getSubDomain())
+              .getOrCreateOperation(createOperationKey(request.getAllAreas() ? ALL_VALUES : registerHeader.getServiceArea().getValue(),
+                      request.getAllServices() ? ALL_VALUES : registerHeader.getService().getValue(),
+                      request.getAllOperations() ? ALL_VALUES : registerHeader.getOperation().getValue()));
+
+      for (EntityKey key : request.getEntityKeys())
+      {
+        final Entry entry = new Entry(subscriber, node, request.getOnlyOnChange(), key);
+        node.add(entry);
+        subscriber.entries.add(entry);
+      }
+    }
+
+    subscribers.put(subscriberKey, subscriber);
+  }
+
+  /**
+   * Removes a subscription.
+   *
+   * @param subscriberURI The URI of the subscriber.
+   * @param subscriptionId The identifier of the subscription.
+   * @return True if the subscription was known.
+   */
+  public boolean remove(final URI subscriberURI, final Identifier subscriptionId)
+  {
+    return remove(createSubscriberKey(subscriberURI, subscriptionId));
+  }
+
+  /**
+   * Removes all the subscriptions of a subscriber.
+   *
+   * @param subscriberURI The URI of the subscriber.
+   */
+  public void removeAll(final URI subscriberURI)
+  {
+    final Iterator<Subscriber> it = subscribers.values().iterator();
+
+    while (it.hasNext())
+    {
+      final Subscriber subscriber = it.next();
+
+      if (subscriberURI.getValue().equals(subscriber.header.getURIFrom().getValue()))
+      {
+        it.remove();
+        subscriber.removeEntries();
+      }
+    }
+  }
+
+  /**
+   * Removes all the subscriptions.
+   */
+  public void clear()
+  {
+    subscribers.clear();
+    domains.clear();
+    wildcardDomains.clear();
+  }
+
+  /**
+   * Returns the number of subscriptions.
+   *
+   * @return the number of subscriptions.
+   */
+  public int size()
+  {
+    return subscribers.size();
+  }
+
+  /**
+   * Returns the number of indexed domains, empty domains being removed with their last subscription.
+   *
+   * @return the number of indexed domains.
+   */
+  int getDomainCount()
+  {
+    return domains.size() + wildcardDomains.size();
+  }
+
+  /**
+   * Returns the subscriptions that match the updates of a publish, with the updates each one matches.
+   *
+   * @param publishHeader The header of the publish message.
+   * @param updateHeaders The update headers of the publish.
+   * @return the matching subscriptions mapped to the ascending indexes of the updates they match.
+   */
+  public Map<Subscriber, List<Integer>> match(final MALMessageHeader publishHeader, final UpdateHeaderList updateHeaders)
+  {
+    final Map<Subscriber, List<Integer>> rv = new LinkedHashMap<Subscriber, List<Integer>>();
+    final List<EntityNode> nodes = findEntityNodes(publishHeader);
+
+    if (!nodes.isEmpty())
+    {
+      for (int i = 0; i < updateHeaders.size(); i++)
+      {
+        final UpdateHeader updateHeader = updateHeaders.get(i);
+        final EntityKey key = updateHeader.getKey();
+        final boolean isChange = UpdateType.UPDATE != updateHeader.getUpdateType();
+        final String firstSubKey = getIdValue(key.getFirstSubKey());
+
+        for (EntityNode node : nodes)
+        {
+          matchEntries(rv, node.entries.get(firstSubKey), key, isChange, i);
+          matchEntries(rv, node.wildcardEntries, key, isChange, i);
+        }
+      }
+    }
+
+    return rv;
+  }
+
+  /**
+   * Returns true if a key matches a registered or subscribed key, where a null, * or zero sub-key matches any value.
+   *
+   * @param pattern The registered or subscribed key.
+   * @param key The key to match.
+   * @return True if the key matches.
+   */
+  public static boolean matches(final EntityKey pattern, final EntityKey key)
+  {
+    final String firstSubKey = getIdValue(pattern.getFirstSubKey());
+
+    return ((null == firstSubKey) || firstSubKey.equals(getIdValue(key.getFirstSubKey())))
+            && matches(pattern.getSecondSubKey(), key.getSecondSubKey())
+            && matches(pattern.getThirdSubKey(), key.getThirdSubKey())
+            && matches(pattern.getFourthSubKey(), key.getFourthSubKey());
+  }
+
+  private boolean remove(final String subscriberKey)
+  {
+    final Subscriber subscriber = subscribers.remove(subscriberKey);
+
+    if (null != subscriber)
+    {
+      subscriber.removeEntries();
+      return true;
+    }
+
+    return false;
+  }
+
+  private DomainNode getOrCreateDomain(final MALMessageHeader registerHeader, final IdentifierList subDomain)
+  {
+    final StringBuilder buf = createSessionKey(registerHeader);
+    final boolean first = appendDomain(buf, registerHeader.getDomain(), getSize(registerHeader.getDomain()), true);
+    Map<String, DomainNode> map = domains;
+
+    if ((null != subDomain) && !subDomain.isEmpty())
+    {
+      int length = subDomain.size();
+
+      if (ALL_ID.equals(getDomainValue(subDomain.get(length - 1))))
+      {
+        map = wildcardDomains;
+        --length;
+      }
+
+      appendDomain(buf, subDomain, length, first);
+    }
+
+    final String domainKey = buf.toString();
+    DomainNode node = map.get(domainKey);
+
+    if (null == node)
+    {
+      node = new DomainNode(map, domainKey);
+      map.put(domainKey, node);
+    }
+
+    return node;
+  }
+
+  private List<EntityNode> findEntityNodes(final MALMessageHeader publishHeader)
+  {
+    final List<EntityNode> rv = new ArrayList<EntityNode>();
+    final StringBuilder buf = createSessionKey(publishHeader);
+    final IdentifierList domain = publishHeader.getDomain();
+
+    if (!wildcardDomains.isEmpty())
+    {
+      // a wildcard domain matches its own domain and all the domains below it
+      addEntityNodes(rv, wildcardDomains.get(buf.toString()), publishHeader);
+
+      if (null != domain)
+      {
+        for (int i = 0; i < domain.size(); i++)
+        {
+          if (0 < i)
+          {
+            buf.append('.');
+          }
+          buf.append(getDomainValue(domain.get(i)));
+          addEntityNodes(rv, wildcardDomains.get(buf.toString()), publishHeader);
+        }
+      }
+    }
+    else
+    {
+      appendDomain(buf, domain, getSize(domain), true);
+    }
+
+    addEntityNodes(rv, domains.get(buf.toString()), publishHeader);
+
+    return rv;
+  }
+
+  private static void addEntityNodes(final List<EntityNode> nodes, final DomainNode domain, final MALMessageHeader publishHeader)
+  {
+    if (null != domain)
+    {
+      final long area = publishHeader.getServiceArea().getValue();
+      final long service = publishHeader.getService().getValue();
+      final long operation = publishHeader.getOperation().getValue();
+
+      for (int i = 0; i < 8; i++)
+      {
+        final EntityNode node = domain.operations.get(createOperationKey((0 == (i & 4)) ? area : ALL_VALUES,
+                (0 == (i & 2)) ? service : ALL_VALUES,
+                (0 == (i & 1)) ? operation : ALL_VALUES));
+
+        if (null != node)
+        {
+          nodes.add(node);
+        }
+      }
+    }
+  }
+
+  private static void matchEntries(final Map<Subscriber, List<Integer>> matches,
+          final List<Entry> entries,
+          final EntityKey key,
+          final boolean isChange,
+          final int updateIndex)
+  {
+    if (null != entries)
+    {
+      for (Entry entry : entries)
+      {
+        if ((isChange || !entry.onlyOnChange)
+                && matches(entry.secondSubKey, key.getSecondSubKey())
+                && matches(entry.thirdSubKey, key.getThirdSubKey())
+                && matches(entry.fourthSubKey, key.getFourthSubKey()))
+        {
+          List<Integer> indexes = matches.get(entry.subscriber);
+
+          if (null == indexes)
+          {
+            indexes = new ArrayList<Integer>();
+            matches.put(entry.subscriber, indexes);
+          }
+
+          // a subscription may match an update through several of its keys
+          if (indexes.isEmpty() || (updateIndex != indexes.get(indexes.size() - 1)))
+          {
+            indexes.add(updateIndex);
+          }
+        }
+      }
+    }
+  }
+
+  private static boolean matches(final Long pattern, final Long value)
+  {
+    return (null == pattern) || ALL_NUMBER.equals(pattern) || pattern.equals(value);
+  }
+
+  private static StringBuilder createSessionKey(final MALMessageHeader header)
+  {
+    final StringBuilder buf = new StringBuilder();
+
+    buf.append(header.getSession());
+    buf.append(':');
+    buf.append(header.getSessionName());
+    buf.append(':');
+    buf.append(header.getNetworkZone());
+    buf.append(':');
+
+    return buf;
+  }
+
+  private static boolean appendDomain(final StringBuilder buf, final IdentifierList domain, final int count, boolean first)
+  {
+    for (int i = 0; i < count; i++)
+    {
+      if (!first)
+      {
+        buf.append('.');
+      }
+      buf.append(getDomainValue(domain.get(i)));
+      first = false;
+    }
+
+    return first;
+  }
+
+  private static int getSize(final IdentifierList domain)
+  {
+    return (null == domain) ? 0 : domain.size();
+  }
+
+  private static String getDomainValue(final Identifier id)
+  {
+    return (null == id) ? null : id.getValue();
+  }
+
+  private static Long createOperationKey(final long area, final long service, final long operation)
+  {
+    return (area << 34) | (service << 17) | operation;
+  }
+
+  private static String createSubscriberKey(final URI subscriberURI, final Identifier subscriptionId)
+  {
+    return subscriberURI.getValue() + "::" + getIdValue(subscriptionId);
+  }
+
+  private static String getIdValue(final Identifier id)
+  {
+    if ((null != id) && (null != id.getValue()) && !ALL_ID.equals(id.getValue()))
+    {
+      return id.getValue();
+    }
+
+    return null;
+  }
+
+  /**
+   * A subscription of a subscriber.
+   */
+  public static final class Subscriber
+  {
+    private final MALMessageHeader header;
+    private final Identifier subscriptionId;
+    private final List<Entry> entries = new ArrayList<Entry>();
+
+    /**
+     * Constructor.
+     *
+     * @param header The header of the register message.
+     * @param subscriptionId The identifier of the subscription.
+     */
+    private Subscriber(final MALMessageHeader header, final Identifier subscriptionId)
+    {
+      this.header = header;
+      this.subscriptionId = subscriptionId;
+    }
+
+    /**
+     * Returns the header of the register message of the subscription.
+     *
+     * @return the header.
+     */
+    public MALMessageHeader getHeader()
+    {
+      return header;
+    }
+
+    /**
+     * Returns the identifier of the subscription.
+     *
+     * @return the identifier.
+     */
+    public Identifier getSubscriptionId()
+    {
+      return subscriptionId;
+    }
+
+    private void removeEntries()
+    {
+      for (Entry entry : entries)
+      {
+        entry.node.remove(entry);
+      }
+
+      entries.clear();
+    }
+  }
+
+  /**
+   * The subscriptions of a session, network zone and domain, indexed on their area, service and operation.
+   */
+  private static final class DomainNode
+  {
+    private final Map<String, DomainNode> owner;
+    private final String domainKey;
+    private final Map<Long, EntityNode> operations = new HashMap<Long, EntityNode>();
+
+    private DomainNode(final Map<String, DomainNode> owner, final String domainKey)
+    {
+      this.owner = owner;
+      this.domainKey = domainKey;
+    }
+
+    private EntityNode getOrCreateOperation(final Long operationKey)
+    {
+      EntityNode node = operations.get(operationKey);
+
+      if (null == node)
+      {
+        node = new EntityNode(this, operationKey);
+        operations.put(operationKey, node);
+      }
+
+      return node;
+    }
+
+    private void removeOperation(final EntityNode node)
+    {
+      if (node == operations.get(node.operationKey))
+      {
+        operations.remove(node.operationKey);
+
+        if (operations.isEmpty() && (this == owner.get(domainKey)))
+        {
+          owner.remove(domainKey);
+        }
+      }
+    }
+  }
+
+  /**
+   * The entity keys of the subscriptions of an area, service and operation, indexed on their first sub-key.
+   */
+  private static final class EntityNode
+  {
+    private final DomainNode domain;
+    private final Long operationKey;
+    private final Map<String, List<Entry>> entries = new HashMap<String, List<Entry>>();
+    private final List<Entry> wildcardEntries = new ArrayList<Entry>();
+
+    private EntityNode(final DomainNode domain, final Long operationKey)
+    {
+      this.domain = domain;
+      this.operationKey = operationKey;
+    }
+
+    private void add(final Entry entry)
+    {
+      if (null == entry.firstSubKey)
+      {
+        wildcardEntries.add(entry);
+      }
+      else
+      {
+        List<Entry> list = entries.get(entry.firstSubKey);
+
+        if (null == list)
+        {
+          list = new ArrayList<Entry>();
+          entries.put(entry.firstSubKey, list);
+        }
+
+        list.add(entry);
+      }
+    }
+
+    private void remove(final Entry entry)
+    {
+      if (null == entry.firstSubKey)
+      {
+        wildcardEntries.remove(entry);
+      }
+      else
+      {
+        final List<Entry> list = entries.get(entry.firstSubKey);
+
+        if ((null != list) && list.remove(entry) && list.isEmpty())
+        {
+          entries.remove(entry.firstSubKey);
+        }
+      }
+
+      if (entries.isEmpty() && wildcardEntries.isEmpty())
+      {
+        domain.removeOperation(this);
+      }
+    }
+  }
+
+  /**
+   * An entity key of a subscription, the first sub-key is null for a wildcard.
+   */
+  private static final class Entry
+  {
+    private final Subscriber subscriber;
+    private final EntityNode node;
+    private final boolean onlyOnChange;
+    private final String firstSubKey;
+    private final Long secondSubKey;
+    private final Long thirdSubKey;
+    private final Long fourthSubKey;
+
+    private Entry(final Subscriber subscriber, final EntityNode node, final Boolean onlyOnChange, final EntityKey key)
+    {
+      this.subscriber = subscriber;
+      this.node = node;
+      this.onlyOnChange = Boolean.TRUE.equals(onlyOnChange);
+      this.firstSubKey = getIdValue(key.getFirstSubKey());
+      this.secondSubKey = key.getSecondSubKey();
+      this.thirdSubKey = key.getThirdSubKey();
+      this.fourthSubKey = key.getFourthSubKey();
+    }
+  }
+}
@@ -20,6 +20,7 @@
  */
 package esa.mo.mal.transport.tcpip;
 
+import esa.mo.mal.transport.gen.GENEndpoint;
 import esa.mo.mal.transport.gen.GENMessage;
 import esa.mo.mal.transport.gen.GENTransport;
 import static esa.mo.mal.transport.gen.GENTransport.LOGGER;
@@ -59,7 +60,10 @@ import org.ccsds.moims.mo.mal.transport.MALTransportFactory;
  * raw MAL messages org.ccsds.moims.mo.mal.transport.tcpip.host ==> adapter (host / IP Address) that the transport will
  * use for incoming connections. In case of a pure client (i.e. not offering any services) this property should be
  * omitted. org.ccsds.moims.mo.mal.transport.tcpip.port ==> port that the transport listens to. In case this is a pure
- * client, this property should be omitted.
+ * client, this property should be omitted. org.ccsds.moims.mo.mal.transport.tcpip.nio ==> if set to true the transport
+ * uses non-blocking sockets serviced by a fixed set of I/O reactor threads rather than one polling thread per
+ * connection. org.ccsds.moims.mo.mal.transport.tcpip.nio.reactors ==> number of I/O reactor threads used in NIO mode,
+ * defaults to the number of available processors.
  *
  * The general logic is the following : The transport at first initialises the server listen port (if this is a server,
  * offering services).
@@ -77,6 +81,9 @@ import org.ccsds.moims.mo.mal.transport.MALTransportFactory;
  * In the case of malformed MAL messages or communication errors, all resources related to the remote URI are released
  * and need to be reestablished.
  *
+ * Publish/subscribe is supported without an external broker: a broker created on the transport is an endpoint whose
+ * TCPIPBrokerBinding keeps the subscriptions in memory and sends the notify messages to the subscribers directly.
+ *
  * URIs:
  *
  * The TCPIP Transport, generates URIs, in the for of : tcpip://<host>:<port or client ID>-<service id>
@@ -96,6 +103,16 @@ public class TCPIPTransport extends GENTransport
    */
   public static final java.util.logging.Logger RLOGGER = Logger.getLogger("org.ccsds.moims.mo.mal.transport.tcpip");
 
+  /**
+   * System property to enable the NIO mode of the transport.
+   */
+  public static final String NIO_PROPERTY = "org.ccsds.moims.mo.mal.transport.tcpip.nio";
+
+  /**
+   * System property to control the number of I/O reactor threads in NIO mode.
+   */
+  public static final String NIO_REACTORS_PROPERTY = "org.ccsds.moims.mo.mal.transport.tcpip.nio.reactors";
+
   /**
    * Port delimiter
    */
@@ -111,11 +128,26 @@ public class TCPIPTransport extends GENTransport
    */
   private final String serverHost;
 
+  /**
+   * True if the NIO mode of the transport is used.
+   */
+  private final boolean useNIO;
+
+  /**
+   * The number of I/O reactor threads used in NIO mode.
+   */
+  private final int numReactors;
+
   /**
    * Holds the server connection listener
    */
   private TCPIPServerConnectionListener serverConnectionListener = null;
 
+  /**
+   * Holds the NIO engine, null if not in NIO mode
+   */
+  private TCPIPNIOEngine nioEngine = null;
+
   /*
    * Constructor.
    *
@@ -131,9 +163,21 @@ public class TCPIPTransport extends GENTransport
   {
     super(protocol, serviceDelim, supportsRouting, false, factory, properties);
 
+    // default values
+    boolean lUseNIO = false;
+    int lNumReactors = Runtime.getRuntime().availableProcessors();
+
     // decode configuration
     if (properties != null)
     {
+      lUseNIO = Boolean.parseBoolean((String) properties.get(NIO_PROPERTY));
+
+      // number of NIO reactor threads
+      if (properties.containsKey(NIO_REACTORS_PROPERTY))
+      {
+        lNumReactors = Integer.parseInt((String) properties.get(NIO_REACTORS_PROPERTY));
+      }
+
       // host / ip adress
       if (properties.containsKey("org.ccsds.moims.mo.mal.transport.tcpip.host"))
       {
@@ -170,6 +214,9 @@ public class TCPIPTransport extends GENTransport
       this.serverHost = null; //null means this is a client
     }
 
+    this.useNIO = lUseNIO;
+    this.numReactors = lNumReactors;
+
     RLOGGER.log(Level.INFO, "TCPIP Wrapping body parts set to  : {0}", this.wrapBodyParts);
   }
 
@@ -178,6 +225,22 @@ public class TCPIPTransport extends GENTransport
   {
     super.init();
 
+    if (useNIO)
+    {
+      try
+      {
+        synchronized (this)
+        {
+          nioEngine = new TCPIPNIOEngine(this, numReactors);
+          nioEngine.start();
+        }
+      }
+      catch (IOException ex)
+      {
+        throw new MALException("Error initialising TCP NIO engine", ex);
+      }
+    }
+
     if (serverHost != null)
     {
       // this is also a server (i.e. provides some services)
@@ -187,13 +250,21 @@ public class TCPIPTransport extends GENTransport
       try
       {
         InetAddress serverHostAddr = InetAddress.getByName(serverHost);
-        ServerSocket serverSocket = new ServerSocket(serverPort, 0, serverHostAddr);
 
         // create thread that will listen for connections
         synchronized (this)
         {
-          serverConnectionListener = new TCPIPServerConnectionListener(this, serverSocket);
-          serverConnectionListener.start();
+          if (useNIO)
+          {
+            // connections are accepted by the NIO engine
+            nioEngine.listen(serverHostAddr, serverPort);
+          }
+          else
+          {
+            ServerSocket serverSocket = new ServerSocket(serverPort, 0, serverHostAddr);
+            serverConnectionListener = new TCPIPServerConnectionListener(this, serverSocket);
+            serverConnectionListener.start();
+          }
         }
 
         RLOGGER.log(Level.INFO, "Started TCP Server Transport on port {0}", serverPort);
@@ -209,22 +280,20 @@ public class TCPIPTransport extends GENTransport
   @Override
   public MALBrokerBinding createBroker(final String localName, final Blob authenticationId, final QoSLevel[] expectedQos, final UInteger priorityLevelNumber, final Map defaultQoSProperties) throws MALException
   {
-    // not support by TCPIP transport
-    return null;
+    return new TCPIPBrokerBinding(this, (GENEndpoint) createEndpoint(localName, defaultQoSProperties), true, authenticationId);
   }
 
   @Override
   public MALBrokerBinding createBroker(final MALEndpoint endpoint, final Blob authenticationId, final QoSLevel[] qosLevels, final UInteger priorities, final Map properties) throws MALException
   {
-    // not support by TCPIP transport
-    return null;
+    return new TCPIPBrokerBinding(this, (GENEndpoint) endpoint, false, authenticationId);
   }
 
   @Override
   public boolean isSupportedInteractionType(final InteractionType type)
   {
-    // Supports all IPs except Pub Sub
-    return InteractionType.PUBSUB.getOrdinal() != type.getOrdinal();
+    // Pub Sub is supported through the transport broker
+    return true;
   }
 
   @Override
@@ -246,6 +315,11 @@ public class TCPIPTransport extends GENTransport
       {
         serverConnectionListener.interrupt();
       }
+
+      if (null != nioEngine)
+      {
+        nioEngine.close();
+      }
     }
   }
 
@@ -285,6 +359,15 @@ public class TCPIPTransport extends GENTransport
       String host = targetAddress.split(":")[0];
       int port = Integer.parseInt(targetAddress.split(":")[1]);
 
+      if (useNIO)
+      {
+        // the reactor reads from the connection so there is no need for a poller thread
+        TCPIPNIOConnection conn = getNIOEngine().connect(host, port);
+        conn.setRemoteURI(remoteRootURI);
+
+        return conn;
+      }
+
       //create a message sender and receiver for the socket
       TCPIPTransportDataTransceiver trans = createDataTransceiver(new Socket(host, port));
 
@@ -304,7 +387,7 @@ public class TCPIPTransport extends GENTransport
     catch (UnknownHostException e)
     {
       LOGGER.log(Level.WARNING, "TCPIP could not connect to :" + remoteRootURI, e);
-      throw new MALTransmitErrorException(msg.getHeader(), new MALStandardError(MALHelper.DESTINATION_UNKNOWN_ERROR_NUMBER, null), null);
+      throw new MALTransmitErrorException(headerOf(msg), new MALStandardError(MALHelper.DESTINATION_UNKNOWN_ERROR_NUMBER, null), null);
     }
     catch (IOException e)
     {
@@ -329,6 +412,16 @@ public class TCPIPTransport extends GENTransport
     return new TCPIPTransportDataTransceiver(socket);
   }
 
+  /**
+   * Returns the NIO engine of this transport.
+   *
+   * @return the NIO engine, null if the transport is not in NIO mode.
+   */
+  protected synchronized TCPIPNIOEngine getNIOEngine()
+  {
+    return nioEngine;
+  }
+
   /**
    * Provide a default IP address for this host
    *
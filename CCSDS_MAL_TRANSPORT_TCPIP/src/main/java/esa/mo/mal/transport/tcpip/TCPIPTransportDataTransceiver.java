@@ -20,25 +20,40 @@
  */
 package esa.mo.mal.transport.tcpip;
 
-import esa.mo.mal.transport.gen.sending.GENMessageSender;
+import esa.mo.mal.transport.gen.sending.GENBatchMessageSender;
 import esa.mo.mal.transport.gen.sending.GENOutgoingMessageHolder;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.Socket;
+import java.util.List;
 
 /**
  * This class implements the low level data (MAL Message) transport protocol. In order to differentiate messages with
  * each other, the protocol has a very simple format: |size|message|
  *
- * If the protocol uses a different message encoding this class can be replaced in the TCPIPTransport.
+ * If the protocol uses a different message encoding this class can be replaced in the TCPIPTransport. Replacements
+ * must override both sendEncodedMessage and sendEncodedMessages if send batching is enabled in the transport.
+ *
+ * Outgoing messages, including their length, are copied in to a send buffer so that each message, or batch of
+ * messages, is written to the socket with a single write. Messages too large for the send buffer are written directly
+ * from the encode buffer after their length.
  *
  */
-public class TCPIPTransportDataTransceiver implements esa.mo.mal.transport.gen.util.GENMessagePoller.GENByteMessageReceiver, GENMessageSender
+public class TCPIPTransportDataTransceiver implements esa.mo.mal.transport.gen.util.GENMessagePoller.GENByteMessageReceiver, GENBatchMessageSender
 {
+  /**
+   * Size of the message length prefix.
+   */
+  private static final int LENGTH_SIZE = 4;
+  /**
+   * Size of the reusable send buffer, larger sends are written directly from the encoded message.
+   */
+  private static final int SEND_BUFFER_SIZE = 16384;
   protected final Socket socket;
   protected final DataOutputStream socketWriteIf;
   protected final DataInputStream socketReadIf;
+  private final byte[] sendBuffer = new byte[SEND_BUFFER_SIZE];
 
   /**
    * Constructor.
@@ -56,10 +71,49 @@ public class TCPIPTransportDataTransceiver implements esa.mo.mal.transport.gen.u
   @Override
   public void sendEncodedMessage(GENOutgoingMessageHolder packetData) throws IOException
   {
-    // write packet length and then the packet
-    socketWriteIf.writeInt(packetData.getEncodedMessage().length);
+    final int length = packetData.getEncodedMessageLength();
+
+    if ((LENGTH_SIZE + length) <= sendBuffer.length)
+    {
+      // write packet length and then the packet
+      socketWriteIf.write(sendBuffer, 0, putPacket(sendBuffer, 0, packetData));
+    }
+    else
+    {
+      writePacket(packetData);
+    }
+
+    socketWriteIf.flush();
+  }
+
+  @Override
+  public void sendEncodedMessages(List<GENOutgoingMessageHolder> packetData) throws IOException
+  {
+    int totalLength = 0;
+    for (GENOutgoingMessageHolder packet : packetData)
+    {
+      totalLength += LENGTH_SIZE + packet.getEncodedMessageLength();
+    }
+
+    if (totalLength <= sendBuffer.length)
+    {
+      // coalesce all packets, each with its length, in to one write
+      int length = 0;
+      for (GENOutgoingMessageHolder packet : packetData)
+      {
+        length = putPacket(sendBuffer, length, packet);
+      }
+
+      socketWriteIf.write(sendBuffer, 0, length);
+    }
+    else
+    {
+      for (GENOutgoingMessageHolder packet : packetData)
+      {
+        writePacket(packet);
+      }
+    }
 
-    socketWriteIf.write(packetData.getEncodedMessage());
     socketWriteIf.flush();
   }
 
@@ -86,6 +140,55 @@ public class TCPIPTransportDataTransceiver implements esa.mo.mal.transport.gen.u
     }
   }
 
+  /**
+   * Writes the packet length and then the packet, without flushing, directly from the encoded message.
+   *
+   * @param packetData the packet.
+   * @throws IOException on error.
+   */
+  private void writePacket(GENOutgoingMessageHolder packetData) throws IOException
+  {
+    final int length = packetData.getEncodedMessageLength();
+
+    socketWriteIf.write(sendBuffer, 0, putLength(sendBuffer, 0, length));
+    socketWriteIf.write(packetData.getEncodedMessageBuffer(), 0, length);
+  }
+
+  /**
+   * Copies the packet length and then the packet in to the buffer.
+   *
+   * @param buf the buffer.
+   * @param offset the offset in the buffer to copy to.
+   * @param packetData the packet.
+   * @return the offset in the buffer after the packet.
+   */
+  private static int putPacket(byte[] buf, int offset, GENOutgoingMessageHolder packetData)
+  {
+    final int length = packetData.getEncodedMessageLength();
+    final int dataOffset = putLength(buf, offset, length);
+    System.arraycopy(packetData.getEncodedMessageBuffer(), 0, buf, dataOffset, length);
+
+    return dataOffset + length;
+  }
+
+  /**
+   * Copies the packet length in to the buffer.
+   *
+   * @param buf the buffer.
+   * @param offset the offset in the buffer to copy to.
+   * @param length the packet length.
+   * @return the offset in the buffer after the length.
+   */
+  private static int putLength(byte[] buf, int offset, int length)
+  {
+    buf[offset] = (byte) (length >>> 24);
+    buf[offset + 1] = (byte) (length >>> 16);
+    buf[offset + 2] = (byte) (length >>> 8);
+    buf[offset + 3] = (byte) length;
+
+    return offset + LENGTH_SIZE;
+  }
+
   @Override
   public void close()
   {
@@ -53,6 +53,7 @@ public class TCPIPTransportFactoryImpl extends MALTransportFactory
       {
         transport = new TCPIPTransport(getProtocol(), '-', false, this, properties);
         transport.init();
+        transport.connectToPeers();
       }
 
       return transport;
@@ -0,0 +1,301 @@
+/* ----------------------------------------------------------------------------
+ * Copyright (C) 2014      European Space Agency
+ *                         European Space Operations Centre
+ *                         Darmstadt
+ *                         Germany
+ * ----------------------------------------------------------------------------
+ * System                : CCSDS MO TCP/IP Transport Framework
+ * ----------------------------------------------------------------------------
+ * Licensed under the European Space Agency Public License, Version 2.0
+ * You may not use this file except in compliance with the License.
+ *
+ * Except as expressly set forth in this License, the Software is provided to
+ * You on an "as is" basis and without warranties of any kind, including without
+ * limitation merchantability, fitness for a particular purpose, absence of
+ * defects or errors, accuracy or non-infringement of intellectual property rights.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * ----------------------------------------------------------------------------
+ */
+package esa.mo.mal.transport.tcpip;
+
+import esa.mo.mal.transport.gen.GENMessageHeader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.ccsds.moims.mo.mal.structures.Blob;
+import org.ccsds.moims.mo.mal.structures.EntityKey;
+import org.ccsds.moims.mo.mal.structures.EntityKeyList;
+import org.ccsds.moims.mo.mal.structures.EntityRequest;
+import org.ccsds.moims.mo.mal.structures.EntityRequestList;
+import org.ccsds.moims.mo.mal.structures.Identifier;
+import org.ccsds.moims.mo.mal.structures.IdentifierList;
+import org.ccsds.moims.mo.mal.structures.InteractionType;
+import org.ccsds.moims.mo.mal.structures.QoSLevel;
+import org.ccsds.moims.mo.mal.structures.SessionType;
+import org.ccsds.moims.mo.mal.structures.Subscription;
+import org.ccsds.moims.mo.mal.structures.Time;
+import org.ccsds.moims.mo.mal.structures.UInteger;
+import org.ccsds.moims.mo.mal.structures.UOctet;
+import org.ccsds.moims.mo.mal.structures.URI;
+import org.ccsds.moims.mo.mal.structures.UShort;
+import org.ccsds.moims.mo.mal.structures.UpdateHeader;
+import org.ccsds.moims.mo.mal.structures.UpdateHeaderList;
+import org.ccsds.moims.mo.mal.structures.UpdateType;
+import org.ccsds.moims.mo.mal.transport.MALMessageHeader;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the matching rules of the broker subscription index against the publishes of a provider.
+ */
+public class TCPIPSubscriptionIndexTest
+{
+  private static final String CONSUMER = "maltcp://127.0.0.1:1024/consumer";
+  private static final String OTHER_CONSUMER = "maltcp://127.0.0.1:1025/consumer";
+  private TCPIPSubscriptionIndex index;
+
+  /**
+   * Creates an empty index.
+   */
+  @Before
+  public void setUp()
+  {
+    index = new TCPIPSubscriptionIndex();
+  }
+
+  /**
+   * A subscription matches the publishes of its own domain only.
+   */
+  @Test
+  public void testDomain()
+  {
+    index.add(header(CONSUMER, 1, 2, 3, "esa", "mission"), subscription("sub", null, false, false, key("A", 0)));
+
+    assertEquals(Arrays.asList(0), matched(header("pub", 1, 2, 3, "esa", "mission"), updates(UpdateType.UPDATE, key("A", 1))));
+    assertNull(matched(header("pub", 1, 2, 3, "esa"), updates(UpdateType.UPDATE, key("A", 1))));
+    assertNull(matched(header("pub", 1, 2, 3, "esa", "mission", "sub"), updates(UpdateType.UPDATE, key("A", 1))));
+  }
+
+  /**
+   * A sub-domain ending with the * wildcard matches its own domain and all the domains below it.
+   */
+  @Test
+  public void testWildcardDomain()
+  {
+    index.add(header(CONSUMER, 1, 2, 3, "esa"), subscription("sub", domain("mission", "*"), false, false, key("A", 0)));
+
+    final UpdateHeaderList updates = updates(UpdateType.UPDATE, key("A", 1));
+    assertEquals(Arrays.asList(0), matched(header("pub", 1, 2, 3, "esa", "mission"), updates));
+    assertEquals(Arrays.asList(0), matched(header("pub", 1, 2, 3, "esa", "mission", "a", "b"), updates));
+    assertNull(matched(header("pub", 1, 2, 3, "esa"), updates));
+    assertNull(matched(header("pub", 1, 2, 3, "esa", "other"), updates));
+  }
+
+  /**
+   * The all areas, services and operations flags match any area, service and operation.
+   */
+  @Test
+  public void testAllAreasServicesOperations()
+  {
+    index.add(header(CONSUMER, 1, 2, 3, "esa"), subscription("sub", null, true, false, key("A", 0)));
+
+    final UpdateHeaderList updates = updates(UpdateType.UPDATE, key("A", 1));
+    assertEquals(Arrays.asList(0), matched(header("pub", 9, 8, 7, "esa"), updates));
+
+    index.add(header(CONSUMER, 1, 2, 3, "esa"), subscription("sub", null, false, false, key("A", 0)));
+    assertNull(matched(header("pub", 1, 2, 4, "esa"), updates));
+
+    final EntityRequestList requests = new EntityRequestList();
+    requests.add(new EntityRequest(null, Boolean.FALSE, Boolean.FALSE, Boolean.TRUE, Boolean.FALSE, keys(key("A", 0))));
+    index.add(header(CONSUMER, 1, 2, 3, "esa"), new Subscription(new Identifier("sub"), requests));
+    assertEquals(Arrays.asList(0), matched(header("pub", 1, 2, 4, "esa"), updates));
+    assertNull(matched(header("pub", 1, 5, 3, "esa"), updates));
+  }
+
+  /**
+   * A * first sub-key and a zero numeric sub-key match any value, other sub-keys only their own value.
+   */
+  @Test
+  public void testWildcardSubKeys()
+  {
+    index.add(header(CONSUMER, 1, 2, 3, "esa"), subscription("sub", null, false, false, key("*", 0)));
+    index.add(header(OTHER_CONSUMER, 1, 2, 3, "esa"), subscription("sub", null, false, false, key("A", 5)));
+
+    final MALMessageHeader publish = header("pub", 1, 2, 3, "esa");
+    final UpdateHeaderList updates = updates(UpdateType.UPDATE, key("A", 1), key("B", 5), key("A", 5));
+    assertEquals(Arrays.asList(0, 1, 2), matched(publish, updates));
+    assertEquals(Arrays.asList(2), matched(publish, updates, OTHER_CONSUMER));
+
+    assertTrue(TCPIPSubscriptionIndex.matches(key("*", 0), key("X", 3)));
+    assertTrue(TCPIPSubscriptionIndex.matches(key(null, 3), key("X", 3)));
+    assertFalse(TCPIPSubscriptionIndex.matches(key("X", 2), key("X", 3)));
+    assertFalse(TCPIPSubscriptionIndex.matches(key("Y", 0), key("X", 3)));
+  }
+
+  /**
+   * An only on change subscription does not match plain updates.
+   */
+  @Test
+  public void testOnlyOnChange()
+  {
+    index.add(header(CONSUMER, 1, 2, 3, "esa"), subscription("sub", null, false, true, key("A", 0)));
+
+    final UpdateHeaderList updates = updates(UpdateType.UPDATE, key("A", 1));
+    updates.add(new UpdateHeader(new Time(0), new URI("pub"), UpdateType.MODIFICATION, key("A", 1)));
+    updates.add(new UpdateHeader(new Time(0), new URI("pub"), UpdateType.UPDATE, key("A", 1)));
+    updates.add(new UpdateHeader(new Time(0), new URI("pub"), UpdateType.DELETION, key("A", 1)));
+    assertEquals(Arrays.asList(1, 3), matched(header("pub", 1, 2, 3, "esa"), updates));
+  }
+
+  /**
+   * An update matched by several keys of a subscription is reported once.
+   */
+  @Test
+  public void testSeveralKeys()
+  {
+    index.add(header(CONSUMER, 1, 2, 3, "esa"), subscription("sub", null, false, false, key("A", 0), key("*", 1)));
+
+    assertEquals(Arrays.asList(0, 1), matched(header("pub", 1, 2, 3, "esa"), updates(UpdateType.UPDATE, key("A", 1), key("B", 1))));
+  }
+
+  /**
+   * Registering again with the same identifier replaces the previous subscription.
+   */
+  @Test
+  public void testReplace()
+  {
+    index.add(header(CONSUMER, 1, 2, 3, "esa"), subscription("sub", null, false, false, key("A", 0)));
+    index.add(header(CONSUMER, 1, 2, 3, "esa"), subscription("sub", null, false, false, key("B", 0)));
+
+    assertEquals(1, index.size());
+    assertEquals(1, index.getDomainCount());
+    final UpdateHeaderList updates = updates(UpdateType.UPDATE, key("A", 1), key("B", 1));
+    assertEquals(Arrays.asList(1), matched(header("pub", 1, 2, 3, "esa"), updates));
+
+    index.add(header(CONSUMER, 1, 2, 3, "other"), subscription("sub", null, false, false, key("A", 0)));
+    assertEquals(1, index.size());
+    assertEquals(1, index.getDomainCount());
+    assertNull(matched(header("pub", 1, 2, 3, "esa"), updates));
+  }
+
+  /**
+   * Deregistering removes a subscription and the domains left without subscriptions.
+   */
+  @Test
+  public void testDeregister()
+  {
+    index.add(header(CONSUMER, 1, 2, 3, "esa"), subscription("sub1", null, false, false, key("A", 0)));
+    index.add(header(CONSUMER, 1, 2, 3, "esa"), subscription("sub2", domain("*"), true, false, key("*", 0)));
+    index.add(header(OTHER_CONSUMER, 1, 2, 3, "esa"), subscription("sub1", null, false, false, key("A", 0)));
+    assertEquals(3, index.size());
+    assertEquals(2, index.getDomainCount());
+
+    assertTrue(index.remove(new URI(CONSUMER), new Identifier("sub1")));
+    assertFalse(index.remove(new URI(CONSUMER), new Identifier("sub1")));
+    final MALMessageHeader publish = header("pub", 1, 2, 3, "esa");
+    final UpdateHeaderList updates = updates(UpdateType.UPDATE, key("B", 1));
+    assertEquals(Arrays.asList(0), matched(publish, updates));
+
+    index.removeAll(new URI(CONSUMER));
+    assertNull(matched(publish, updates));
+    assertEquals(1, index.size());
+    assertEquals(1, index.getDomainCount());
+
+    index.removeAll(new URI(OTHER_CONSUMER));
+    assertEquals(0, index.size());
+    assertEquals(0, index.getDomainCount());
+  }
+
+  private List<Integer> matched(final MALMessageHeader publish, final UpdateHeaderList updates)
+  {
+    return matched(publish, updates, CONSUMER);
+  }
+
+  private List<Integer> matched(final MALMessageHeader publish, final UpdateHeaderList updates, final String consumer)
+  {
+    for (Map.Entry<TCPIPSubscriptionIndex.Subscriber, List<Integer>> entry : index.match(publish, updates).entrySet())
+    {
+      if (consumer.equals(entry.getKey().getHeader().getURIFrom().getValue()))
+      {
+        return entry.getValue();
+      }
+    }
+
+    return null;
+  }
+
+  private static MALMessageHeader header(final String from, final int area, final int service, final int operation,
+          final String... domain)
+  {
+    return new GENMessageHeader(new URI(from),
+            new Blob(new byte[0]),
+            new URI("maltcp://127.0.0.1:1026/broker"),
+            new Time(0),
+            QoSLevel.BESTEFFORT,
+            new UInteger(1),
+            domain(domain),
+            new Identifier("network"),
+            SessionType.LIVE,
+            new Identifier("LIVE"),
+            InteractionType.PUBSUB,
+            new UOctet((short) 1),
+            Long.valueOf(1),
+            new UShort(area),
+            new UShort(service),
+            new UShort(operation),
+            new UOctet((short) 1),
+            Boolean.FALSE);
+  }
+
+  private static IdentifierList domain(final String... elements)
+  {
+    final IdentifierList rv = new IdentifierList();
+
+    for (String element : elements)
+    {
+      rv.add(new Identifier(element));
+    }
+
+    return rv;
+  }
+
+  private static EntityKey key(final String firstSubKey, final long secondSubKey)
+  {
+    return new EntityKey((null == firstSubKey) ? null : new Identifier(firstSubKey), secondSubKey, 0L, 0L);
+  }
+
+  private static EntityKeyList keys(final EntityKey... keys)
+  {
+    final EntityKeyList rv = new EntityKeyList();
+    rv.addAll(Arrays.asList(keys));
+    return rv;
+  }
+
+  private static Subscription subscription(final String id, final IdentifierList subDomain, final boolean all,
+          final boolean onlyOnChange, final EntityKey... keys)
+  {
+    final EntityRequestList requests = new EntityRequestList();
+    requests.add(new EntityRequest(subDomain, all, all, all, onlyOnChange, keys(keys)));
+
+    return new Subscription(new Identifier(id), requests);
+  }
+
+  private static UpdateHeaderList updates(final UpdateType type, final EntityKey... keys)
+  {
+    final UpdateHeaderList rv = new UpdateHeaderList();
+
+    for (EntityKey key : keys)
+    {
+      rv.add(new UpdateHeader(new Time(0), new URI("pub"), type, key));
+    }
+
+    return rv;
+  }
+}